@@ -32,6 +32,7 @@ import com.gsma.rcs.core.ims.network.gsm.CallManager;
 import com.gsma.rcs.core.ims.network.sip.SipManager;
 import com.gsma.rcs.core.ims.protocol.PayloadException;
 import com.gsma.rcs.core.ims.protocol.msrp.MsrpConnection;
+import com.gsma.rcs.core.ims.protocol.msrp.MsrpFrame;
 import com.gsma.rcs.core.ims.protocol.sip.SipEventListener;
 import com.gsma.rcs.core.ims.protocol.sip.SipRequest;
 import com.gsma.rcs.core.ims.service.ImsService;
@@ -145,6 +146,8 @@ public class ImsModule implements SipEventListener {
     public void initialize() {
         SipManager.setTimeout(mRcsSettings.getSipTransactionTimeout());
         MsrpConnection.setMsrpTraceEnabled(mRcsSettings.isMediaTraceActivated());
+        MsrpConnection.setMsrpNioReceiverEnabled(mRcsSettings.isMsrpNioReceiverActivated());
+        MsrpFrame.setMaxChunkSize(mRcsSettings.getMsrpMaxChunkSize());
         HttpTransferManager.setHttpTraceEnabled(mRcsSettings.isMediaTraceActivated());
 
         mCnxManager.initialize();
@@ -36,6 +36,7 @@ import com.gsma.rcs.provider.settings.RcsSettings;
 import com.gsma.rcs.utils.logger.Logger;
 
 import java.util.ListIterator;
+import java.util.concurrent.Executor;
 
 import javax2.sip.header.ViaHeader;
 import javax2.sip.header.WarningHeader;
@@ -203,14 +204,65 @@ public class SipManager {
             PayloadException {
         SipTransactionContext ctx = sipstack.sendSipMessageAndWait(message, callback);
         ctx.waitResponse(timeout);
+        analyzeResponse(message, ctx);
+        return ctx;
+    }
+
+    /**
+     * Send a SIP message without blocking the calling thread: the callback is notified once the
+     * final response is received or the transaction has timed out
+     * 
+     * @param message SIP message
+     * @param timeout in milliseconds
+     * @param callback callback to handle the result of the transaction
+     * @param executor Executor of the callback or null to run it from the shared SIP transaction
+     *            scheduler, in which case it must not block
+     * @throws PayloadException
+     * @throws NetworkException
+     */
+    public void sendSipMessageAsync(final SipMessage message, long timeout,
+            final SipTransactionContext.INotifySipTransactionResult callback, Executor executor)
+            throws NetworkException, PayloadException {
+        sipstack.sendSipMessageAsync(message, timeout,
+                new SipTransactionContext.INotifySipTransactionResult() {
+                    @Override
+                    public void handleResult(SipTransactionContext ctx) {
+                        analyzeResponse(message, ctx);
+                        callback.handleResult(ctx);
+                    }
+                }, executor);
+    }
+
+    /**
+     * Send a SIP message without blocking the calling thread, with the default SIP timeout
+     * 
+     * @param message SIP message
+     * @param callback callback to handle the result of the transaction
+     * @param executor Executor of the callback or null to run it from the shared SIP transaction
+     *            scheduler, in which case it must not block
+     * @throws PayloadException
+     * @throws NetworkException
+     */
+    public void sendSipMessageAsync(SipMessage message,
+            SipTransactionContext.INotifySipTransactionResult callback, Executor executor)
+            throws NetworkException, PayloadException {
+        sendSipMessageAsync(message, SipManager.sTimeout, callback, executor);
+    }
 
+    /**
+     * Analyze the response received for a SIP message
+     * 
+     * @param message Sent SIP message
+     * @param ctx SIP transaction context
+     */
+    private void analyzeResponse(SipMessage message, SipTransactionContext ctx) {
         if (!(message instanceof SipRequest) || !ctx.isSipResponse()) {
-            return ctx;
+            return;
         }
         String method = ((SipRequest) message).getMethod();
         SipResponse response = ctx.getSipResponse();
         if (response == null) {
-            return ctx;
+            return;
 
         }
         /* Analyze the received response */
@@ -223,14 +275,14 @@ public class SipManager {
             }
         }
         if (!Request.INVITE.equals(method) && !Request.REGISTER.equals(method)) {
-            return ctx;
+            return;
 
         }
 
         KeepAliveManager keepAliveManager = mNetworkInterface.getSipManager().getSipStack()
                 .getKeepAliveManager();
         if (keepAliveManager == null) {
-            return ctx;
+            return;
 
         }
 
@@ -238,13 +290,13 @@ public class SipManager {
         ListIterator<ViaHeader> iterator = response.getViaHeaders();
         if (!iterator.hasNext()) {
             keepAliveManager.setPeriod(mRcsSettings.getSipKeepAlivePeriod());
-            return ctx;
+            return;
         }
         ViaHeader respViaHeader = iterator.next();
         String keepStr = respViaHeader.getParameter("keep");
         if (keepStr == null) {
             keepAliveManager.setPeriod(mRcsSettings.getSipKeepAlivePeriod());
-            return ctx;
+            return;
         }
         try {
             long viaKeep = Integer.parseInt(keepStr) * SECONDS_TO_MILLISECONDS_CONVERSION_RATE;
@@ -261,7 +313,6 @@ public class SipManager {
              */
             keepAliveManager.setPeriod(mRcsSettings.getSipKeepAlivePeriod());
         }
-        return ctx;
     }
 
     /**
@@ -33,6 +33,7 @@ import com.gsma.rcs.utils.logger.Logger;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Hashtable;
 
 /**
@@ -86,6 +87,15 @@ public class ChunkReceiver extends Thread {
         return mConnection;
     }
 
+    /**
+     * Is the receiver terminated
+     * 
+     * @return True if terminated
+     */
+    protected boolean isTerminated() {
+        return mTerminated;
+    }
+
     /**
      * Terminate the receiver
      */
@@ -99,173 +109,15 @@ public class ChunkReceiver extends Thread {
      */
     public void run() {
         try {
-            boolean msrpTraceEnabled = MsrpConnection.isMsrpTraceEnabled();
             // Background processing
             while (!mTerminated) {
-                StringBuilder trace = new StringBuilder();
-
-                // Read first line of a new data chunk
-                StringBuilder line = readLine();
-
-                if (line.length() == 0) {
-                    if (msrpTraceEnabled) {
-                        System.out.println("<<< End of stream");
-                    }
+                if (!receiveMessage()) {
                     return;
                 }
 
-                if (msrpTraceEnabled) {
-                    trace.append(line);
-                    trace.append(MsrpConstants.NEW_LINE);
-                }
-                // Check the MSRP tag
-                String[] firstLineTags = line.toString().split(" ");
-                if ((firstLineTags.length < 3)
-                        || !firstLineTags[0].equals(MsrpConstants.MSRP_HEADER)) {
-                    if (msrpTraceEnabled) {
-                        System.out.println("<<< Not a MSRP message");
-                    }
-                    return;
-                }
-
-                // Get the transaction ID from the first line
-                String txId = firstLineTags[1];
-                String end = MsrpConstants.END_MSRP_MSG + txId;
-
-                // Get response code or method name from the first line
-                int responseCode = -1;
-                String method = null;
-                try {
-                    responseCode = Integer.parseInt(firstLineTags[2]);
-                } catch (NumberFormatException e) {
-                    method = firstLineTags[2];
-                }
-
-                // Data chunk
-                byte[] data = null;
-
-                // Read next lines
-                Hashtable<String, String> headers = new Hashtable<String, String>();
-                char continuationFlag = '\0';
-                int totalSize = 0;
-                while (continuationFlag == '\0' && !mTerminated) {
-                    line = readLine();
-                    if (msrpTraceEnabled) {
-                        trace.append(line);
-                        trace.append(MsrpConstants.NEW_LINE);
-                    }
-
-                    // Test if there is a new line separating headers from the data
-                    if (line.length() == 0) {
-                        // Read data
-                        String byteRange = headers.get(MsrpConstants.HEADER_BYTE_RANGE);
-                        int chunkSize = -1;
-                        if (byteRange != null) {
-                            chunkSize = MsrpUtils.getChunkSize(byteRange);
-                            totalSize = MsrpUtils.getTotalSize(byteRange);
-
-                            // Changed by Deutsche Telekom
-                            if (chunkSize == 0) {
-                                mBufferLength = totalSize;
-                            }
-                        }
-
-                        if (chunkSize >= 0) {
-                            // Use Byte-Range value to read directly the block of data
-                            byte[] buffer = readChunkedData(chunkSize, end);
-
-                            if (chunkSize > 0) {
-                                data = buffer;
-                                // TODO: we could harden the code by checking whether the chunk was
-                                // shorter than expected
-                            } else {
-                                // Cut off continuation flag
-                                data = new byte[buffer.length - 1];
-                                System.arraycopy(buffer, 0, data, 0, buffer.length - 1);
-                                continuationFlag = (char) buffer[buffer.length - 1];
-                            }
-
-                            if (msrpTraceEnabled) {
-                                trace.append(new String(data, UTF8));
-                                trace.append(MsrpConstants.NEW_LINE);
-                            }
-                        } else {
-                            // Read until terminating header is found
-                            StringBuilder buffer = new StringBuilder();
-                            StringBuilder dataline;
-                            boolean endchunk = false;
-                            while ((!endchunk) && (buffer.length() < MsrpConstants.CHUNK_MAX_SIZE)) {
-                                dataline = readLine();
-                                if ((dataline.length() - 1 == end.length())
-                                        && (dataline.toString().startsWith(end))) {
-                                    continuationFlag = dataline.charAt(dataline.length() - 1);
-                                    endchunk = true;
-                                } else {
-                                    if (buffer.length() > 0) {
-                                        buffer.append(MsrpConstants.NEW_LINE);
-                                    }
-                                    buffer.append(dataline);
-                                }
-                            }
-                            data = buffer.toString().getBytes(UTF8);
-                            totalSize = data.length;
-
-                            if (msrpTraceEnabled) {
-                                trace.append(new String(data, UTF8));
-                                trace.append(MsrpConstants.NEW_LINE);
-                                trace.append(end);
-                                trace.append(continuationFlag);
-                            }
-                        }
-                    } else if (line.toString().startsWith(end)) {
-                        continuationFlag = line.charAt(line.length() - 1);
-                    } else {
-                        // It's an header
-                        int index = line.indexOf(":");
-                        String headerName = line.substring(0, index).trim();
-                        String headerValue = line.substring(index + 1).trim();
-
-                        // Add the header in the list
-                        headers.put(headerName, headerValue);
-                    }
-                }
-
-                final MsrpSession session = mConnection.getSession();
-                // Process the received MSRP message
-                if (responseCode != -1) {
-                    // Process MSRP response
-                    if (msrpTraceEnabled) {
-                        System.out.println("<<< Receive MSRP response:\n" + trace);
-                    }
-                    session.receiveMsrpResponse(responseCode, txId, headers);
-                } else {
-                    // Process MSRP request
-                    if (MsrpConstants.METHOD_SEND.equals(method)) {
-                        // Process a SEND request
-                        if (msrpTraceEnabled) {
-                            System.out.println("<<< Receive MSRP SEND request:\n" + trace);
-                        }
-                        session.receiveMsrpSend(txId, headers, continuationFlag, data, totalSize);
-                    } else if (MsrpConstants.METHOD_REPORT.equals(method)) {
-                        // Process a REPORT request
-                        if (msrpTraceEnabled) {
-                            System.out.println("<<< Receive MSRP REPORT request:\n" + trace);
-                        }
-                        session.receiveMsrpReport(txId, headers);
-                    } else {
-                        // Unknown request
-                        if (msrpTraceEnabled) {
-                            System.out.println("<<< Unknown request received:\n" + trace);
-                        }
-                        // Remove transaction info from list
-                        // Changed by Deutsche Telekom
-                        session.removeMsrpTransactionInfo(txId);
-                    }
-                }
-
                 // Check transaction info data
                 // Changed by Deutsche Telekom
-                session.checkMsrpTransactionInfo();
+                mConnection.getSession().checkMsrpTransactionInfo();
             }
         } catch (FileAccessException e) {
             sLogger.error("Unable to receive chunks!", e);
@@ -338,6 +190,206 @@ public class ChunkReceiver extends Thread {
         }
     }
 
+    /**
+     * Read the next MSRP message from the stream and process it
+     * 
+     * @return False if the end of stream is reached or if the data read is not a MSRP message
+     * @throws NetworkException
+     * @throws PayloadException
+     * @throws ContactManagerException
+     * @throws FileAccessException
+     */
+    protected boolean receiveMessage() throws NetworkException, PayloadException,
+            ContactManagerException, FileAccessException {
+        boolean msrpTraceEnabled = MsrpConnection.isMsrpTraceEnabled();
+        StringBuilder trace = new StringBuilder();
+
+        // Read first line of a new data chunk
+        StringBuilder line = readLine();
+
+        if (line.length() == 0) {
+            if (msrpTraceEnabled) {
+                System.out.println("<<< End of stream");
+            }
+            return false;
+        }
+
+        if (msrpTraceEnabled) {
+            trace.append(line);
+            trace.append(MsrpConstants.NEW_LINE);
+        }
+        // Check the MSRP tag
+        String[] firstLineTags = line.toString().split(" ");
+        if ((firstLineTags.length < 3)
+                || !firstLineTags[0].equals(MsrpConstants.MSRP_HEADER)) {
+            if (msrpTraceEnabled) {
+                System.out.println("<<< Not a MSRP message");
+            }
+            return false;
+        }
+
+        // Get the transaction ID from the first line
+        String txId = firstLineTags[1];
+        String end = MsrpConstants.END_MSRP_MSG + txId;
+
+        // Get response code or method name from the first line
+        int responseCode = -1;
+        String method = null;
+        try {
+            responseCode = Integer.parseInt(firstLineTags[2]);
+        } catch (NumberFormatException e) {
+            method = firstLineTags[2];
+        }
+
+        // Data chunk
+        byte[] data = null;
+
+        // Read next lines
+        Hashtable<String, String> headers = new Hashtable<String, String>();
+        char continuationFlag = '\0';
+        int totalSize = 0;
+        while (continuationFlag == '\0' && !mTerminated) {
+            line = readLine();
+            if (msrpTraceEnabled) {
+                trace.append(line);
+                trace.append(MsrpConstants.NEW_LINE);
+            }
+
+            // Test if there is a new line separating headers from the data
+            if (line.length() == 0) {
+                // Read data
+                String byteRange = headers.get(MsrpConstants.HEADER_BYTE_RANGE);
+                int chunkSize = -1;
+                if (byteRange != null) {
+                    chunkSize = MsrpUtils.getChunkSize(byteRange);
+                    totalSize = MsrpUtils.getTotalSize(byteRange);
+
+                    // Changed by Deutsche Telekom
+                    if (chunkSize == 0) {
+                        mBufferLength = totalSize;
+                    }
+                }
+
+                if (chunkSize >= 0) {
+                    // Use Byte-Range value to read directly the block of data
+                    byte[] buffer = readChunkedData(chunkSize, end);
+
+                    if (chunkSize > 0) {
+                        data = buffer;
+                        // TODO: we could harden the code by checking whether the chunk was
+                        // shorter than expected
+                    } else {
+                        // Cut off continuation flag
+                        data = new byte[buffer.length - 1];
+                        System.arraycopy(buffer, 0, data, 0, buffer.length - 1);
+                        continuationFlag = (char) buffer[buffer.length - 1];
+                    }
+
+                    if (msrpTraceEnabled) {
+                        trace.append(new String(data, UTF8));
+                        trace.append(MsrpConstants.NEW_LINE);
+                    }
+                } else {
+                    // Read until terminating header is found
+                    StringBuilder buffer = new StringBuilder();
+                    StringBuilder dataline;
+                    boolean endchunk = false;
+                    while ((!endchunk) && (buffer.length() < MsrpConstants.CHUNK_MAX_SIZE)) {
+                        dataline = readLine();
+                        if ((dataline.length() - 1 == end.length())
+                                && (dataline.toString().startsWith(end))) {
+                            continuationFlag = dataline.charAt(dataline.length() - 1);
+                            endchunk = true;
+                        } else {
+                            if (buffer.length() > 0) {
+                                buffer.append(MsrpConstants.NEW_LINE);
+                            }
+                            buffer.append(dataline);
+                        }
+                    }
+                    data = buffer.toString().getBytes(UTF8);
+                    totalSize = data.length;
+
+                    if (msrpTraceEnabled) {
+                        trace.append(new String(data, UTF8));
+                        trace.append(MsrpConstants.NEW_LINE);
+                        trace.append(end);
+                        trace.append(continuationFlag);
+                    }
+                }
+            } else if (line.toString().startsWith(end)) {
+                continuationFlag = line.charAt(line.length() - 1);
+            } else {
+                // It's an header
+                int index = line.indexOf(":");
+                String headerName = line.substring(0, index).trim();
+                String headerValue = line.substring(index + 1).trim();
+
+                // Add the header in the list
+                headers.put(headerName, headerValue);
+            }
+        }
+
+        processMessage(txId, responseCode, method, headers, continuationFlag,
+                data == null ? null : ByteBuffer.wrap(data), totalSize, trace);
+        return true;
+    }
+
+    /**
+     * Process a received MSRP message
+     * 
+     * @param txId Transaction ID
+     * @param responseCode Response code or -1 for a request
+     * @param method Method name of the request or null for a response
+     * @param headers MSRP headers
+     * @param continuationFlag Continuation flag
+     * @param data Data chunk or null if none, only valid for the duration of the call
+     * @param totalSize Total size of the content
+     * @param trace MSRP trace of the message
+     * @throws NetworkException
+     * @throws PayloadException
+     * @throws ContactManagerException
+     * @throws FileAccessException
+     */
+    protected void processMessage(String txId, int responseCode, String method,
+            Hashtable<String, String> headers, char continuationFlag, ByteBuffer data,
+            int totalSize, CharSequence trace) throws NetworkException, PayloadException,
+            ContactManagerException, FileAccessException {
+        boolean msrpTraceEnabled = MsrpConnection.isMsrpTraceEnabled();
+        final MsrpSession session = mConnection.getSession();
+        // Process the received MSRP message
+        if (responseCode != -1) {
+            // Process MSRP response
+            if (msrpTraceEnabled) {
+                System.out.println("<<< Receive MSRP response:\n" + trace);
+            }
+            session.receiveMsrpResponse(responseCode, txId, headers);
+        } else {
+            // Process MSRP request
+            if (MsrpConstants.METHOD_SEND.equals(method)) {
+                // Process a SEND request
+                if (msrpTraceEnabled) {
+                    System.out.println("<<< Receive MSRP SEND request:\n" + trace);
+                }
+                session.receiveMsrpSend(txId, headers, continuationFlag, data, totalSize);
+            } else if (MsrpConstants.METHOD_REPORT.equals(method)) {
+                // Process a REPORT request
+                if (msrpTraceEnabled) {
+                    System.out.println("<<< Receive MSRP REPORT request:\n" + trace);
+                }
+                session.receiveMsrpReport(txId, headers);
+            } else {
+                // Unknown request
+                if (msrpTraceEnabled) {
+                    System.out.println("<<< Unknown request received:\n" + trace);
+                }
+                // Remove transaction info from list
+                // Changed by Deutsche Telekom
+                session.removeMsrpTransactionInfo(txId);
+            }
+        }
+    }
+
     /**
      * Read line
      * 
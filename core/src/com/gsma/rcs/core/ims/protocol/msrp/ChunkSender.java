@@ -26,6 +26,8 @@ import static com.gsma.rcs.utils.StringUtils.UTF8;
 
 import com.gsma.rcs.core.ims.network.NetworkException;
 import com.gsma.rcs.core.ims.protocol.msrp.MsrpSession.TypeMsrpChunk;
+import com.gsma.rcs.utils.BoundedQueue;
+import com.gsma.rcs.utils.BoundedQueue.OverflowPolicy;
 import com.gsma.rcs.utils.logger.Logger;
 
 import java.io.IOException;
@@ -47,10 +49,18 @@ public class ChunkSender extends Thread {
      */
     private OutputStream mStream;
 
+    /**
+     * Maximum number of chunks waiting to be written. A full buffer blocks the thread sending the
+     * data chunks, the responses and reports sent from the receiver thread must not be queued
+     * here but sent with {@link #sendChunkImmediately(byte[])}.
+     */
+    private static final int MAX_PENDING_CHUNKS = 64;
+
     /**
      * Buffer of chunks
      */
-    private FifoBuffer mBuffer = new FifoBuffer();
+    private final BoundedQueue<MsrpFrame> mBuffer = new BoundedQueue<MsrpFrame>(
+            MAX_PENDING_CHUNKS, OverflowPolicy.BLOCK);
 
     /**
      * Termination flag
@@ -87,7 +97,7 @@ public class ChunkSender extends Thread {
      */
     public void terminate() {
         mTerminated = true;
-        mBuffer.unblockRead();
+        mBuffer.close();
         interrupt();
     }
 
@@ -97,13 +107,10 @@ public class ChunkSender extends Thread {
     public void run() {
         try {
             // Read chunk to be sent
-            byte chunk[] = null;
-            while ((chunk = (byte[]) mBuffer.getMessage()) != null) {
+            MsrpFrame chunk = null;
+            while ((chunk = mBuffer.take()) != null) {
                 // Write chunk to the output stream
-                if (MsrpConnection.isMsrpTraceEnabled()) {
-                    System.out.println(">>> Send MSRP message:\n" + new String(chunk, UTF8));
-                }
-                writeData(chunk);
+                sendChunkImmediately(chunk);
             }
         } catch (NetworkException e) {
             if (!mTerminated) {
@@ -137,8 +144,21 @@ public class ChunkSender extends Thread {
      * @throws NetworkException
      */
     public void sendChunk(byte chunk[]) throws NetworkException {
+        sendChunk(MsrpFrame.wrap(chunk));
+    }
+
+    /**
+     * Send a chunk, the frame is recycled once written
+     * 
+     * @param chunk New chunk
+     * @throws NetworkException
+     */
+    public void sendChunk(MsrpFrame chunk) throws NetworkException {
         if (mConnection.getSession().isFailureReportRequested()) {
-            mBuffer.putMessage(chunk);
+            if (!mBuffer.put(chunk)) {
+                /* Sender terminated */
+                chunk.recycle();
+            }
         } else {
             sendChunkImmediately(chunk);
         }
@@ -151,10 +171,25 @@ public class ChunkSender extends Thread {
      * @throws NetworkException
      */
     public void sendChunkImmediately(byte chunk[]) throws NetworkException {
-        if (MsrpConnection.isMsrpTraceEnabled()) {
-            System.out.println(">>> Send MSRP message:\n" + new String(chunk, UTF8));
+        sendChunkImmediately(MsrpFrame.wrap(chunk));
+    }
+
+    /**
+     * Send a chunk immediately, the frame is recycled once written
+     * 
+     * @param chunk New chunk
+     * @throws NetworkException
+     */
+    public void sendChunkImmediately(MsrpFrame chunk) throws NetworkException {
+        try {
+            if (MsrpConnection.isMsrpTraceEnabled()) {
+                System.out.println(">>> Send MSRP message:\n"
+                        + new String(chunk.getData(), 0, chunk.getLength(), UTF8));
+            }
+            writeData(chunk);
+        } finally {
+            chunk.recycle();
         }
-        writeData(chunk);
     }
 
     /**
@@ -163,9 +198,9 @@ public class ChunkSender extends Thread {
      * @param chunk Data chunk
      * @throws NetworkException
      */
-    private synchronized void writeData(byte chunk[]) throws NetworkException {
+    private synchronized void writeData(MsrpFrame chunk) throws NetworkException {
         try {
-            mStream.write(chunk);
+            mStream.write(chunk.getData(), 0, chunk.getLength());
             mStream.flush();
         } catch (IOException e) {
             throw new NetworkException("Failed to write data!", e);
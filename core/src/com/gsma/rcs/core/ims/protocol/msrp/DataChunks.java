@@ -19,6 +19,7 @@
 package com.gsma.rcs.core.ims.protocol.msrp;
 
 import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * Data chunks
@@ -52,6 +53,23 @@ public class DataChunks {
         currentSize += data.length;
     }
 
+    /**
+     * Add a new chunk
+     * 
+     * @param data Data chunk from its position to its limit, the position is not modified
+     */
+    public void addChunk(ByteBuffer data) {
+        int length = data.remaining();
+        if (data.hasArray()) {
+            cache.write(data.array(), data.arrayOffset() + data.position(), length);
+        } else {
+            byte[] chunk = new byte[length];
+            data.duplicate().get(chunk);
+            cache.write(chunk, 0, length);
+        }
+        currentSize += length;
+    }
+
     /**
      * Get received data
      * 
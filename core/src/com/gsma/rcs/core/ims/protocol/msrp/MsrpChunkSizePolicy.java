@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.core.ims.protocol.msrp;
+
+/**
+ * Adaptive size of the MSRP chunks sent in a session.<br>
+ * The size starts at {@link MsrpConstants#CHUNK_MAX_SIZE}, doubles when a chunk is served close
+ * to the fastest service time seen so far and halves when the service time degrades or when an
+ * error response or timeout is reported, always staying between {@link #MIN_CHUNK_SIZE} and the
+ * maximum size of the session.<br>
+ * With failure reports, the service time of a chunk is the delay of its response, counted from
+ * the previous response when the chunk was sent behind others. Without failure reports no
+ * response comes back and the service time is the time taken to write the chunk on the
+ * connection.
+ */
+public class MsrpChunkSizePolicy {
+    /**
+     * Minimum chunk size in bytes
+     */
+    public static final int MIN_CHUNK_SIZE = 2 * 1024;
+
+    /**
+     * Extra delay tolerated over the fastest service time to consider a chunk as fast (in
+     * milliseconds)
+     */
+    private static final long SERVICE_TIME_TOLERANCE = 50;
+
+    private final int mMaxChunkSize;
+
+    private int mChunkSize;
+
+    private long mMinServiceTime = Long.MAX_VALUE;
+
+    /**
+     * Constructor
+     *
+     * @param maxChunkSize Maximum chunk size in bytes
+     */
+    public MsrpChunkSizePolicy(int maxChunkSize) {
+        mMaxChunkSize = Math.max(MIN_CHUNK_SIZE, maxChunkSize);
+        mChunkSize = Math.min(MsrpConstants.CHUNK_MAX_SIZE, mMaxChunkSize);
+    }
+
+    /**
+     * Returns the size of the next chunk to be sent
+     *
+     * @return Size in bytes
+     */
+    public synchronized int getChunkSize() {
+        return mChunkSize;
+    }
+
+    /**
+     * Returns the maximum chunk size
+     *
+     * @return Size in bytes
+     */
+    public int getMaxChunkSize() {
+        return mMaxChunkSize;
+    }
+
+    /**
+     * Adapt the chunk size to the service time of a chunk
+     *
+     * @param serviceTime Service time in milliseconds of a chunk, from a successful response or
+     *            from the write of the chunk when no response is expected
+     */
+    public synchronized void onServed(long serviceTime) {
+        if (serviceTime < mMinServiceTime) {
+            mMinServiceTime = serviceTime;
+        }
+        if (serviceTime <= 2 * mMinServiceTime + SERVICE_TIME_TOLERANCE) {
+            mChunkSize = Math.min(2 * mChunkSize, mMaxChunkSize);
+        } else if (serviceTime > 4 * mMinServiceTime + SERVICE_TIME_TOLERANCE) {
+            mChunkSize = Math.max(mChunkSize / 2, MIN_CHUNK_SIZE);
+        }
+    }
+
+    /**
+     * Adapt the chunk size to an error response or a timeout
+     */
+    public synchronized void onFailure() {
+        mChunkSize = Math.max(mChunkSize / 2, MIN_CHUNK_SIZE);
+    }
+}
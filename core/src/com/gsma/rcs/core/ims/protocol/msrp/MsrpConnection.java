@@ -40,6 +40,8 @@ public abstract class MsrpConnection {
 
     private static boolean sMsrpTraceEnabled = false;
 
+    private static boolean sMsrpNioReceiverEnabled = false;
+
     private MsrpSession mSession;
 
     private SocketConnection mSocket;
@@ -93,7 +95,7 @@ public abstract class MsrpConnection {
         mOutputStream = mSocket.getOutputStream();
 
         // Create the chunk receiver
-        mReceiver = new ChunkReceiver(this, mInputStream);
+        mReceiver = createChunkReceiver(mInputStream);
         mReceiver.start();
 
         // Create the chunk sender
@@ -124,7 +126,7 @@ public abstract class MsrpConnection {
         mOutputStream = mSocket.getOutputStream();
 
         // Create the chunk receiver
-        mReceiver = new ChunkReceiver(this, mInputStream);
+        mReceiver = createChunkReceiver(mInputStream);
         mReceiver.start();
 
         // Create the chunk sender
@@ -136,6 +138,19 @@ public abstract class MsrpConnection {
         }
     }
 
+    /**
+     * Create the chunk receiver selected for the connection
+     * 
+     * @param stream TCP input stream
+     * @return Chunk receiver
+     */
+    private ChunkReceiver createChunkReceiver(InputStream stream) {
+        if (sMsrpNioReceiverEnabled) {
+            return new NioChunkReceiver(this, stream);
+        }
+        return new ChunkReceiver(this, stream);
+    }
+
     /**
      * Close the connection
      */
@@ -174,6 +189,20 @@ public abstract class MsrpConnection {
         mSender.sendChunk(chunk);
     }
 
+    /**
+     * Send a new encoded data chunk, the frame is recycled once written
+     * 
+     * @param chunk Data chunk
+     * @throws NetworkException
+     */
+    public void sendChunk(MsrpFrame chunk) throws NetworkException {
+        if (mSender == null) {
+            chunk.recycle();
+            throw new NetworkException("ChunkSender is already closed!");
+        }
+        mSender.sendChunk(chunk);
+    }
+
     /**
      * Send a new data chunk immediately
      * 
@@ -184,6 +213,16 @@ public abstract class MsrpConnection {
         mSender.sendChunkImmediately(chunk);
     }
 
+    /**
+     * Send a new encoded data chunk immediately, the frame is recycled once written
+     * 
+     * @param chunk Data chunk
+     * @throws NetworkException
+     */
+    public void sendChunkImmediately(MsrpFrame chunk) throws NetworkException {
+        mSender.sendChunkImmediately(chunk);
+    }
+
     /**
      * Returns the socket connection
      * 
@@ -211,4 +250,22 @@ public abstract class MsrpConnection {
     public static void setMsrpTraceEnabled(boolean enable) {
         sMsrpTraceEnabled = enable;
     }
+
+    /**
+     * Checks if the buffer based chunk receiver is enabled
+     * 
+     * @return True if the buffer based chunk receiver is enabled
+     */
+    public static boolean isMsrpNioReceiverEnabled() {
+        return sMsrpNioReceiverEnabled;
+    }
+
+    /**
+     * Sets the buffer based chunk receiver enabled, else the byte per byte chunk receiver is used
+     * 
+     * @param enable True if the buffer based chunk receiver is enabled
+     */
+    public static void setMsrpNioReceiverEnabled(boolean enable) {
+        sMsrpNioReceiverEnabled = enable;
+    }
 }
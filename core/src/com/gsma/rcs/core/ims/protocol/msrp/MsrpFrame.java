@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.core.ims.protocol.msrp;
+
+/**
+ * Encoded MSRP message ready to be written on the connection.<br>
+ * Frames obtained from the pool must be recycled once written so that their buffer is reused by
+ * the next chunk.
+ */
+public class MsrpFrame {
+    /**
+     * Room for the headers besides the chunk data
+     */
+    private static final int HEADERS_SIZE = 2048;
+
+    /**
+     * Minimum size of the pooled buffers: one default chunk plus room for the headers
+     */
+    private static final int POOLED_BUFFER_SIZE = MsrpConstants.CHUNK_MAX_SIZE + HEADERS_SIZE;
+
+    /**
+     * Maximum size of the buffers kept in the pool: the configured maximum chunk size plus room
+     * for the headers
+     */
+    private static volatile int sMaxPooledBufferSize = POOLED_BUFFER_SIZE;
+
+    /**
+     * Maximum number of frames kept in the pool
+     */
+    private static final int MAX_POOL_SIZE = 16;
+
+    private static final MsrpFrame[] sPool = new MsrpFrame[MAX_POOL_SIZE];
+
+    private static int sPoolSize = 0;
+
+    private final byte[] mData;
+
+    private int mLength;
+
+    private final boolean mPooled;
+
+    private MsrpFrame(byte[] data, int length, boolean pooled) {
+        mData = data;
+        mLength = length;
+        mPooled = pooled;
+    }
+
+    /**
+     * Set the maximum size of the chunks sent, which bounds the size of the pooled buffers
+     *
+     * @param maxChunkSize Maximum chunk size in bytes
+     */
+    public static void setMaxChunkSize(int maxChunkSize) {
+        sMaxPooledBufferSize = Math.max(maxChunkSize, MsrpConstants.CHUNK_MAX_SIZE)
+                + HEADERS_SIZE;
+    }
+
+    /**
+     * Obtain an empty frame able to hold at least the given number of bytes
+     *
+     * @param capacity Capacity in bytes
+     * @return Frame
+     */
+    public static MsrpFrame obtain(int capacity) {
+        if (capacity > sMaxPooledBufferSize) {
+            return new MsrpFrame(new byte[capacity], 0, false);
+        }
+        synchronized (sPool) {
+            /* Chunks have variable sizes: take the most recent frame which is large enough */
+            for (int i = sPoolSize - 1; i >= 0; i--) {
+                MsrpFrame frame = sPool[i];
+                if (frame.mData.length >= capacity) {
+                    sPool[i] = sPool[--sPoolSize];
+                    sPool[sPoolSize] = null;
+                    return frame;
+                }
+            }
+        }
+        return new MsrpFrame(new byte[Math.max(capacity, POOLED_BUFFER_SIZE)], 0, true);
+    }
+
+    /**
+     * Wrap an already encoded message
+     *
+     * @param data Encoded message
+     * @return Frame
+     */
+    public static MsrpFrame wrap(byte[] data) {
+        return new MsrpFrame(data, data.length, false);
+    }
+
+    /**
+     * Return the frame to the pool. The frame must not be used anymore after this call.
+     */
+    public void recycle() {
+        if (!mPooled || mData.length > sMaxPooledBufferSize) {
+            return;
+        }
+        mLength = 0;
+        synchronized (sPool) {
+            if (sPoolSize < MAX_POOL_SIZE) {
+                sPool[sPoolSize++] = this;
+            }
+        }
+    }
+
+    /**
+     * Returns the buffer holding the encoded message
+     *
+     * @return Buffer
+     */
+    public byte[] getData() {
+        return mData;
+    }
+
+    /**
+     * Returns the length of the encoded message
+     *
+     * @return Length in bytes
+     */
+    public int getLength() {
+        return mLength;
+    }
+
+    /**
+     * Append bytes to the frame
+     *
+     * @param bytes Bytes
+     * @return This frame
+     */
+    public MsrpFrame put(byte[] bytes) {
+        return put(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Append bytes to the frame
+     *
+     * @param bytes Bytes
+     * @param offset Offset of the first byte
+     * @param length Number of bytes
+     * @return This frame
+     */
+    public MsrpFrame put(byte[] bytes, int offset, int length) {
+        System.arraycopy(bytes, offset, mData, mLength, length);
+        mLength += length;
+        return this;
+    }
+
+    /**
+     * Append a byte to the frame
+     *
+     * @param b Byte
+     * @return This frame
+     */
+    public MsrpFrame put(int b) {
+        mData[mLength++] = (byte) b;
+        return this;
+    }
+
+    /**
+     * Append an US-ASCII string to the frame
+     *
+     * @param value US-ASCII string
+     * @return This frame
+     */
+    public MsrpFrame putAscii(String value) {
+        for (int i = 0, length = value.length(); i < length; i++) {
+            mData[mLength++] = (byte) value.charAt(i);
+        }
+        return this;
+    }
+
+    /**
+     * Append the decimal representation of a positive number to the frame
+     *
+     * @param value Positive number
+     * @return This frame
+     */
+    public MsrpFrame putDecimal(long value) {
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        int index = mLength + digits;
+        do {
+            mData[--index] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value > 0);
+        mLength += digits;
+        return this;
+    }
+}
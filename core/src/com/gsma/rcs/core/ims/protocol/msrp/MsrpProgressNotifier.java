@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.core.ims.protocol.msrp;
+
+import com.gsma.rcs.core.ims.protocol.msrp.MsrpSession.TypeMsrpChunk;
+import com.gsma.rcs.utils.logger.Logger;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throttled notifier of the progress of an outgoing MSRP transfer.<br>
+ * Progress updates are coalesced: the listener is notified from a scheduler thread shared by all
+ * the transfers, at most once per {@link #MIN_NOTIFICATION_INTERVAL} and only when the transfer
+ * has progressed of at least one percent or is complete. The listener callbacks are serialized so
+ * that no progress is notified after the end or the failure of the transfer.
+ */
+public class MsrpProgressNotifier {
+    /**
+     * Minimum interval between two notifications of a transfer (in milliseconds)
+     */
+    private static final long MIN_NOTIFICATION_INTERVAL = 500;
+
+    /**
+     * Number of steps of the transfer progress worth a notification
+     */
+    private static final long PROGRESS_STEPS = 100;
+
+    private static final Logger sLogger = Logger.getLogger(MsrpProgressNotifier.class
+            .getSimpleName());
+
+    private static final ScheduledExecutorService sScheduler = new ScheduledThreadPoolExecutor(1,
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "MsrpProgressNotifier");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final MsrpEventListener mListener;
+
+    private final long mTotalSize;
+
+    private final long mMinDelta;
+
+    private long mCurrentSize = 0;
+
+    private long mNotifiedSize = 0;
+
+    private long mNotificationTimestamp = 0;
+
+    private boolean mScheduled = false;
+
+    private boolean mCancelled = false;
+
+    /**
+     * Lock held while calling the listener to keep the notifications in order
+     */
+    private final Object mNotificationLock = new Object();
+
+    private final Runnable mNotifyTask = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                /*
+                 * Intentionally catch runtime exceptions as else it will abruptly end the shared
+                 * scheduler thread.
+                 */
+                sLogger.error("Failed to notify MSRP transfer progress!", e);
+            }
+        }
+    };
+
+    /**
+     * Constructor
+     *
+     * @param listener MSRP event listener
+     * @param totalSize Total size of the transfer
+     */
+    public MsrpProgressNotifier(MsrpEventListener listener, long totalSize) {
+        mListener = listener;
+        mTotalSize = totalSize;
+        mMinDelta = Math.max(1, totalSize / PROGRESS_STEPS);
+    }
+
+    /**
+     * Update the progress of the transfer
+     *
+     * @param currentSize Number of bytes transfered
+     */
+    public synchronized void update(long currentSize) {
+        mCurrentSize = currentSize;
+        if (mScheduled || mCancelled) {
+            return;
+        }
+        if (currentSize - mNotifiedSize < mMinDelta && currentSize < mTotalSize) {
+            return;
+        }
+        mScheduled = true;
+        long delay = mNotificationTimestamp + MIN_NOTIFICATION_INTERVAL
+                - System.currentTimeMillis();
+        sScheduler.schedule(mNotifyTask, Math.max(0, delay), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Notify immediately the last progress if not yet notified
+     */
+    public void flush() {
+        synchronized (mNotificationLock) {
+            long currentSize;
+            synchronized (this) {
+                mScheduled = false;
+                if (mCancelled || mCurrentSize == mNotifiedSize) {
+                    return;
+                }
+                currentSize = mCurrentSize;
+                mNotifiedSize = currentSize;
+                mNotificationTimestamp = System.currentTimeMillis();
+            }
+            mListener.msrpTransferProgress(currentSize, mTotalSize);
+        }
+    }
+
+    /**
+     * Notify the last progress if not yet notified then the end of the transfer. Pending and next
+     * progress notifications are dropped.
+     *
+     * @param msgId Message ID
+     */
+    public void notifyTransfered(String msgId) {
+        synchronized (mNotificationLock) {
+            flush();
+            cancel();
+            mListener.msrpDataTransfered(msgId);
+        }
+    }
+
+    /**
+     * Notify an error of the transfer. Pending and next progress notifications are dropped.
+     *
+     * @param msgId Message ID
+     * @param error Error
+     * @param typeMsrpChunk Type of MSRP chunk
+     */
+    public void notifyTransferError(String msgId, String error, TypeMsrpChunk typeMsrpChunk) {
+        synchronized (mNotificationLock) {
+            cancel();
+            mListener.msrpTransferError(msgId, error, typeMsrpChunk);
+        }
+    }
+
+    /**
+     * Cancel the pending and next notifications
+     */
+    public synchronized void cancel() {
+        mCancelled = true;
+    }
+}
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.core.ims.protocol.msrp;
+
+import static com.gsma.rcs.utils.StringUtils.UTF8;
+
+/**
+ * Encoder of MSRP SEND requests.<br>
+ * The headers which do not change during the session (To-Path, From-Path and report flags) are
+ * encoded once, as well as the Message-ID and Content-Type headers of the message being sent. Only
+ * the transaction ID, the Byte-Range and the end-line are encoded for each chunk, straight into a
+ * pooled frame.
+ */
+public class MsrpSendEncoder {
+    private static final byte[] SEND_REQUEST_LINE_END = new StringBuilder(" ")
+            .append(MsrpConstants.METHOD_SEND).append(MsrpConstants.NEW_LINE).toString()
+            .getBytes(UTF8);
+
+    private static final byte[] NEW_LINE = MsrpConstants.NEW_LINE.getBytes(UTF8);
+
+    private static final byte[] HEADER_BYTE_RANGE = MsrpConstants.HEADER_BYTE_RANGE.concat(": ")
+            .getBytes(UTF8);
+
+    /**
+     * Room for the request line, Byte-Range header, data delimiters and end-line besides the
+     * transaction ID
+     */
+    private static final int VARIABLE_PART_MAX_LENGTH = 128;
+
+    private final byte[] mPathHeaders;
+
+    private final byte[] mReportHeaders;
+
+    private String mMsrpMsgId;
+
+    private byte[] mMsgIdHeader;
+
+    private String mContentType;
+
+    private byte[] mContentTypeHeader;
+
+    /**
+     * Constructor
+     *
+     * @param to To path
+     * @param from From path
+     * @param failureReport Failure report option
+     * @param successReport Success report option
+     */
+    public MsrpSendEncoder(String to, String from, boolean failureReport, boolean successReport) {
+        mPathHeaders = new StringBuilder(MsrpConstants.HEADER_TO_PATH).append(": ").append(to)
+                .append(MsrpConstants.NEW_LINE).append(MsrpConstants.HEADER_FROM_PATH)
+                .append(": ").append(from).append(MsrpConstants.NEW_LINE).toString()
+                .getBytes(UTF8);
+        StringBuilder reportHeaders = new StringBuilder();
+        /* According with GSMA guidelines */
+        if (failureReport) {
+            reportHeaders.append(MsrpConstants.HEADER_FAILURE_REPORT).append(": yes")
+                    .append(MsrpConstants.NEW_LINE);
+        }
+        if (successReport) {
+            reportHeaders.append(MsrpConstants.HEADER_SUCCESS_REPORT).append(": yes")
+                    .append(MsrpConstants.NEW_LINE);
+        }
+        mReportHeaders = reportHeaders.toString().getBytes(UTF8);
+    }
+
+    private byte[] getMsgIdHeader(String msrpMsgId) {
+        if (!msrpMsgId.equals(mMsrpMsgId)) {
+            mMsgIdHeader = new StringBuilder(MsrpConstants.HEADER_MESSAGE_ID).append(": ")
+                    .append(msrpMsgId).append(MsrpConstants.NEW_LINE).toString().getBytes(UTF8);
+            mMsrpMsgId = msrpMsgId;
+        }
+        return mMsgIdHeader;
+    }
+
+    private byte[] getContentTypeHeader(String contentType) {
+        if (!contentType.equals(mContentType)) {
+            mContentTypeHeader = new StringBuilder(MsrpConstants.HEADER_CONTENT_TYPE)
+                    .append(": ").append(contentType).append(MsrpConstants.NEW_LINE).toString()
+                    .getBytes(UTF8);
+            mContentType = contentType;
+        }
+        return mContentTypeHeader;
+    }
+
+    /**
+     * Encode a SEND request carrying a data chunk
+     *
+     * @param txId Transaction ID
+     * @param msrpMsgId MSRP message ID
+     * @param contentType Content type or null
+     * @param data Data chunk or null
+     * @param dataSize Data chunk size
+     * @param firstByte First byte range
+     * @param lastByte Last byte range
+     * @param totalSize Total size
+     * @return Frame to be recycled once sent
+     */
+    public synchronized MsrpFrame encode(String txId, String msrpMsgId, String contentType,
+            byte[] data, int dataSize, long firstByte, long lastByte, long totalSize) {
+        byte[] msgIdHeader = getMsgIdHeader(msrpMsgId);
+        byte[] contentTypeHeader = contentType == null ? null : getContentTypeHeader(contentType);
+        int capacity = mPathHeaders.length + msgIdHeader.length + mReportHeaders.length
+                + (contentTypeHeader == null ? 0 : contentTypeHeader.length) + 2
+                * txId.length() + VARIABLE_PART_MAX_LENGTH + (data == null ? 0 : dataSize);
+        MsrpFrame frame = MsrpFrame.obtain(capacity);
+        putRequestLine(frame, txId);
+        frame.put(mPathHeaders);
+        frame.put(msgIdHeader);
+        frame.put(HEADER_BYTE_RANGE).putDecimal(firstByte).put(MsrpConstants.CHAR_MIN)
+                .putDecimal(lastByte).put('/').putDecimal(totalSize).put(NEW_LINE);
+        frame.put(mReportHeaders);
+        if (contentTypeHeader != null) {
+            frame.put(contentTypeHeader);
+        }
+        if (data != null) {
+            frame.put(NEW_LINE).put(data, 0, dataSize).put(NEW_LINE);
+        }
+        /* '$' -> last chunk, '+' -> more chunk */
+        putEndLine(frame, txId, lastByte == totalSize ? MsrpConstants.FLAG_LAST_CHUNK
+                : MsrpConstants.FLAG_MORE_CHUNK);
+        return frame;
+    }
+
+    /**
+     * Encode an empty SEND request
+     *
+     * @param txId Transaction ID
+     * @param msrpMsgId MSRP message ID
+     * @return Frame to be recycled once sent
+     */
+    public synchronized MsrpFrame encodeEmpty(String txId, String msrpMsgId) {
+        byte[] msgIdHeader = getMsgIdHeader(msrpMsgId);
+        MsrpFrame frame = MsrpFrame.obtain(mPathHeaders.length + msgIdHeader.length + 2
+                * txId.length() + VARIABLE_PART_MAX_LENGTH);
+        putRequestLine(frame, txId);
+        frame.put(mPathHeaders);
+        frame.put(msgIdHeader);
+        putEndLine(frame, txId, MsrpConstants.FLAG_LAST_CHUNK);
+        return frame;
+    }
+
+    private static void putRequestLine(MsrpFrame frame, String txId) {
+        frame.putAscii(MsrpConstants.MSRP_HEADER).put(MsrpConstants.CHAR_SP).putAscii(txId)
+                .put(SEND_REQUEST_LINE_END);
+    }
+
+    private static void putEndLine(MsrpFrame frame, String txId, int flag) {
+        frame.putAscii(MsrpConstants.END_MSRP_MSG).putAscii(txId).put(flag).put(NEW_LINE);
+    }
+}
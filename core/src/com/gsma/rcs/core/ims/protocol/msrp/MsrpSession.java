@@ -36,11 +36,11 @@ import com.gsma.rcs.utils.logger.Logger;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Random;
-import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -143,11 +143,14 @@ public class MsrpSession {
     private MsrpTransaction mMsrpTransaction;
 
     /**
-     * File transfer progress
+     * Encoder of SEND requests, rebuilt when the paths or report options change
      */
-    private Vector<Long> mProgress = new Vector<Long>();
+    private MsrpSendEncoder mSendEncoder;
 
-    private long mTotalSize;
+    /**
+     * Notifier of the progress of the transfer being sent
+     */
+    private MsrpProgressNotifier mProgressNotifier;
 
     private static final Logger sLogger = Logger.getLogger(MsrpSession.class.getSimpleName());
 
@@ -182,6 +185,21 @@ public class MsrpSession {
 
     private final RcsSettings mRcsSettings;
 
+    /**
+     * Maximum number of chunks sent without response when failure reports are requested
+     */
+    private int mSendWindowSize;
+
+    /**
+     * Maximum size of the chunks sent in this session
+     */
+    private int mMaxChunkSize;
+
+    /**
+     * Size policy of the chunks being sent
+     */
+    private MsrpChunkSizePolicy mChunkSizePolicy;
+
     /**
      * Constructor
      * 
@@ -191,6 +209,8 @@ public class MsrpSession {
         // Changed by Deutsche Telekom
         setMapMsgIdFromTransationId(true);
         mRcsSettings = rcsSettings;
+        mSendWindowSize = rcsSettings.getMsrpSendWindowSize();
+        mMaxChunkSize = rcsSettings.getMsrpMaxChunkSize();
     }
 
     // Changed by Deutsche Telekom
@@ -229,6 +249,7 @@ public class MsrpSession {
      */
     public void setFailureReportOption(boolean failureReportOption) {
         this.mFailureReportOption = failureReportOption;
+        resetSendEncoder();
     }
 
     /**
@@ -247,6 +268,44 @@ public class MsrpSession {
      */
     public void setSuccessReportOption(boolean successReportOption) {
         this.mSuccessReportOption = successReportOption;
+        resetSendEncoder();
+    }
+
+    /**
+     * Returns the maximum number of chunks sent without response when failure reports are
+     * requested
+     * 
+     * @return Window size, no limit if lower than 1
+     */
+    public int getSendWindowSize() {
+        return mSendWindowSize;
+    }
+
+    /**
+     * Set the maximum number of chunks sent without response when failure reports are requested
+     * 
+     * @param sendWindowSize Window size, no limit if lower than 1
+     */
+    public void setSendWindowSize(int sendWindowSize) {
+        mSendWindowSize = sendWindowSize;
+    }
+
+    /**
+     * Returns the maximum size of the chunks sent in this session
+     * 
+     * @return Size in bytes
+     */
+    public int getMaxChunkSize() {
+        return mMaxChunkSize;
+    }
+
+    /**
+     * Set the maximum size of the chunks sent in this session
+     * 
+     * @param maxChunkSize Size in bytes
+     */
+    public void setMaxChunkSize(int maxChunkSize) {
+        mMaxChunkSize = maxChunkSize;
     }
 
     /**
@@ -301,6 +360,7 @@ public class MsrpSession {
      */
     public void setFrom(String from) {
         this.mFrom = from;
+        resetSendEncoder();
     }
 
     /**
@@ -319,6 +379,14 @@ public class MsrpSession {
      */
     public void setTo(String to) {
         this.mTo = to;
+        resetSendEncoder();
+    }
+
+    /**
+     * Reset the encoder of SEND requests
+     */
+    private synchronized void resetSendEncoder() {
+        mSendEncoder = null;
     }
 
     /**
@@ -351,6 +419,11 @@ public class MsrpSession {
         if (mMsrpTransaction != null) {
             mMsrpTransaction.terminate();
         }
+
+        // Stop progress notifications
+        if (mProgressNotifier != null) {
+            mProgressNotifier.cancel();
+        }
     }
 
     // Changed by Deutsche Telekom
@@ -370,9 +443,10 @@ public class MsrpSession {
             sLogger.info("Send content (" + contentType + " - MSRP chunk type: " + typeMsrpChunk
                     + ")");
         }
-        this.mTotalSize = totalSize;
+        mProgressNotifier = new MsrpProgressNotifier(mMsrpEventListener, totalSize);
         try {
-            byte data[] = new byte[MsrpConstants.CHUNK_MAX_SIZE];
+            mChunkSizePolicy = new MsrpChunkSizePolicy(mMaxChunkSize);
+            byte data[] = new byte[mChunkSizePolicy.getMaxChunkSize()];
             long firstByte = 1;
             long lastByte = 0;
             mCancelTransfer = false;
@@ -387,33 +461,6 @@ public class MsrpSession {
                 mMsrpTransaction = null;
             }
 
-            // Changed by Deutsche Telekom
-            // Calculate number of needed chunks
-            final int totalChunks = (int) Math.ceil(totalSize
-                    / (double) MsrpConstants.CHUNK_MAX_SIZE);
-
-            new Thread(new Runnable() {
-
-                @Override
-                public void run() {
-                    if (mMsrpTransaction != null) {
-                        while ((totalChunks - mMsrpTransaction.getNumberReceivedOk()) > 0
-                                && !mCancelTransfer) {
-                            mMsrpEventListener.msrpTransferProgress(
-                                    mMsrpTransaction.getNumberReceivedOk()
-                                            * MsrpConstants.CHUNK_MAX_SIZE, totalSize);
-                            try {
-                                Thread.sleep(500);
-                            } catch (InterruptedException e) {
-                                /* Nothing to be done here */
-                            }
-                        }
-                    }
-
-                }
-
-            }).start();
-
             // Changed by Deutsche Telekom
             String newTransactionId = null;
 
@@ -425,9 +472,10 @@ public class MsrpSession {
             // Message-ID value follows the definition in RFC4975, section 9
             String msrpMsgId = IdGenerator.generateMessageID();
 
-            // Send data chunk by chunk
-            for (int i = inputStream.read(data); (!mCancelTransfer) & (i > -1); i = inputStream
-                    .read(data)) {
+            // Send data chunk by chunk, the chunk size being adapted to the responses
+            int i;
+            while (!mCancelTransfer
+                    && (i = inputStream.read(data, 0, mChunkSizePolicy.getChunkSize())) > -1) {
                 // Update upper byte range
                 lastByte += i;
 
@@ -437,21 +485,16 @@ public class MsrpSession {
 
                 // Send a chunk
                 // Changed by Deutsche Telekom
-                sendMsrpSendRequest(newTransactionId, mTo, mFrom, msrpMsgId, contentType, i, data,
-                        firstByte, lastByte, totalSize);
+                sendMsrpSendRequest(newTransactionId, msrpMsgId, contentType, i, data, firstByte,
+                        lastByte, totalSize);
 
                 // Update lower byte range
                 firstByte += i;
 
                 // Progress management
-                if (mFailureReportOption) {
-                    // Add value in progress vector
-                    mProgress.add(lastByte);
-                } else {
-                    // Direct notification
-                    if (!mCancelTransfer) {
-                        mMsrpEventListener.msrpTransferProgress(lastByte, totalSize);
-                    }
+                if (!mFailureReportOption && !mCancelTransfer) {
+                    // No response expected: notify the sent bytes
+                    mProgressNotifier.update(lastByte);
                 }
             }
 
@@ -467,11 +510,11 @@ public class MsrpSession {
 
                 // Notify event listener
                 if (mMsrpTransaction.isAllResponsesReceived()) {
-                    mMsrpEventListener.msrpDataTransfered(msgId);
+                    mProgressNotifier.notifyTransfered(msgId);
                 } else {
                     if (!mMsrpTransaction.isTerminated()) {
                         // Changed by Deutsche Telekom
-                        mMsrpEventListener.msrpTransferError(msgId, "response timeout 408",
+                        mProgressNotifier.notifyTransferError(msgId, "response timeout 408",
                                 typeMsrpChunk);
                     }
                 }
@@ -490,10 +533,10 @@ public class MsrpSession {
 
                 // Notify event listener
                 if (mReportTransaction.getStatusCode() == 200) {
-                    mMsrpEventListener.msrpDataTransfered(msgId);
+                    mProgressNotifier.notifyTransfered(msgId);
                 } else {
                     // Changed by Deutsche Telekom
-                    mMsrpEventListener.msrpTransferError(msgId, "error report "
+                    mProgressNotifier.notifyTransferError(msgId, "error report "
                             + mReportTransaction.getStatusCode(), typeMsrpChunk);
                 }
             }
@@ -501,12 +544,14 @@ public class MsrpSession {
             // No transaction
             if (mMsrpTransaction == null && mReportTransaction == null) {
                 // Notify event listener
-                mMsrpEventListener.msrpDataTransfered(msgId);
+                mProgressNotifier.notifyTransfered(msgId);
             }
         } catch (IOException e) {
             throw new NetworkException("Send chunk failed for msgId : ".concat(msgId), e);
 
         } finally {
+            /* No progress may be notified after a failure of the transfer */
+            mProgressNotifier.cancel();
             CloseableUtils.tryToClose(inputStream);
         }
     }
@@ -523,15 +568,26 @@ public class MsrpSession {
         String newTransactionId = generateTransactionId();
         String newMsgId = generateTransactionId();
         addMsrpTransactionInfo(newTransactionId, newMsgId, null, TypeMsrpChunk.EmptyChunk);
-        sendEmptyMsrpSendRequest(newTransactionId, mTo, mFrom, newMsgId);
+        sendEmptyMsrpSendRequest(newTransactionId, newMsgId);
+    }
+
+    /**
+     * Returns the encoder of SEND requests for the current paths and report options
+     * 
+     * @return Encoder
+     */
+    private synchronized MsrpSendEncoder getSendEncoder() {
+        if (mSendEncoder == null) {
+            mSendEncoder = new MsrpSendEncoder(mTo, mFrom, mFailureReportOption,
+                    mSuccessReportOption);
+        }
+        return mSendEncoder;
     }
 
     /**
      * Send MSRP SEND request
      * 
      * @param txId Transaction ID
-     * @param to To header
-     * @param from From header
      * @param msrpMsgId MSRP message ID
      * @param contentType Content type
      * @param dataSize Data chunk size
@@ -542,104 +598,43 @@ public class MsrpSession {
      * @throws NetworkException
      */
     // Changed by Deutsche Telekom
-    private void sendMsrpSendRequest(String txId, String to, String from, String msrpMsgId,
-            String contentType, int dataSize, byte data[], long firstByte, long lastByte,
-            long totalSize) throws NetworkException {
-        ByteArrayOutputStream buffer = null;
-        try {
-            boolean isLastChunk = (lastByte == totalSize);
-            // Create request
-            buffer = new ByteArrayOutputStream(4000);
-            buffer.reset();
-            buffer.write(MsrpConstants.MSRP_HEADER.getBytes(UTF8));
-            buffer.write(MsrpConstants.CHAR_SP);
-            buffer.write(txId.getBytes(UTF8));
-            buffer.write((" " + MsrpConstants.METHOD_SEND).getBytes(UTF8));
-            buffer.write(NEW_LINE);
-
-            String toHeader = MsrpConstants.HEADER_TO_PATH + ": " + to + MsrpConstants.NEW_LINE;
-            buffer.write(toHeader.getBytes(UTF8));
-            String fromHeader = MsrpConstants.HEADER_FROM_PATH + ": " + from
-                    + MsrpConstants.NEW_LINE;
-            buffer.write(fromHeader.getBytes(UTF8));
-            // Changed by Deutsche Telekom
-            String msgIdHeader = MsrpConstants.HEADER_MESSAGE_ID + ": " + msrpMsgId
-                    + MsrpConstants.NEW_LINE;
-            buffer.write(msgIdHeader.getBytes(UTF8));
-
-            // Write byte range
-            String byteRange = MsrpConstants.HEADER_BYTE_RANGE + ": " + firstByte + "-" + lastByte
-                    + "/" + totalSize + MsrpConstants.NEW_LINE;
-            buffer.write(byteRange.getBytes(UTF8));
-
-            // Write optional headers
-            // Changed by Deutsche Telekom
-            // According with GSMA guidelines
-            if (mFailureReportOption) {
-                String header = MsrpConstants.HEADER_FAILURE_REPORT + ": yes"
-                        + MsrpConstants.NEW_LINE;
-                buffer.write(header.getBytes(UTF8));
-            }
-            if (mSuccessReportOption) {
-                String header = MsrpConstants.HEADER_SUCCESS_REPORT + ": yes"
-                        + MsrpConstants.NEW_LINE;
-                buffer.write(header.getBytes(UTF8));
-            }
-
-            // Write content type
-            if (contentType != null) {
-                String content = MsrpConstants.HEADER_CONTENT_TYPE + ": " + contentType
-                        + MsrpConstants.NEW_LINE;
-                buffer.write(content.getBytes(UTF8));
-            }
-
-            // Write data
-            if (data != null) {
-                buffer.write(NEW_LINE);
-                buffer.write(data, 0, dataSize);
-                buffer.write(NEW_LINE);
-            }
-
-            // Write end of request
-            buffer.write(MsrpConstants.END_MSRP_MSG.getBytes(UTF8));
-            buffer.write(txId.getBytes(UTF8));
-            if (isLastChunk) {
-                // '$' -> last chunk
-                buffer.write(MsrpConstants.FLAG_LAST_CHUNK);
-            } else {
-                // '+' -> more chunk
-                buffer.write(MsrpConstants.FLAG_MORE_CHUNK);
-            }
-            buffer.write(NEW_LINE);
+    private void sendMsrpSendRequest(String txId, String msrpMsgId, String contentType,
+            int dataSize, byte data[], long firstByte, long lastByte, long totalSize)
+            throws NetworkException {
+        MsrpFrame frame = getSendEncoder().encode(txId, msrpMsgId, contentType, data, dataSize,
+                firstByte, lastByte, totalSize);
 
-            // Send chunk
-            if (mFailureReportOption) {
-                if (mMsrpTransaction != null) {
-                    mMsrpTransaction.handleRequest();
-                    mRequestTransaction = null;
-                } else {
-                    mRequestTransaction = new RequestTransaction(mRcsSettings);
-                }
-                connection.sendChunk(buffer.toByteArray());
-                buffer.close();
-                if (mRequestTransaction != null) {
-                    mRequestTransaction.waitResponse();
-                    if (!mRequestTransaction.isResponseReceived()) {
-                        throw new NetworkException("Failed to receive transaction response!");
-                    }
+        // Send chunk
+        if (mFailureReportOption) {
+            if (mMsrpTransaction != null) {
+                // Keep at most the window size of chunks without response
+                if (!mMsrpTransaction.waitWindow(mSendWindowSize)) {
+                    mChunkSizePolicy.onFailure();
+                    frame.recycle();
+                    throw new NetworkException("Failed to receive transaction response!");
                 }
+                mMsrpTransaction.handleRequest(txId, dataSize);
+                mRequestTransaction = null;
             } else {
-                connection.sendChunk(buffer.toByteArray());
-                buffer.close();
-                if (mMsrpTransaction != null) {
-                    mMsrpTransaction.handleRequest();
+                mRequestTransaction = new RequestTransaction(mRcsSettings);
+            }
+            connection.sendChunk(frame);
+            if (mRequestTransaction != null) {
+                mRequestTransaction.waitResponse();
+                if (!mRequestTransaction.isResponseReceived()) {
+                    throw new NetworkException("Failed to receive transaction response!");
                 }
             }
-        } catch (IOException e) {
-            throw new NetworkException("Failed to read chunk data!", e);
-
-        } finally {
-            CloseableUtils.tryToClose(buffer);
+        } else {
+            /* No response is expected: the write time of the chunk is its service time */
+            long start = System.currentTimeMillis();
+            connection.sendChunk(frame);
+            if (mChunkSizePolicy != null) {
+                mChunkSizePolicy.onServed(System.currentTimeMillis() - start);
+            }
+            if (mMsrpTransaction != null) {
+                mMsrpTransaction.handleRequest(txId, dataSize);
+            }
         }
     }
 
@@ -647,53 +642,18 @@ public class MsrpSession {
      * Send an empty MSRP SEND request
      * 
      * @param txId Transaction ID
-     * @param to To header
-     * @param from From header
      * @param msrpMsgId Message ID header
      * @throws NetworkException
      */
     // Changed by Deutsche Telekom
-    private void sendEmptyMsrpSendRequest(String txId, String to, String from, String msrpMsgId)
-            throws NetworkException {
-        ByteArrayOutputStream buffer = null;
-        try {
-            buffer = new ByteArrayOutputStream(4000);
-            buffer.reset();
-            buffer.write(MsrpConstants.MSRP_HEADER.getBytes(UTF8));
-            buffer.write(MsrpConstants.CHAR_SP);
-            buffer.write(txId.getBytes(UTF8));
-            buffer.write((" " + MsrpConstants.METHOD_SEND).getBytes(UTF8));
-            buffer.write(NEW_LINE);
-
-            String toHeader = MsrpConstants.HEADER_TO_PATH + ": " + to + MsrpConstants.NEW_LINE;
-            buffer.write(toHeader.getBytes(UTF8));
-            String fromHeader = MsrpConstants.HEADER_FROM_PATH + ": " + from
-                    + MsrpConstants.NEW_LINE;
-            buffer.write(fromHeader.getBytes(UTF8));
-            // Changed by Deutsche Telekom
-            String msgIdHeader = MsrpConstants.HEADER_MESSAGE_ID + ": " + msrpMsgId
-                    + MsrpConstants.NEW_LINE;
-            buffer.write(msgIdHeader.getBytes(UTF8));
-
-            /* Write end of request */
-            buffer.write(MsrpConstants.END_MSRP_MSG.getBytes(UTF8));
-            buffer.write(txId.getBytes(UTF8));
-            /* '$' -> last chunk */
-            buffer.write(MsrpConstants.FLAG_LAST_CHUNK);
-            buffer.write(NEW_LINE);
-
-            mRequestTransaction = new RequestTransaction(mRcsSettings);
-            connection.sendChunkImmediately(buffer.toByteArray());
-
-            mRequestTransaction.waitResponse();
-            if (!mRequestTransaction.isResponseReceived()) {
-                throw new NetworkException("Failed to receive transaction response!");
-            }
-        } catch (IOException e) {
-            throw new NetworkException("Failed to send empty Msrp send request!", e);
-
-        } finally {
-            CloseableUtils.tryToClose(buffer);
+    private void sendEmptyMsrpSendRequest(String txId, String msrpMsgId) throws NetworkException {
+        MsrpFrame frame = getSendEncoder().encodeEmpty(txId, msrpMsgId);
+        mRequestTransaction = new RequestTransaction(mRcsSettings);
+        connection.sendChunkImmediately(frame);
+
+        mRequestTransaction.waitResponse();
+        if (!mRequestTransaction.isResponseReceived()) {
+            throw new NetworkException("Failed to receive transaction response!");
         }
     }
 
@@ -734,7 +694,12 @@ public class MsrpSession {
             buffer.write(MsrpConstants.FLAG_LAST_CHUNK);
             buffer.write(NEW_LINE);
 
-            connection.sendChunk(buffer.toByteArray());
+            /*
+             * Sent from the receiver thread: written at once rather than queued behind the data
+             * chunks, as waiting for room in a full queue would stop the reading of the responses
+             * which drain it.
+             */
+            connection.sendChunkImmediately(buffer.toByteArray());
         } catch (IOException e) {
             throw new NetworkException("Failed to send Msrp response!", e);
 
@@ -800,9 +765,9 @@ public class MsrpSession {
             buffer.write(MsrpConstants.FLAG_LAST_CHUNK);
             buffer.write(NEW_LINE);
 
-            // Send request
+            // Send request, at once as for the responses sent from the receiver thread
             mRequestTransaction = new RequestTransaction(mRcsSettings);
-            connection.sendChunk(buffer.toByteArray());
+            connection.sendChunkImmediately(buffer.toByteArray());
         } catch (IOException e) {
             throw new NetworkException("Failed to send Msrp report request!", e);
 
@@ -817,14 +782,14 @@ public class MsrpSession {
      * @param txId Transaction ID
      * @param headers Request headers
      * @param flag Continuation flag
-     * @param data Received data
+     * @param data Received data, only valid for the duration of the call
      * @param totalSize Total size of the content
      * @throws NetworkException
      * @throws PayloadException
      * @throws ContactManagerException
      */
     public void receiveMsrpSend(String txId, Hashtable<String, String> headers, int flag,
-            byte[] data, long totalSize) throws PayloadException, NetworkException,
+            ByteBuffer data, long totalSize) throws PayloadException, NetworkException,
             ContactManagerException {
         mIsEstablished = true;
         if (sLogger.isActivated()) {
@@ -906,14 +871,6 @@ public class MsrpSession {
             sLogger.info("Response received (code=" + code + ", transaction=" + txId + ")");
         }
 
-        if (mFailureReportOption) {
-            // Notify progress
-            if (!mCancelTransfer && mProgress.size() > 0) {
-                mMsrpEventListener.msrpTransferProgress(mProgress.elementAt(0), mTotalSize);
-                mProgress.removeElementAt(0);
-            }
-        }
-
         // Notify request transaction
         if (mRequestTransaction != null) {
             mRequestTransaction.notifyResponse(code, headers);
@@ -921,7 +878,26 @@ public class MsrpSession {
 
         // Notify MSRP transaction
         if (mMsrpTransaction != null) {
-            mMsrpTransaction.handleResponse();
+            long serviceTime = mMsrpTransaction.handleResponse(txId);
+            if (serviceTime != MsrpTransaction.UNKNOWN_REQUEST && mProgressNotifier != null) {
+                if (code != 200) {
+                    // The transfer fails: stop progress notifications
+                    mProgressNotifier.cancel();
+                } else if (!mCancelTransfer) {
+                    // Notify progress
+                    mProgressNotifier.update(mMsrpTransaction.getAcknowledgedBytes());
+                }
+            }
+            if (mChunkSizePolicy != null) {
+                // Adapt the size of the next chunks
+                if (code == 200) {
+                    if (serviceTime != MsrpTransaction.UNKNOWN_REQUEST) {
+                        mChunkSizePolicy.onServed(serviceTime);
+                    }
+                } else if (isChunkSizeFailure(code)) {
+                    mChunkSizePolicy.onFailure();
+                }
+            }
         }
 
         // Notify event listener
@@ -946,6 +922,17 @@ public class MsrpSession {
         // Don't remove transaction info in general from list as this could be a preliminary answer
     }
 
+    /**
+     * Is an error response a hint that the sent chunks are too large for the remote or the
+     * network: the other errors do not depend on the chunk size.
+     * 
+     * @param code Response code
+     * @return True for 408 (timeout), 413 (too large) and 503 (unavailable) responses
+     */
+    private static boolean isChunkSizeFailure(int code) {
+        return code == 408 || code == 413 || code == 503;
+    }
+
     /**
      * Receive MSRP REPORT request
      * 
@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.core.ims.protocol.msrp;
+
+import com.gsma.rcs.utils.logger.Logger;
+
+import gov2.nist.core.HashedTimerWheel;
+
+/**
+ * Timer shared by all the MSRP transactions of the process.<br>
+ * It is a hashed timing wheel of the SIP stack library, the same implementation as the SIP stack
+ * timer, so that scheduling and cancelling a timeout are constant time operations. Its own wheel
+ * thread runs the MSRP timeouts only, with a coarser tick than the SIP timers. Timeouts fire with
+ * a precision of one tick.
+ */
+public class MsrpTimer {
+    /**
+     * Duration of a tick (in milliseconds)
+     */
+    private static final long TICK_DURATION = 100;
+
+    /**
+     * Number of buckets of the wheel
+     */
+    private static final int TICKS_PER_WHEEL = 512;
+
+    private static final Logger sLogger = Logger.getLogger(MsrpTimer.class.getSimpleName());
+
+    private static final MsrpTimer sInstance = new MsrpTimer();
+
+    private final HashedTimerWheel mWheel = new HashedTimerWheel("MsrpTimer", TICK_DURATION,
+            TICKS_PER_WHEEL);
+
+    private MsrpTimer() {
+    }
+
+    /**
+     * Returns the timer shared by the MSRP transactions
+     *
+     * @return Timer
+     */
+    public static MsrpTimer getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Schedule a task
+     *
+     * @param task Task to be run from the timer thread once the delay has elapsed. It must not
+     *            block.
+     * @param delay Delay in milliseconds
+     * @return Timeout which can be cancelled, cancelling has no effect if it has already expired
+     */
+    public HashedTimerWheel.Timeout schedule(final Runnable task, long delay) {
+        /* The wheel thread is only started once MSRP is used */
+        mWheel.start();
+        HashedTimerWheel.Timeout timeout = mWheel.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    /*
+                     * Intentionally catch runtime exceptions as else it will abruptly end the
+                     * shared timer thread.
+                     */
+                    sLogger.error("Failed to run MSRP timer task!", e);
+                }
+            }
+        }, 0);
+        mWheel.schedule(timeout, Math.max(0, delay));
+        return timeout;
+    }
+}
@@ -22,8 +22,10 @@
 
 package com.gsma.rcs.core.ims.protocol.msrp;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import gov2.nist.core.HashedTimerWheel;
+
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * MSRP transaction
@@ -37,9 +39,38 @@ public class MsrpTransaction extends Object {
     private final static long TIMEOUT = 30000;
 
     /**
-     * Count number of sent requests without response
+     * Returned by handleResponse when the response does not match a request of this transaction
+     */
+    public static final long UNKNOWN_REQUEST = -1;
+
+    /**
+     * Sent request without response
+     */
+    private static class PendingRequest {
+        private final int mSize;
+
+        private final long mTimestamp;
+
+        private PendingRequest(int size, long timestamp) {
+            mSize = size;
+            mTimestamp = timestamp;
+        }
+    }
+
+    /**
+     * Sent requests without response indexed by transaction ID
      */
-    private int waitingCount = 0;
+    private final Map<String, PendingRequest> waitingTransactions = new HashMap<String, PendingRequest>();
+
+    /**
+     * Total number of data bytes of the requests which received a response
+     */
+    private long acknowledgedBytes = 0;
+
+    /**
+     * Time of the last response received
+     */
+    private long lastResponseTimestamp = 0;
 
     // Changed by Deutsche Telekom
     /**
@@ -58,9 +89,19 @@ public class MsrpTransaction extends Object {
     private boolean isTerminated = false;
 
     /**
-     * Timer
+     * Pending timeout
      */
-    private Timer timer = new Timer();
+    private HashedTimerWheel.Timeout timeout;
+
+    /**
+     * Timeout task
+     */
+    private final Runnable timeoutTask = new Runnable() {
+        @Override
+        public void run() {
+            timerExpire();
+        }
+    };
 
     /**
      * Constructor
@@ -72,7 +113,7 @@ public class MsrpTransaction extends Object {
      * Wait all MSRP responses
      */
     public synchronized void waitAllResponses() {
-        if (waitingCount > 0) {
+        if (!waitingTransactions.isEmpty()) {
             isWaiting = true;
             try {
                 // Start timeout
@@ -86,38 +127,79 @@ public class MsrpTransaction extends Object {
         }
     }
 
+    /**
+     * Wait until less than a given number of requests are without response. Like
+     * waitAllResponses, the wait is bounded by the report transaction timeout.
+     * 
+     * @param windowSize Maximum number of requests without response, no limit if lower than 1
+     * @return False if the timeout occurred before a response made room in the window
+     */
+    public synchronized boolean waitWindow(int windowSize) {
+        if (windowSize < 1) {
+            return true;
+        }
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (waitingTransactions.size() >= windowSize && !isTerminated) {
+            long delay = deadline - System.currentTimeMillis();
+            if (delay <= 0) {
+                return false;
+            }
+            try {
+                super.wait(delay);
+            } catch (InterruptedException e) {
+                /* Nothing to do */
+            }
+        }
+        return true;
+    }
+
     /**
      * Handle new request
+     * 
+     * @param txId Transaction ID of the request
+     * @param size Size of the data chunk carried by the request
      */
-    public void handleRequest() {
+    public synchronized void handleRequest(String txId, int size) {
         // Changed by Deutsche Telekom
         // requests and responses are handled in different threads which need to be synchronized
-        synchronized (this) {
-            waitingCount++;
-        }
+        waitingTransactions.put(txId, new PendingRequest(size, System.currentTimeMillis()));
     }
 
     /**
      * Handle new response
+     * 
+     * @param txId Transaction ID of the response
+     * @return Service time of the request in milliseconds or UNKNOWN_REQUEST if the response does
+     *         not match a request of this transaction. The service time runs from the sending of
+     *         the request or, if later, from the previous response: a request sent behind others
+     *         is not charged with the time spent transferring them.
      */
-    public synchronized void handleResponse() {
-        // Changed by Deutsche Telekom
-        // requests and responses are handled in different threads which need to be synchronized
-        synchronized (this) {
-            waitingCount--;
+    public synchronized long handleResponse(String txId) {
+        PendingRequest request = waitingTransactions.remove(txId);
+        if (request == null) {
+            /* Not a response to a request of this transaction */
+            return UNKNOWN_REQUEST;
         }
         // Changed by Deutsche Telekom
         totalReceivedResponses++;
+        acknowledgedBytes += request.mSize;
         if (isWaiting) {
-            if (waitingCount == 0) {
+            if (waitingTransactions.isEmpty()) {
                 // Unblock semaphore
-                super.notify();
+                super.notifyAll();
             } else {
                 // ReInit timeout
                 stopTimer();
                 startTimer();
             }
+        } else {
+            // Unblock window
+            super.notifyAll();
         }
+        long now = System.currentTimeMillis();
+        long serviceTime = now - Math.max(request.mTimestamp, lastResponseTimestamp);
+        lastResponseTimestamp = now;
+        return Math.max(0, serviceTime);
     }
 
     /**
@@ -125,8 +207,8 @@ public class MsrpTransaction extends Object {
      * 
      * @return Boolean
      */
-    public boolean isAllResponsesReceived() {
-        return (waitingCount == 0);
+    public synchronized boolean isAllResponsesReceived() {
+        return waitingTransactions.isEmpty();
     }
 
     /**
@@ -135,7 +217,7 @@ public class MsrpTransaction extends Object {
     public synchronized void terminate() {
         isTerminated = true;
         // Unblock semaphore
-        super.notify();
+        super.notifyAll();
         // Stop timer
         stopTimer();
     }
@@ -153,21 +235,17 @@ public class MsrpTransaction extends Object {
      * Start the timer
      */
     private void startTimer() {
-        timer = new Timer();
-        TimerTask timertask = new TimerTask() {
-            @Override
-            public void run() {
-                timerExpire();
-            }
-        };
-        timer.schedule(timertask, TIMEOUT);
+        timeout = MsrpTimer.getInstance().schedule(timeoutTask, TIMEOUT);
     }
 
     /**
      * Stop the timer
      */
     private void stopTimer() {
-        timer.cancel();
+        if (timeout != null) {
+            timeout.cancel();
+            timeout = null;
+        }
     }
 
     /**
@@ -185,4 +263,13 @@ public class MsrpTransaction extends Object {
     public int getNumberReceivedOk() {
         return totalReceivedResponses;
     }
+
+    /**
+     * Returns the total number of data bytes of the requests which received a response
+     * 
+     * @return Size in bytes
+     */
+    public synchronized long getAcknowledgedBytes() {
+        return acknowledgedBytes;
+    }
 }
@@ -0,0 +1,347 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.core.ims.protocol.msrp;
+
+import static com.gsma.rcs.utils.StringUtils.UTF8;
+
+import com.gsma.rcs.core.FileAccessException;
+import com.gsma.rcs.core.ims.network.NetworkException;
+import com.gsma.rcs.core.ims.protocol.PayloadException;
+import com.gsma.rcs.provider.contact.ContactManagerException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Hashtable;
+
+/**
+ * Chunks receiver parsing MSRP messages straight from a reusable byte buffer.<br>
+ * The stream is read in bulk into the buffer, the start line, headers and end-line are parsed in
+ * place and the chunk payload is handed to the MSRP session as a slice of the buffer.
+ */
+public class NioChunkReceiver extends ChunkReceiver {
+    /**
+     * Room for the start line, headers and end-line besides the chunk data
+     */
+    private static final int HEADERS_SIZE = 4096;
+
+    /**
+     * Initial size of the receive buffer: one default chunk plus room for the headers
+     */
+    private static final int BUFFER_SIZE = MsrpConstants.CHUNK_MAX_SIZE + HEADERS_SIZE;
+
+    /**
+     * Length of the CRLF and continuation flag surrounding the end-line
+     */
+    private static final int END_LINE_EXTRA_LENGTH = 3;
+
+    /**
+     * MSRP input stream
+     */
+    private final InputStream mStream;
+
+    /**
+     * Receive buffer in read mode: bytes between position and limit are not yet parsed
+     */
+    private ByteBuffer mBuffer;
+
+    /**
+     * Maximum size of the receive buffer when searching a line or an end-line, so that a peer can
+     * not make it grow without bound. A chunk announcing its size in the Byte-Range header is read
+     * whatever its size, as by {@link ChunkReceiver}.
+     */
+    private final int mMaxBufferSize;
+
+    /**
+     * Constructor
+     *
+     * @param connection MSRP connection
+     * @param stream TCP input stream
+     */
+    public NioChunkReceiver(MsrpConnection connection, InputStream stream) {
+        super(connection, stream);
+        mStream = stream;
+        mMaxBufferSize = Math.max(connection.getSession().getMaxChunkSize(),
+                MsrpConstants.CHUNK_MAX_SIZE) + HEADERS_SIZE;
+        mBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        mBuffer.flip();
+    }
+
+    @Override
+    protected boolean receiveMessage() throws NetworkException, PayloadException,
+            ContactManagerException, FileAccessException {
+        boolean msrpTraceEnabled = MsrpConnection.isMsrpTraceEnabled();
+        StringBuilder trace = msrpTraceEnabled ? new StringBuilder() : null;
+
+        // Read first line of a new data chunk
+        String line = readLine();
+        if (line == null || line.length() == 0) {
+            if (msrpTraceEnabled) {
+                System.out.println("<<< End of stream");
+            }
+            return false;
+        }
+        if (msrpTraceEnabled) {
+            trace.append(line).append(MsrpConstants.NEW_LINE);
+        }
+
+        // Check the MSRP tag
+        int index1 = line.indexOf(MsrpConstants.CHAR_SP);
+        int index2 = index1 == -1 ? -1 : line.indexOf(MsrpConstants.CHAR_SP, index1 + 1);
+        if (index2 == -1 || !MsrpConstants.MSRP_HEADER.equals(line.substring(0, index1))) {
+            if (msrpTraceEnabled) {
+                System.out.println("<<< Not a MSRP message");
+            }
+            return false;
+        }
+
+        // Get the transaction ID from the first line
+        String txId = line.substring(index1 + 1, index2);
+        byte[] endTag = new StringBuilder(MsrpConstants.NEW_LINE)
+                .append(MsrpConstants.END_MSRP_MSG).append(txId).toString().getBytes(UTF8);
+
+        // Get response code or method name from the first line
+        int index3 = line.indexOf(MsrpConstants.CHAR_SP, index2 + 1);
+        String status = index3 == -1 ? line.substring(index2 + 1) : line.substring(
+                index2 + 1, index3);
+        int responseCode = -1;
+        String method = null;
+        try {
+            responseCode = Integer.parseInt(status);
+        } catch (NumberFormatException e) {
+            method = status;
+        }
+
+        // Read the headers until the data or the end-line is reached
+        Hashtable<String, String> headers = new Hashtable<String, String>();
+        ByteBuffer data = null;
+        char continuationFlag = '\0';
+        int totalSize = 0;
+        /* End-line without the leading CRLF */
+        String end = MsrpConstants.END_MSRP_MSG.concat(txId);
+        while (continuationFlag == '\0' && !isTerminated()) {
+            line = readLine();
+            if (line == null) {
+                if (msrpTraceEnabled) {
+                    System.out.println("<<< End of stream");
+                }
+                return false;
+            }
+            if (msrpTraceEnabled) {
+                trace.append(line).append(MsrpConstants.NEW_LINE);
+            }
+
+            if (line.length() == 0) {
+                // Empty line separating headers from the data
+                String byteRange = headers.get(MsrpConstants.HEADER_BYTE_RANGE);
+                int chunkSize = -1;
+                if (byteRange != null) {
+                    chunkSize = MsrpUtils.getChunkSize(byteRange);
+                    totalSize = MsrpUtils.getTotalSize(byteRange);
+                }
+                int dataLength;
+                if (chunkSize > 0) {
+                    // Use Byte-Range value to locate directly the block of data
+                    if (!fill(chunkSize + endTag.length + END_LINE_EXTRA_LENGTH, false)) {
+                        return false;
+                    }
+                    if (!startsWith(chunkSize, endTag)) {
+                        throw new PayloadException(new StringBuilder(
+                                "Chunk does not match its Byte-Range for transaction ")
+                                .append(txId).append('!').toString());
+                    }
+                    dataLength = chunkSize;
+                } else {
+                    // Search the end-line when the range is unknown
+                    dataLength = readUntil(endTag);
+                    if (dataLength == -1) {
+                        return false;
+                    }
+                    if (chunkSize == -1) {
+                        totalSize = dataLength;
+                    }
+                }
+                continuationFlag = (char) mBuffer.get(mBuffer.position() + dataLength
+                        + endTag.length);
+
+                data = mBuffer.slice();
+                data.limit(dataLength);
+                mBuffer.position(mBuffer.position() + dataLength + endTag.length
+                        + END_LINE_EXTRA_LENGTH);
+
+                if (msrpTraceEnabled) {
+                    trace.append(new String(data.array(), data.arrayOffset(), dataLength, UTF8))
+                            .append(MsrpConstants.NEW_LINE).append(end)
+                            .append(continuationFlag);
+                }
+            } else if (line.startsWith(end)) {
+                continuationFlag = line.charAt(line.length() - 1);
+            } else {
+                // It's an header
+                int index = line.indexOf(MsrpConstants.CHAR_DOUBLE_POINT);
+                if (index != -1) {
+                    headers.put(line.substring(0, index).trim(), line.substring(index + 1).trim());
+                }
+            }
+        }
+
+        processMessage(txId, responseCode, method, headers, continuationFlag, data, totalSize,
+                trace);
+        if (mBuffer.capacity() > mMaxBufferSize) {
+            releaseOversizedBuffer();
+        }
+        return true;
+    }
+
+    /**
+     * Read a line from the buffer
+     *
+     * @return Line without the CRLF or null if the end of stream is reached
+     * @throws NetworkException
+     * @throws PayloadException
+     */
+    private String readLine() throws NetworkException, PayloadException {
+        int scanned = 0;
+        while (true) {
+            byte[] array = mBuffer.array();
+            int start = mBuffer.arrayOffset() + mBuffer.position();
+            int last = mBuffer.arrayOffset() + mBuffer.limit() - 1;
+            for (int i = start + scanned; i < last; i++) {
+                if (array[i] == MsrpConstants.CHAR_LF && array[i + 1] == MsrpConstants.CHAR_CR) {
+                    String line = new String(array, start, i - start, UTF8);
+                    mBuffer.position(mBuffer.position() + i - start + 2);
+                    return line;
+                }
+            }
+            scanned = Math.max(0, mBuffer.remaining() - 1);
+            if (!fill(mBuffer.remaining() + 1, true)) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Read until the given tag followed by a continuation flag and CRLF is in the buffer
+     *
+     * @param tag Tag to search
+     * @return Offset of the tag from the buffer position or -1 if the end of stream is reached
+     * @throws NetworkException
+     * @throws PayloadException
+     */
+    private int readUntil(byte[] tag) throws NetworkException, PayloadException {
+        int scanned = 0;
+        while (true) {
+            int remaining = mBuffer.remaining();
+            for (int i = scanned; i <= remaining - tag.length; i++) {
+                if (startsWith(i, tag)) {
+                    if (fill(i + tag.length + END_LINE_EXTRA_LENGTH, true)) {
+                        return i;
+                    }
+                    return -1;
+                }
+            }
+            scanned = Math.max(0, remaining - tag.length + 1);
+            if (!fill(remaining + 1, true)) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Test if the buffer contains the given tag at an offset from its position
+     *
+     * @param offset Offset from the buffer position
+     * @param tag Tag
+     * @return True if the tag is found
+     */
+    private boolean startsWith(int offset, byte[] tag) {
+        byte[] array = mBuffer.array();
+        int start = mBuffer.arrayOffset() + mBuffer.position() + offset;
+        for (int i = 0; i < tag.length; i++) {
+            if (array[start + i] != tag[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Replace a buffer enlarged beyond its maximum size for a large chunk by a buffer of the
+     * initial size, keeping the unparsed bytes
+     */
+    private void releaseOversizedBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(BUFFER_SIZE, mBuffer.remaining()));
+        buffer.put(mBuffer);
+        buffer.flip();
+        mBuffer = buffer;
+    }
+
+    /**
+     * Read from the stream until at least the required number of bytes are available in the
+     * buffer. The unparsed bytes are moved to the start of the buffer, which is enlarged if needed.
+     *
+     * @param required Number of bytes required from the buffer position
+     * @param bounded True if the buffer may not be enlarged beyond its maximum size
+     * @return False if the end of stream is reached before
+     * @throws NetworkException
+     * @throws PayloadException if bounded and the required bytes exceed the maximum size of the
+     *             buffer
+     */
+    private boolean fill(int required, boolean bounded) throws NetworkException,
+            PayloadException {
+        if (mBuffer.remaining() >= required) {
+            return true;
+        }
+        if (bounded && required > mMaxBufferSize) {
+            throw new PayloadException(new StringBuilder("MSRP message exceeds ")
+                    .append(mMaxBufferSize).append(" bytes!").toString());
+        }
+        if (mBuffer.capacity() < required) {
+            int capacity = Math.max(required, 2 * mBuffer.capacity());
+            if (required <= mMaxBufferSize) {
+                capacity = Math.min(mMaxBufferSize, capacity);
+            } else {
+                /* Large chunk announced by its Byte-Range: allocate just what is needed */
+                capacity = required;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(capacity);
+            buffer.put(mBuffer);
+            mBuffer = buffer;
+        } else {
+            mBuffer.compact();
+        }
+        try {
+            while (mBuffer.position() < required) {
+                int nbRead = mStream.read(mBuffer.array(),
+                        mBuffer.arrayOffset() + mBuffer.position(), mBuffer.remaining());
+                if (nbRead == -1) {
+                    return false;
+                }
+                mBuffer.position(mBuffer.position() + nbRead);
+            }
+            return true;
+
+        } catch (IOException e) {
+            throw new NetworkException("Failed to read chunk data!", e);
+
+        } finally {
+            mBuffer.flip();
+        }
+    }
+}
@@ -19,22 +19,25 @@
 package com.gsma.rcs.core.ims.protocol.rtp.codec.video.h264;
 
 import com.gsma.rcs.core.ims.protocol.rtp.codec.video.VideoCodec;
+import com.gsma.rcs.core.ims.protocol.rtp.format.Format;
 import com.gsma.rcs.core.ims.protocol.rtp.format.video.CameraOptions;
 import com.gsma.rcs.core.ims.protocol.rtp.format.video.Orientation;
 import com.gsma.rcs.core.ims.protocol.rtp.format.video.VideoOrientation;
 import com.gsma.rcs.core.ims.protocol.rtp.util.Buffer;
 
 /**
- * Reassembles H264 RTP packets into H264 frames, as per RFC 3984
+ * Splits H264 frames into RTP packets, as per RFC 3984<br>
+ * Small NAL units are sent as single NAL unit packets, the parameter sets and SEI are aggregated
+ * with the next NAL unit of the same frame (STAP-A) and the large NAL units are fragmented
+ * (FU-A). The output packets are views over the input frame whenever possible: they are only
+ * valid until the next call to process.
  * 
  * @author Deutsche Telekom AG
  */
 public class JavaPacketizer extends VideoCodec {
 
     /**
-     * Packetization mode 0 -> Only Single NAL 1 -> Use FU-A if necessary Warning:
-     * packetization-mode 1 normally requires the management of STAP-A. But, this is not yet
-     * implemented in the stack. Then, there can be some IOT issues if you use this mode.
+     * Packetization mode 0 -> Only Single NAL 1 -> Use STAP-A and FU-A if necessary
      */
     public static final int H264_ENABLED_PACKETIZATION_MODE = 1;
 
@@ -53,6 +56,11 @@ public class JavaPacketizer extends VideoCodec {
      */
     public static final int H264_FU_HEADER_SIZE = 2;
 
+    /**
+     * AVC NAL supplemental enhancement information
+     */
+    public static final int AVC_NALTYPE_SEI = 6;
+
     /**
      * AVC NAL sequence parameter
      */
@@ -64,14 +72,44 @@ public class JavaPacketizer extends VideoCodec {
     public static final int AVC_NALTYPE_PPS = 8;
 
     /**
-     * Full frame auxiliary buffer (No Packetization)
+     * AVC NAL single-time aggregation packet
+     */
+    public static final int AVC_NALTYPE_STAPA = 24;
+
+    /**
+     * Size of the NAL unit size field of a STAP-A
+     */
+    private static final int STAPA_NALU_SIZE_LENGTH = 2;
+
+    /**
+     * Aggregation packets being built (STAP-A). Two buffers are used so that a flushed
+     * aggregation packet remains valid while the next one is built.
+     */
+    private byte[][] aggregationData = new byte[2][H264_MAX_PACKET_FRAME_SIZE];
+
+    /**
+     * Index of the aggregation buffer being built
+     */
+    private int aggregationIndex = 0;
+
+    /**
+     * Length of the aggregation packet being built, 0 if no NAL unit is pending
      */
-    private byte fullFrameData[] = new byte[H264_MAX_PACKET_FRAME_SIZE];
+    private int aggregationLength = 0;
 
     /**
-     * Full frame temporary packets buffer (With Packetization)
+     * Number of NAL units in the aggregation packet being built
      */
-    private byte packetsData[][] = new byte[H264_MAX_RTP_PKTS][H264_MAX_PACKET_FRAME_SIZE];
+    private int aggregatedNals = 0;
+
+    /**
+     * Highest F and NRI bits of the aggregated NAL units
+     */
+    private int aggregationNri = 0;
+
+    private long aggregationTimestamp;
+
+    private Format aggregationFormat;
 
     /**
      * Full frame final chunks buffer (With Packetization)
@@ -79,9 +117,9 @@ public class JavaPacketizer extends VideoCodec {
     private Buffer[] outputs = new Buffer[H264_MAX_RTP_PKTS];
 
     /**
-     * Buffer for FU Indicator and Header
+     * Buffers for FU Indicator and Header of each output packet
      */
-    private byte[] h264FU = new byte[H264_FU_HEADER_SIZE];
+    private byte[][] h264FU = new byte[H264_MAX_RTP_PKTS][H264_FU_HEADER_SIZE];
 
     /**
      * Previous sent orientation
@@ -90,9 +128,7 @@ public class JavaPacketizer extends VideoCodec {
             Orientation.NONE);
 
     /**
-     * Because packets can come out of order, it is possible that some packets for a newer frame may
-     * arrive while an older frame is still incomplete. However, in the case where we get nothing
-     * but incomplete frames, we don't want to keep all of them around forever.
+     * Constructor
      */
     public JavaPacketizer() {
     }
@@ -103,162 +139,257 @@ public class JavaPacketizer extends VideoCodec {
             return BUFFER_PROCESSED_FAILED;
         }
 
-        if (!input.isDiscard()) {
-            byte[] bufferData = (byte[]) input.getData();
-            int bufferDataLength = input.getLength();
-            if (input.getLength() < H264_MAX_PACKET_FRAME_SIZE
-                    || H264_ENABLED_PACKETIZATION_MODE == 0) {
-                if ((fullFrameData == null) || (fullFrameData.length < bufferDataLength)) {
-                    fullFrameData = new byte[bufferDataLength];
-                }
-                System.arraycopy(bufferData, 0, fullFrameData, 0, bufferDataLength);
-                if (fullFrameData.length > 0) {
-                    // Copy to buffer
-                    output.setFormat(input.getFormat());
-                    output.setData(fullFrameData);
-                    output.setLength(bufferDataLength);
-                    output.setOffset(0);
-                    output.setTimestamp(input.getTimestamp());
-                    output.setFlags(Buffer.FLAG_RTP_MARKER | Buffer.FLAG_RTP_TIME);
-                    output.setVideoOrientation(null);
-                    if (isToAddOrientationHeader(bufferData, input.getVideoOrientation())) {
-                        output.setVideoOrientation(input.getVideoOrientation());
-                        previousOrientation = input.getVideoOrientation();
-                    }
-
-                }
-                return BUFFER_PROCESSED_OK;
+        byte[] bufferData = (byte[]) input.getData();
+        int bufferDataOffset = input.getOffset();
+        int bufferDataLength = input.getLength();
+        if (input.isDiscard() || bufferData == null || bufferDataLength <= 0) {
+            output.setDiscard(true);
+            return OUTPUT_BUFFER_NOT_FILLED;
+        }
+
+        int numberOfRtpPkts = 0;
+        if (aggregatedNals > 0 && aggregationTimestamp != input.getTimestamp()) {
+            // The pending NAL units belong to another frame: send them on their own
+            numberOfRtpPkts = flushAggregation(numberOfRtpPkts, true, null);
+        }
+
+        int nalType = bufferData[bufferDataOffset] & 0x1f;
+        if (H264_ENABLED_PACKETIZATION_MODE == 1 && isAggregable(nalType)) {
+            // Wait for the next NAL unit of the frame
+            if (!canAggregate(bufferDataLength)) {
+                numberOfRtpPkts = flushAggregation(numberOfRtpPkts, false, null);
+            }
+            if (canAggregate(bufferDataLength)) {
+                aggregate(input);
+                return setOutputs(output, numberOfRtpPkts);
             }
+        }
 
-            output.setFragments(outputs);
-            output.setFragmentsSize(0);
+        if (aggregatedNals > 0) {
+            if (H264_ENABLED_PACKETIZATION_MODE == 1 && canAggregate(bufferDataLength)) {
+                // Send the NAL unit with the pending ones
+                aggregate(input);
+                return setOutputs(output,
+                        flushAggregation(numberOfRtpPkts, true, input.getVideoOrientation()));
+            }
+            numberOfRtpPkts = flushAggregation(numberOfRtpPkts, false, null);
+        }
+
+        if (bufferDataLength < H264_MAX_PACKET_FRAME_SIZE || H264_ENABLED_PACKETIZATION_MODE == 0) {
+            // Single NAL unit packet
+            Buffer buffer = getOutput(numberOfRtpPkts);
+            setPacket(buffer, input.getFormat(), input.getTimestamp(), true);
+            buffer.setData(bufferData);
+            buffer.setOffset(bufferDataOffset);
+            buffer.setLength(bufferDataLength);
+            setOrientation(buffer, bufferData[bufferDataOffset], input.getVideoOrientation());
+            return setOutputs(output, numberOfRtpPkts + 1);
+        }
+        return setOutputs(output, fragment(input, numberOfRtpPkts));
+    }
+
+    /**
+     * Splits a NAL unit into fragmentation units (FU-A) referencing the input data
+     * 
+     * @param input Input buffer holding the NAL unit
+     * @param numberOfRtpPkts Number of output packets already set
+     * @return Number of output packets, unchanged if the NAL unit is too large to be sent
+     */
+    private int fragment(Buffer input, int numberOfRtpPkts) {
+        byte[] bufferData = (byte[]) input.getData();
+        int bufferDataOffset = input.getOffset();
+        byte nalHeader = bufferData[bufferDataOffset];
+
+        // for FU-A, we need to consume the first byte with the NAL header
+        int startPosBufferData = bufferDataOffset + 1;
+        int available = input.getLength() - 1;
+        // define max size (not counting with the fuIndicator and fuHeader)
+        int maxSize = H264_MAX_PACKET_FRAME_SIZE - H264_FU_HEADER_SIZE;
+        int fragments = (available + maxSize - 1) / maxSize;
+        // -1 to leave room for the last pkt
+        if (numberOfRtpPkts + fragments > H264_MAX_RTP_PKTS - 1) {
+            // this frame is too big and needs to be split into more pkts than we can buffer
+            return numberOfRtpPkts;
+        }
+
+        for (int i = 0; i < fragments; i++) {
+            boolean last = i == fragments - 1;
+            byte[] fu = h264FU[numberOfRtpPkts];
 
             /*
              * First Header - The FU indicator octet has the following format: +---------------+
              * |0|1|2|3|4|5|6|7| +-+-+-+-+-+-+-+-+ |F|NRI| Type | +---------------+
              */
-
-            // FU Indicator pos = 0
-            h264FU[0] = 0;
-            h264FU[0] |= (bufferData[0] & 0xe0);// F | NRI
-            h264FU[0] |= H264RtpHeaders.AVC_NALTYPE_FUA;
+            fu[0] = (byte) ((nalHeader & 0xe0) | H264RtpHeaders.AVC_NALTYPE_FUA);
 
             /*
              * Second Header - The FU header has the following format: +---------------+
              * |0|1|2|3|4|5|6|7| +-+-+-+-+-+-+-+-+ |S|E|R| Type | +---------------+
              */
+            fu[1] = (byte) (nalHeader & 0x1f);
+            if (i == 0) {
+                fu[1] |= 0x80;// for the first pkt, the start bit is on
+            }
+            if (last) {
+                fu[1] |= 0x40;// for the last pkt, the end bit is on
+            }
 
-            // FU Header pos = 1
-            h264FU[1] = 0;
-            h264FU[1] |= 0x80;// for the first pkt, the start bit is on
-            // copy the original nal type from the stream
-            h264FU[1] |= (bufferData[0] & 0x1f);
-
-            // Split frame into pkts
-            // for FU-A, we need to consume the first byte with the NAL header
-            int startPosBufferData = 1;
-            int available = bufferDataLength - 1;// see comment above
-            // define max size (not counting with the fuIndicator and fuHeader)
-            int maxSize = H264_MAX_PACKET_FRAME_SIZE - h264FU.length;
-            int numberOfRtpPkts = 0;
-            while (available > maxSize) {
-
-                // >>>>>>>>>>>> create packet >>>>>>>>>>>>
-                // Write h264 payload
-                System.arraycopy(h264FU, 0, packetsData[numberOfRtpPkts], 0, h264FU.length);
-
-                // Write frame data
-                System.arraycopy(bufferData, startPosBufferData, packetsData[numberOfRtpPkts],
-                        h264FU.length, maxSize);
-
-                // Copy to buffer
-                Buffer buffer = outputs[numberOfRtpPkts];
-                if (buffer == null) {
-                    buffer = new Buffer();
-                }
-                buffer.setFormat(input.getFormat());
-                buffer.setData(packetsData[numberOfRtpPkts]);
-                buffer.setLength(H264_MAX_PACKET_FRAME_SIZE); // Max packet frame size
-                buffer.setOffset(0);
-                buffer.setTimestamp(input.getTimestamp());
-                buffer.setFlags(Buffer.FLAG_RTP_TIME);
-                buffer.setVideoOrientation(null);
-
-                // Add data buffer to outputs
-                outputs[numberOfRtpPkts] = buffer;
-
-                // Increment number of rtp pkts
-                numberOfRtpPkts++;
-                // <<<<<<<<<<<< create packet <<<<<<<<<<<<
-
-                // -1 to leave room for the last pkt
-                if (numberOfRtpPkts >= H264_MAX_RTP_PKTS - 1) {
-                    output.setFragments(null);
-                    output.setFragmentsSize(0);
-                    output.setData(null);
-                    output.setDiscard(true);
-                    output.setVideoOrientation(null);
-                    return OUTPUT_BUFFER_NOT_FILLED;
-                    // this frame is too big and needs to be split into more
-                    // pkts than we can buffer
-                }
-
-                // reset the start bit
-                // FU Header pos = 1
-                // we need to switch the start bit off
-                h264FU[1] &= 0x3f; // 0x7f
-
-                // update variables
-                startPosBufferData += maxSize;
-                available -= maxSize;
+            int size = Math.min(available, maxSize);
+            Buffer buffer = getOutput(numberOfRtpPkts);
+            setPacket(buffer, input.getFormat(), input.getTimestamp(), last);
+            buffer.setHeader(fu, H264_FU_HEADER_SIZE);
+            buffer.setData(bufferData);
+            buffer.setOffset(startPosBufferData);
+            buffer.setLength(size);
+            if (last) {
+                setOrientation(buffer, nalHeader, input.getVideoOrientation());
             }
+            numberOfRtpPkts++;
 
-            // write the last chunk of the FU-A
+            startPosBufferData += size;
+            available -= size;
+        }
+        return numberOfRtpPkts;
+    }
 
-            // set the end bit
-            // FU Header pos = 1
-            h264FU[1] |= 0x40;// we need to switch the end bit on
+    /**
+     * Returns true if the NAL unit is a parameter set or SEI, worth aggregating with the next NAL
+     * unit of the frame
+     * 
+     * @param nalType NAL unit type
+     * @return <code>True</code> if it is, <code>false</code> otherwise.
+     */
+    private boolean isAggregable(int nalType) {
+        return nalType == AVC_NALTYPE_SPS || nalType == AVC_NALTYPE_PPS
+                || nalType == AVC_NALTYPE_SEI;
+    }
 
-            // >>>>>>>>>>>> create packet >>>>>>>>>>>>
-            // write h264 payload
-            System.arraycopy(h264FU, 0, packetsData[numberOfRtpPkts], 0, h264FU.length);
+    /**
+     * Verifies if a NAL unit fits in the aggregation packet being built
+     * 
+     * @param length Length of the NAL unit
+     * @return <code>True</code> if it fits, <code>false</code> otherwise.
+     */
+    private boolean canAggregate(int length) {
+        int used = aggregationLength == 0 ? 1 : aggregationLength;
+        return used + STAPA_NALU_SIZE_LENGTH + length < H264_MAX_PACKET_FRAME_SIZE;
+    }
 
-            // write frame data
-            System.arraycopy(bufferData, startPosBufferData, packetsData[numberOfRtpPkts],
-                    h264FU.length, available);
+    /**
+     * Appends a NAL unit to the aggregation packet being built
+     * 
+     * @param input Input buffer holding the NAL unit
+     */
+    private void aggregate(Buffer input) {
+        byte[] bufferData = (byte[]) input.getData();
+        int bufferDataOffset = input.getOffset();
+        int bufferDataLength = input.getLength();
+        byte[] data = aggregationData[aggregationIndex];
+        if (aggregatedNals == 0) {
+            // Room for the STAP-A NAL header
+            aggregationLength = 1;
+            aggregationNri = 0;
+            aggregationTimestamp = input.getTimestamp();
+            aggregationFormat = input.getFormat();
+        }
+        byte nalHeader = bufferData[bufferDataOffset];
+        aggregationNri = (aggregationNri & 0x80) | Math.max(aggregationNri & 0x60, nalHeader & 0x60)
+                | (nalHeader & 0x80);
+        data[aggregationLength++] = (byte) (bufferDataLength >> 8);
+        data[aggregationLength++] = (byte) bufferDataLength;
+        System.arraycopy(bufferData, bufferDataOffset, data, aggregationLength, bufferDataLength);
+        aggregationLength += bufferDataLength;
+        aggregatedNals++;
+    }
 
-            // copy to buffer
-            Buffer buffer = outputs[numberOfRtpPkts];
-            if (buffer == null) {
-                buffer = new Buffer();
-            }
-            buffer.setFormat(input.getFormat());
-            buffer.setData(packetsData[numberOfRtpPkts]);
-            buffer.setLength(h264FU.length + available); // H264FU header length + remaining frame
-                                                         // chunk size
+    /**
+     * Sets an output packet with the pending NAL units, a single NAL unit is sent without
+     * aggregation header
+     * 
+     * @param numberOfRtpPkts Number of output packets already set
+     * @param marker True if the packet ends the frame
+     * @param orientation Orientation of the frame
+     * @return Number of output packets
+     */
+    private int flushAggregation(int numberOfRtpPkts, boolean marker, VideoOrientation orientation) {
+        byte[] data = aggregationData[aggregationIndex];
+        Buffer buffer = getOutput(numberOfRtpPkts);
+        setPacket(buffer, aggregationFormat, aggregationTimestamp, marker);
+        buffer.setData(data);
+        if (aggregatedNals == 1) {
+            buffer.setOffset(1 + STAPA_NALU_SIZE_LENGTH);
+            buffer.setLength(aggregationLength - 1 - STAPA_NALU_SIZE_LENGTH);
+        } else {
+            data[0] = (byte) (aggregationNri | AVC_NALTYPE_STAPA);
             buffer.setOffset(0);
-            buffer.setTimestamp(input.getTimestamp());
-            buffer.setFlags(Buffer.FLAG_RTP_MARKER | Buffer.FLAG_RTP_TIME);
-            buffer.setVideoOrientation(null);
-            if (isToAddOrientationHeader(packetsData[numberOfRtpPkts], input.getVideoOrientation())) {
-                buffer.setVideoOrientation(input.getVideoOrientation());
-                previousOrientation = input.getVideoOrientation();
+            buffer.setLength(aggregationLength);
+        }
+        if (orientation != null) {
+            // The last aggregated NAL unit is the slice of the frame
+            int lastNal = aggregationLength;
+            int offset = 1;
+            while (offset < aggregationLength) {
+                lastNal = offset + STAPA_NALU_SIZE_LENGTH;
+                offset = lastNal + (((data[offset] & 0xff) << 8) | (data[offset + 1] & 0xff));
             }
+            setOrientation(buffer, data[lastNal], orientation);
+        }
 
-            // add data buffer to outputs
-            outputs[numberOfRtpPkts] = buffer;
+        // Build the next aggregation packet in the other buffer
+        aggregationIndex ^= 1;
+        aggregationLength = 0;
+        aggregatedNals = 0;
+        return numberOfRtpPkts + 1;
+    }
 
-            // increment number of rtp pkts
-            numberOfRtpPkts++;
+    private Buffer getOutput(int index) {
+        Buffer buffer = outputs[index];
+        if (buffer == null) {
+            buffer = new Buffer();
+            outputs[index] = buffer;
+        }
+        return buffer;
+    }
 
-            // Set outputs size
-            output.setFragmentsSize(numberOfRtpPkts);
-            // <<<<<<<<<<<< create packet <<<<<<<<<<<<
+    private void setPacket(Buffer buffer, Format format, long timestamp, boolean marker) {
+        buffer.setFormat(format);
+        buffer.setHeader(null, 0);
+        buffer.setTimestamp(timestamp);
+        if (marker) {
+            buffer.setFlags(Buffer.FLAG_RTP_MARKER | Buffer.FLAG_RTP_TIME);
+        } else {
+            buffer.setFlags(Buffer.FLAG_RTP_TIME);
+        }
+        buffer.setVideoOrientation(null);
+    }
+
+    private void setOrientation(Buffer buffer, byte nalHeader, VideoOrientation orientation) {
+        if (isToAddOrientationHeader(nalHeader, orientation)) {
+            buffer.setVideoOrientation(orientation);
+            previousOrientation = orientation;
+        }
+    }
 
-            return BUFFER_PROCESSED_OK;
+    /**
+     * Sets the output packets
+     * 
+     * @param output Output buffer
+     * @param numberOfRtpPkts Number of output packets
+     * @return Processing result
+     */
+    private int setOutputs(Buffer output, int numberOfRtpPkts) {
+        if (numberOfRtpPkts == 0) {
+            output.setFragments(null);
+            output.setFragmentsSize(0);
+            output.setData(null);
+            output.setDiscard(true);
+            output.setVideoOrientation(null);
+            return OUTPUT_BUFFER_NOT_FILLED;
         }
-        output.setDiscard(true);
-        return OUTPUT_BUFFER_NOT_FILLED;
+        output.setDiscard(false);
+        output.setFragments(outputs);
+        output.setFragmentsSize(numberOfRtpPkts);
+        return BUFFER_PROCESSED_OK;
     }
 
     /**
@@ -266,19 +397,18 @@ public class JavaPacketizer extends VideoCodec {
      * it's the end packet of an I-Frame or if its the end packet of B/P Frames and the orientation
      * has changed.
      * 
-     * @param h264Frame H264 Frame
+     * @param nalHeader Header of the H264 NAL unit
      * @param frameOrientation Frame orientation
      * @return <code>True</code> if it's to add, <code>false</code> otherwise.
      */
-    private boolean isToAddOrientationHeader(byte[] h264Frame, VideoOrientation frameOrientation) {
-        H264RtpHeaders h264Header = new H264RtpHeaders(h264Frame);
-        if (h264Header.isIDRSlice()) {
+    private boolean isToAddOrientationHeader(byte nalHeader, VideoOrientation frameOrientation) {
+        int nalType = nalHeader & 0x1f;
+        if (nalType == 0x05) {
             return true;
         }
 
         if ((frameOrientation != null && previousOrientation != null && previousOrientation
-                .getOrientation() != frameOrientation.getOrientation())
-                && h264Header.isNonIDRSlice()) {
+                .getOrientation() != frameOrientation.getOrientation()) && nalType == 0x01) {
             return true;
         }
 
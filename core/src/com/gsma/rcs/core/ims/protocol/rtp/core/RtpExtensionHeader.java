@@ -39,6 +39,11 @@ public class RtpExtensionHeader implements Iterable<RtpExtensionHeader.Extension
     private List<RtpExtensionHeader.ExtensionElement> elements = new ArrayList<RtpExtensionHeader.ExtensionElement>(
             0);
 
+    /**
+     * Number of elements in use, the following ones are kept to be reused
+     */
+    private int count;
+
     /**
      * Default constructor
      */
@@ -52,7 +57,48 @@ public class RtpExtensionHeader implements Iterable<RtpExtensionHeader.Extension
      * @param data Element data
      */
     public void addElement(int id, byte[] data) {
-        elements.add(new ExtensionElement(id, data));
+        setElement(count++, new ExtensionElement(id, data));
+    }
+
+    /**
+     * Add header element copied from a part of a buffer. The element is reused from a previous
+     * use of this header when possible.
+     * 
+     * @param id Element id
+     * @param data Buffer holding the element data
+     * @param offset Offset of the element data
+     * @param length Length of the element data
+     */
+    public void addElement(int id, byte[] data, int offset, int length) {
+        ExtensionElement element = null;
+        if (count < elements.size()) {
+            element = elements.get(count);
+            if (element.data.length != length) {
+                element = null;
+            }
+        }
+        if (element == null) {
+            element = new ExtensionElement(id, new byte[length]);
+        } else {
+            element.id = id;
+        }
+        System.arraycopy(data, offset, element.data, 0, length);
+        setElement(count++, element);
+    }
+
+    /**
+     * Remove all the elements
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    private void setElement(int index, ExtensionElement element) {
+        if (index < elements.size()) {
+            elements.set(index, element);
+        } else {
+            elements.add(element);
+        }
     }
 
     /**
@@ -62,7 +108,8 @@ public class RtpExtensionHeader implements Iterable<RtpExtensionHeader.Extension
      * @return Element data
      */
     public ExtensionElement getElementById(int id) {
-        for (ExtensionElement element : elements) {
+        for (int i = 0; i < count; i++) {
+            ExtensionElement element = elements.get(i);
             if (element.id == id) {
                 return element;
             }
@@ -70,25 +117,35 @@ public class RtpExtensionHeader implements Iterable<RtpExtensionHeader.Extension
         return null;
     }
 
+    /**
+     * Get header element by index
+     * 
+     * @param index Index of the element, lower than the number of elements
+     * @return Element
+     */
+    public ExtensionElement getElement(int index) {
+        return elements.get(index);
+    }
+
     /**
      * Counts the number of elements in the header
      * 
      * @return Number of elements
      */
     public int elementsCount() {
-        return elements.size();
+        return count;
     }
 
     @Override
     public Iterator<ExtensionElement> iterator() {
-        return this.elements.iterator();
+        return this.elements.subList(0, count).iterator();
     }
 
     /**
      * Extension Header Element
      */
     public static class ExtensionElement {
-        public final int id;
+        public int id;
         public final byte[] data;
 
         public ExtensionElement(int id, byte[] data) {
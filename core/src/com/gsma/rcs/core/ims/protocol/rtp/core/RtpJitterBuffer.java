@@ -0,0 +1,263 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.core.ims.protocol.rtp.core;
+
+import java.util.Arrays;
+
+/**
+ * RTP jitter buffer<br>
+ * The received packets are stored in a ring indexed by extended sequence number and released in
+ * sequence as soon as they are contiguous. When a packet is missing, the following packets are
+ * held until the oldest of them has waited the playout delay, which is sized from the
+ * interarrival jitter, then the gap is given up and left to the decoder to conceal. Late and
+ * duplicate packets are dropped, the packets dropped by the buffer itself are recycled.
+ */
+public class RtpJitterBuffer {
+    /**
+     * Number of slots of the ring (power of two)
+     */
+    private static final int CAPACITY = 512;
+
+    private static final int MASK = CAPACITY - 1;
+
+    /**
+     * A sequence number this far from the expected one means that the sender restarted
+     */
+    private static final int MAX_DROPOUT = 3000;
+
+    /**
+     * Playout delay bounds (in milliseconds)
+     */
+    private static final long MIN_PLAYOUT_DELAY = 40;
+
+    private static final long MAX_PLAYOUT_DELAY = 500;
+
+    /**
+     * Playout delay as a multiple of the interarrival jitter
+     */
+    private static final int JITTER_FACTOR = 3;
+
+    private final RtpPacket[] mPackets = new RtpPacket[CAPACITY];
+
+    /**
+     * Extended sequence number of the last packet played out from each slot, to tell the
+     * duplicates from the late packets
+     */
+    private final int[] mPlayedSeqnums = new int[CAPACITY];
+
+    private final RtpStatisticsReceiver mStats;
+
+    /**
+     * Number of packets in the ring
+     */
+    private int mCount;
+
+    /**
+     * Extended sequence number of the next packet to play out
+     */
+    private int mNextSeqnum;
+
+    private boolean mStarted;
+
+    private long mPlayoutDelay = MIN_PLAYOUT_DELAY;
+
+    /**
+     * Constructor
+     * 
+     * @param stats Statistics of the RTP reception, updated with the lost, late and duplicate
+     *            packets
+     */
+    public RtpJitterBuffer(RtpStatisticsReceiver stats) {
+        mStats = stats;
+        Arrays.fill(mPlayedSeqnums, -1);
+    }
+
+    /**
+     * Adapts the playout delay to the network jitter
+     * 
+     * @param jitter Interarrival jitter in milliseconds
+     */
+    public void setJitter(long jitter) {
+        mPlayoutDelay = Math.min(MAX_PLAYOUT_DELAY,
+                Math.max(MIN_PLAYOUT_DELAY, JITTER_FACTOR * jitter));
+    }
+
+    /**
+     * Returns the playout delay
+     * 
+     * @return Delay in milliseconds
+     */
+    public long getPlayoutDelay() {
+        return mPlayoutDelay;
+    }
+
+    /**
+     * Returns the number of packets in the buffer
+     * 
+     * @return Number of packets
+     */
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * Adds a received packet
+     * 
+     * @param packet RTP packet with its extended sequence number and its arrival time
+     * @return False if the packet has been dropped as late or duplicate, it is then left to the
+     *         caller to recycle
+     */
+    public boolean put(RtpPacket packet) {
+        int seqnum = packet.seqnum;
+        if (!mStarted) {
+            mNextSeqnum = seqnum;
+            mStarted = true;
+        }
+        int delta = seqnum - mNextSeqnum;
+        if (delta < -MAX_DROPOUT || delta > MAX_DROPOUT) {
+            // The sender restarted: play out the new sequence
+            clear();
+            mNextSeqnum = seqnum;
+        } else if (delta < 0) {
+            if (mPlayedSeqnums[seqnum & MASK] == seqnum) {
+                mStats.numDuplicatePkts++;
+            } else {
+                // Its playout time is over, the gap has already been skipped
+                mStats.numLatePkts++;
+            }
+            return false;
+        } else if (delta >= CAPACITY) {
+            // No more room: give up the oldest sequence numbers
+            skip(seqnum - CAPACITY + 1);
+        }
+        int index = seqnum & MASK;
+        if (mPackets[index] != null) {
+            mStats.numDuplicatePkts++;
+            return false;
+        }
+        mPackets[index] = packet;
+        mCount++;
+        return true;
+    }
+
+    /**
+     * Removes the next packet to play out
+     * 
+     * @param now Current time in milliseconds
+     * @return Packet or null if no packet can be played out yet
+     */
+    public RtpPacket poll(long now) {
+        if (mCount == 0) {
+            return null;
+        }
+        int index = mNextSeqnum & MASK;
+        if (mPackets[index] == null) {
+            if (now - getOldestArrival() < mPlayoutDelay) {
+                // Still waiting for the missing packet
+                return null;
+            }
+            int seqnum = mNextSeqnum + 1;
+            while (mPackets[seqnum & MASK] == null) {
+                seqnum++;
+            }
+            skip(seqnum);
+            index = mNextSeqnum & MASK;
+        }
+        RtpPacket packet = mPackets[index];
+        mPackets[index] = null;
+        mPlayedSeqnums[index] = mNextSeqnum;
+        mCount--;
+        mNextSeqnum++;
+        return packet;
+    }
+
+    /**
+     * Returns the time to wait before the next packet can be played out, if no other packet is
+     * received meanwhile
+     * 
+     * @param now Current time in milliseconds
+     * @return Time in milliseconds, 0 if a packet can be played out or -1 if the buffer is empty
+     */
+    public long getWaitTime(long now) {
+        if (mCount == 0) {
+            return -1;
+        }
+        if (mPackets[mNextSeqnum & MASK] != null) {
+            return 0;
+        }
+        return Math.max(0, getOldestArrival() + mPlayoutDelay - now);
+    }
+
+    /**
+     * Gives up the sequence numbers before a given one, the packets received for them are dropped
+     * 
+     * @param seqnum Extended sequence number of the next packet to play out
+     */
+    private void skip(int seqnum) {
+        int skipped = 0;
+        while (mNextSeqnum - seqnum < 0) {
+            int index = mNextSeqnum & MASK;
+            if (mPackets[index] != null) {
+                mPackets[index].recycle();
+                mPackets[index] = null;
+                mCount--;
+            }
+            mNextSeqnum++;
+            skipped++;
+            if (mCount == 0 && skipped >= CAPACITY) {
+                // Nothing left to drop
+                skipped += seqnum - mNextSeqnum;
+                mNextSeqnum = seqnum;
+            }
+        }
+        if (skipped > 0) {
+            mStats.numLostPkts += skipped;
+            mStats.numConcealments++;
+        }
+    }
+
+    /**
+     * Drops all the packets
+     */
+    private void clear() {
+        for (RtpPacket packet : mPackets) {
+            if (packet != null) {
+                packet.recycle();
+            }
+        }
+        Arrays.fill(mPackets, null);
+        Arrays.fill(mPlayedSeqnums, -1);
+        mCount = 0;
+    }
+
+    private long getOldestArrival() {
+        long oldest = Long.MAX_VALUE;
+        int found = 0;
+        for (int seqnum = mNextSeqnum; found < mCount; seqnum++) {
+            RtpPacket packet = mPackets[seqnum & MASK];
+            if (packet != null) {
+                found++;
+                if (packet.mReceivedAt < oldest) {
+                    oldest = packet.mReceivedAt;
+                }
+            }
+        }
+        return oldest;
+    }
+}
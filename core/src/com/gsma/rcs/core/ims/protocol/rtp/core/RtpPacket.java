@@ -18,20 +18,37 @@
 
 package com.gsma.rcs.core.ims.protocol.rtp.core;
 
-import com.gsma.rcs.core.ims.network.NetworkException;
 import com.gsma.rcs.core.ims.protocol.rtp.util.Packet;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
-
 /**
- * Abstract RTP packet
+ * Abstract RTP packet<br>
+ * Packets obtained from the pool must be recycled once processed so that their buffer is reused
+ * for the next received packet.
  * 
  * @author jexa7410
  * @author Deutsche Telekom
  */
 public class RtpPacket extends Packet {
+    /**
+     * Size of the RTP header without extension
+     */
+    public static final int HEADER_SIZE = 12;
+
+    /**
+     * Size of the data buffer of the pooled packets, large enough for any packet fitting in the
+     * MTU
+     */
+    private static final int POOLED_DATA_SIZE = 2048;
+
+    /**
+     * Maximum number of packets kept in the pool
+     */
+    private static final int MAX_POOL_SIZE = 64;
+
+    private static final RtpPacket[] sPool = new RtpPacket[MAX_POOL_SIZE];
+
+    private static int sPoolSize = 0;
+
     public Packet base;
     public int marker;
     public int payloadType;
@@ -43,6 +60,15 @@ public class RtpPacket extends Packet {
     public boolean extension;
     public RtpExtensionHeader extensionHeader;
 
+    /**
+     * Extension header kept with the packet to be reused
+     */
+    private RtpExtensionHeader mReusableExtensionHeader;
+
+    private boolean mPooled;
+
+    private boolean mRecycled;
+
     public RtpPacket() {
         super();
     }
@@ -53,47 +79,169 @@ public class RtpPacket extends Packet {
         base = packet;
     }
 
-    public void assemble(int length) throws NetworkException {
-        try {
-            this.mLength = length;
-            this.mOffset = 0;
-
-            ByteArrayOutputStream bytearrayoutputstream = new ByteArrayOutputStream(length);
-            DataOutputStream dataoutputstream = new DataOutputStream(bytearrayoutputstream);
-            if (extension) {
-                dataoutputstream.writeByte(144);
-            } else {
-                dataoutputstream.writeByte(128);
+    /**
+     * Obtain a packet whose data buffer can hold at least the given number of bytes
+     * 
+     * @param capacity Capacity in bytes
+     * @return Packet
+     */
+    public static RtpPacket obtain(int capacity) {
+        RtpPacket packet = null;
+        if (capacity <= POOLED_DATA_SIZE) {
+            synchronized (sPool) {
+                if (sPoolSize > 0) {
+                    packet = sPool[--sPoolSize];
+                    sPool[sPoolSize] = null;
+                }
+            }
+            if (packet == null) {
+                packet = new RtpPacket();
+                packet.mData = new byte[POOLED_DATA_SIZE];
+                packet.mPooled = true;
             }
+            packet.mRecycled = false;
+        } else {
+            packet = new RtpPacket();
+            packet.mData = new byte[capacity];
+        }
+        return packet;
+    }
 
-            int i = payloadType;
-            if (marker == 1) {
-                i = payloadType | 0x80;
+    /**
+     * Return the packet to the pool. The packet and its data must not be used anymore after this
+     * call.
+     */
+    public void recycle() {
+        if (!mPooled || mRecycled) {
+            return;
+        }
+        mRecycled = true;
+        marker = 0;
+        payloadType = 0;
+        seqnum = 0;
+        timestamp = 0;
+        ssrc = 0;
+        payloadoffset = 0;
+        payloadlength = 0;
+        extension = false;
+        extensionHeader = null;
+        mOffset = 0;
+        mLength = 0;
+        mReceivedAt = 0;
+        synchronized (sPool) {
+            if (sPoolSize < MAX_POOL_SIZE) {
+                sPool[sPoolSize++] = this;
             }
-            dataoutputstream.writeByte((byte) i);
-            dataoutputstream.writeShort(seqnum);
-            dataoutputstream.writeInt((int) timestamp);
-            dataoutputstream.writeInt(ssrc);
-
-            if (extension && extensionHeader != null) {
-                // Write extension header id
-                dataoutputstream.writeShort(RtpExtensionHeader.RTP_EXTENSION_HEADER_ID);
-                // Write extension header length
-                dataoutputstream.writeShort(extensionHeader.elementsCount());
-                // Write extension element. For now we will only support the orientation element
-                for (RtpExtensionHeader.ExtensionElement element : extensionHeader) {
-                    int orientationElement = (((((element.id & 0xff) << 4) | ((element.data.length - 1) & 0xff)) << 8) | (element.data[0] & 0xff)) << 16;
-                    dataoutputstream.writeInt(orientationElement);
-                }
+        }
+    }
+
+    /**
+     * Set an empty extension header to the packet, reusing the one of a previous use of the packet
+     * 
+     * @return Extension header
+     */
+    public RtpExtensionHeader obtainExtensionHeader() {
+        if (mReusableExtensionHeader == null) {
+            mReusableExtensionHeader = new RtpExtensionHeader();
+        } else {
+            mReusableExtensionHeader.clear();
+        }
+        extensionHeader = mReusableExtensionHeader;
+        return extensionHeader;
+    }
+
+    public void assemble(int length) {
+        assemble(base.mData, base.mOffset, base.mLength);
+    }
+
+    /**
+     * Write the RTP header and the payload in the data buffer of the packet, the buffer is only
+     * reallocated when too small
+     * 
+     * @param payload Buffer holding the payload
+     * @param offset Offset of the payload
+     * @param length Length of the payload
+     */
+    public void assemble(byte[] payload, int offset, int length) {
+        assemble(null, 0, payload, offset, length);
+    }
+
+    /**
+     * Write the RTP header and the payload in the data buffer of the packet, the buffer is only
+     * reallocated when too small
+     * 
+     * @param payloadHeader First bytes of the payload or null
+     * @param payloadHeaderLength Length of the first bytes of the payload
+     * @param payload Buffer holding the rest of the payload
+     * @param offset Offset of the rest of the payload
+     * @param length Length of the rest of the payload
+     */
+    public void assemble(byte[] payloadHeader, int payloadHeaderLength, byte[] payload,
+            int offset, int length) {
+        if (payloadHeader == null) {
+            payloadHeaderLength = 0;
+        }
+        boolean writeExtension = extension && extensionHeader != null;
+        int size = HEADER_SIZE + payloadHeaderLength + length;
+        if (writeExtension) {
+            size += 4 + 4 * extensionHeader.elementsCount();
+        }
+        if (mData == null || mData.length < size) {
+            mData = new byte[size];
+        }
+        byte[] data = mData;
+        int pos = 0;
+        if (extension) {
+            data[pos++] = (byte) 0x90;
+        } else {
+            data[pos++] = (byte) 0x80;
+        }
+        int i = payloadType;
+        if (marker == 1) {
+            i = payloadType | 0x80;
+        }
+        data[pos++] = (byte) i;
+        pos = writeShort(data, pos, seqnum);
+        pos = writeInt(data, pos, (int) timestamp);
+        pos = writeInt(data, pos, ssrc);
+
+        if (writeExtension) {
+            // Write extension header id
+            pos = writeShort(data, pos, RtpExtensionHeader.RTP_EXTENSION_HEADER_ID);
+            // Write extension header length
+            int count = extensionHeader.elementsCount();
+            pos = writeShort(data, pos, count);
+            // Write extension element. For now we will only support the orientation element
+            for (int index = 0; index < count; index++) {
+                RtpExtensionHeader.ExtensionElement element = extensionHeader.getElement(index);
+                int orientationElement = (((((element.id & 0xff) << 4) | ((element.data.length - 1) & 0xff)) << 8) | (element.data[0] & 0xff)) << 16;
+                pos = writeInt(data, pos, orientationElement);
             }
-            dataoutputstream.write(base.mData, base.mOffset, base.mLength);
-            mData = bytearrayoutputstream.toByteArray();
-        } catch (IOException e) {
-            throw new NetworkException("Failed to write assemble data!", e);
         }
+        if (payloadHeaderLength > 0) {
+            System.arraycopy(payloadHeader, 0, data, pos, payloadHeaderLength);
+            pos += payloadHeaderLength;
+        }
+        System.arraycopy(payload, offset, data, pos, length);
+        mOffset = 0;
+        mLength = pos + length;
     }
 
     public int calcLength() {
-        return payloadlength + 12;
+        return payloadlength + HEADER_SIZE;
+    }
+
+    private static int writeShort(byte[] data, int pos, int value) {
+        data[pos] = (byte) (value >> 8);
+        data[pos + 1] = (byte) value;
+        return pos + 2;
+    }
+
+    private static int writeInt(byte[] data, int pos, int value) {
+        data[pos] = (byte) (value >> 24);
+        data[pos + 1] = (byte) (value >> 16);
+        data[pos + 2] = (byte) (value >> 8);
+        data[pos + 3] = (byte) value;
+        return pos + 4;
     }
 }
@@ -26,7 +26,8 @@ import com.gsma.rcs.core.ims.network.NetworkException;
 import com.gsma.rcs.platform.network.DatagramConnection;
 import com.gsma.rcs.platform.network.NetworkFactory;
 import com.gsma.rcs.utils.CloseableUtils;
-import com.gsma.rcs.utils.FifoBuffer;
+import com.gsma.rcs.utils.BoundedQueue;
+import com.gsma.rcs.utils.BoundedQueue.OverflowPolicy;
 import com.gsma.rcs.utils.logger.Logger;
 
 import java.io.Closeable;
@@ -55,30 +56,26 @@ public class RtpPacketReceiver extends Thread implements Closeable {
     private RtcpSession mRtcpSession;
 
     /**
-     * Fifo buffer for received packet
+     * Max size for the fifo
      */
-    private FifoBuffer mBuffer = new FifoBuffer();
+    private static final int FIFO_MAX_NUMBER = 128;
 
     /**
-     * Max size for the fifo
+     * Fifo buffer for received packet, the oldest packets are dropped when full
      */
-    private static final int FIFO_MAX_NUMBER = 100;
+    private final BoundedQueue<RtpPacket> mBuffer = new BoundedQueue<RtpPacket>(FIFO_MAX_NUMBER,
+            OverflowPolicy.DROP_OLDEST);
 
     /**
-     * Number of element to clean in the fifo
+     * Buffer receiving the datagrams, the packets are parsed from it
      */
-    private static final int FIFO_CLEAN_NUMBER = 20;
+    private final byte[] mReceiveBuffer = new byte[DatagramConnection.DEFAULT_DATAGRAM_SIZE];
 
     /**
      * Signals that thread is interrupted
      */
     private boolean mInterrupted;
 
-    /**
-     * Last sequence number
-     */
-    private int mLastSeqnum;
-
     /**
      * timeout
      */
@@ -129,6 +126,7 @@ public class RtpPacketReceiver extends Thread implements Closeable {
         mInterrupted = true;
         interrupt();
         CloseableUtils.tryToClose(mDatagramConnection);
+        mBuffer.close();
     }
 
     /**
@@ -141,25 +139,24 @@ public class RtpPacketReceiver extends Thread implements Closeable {
         try {
             while (mDatagramConnection != null) {
                 // Wait a new packet
-                byte[] data = mDatagramConnection.receive();
+                byte[] data = mReceiveBuffer;
+                int length = mDatagramConnection.receive(data, 0, data.length);
 
-                if (data.length >= 12) {
+                if (length >= RtpPacket.HEADER_SIZE) {
                     // Drop empty packet (payload 20)
                     int payloadType = (byte) ((data[1] & 0xff) & 0x7f);
                     if (payloadType != 20) {
-                        // Drop too old packet
-                        int seqnum = (char) ((data[2] << 8) | (data[3] & 0xff));
-                        if (seqnum > mLastSeqnum - 10) {
-                            // Clean the FIFO if full
-                            if (mBuffer.size() >= FIFO_MAX_NUMBER) {
-                                mBuffer.clean(FIFO_CLEAN_NUMBER);
-                            }
-                            mBuffer.addObject(data);
-                            mLastSeqnum = seqnum;
+                        // Parse the packet here to stamp its actual arrival time, the late and
+                        // out of order packets are handled by the jitter buffer of the reader
+                        RtpPacket packet = parseRtpPacket(data, length);
+                        if (packet != null) {
+                            mBuffer.put(packet);
                         } else {
                             mStats.numBadRtpPkts++;
                         }
                     }
+                } else {
+                    mStats.numBadRtpPkts++;
                 }
             }
         } catch (NetworkException e) {
@@ -184,47 +181,74 @@ public class RtpPacketReceiver extends Thread implements Closeable {
      * @throws TimeoutException
      */
     public RtpPacket readRtpPacket() throws TimeoutException {
-        // Get a new packet in FIFO
-        byte[] data = (byte[]) mBuffer.getObject(mTimeout);
-        if (data == null) {
+        RtpPacket pkt = readRtpPacket(mTimeout);
+        if (pkt == null) {
             throw new TimeoutException("Unable to fetch packet from FIFO queue!");
         }
+        return pkt;
+    }
 
-        // Parse the RTP packet
-        RtpPacket pkt = parseRtpPacket(data);
-
-        if (pkt != null) {
-            // Update statistics
-            mStats.numPackets++;
-            mStats.numBytes += data.length;
+    /**
+     * Read a RTP packet (blocking method)
+     * 
+     * @param timeout Timeout in milliseconds, no timeout if lower than 1
+     * @return RTP packet with its extended sequence number or null if the timeout occurred or
+     *         the receiver has been closed
+     */
+    public RtpPacket readRtpPacket(long timeout) {
+        // Get a new packet in FIFO
+        RtpPacket pkt = mBuffer.take(timeout);
+        if (pkt == null) {
+            return null;
+        }
 
-            RtpSource s = mRtcpSession.getMySource();
-            s.setSsrc(pkt.ssrc);
-            s.activeSender = true;
-            s.receiveRtpPacket(pkt);
-            pkt.seqnum = s.generateExtendedSequenceNumber(pkt.seqnum);
+        // Update statistics
+        mStats.numPackets++;
+        mStats.numBytes += pkt.mLength;
 
-            return pkt;
-        }
-        return readRtpPacket();
+        RtpSource s = mRtcpSession.getMySource();
+        s.setSsrc(pkt.ssrc);
+        s.activeSender = true;
+        s.receiveRtpPacket(pkt);
+        pkt.seqnum = s.generateExtendedSequenceNumber(pkt.seqnum);
+        return pkt;
     }
 
     /**
-     * Parse the RTP packet
+     * Parse the RTP packet. The header is read in place from the receive buffer and the payload is
+     * copied at the beginning of the data of a pooled packet.
      * 
-     * @param data RTP packet not yet parsed
-     * @return RTP packet
+     * @param data Buffer holding the RTP packet not yet parsed
+     * @param length Length of the RTP packet
+     * @return RTP packet or null if malformed
      */
-    private RtpPacket parseRtpPacket(byte[] data) {
-        RtpPacket packet = new RtpPacket();
+    private RtpPacket parseRtpPacket(byte[] data, int length) {
+        // Read extension bit
+        boolean extension = (data[0] & 0x10) > 0;
+        int payloadOffset = RtpPacket.HEADER_SIZE;
+        int extensionLength = 0;
+        if (extension) {
+            if (length < RtpPacket.HEADER_SIZE + 4) {
+                return null;
+            }
+            extensionLength = ((data[14] & 0xff) << 8) | (data[15] & 0xff);
+            // RtpHeader size (12) + Extension Header ID (2) + Header Length (2) + elements * 4
+            // (32 bits each)
+            payloadOffset = 16 + extensionLength * 4;
+            if (payloadOffset > length) {
+                return null;
+            }
+        }
+        int payloadLength = length - payloadOffset;
+        RtpPacket packet = RtpPacket.obtain(payloadLength);
+
         // Read RTP packet length
-        packet.mLength = data.length;
+        packet.mLength = length;
 
         // Set received timestamp
         packet.mReceivedAt = System.currentTimeMillis();
 
-        // Read extension bit
-        packet.extension = (data[0] & 0x10) > 0;
+        packet.extension = extension;
 
         // Read marker
         if ((byte) ((data[1] & 0xff) & 0x80) == (byte) 0x80) {
@@ -249,25 +273,17 @@ public class RtpPacketReceiver extends Thread implements Closeable {
                 | ((data[10] & 0xff) << 8) | (data[11] & 0xff));
 
         // Extract the extension header
-        if (packet.extension) {
-            int dataId = 11;
-            int extensionHeaderId = ((data[++dataId] & 0xff) << 8) | (data[++dataId] & 0xff);
-            int length = ((data[++dataId] & 0xff) << 8) | (data[++dataId] & 0xff);
-
+        if (extension) {
+            int extensionHeaderId = ((data[12] & 0xff) << 8) | (data[13] & 0xff);
             if (extensionHeaderId == RtpExtensionHeader.RTP_EXTENSION_HEADER_ID) {
-                extractExtensionHeader(data, length, dataId, packet);
+                extractExtensionHeader(data, extensionLength, 16, packet);
             }
-
-            // increment payload offset = RtpHeader size (12) + Extension Header ID (2) + Header
-            // Length (2) +
-            // elements * 4 (32 bits each) + 1 (to set at correct index)
-            packet.payloadoffset = 16 + length * 4;
-        } else {
-            packet.payloadoffset = 12;
         }
-        packet.payloadlength = packet.mLength - packet.payloadoffset;
-        packet.mData = new byte[packet.payloadlength];
-        System.arraycopy(data, packet.payloadoffset, packet.mData, 0, packet.payloadlength);
+
+        // The payload is at the beginning of the packet data
+        packet.payloadoffset = 0;
+        packet.payloadlength = payloadLength;
+        System.arraycopy(data, payloadOffset, packet.mData, 0, payloadLength);
 
         return packet;
     }
@@ -293,19 +309,18 @@ public class RtpPacketReceiver extends Thread implements Closeable {
     /**
      * Extract Extension Header
      * 
-     * @param data
-     * @param length
-     * @param dataId
-     * @param packet
+     * @param data Buffer holding the RTP packet
+     * @param length Length of the extension header in 32 bits words
+     * @param offset Offset of the first element
+     * @param packet RTP packet
      */
-    private void extractExtensionHeader(byte[] data, int length, int dataId, RtpPacket packet) {
-        byte[] extensionHeaderData = new byte[length * 4];
-        System.arraycopy(data, ++dataId, extensionHeaderData, 0, extensionHeaderData.length);
-        packet.extensionHeader = new RtpExtensionHeader();
-
-        int i = 0;
-        while (packet.extensionHeader.elementsCount() < length) {
-            byte idAndLength = extensionHeaderData[i];
+    private void extractExtensionHeader(byte[] data, int length, int offset, RtpPacket packet) {
+        RtpExtensionHeader extensionHeader = packet.obtainExtensionHeader();
+        int end = offset + length * 4;
+
+        int i = offset;
+        while (extensionHeader.elementsCount() < length && i < end) {
+            byte idAndLength = data[i];
             if (idAndLength == 0x00) {
                 // its a padding byte, skip it
                 i = i + 1;
@@ -315,12 +330,10 @@ public class RtpPacketReceiver extends Thread implements Closeable {
             int elementId = (idAndLength & 0xf0) >>> 4;
 
             // Each extension element id must have a value between 1 and 14 inclusive
-            if (elementId > 0 && elementId < 15) {
-                int elementLength = (idAndLength & 0x0f);
-                byte[] elementData = new byte[elementLength + 1];
-                System.arraycopy(extensionHeaderData, i + 1, elementData, 0, elementData.length);
-                packet.extensionHeader.addElement(elementId, elementData);
-                i = i + elementData.length + 1;
+            int elementLength = (idAndLength & 0x0f) + 1;
+            if (elementId > 0 && elementId < 15 && i + 1 + elementLength <= end) {
+                extensionHeader.addElement(elementId, data, i + 1, elementLength);
+                i = i + elementLength + 1;
             } else {
                 break;
             }
@@ -19,8 +19,8 @@
 package com.gsma.rcs.core.ims.protocol.rtp.core;
 
 import com.gsma.rcs.core.ims.network.NetworkException;
+import com.gsma.rcs.core.ims.protocol.rtp.format.video.VideoOrientation;
 import com.gsma.rcs.core.ims.protocol.rtp.util.Buffer;
-import com.gsma.rcs.core.ims.protocol.rtp.util.Packet;
 import com.gsma.rcs.platform.network.DatagramConnection;
 import com.gsma.rcs.platform.network.NetworkFactory;
 import com.gsma.rcs.utils.logger.Logger;
@@ -65,6 +65,20 @@ public class RtpPacketTransmitter implements Closeable {
      */
     private RtcpSession rtcpSession = null;
 
+    /**
+     * Packet reused to assemble each sent RTP packet
+     */
+    private final RtpPacket mPacket = new RtpPacket();
+
+    /**
+     * Extension header of the last sent video orientation
+     */
+    private final RtpExtensionHeader mOrientationHeader = new RtpExtensionHeader();
+
+    private int mOrientationHeaderId = -1;
+
+    private byte mOrientation;
+
     /**
      * The logger
      */
@@ -140,16 +154,16 @@ public class RtpPacketTransmitter implements Closeable {
      * @param buffer Input buffer
      * @throws NetworkException
      */
-    public void sendRtpPacket(Buffer buffer) throws NetworkException {
-        // Build a RTP packet
-        RtpPacket packet = buildRtpPacket(buffer);
-        if (packet == null) {
+    public synchronized void sendRtpPacket(Buffer buffer) throws NetworkException {
+        byte data[] = (byte[]) buffer.getData();
+        if (data == null) {
             return;
         }
 
-        // Assemble RTP packet
-        int size = packet.calcLength();
-        packet.assemble(size);
+        // Build and assemble the RTP packet in the reused packet
+        RtpPacket packet = buildRtpPacket(buffer);
+        packet.assemble(buffer.getHeader(), buffer.getHeaderLength(), data, buffer.getOffset(),
+                buffer.getLength());
 
         // Send the RTP packet to the remote destination
         transmit(packet);
@@ -162,16 +176,7 @@ public class RtpPacketTransmitter implements Closeable {
      * @return RTP packet
      */
     private RtpPacket buildRtpPacket(Buffer buffer) {
-        byte data[] = (byte[]) buffer.getData();
-        if (data == null) {
-            return null;
-        }
-        Packet packet = new Packet();
-        packet.mData = data;
-        packet.mOffset = 0;
-        packet.mLength = buffer.getLength();
-
-        RtpPacket rtppacket = new RtpPacket(packet);
+        RtpPacket rtppacket = mPacket;
         if (buffer.isRTPMarkerSet()) {
             rtppacket.marker = 1;
         } else {
@@ -183,42 +188,44 @@ public class RtpPacketTransmitter implements Closeable {
         rtppacket.timestamp = buffer.getTimestamp();
         rtppacket.ssrc = rtcpSession.SSRC;
         rtppacket.payloadoffset = buffer.getOffset();
-        rtppacket.payloadlength = buffer.getLength();
-        if (buffer.getVideoOrientation() != null) {
+        rtppacket.payloadlength = buffer.getHeaderLength() + buffer.getLength();
+        VideoOrientation videoOrientation = buffer.getVideoOrientation();
+        if (videoOrientation != null) {
+            if (videoOrientation.getHeaderId() != mOrientationHeaderId
+                    || videoOrientation.getVideoOrientation() != mOrientation) {
+                mOrientationHeaderId = videoOrientation.getHeaderId();
+                mOrientation = videoOrientation.getVideoOrientation();
+                mOrientationHeader.clear();
+                mOrientationHeader.addElement(mOrientationHeaderId, new byte[] {
+                    mOrientation
+                });
+            }
             rtppacket.extension = true;
-            rtppacket.extensionHeader = new RtpExtensionHeader();
-            rtppacket.extensionHeader.addElement(buffer.getVideoOrientation().getHeaderId(),
-                    new byte[] {
-                        buffer.getVideoOrientation().getVideoOrientation()
-                    });
+            rtppacket.extensionHeader = mOrientationHeader;
+        } else {
+            rtppacket.extension = false;
+            rtppacket.extensionHeader = null;
         }
         return rtppacket;
     }
 
     /**
-     * Transmit a RTCP compound packet to the remote destination
+     * Transmit a RTP packet to the remote destination
      * 
      * @param packet RTP packet
      * @throws NetworkException
      */
-    private void transmit(Packet packet) throws NetworkException {
-        byte[] data = packet.mData;
-        if (packet.mOffset > 0) {
-            System.arraycopy(data, packet.mOffset, data = new byte[packet.mLength], 0,
-                    packet.mLength);
-        }
+    private void transmit(RtpPacket packet) throws NetworkException {
         stats.numBytes += packet.mLength;
         stats.numPackets++;
-        if (data == null) {
-            return;
-        }
         /* Send data over UDP */
-        datagramConnection.send(remoteAddress, remotePort, data);
+        datagramConnection.send(remoteAddress, remotePort, packet.mData, packet.mOffset,
+                packet.mLength);
         RtpSource s = rtcpSession.getMySource();
         s.activeSender = true;
         rtcpSession.timeOfLastRTPSent = rtcpSession.currentTime();
         rtcpSession.packetCount++;
-        rtcpSession.octetCount += data.length;
+        rtcpSession.octetCount += packet.mLength;
     }
 
     /**
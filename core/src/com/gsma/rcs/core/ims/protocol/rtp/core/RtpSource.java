@@ -18,6 +18,8 @@
 
 package com.gsma.rcs.core.ims.protocol.rtp.core;
 
+import com.gsma.rcs.core.ims.protocol.rtp.format.Format;
+
 /**
  * RTP source
  * 
@@ -109,6 +111,21 @@ public class RtpSource {
      */
     public long jitter;
 
+    /**
+     * Estimated jitter with its fractional part (in timestamp units)
+     */
+    private double jitterEstimate;
+
+    /**
+     * Relative transit time of the last RTP packet (in timestamp units)
+     */
+    private int lastTransit;
+
+    /**
+     * Clock rate of the RTP timestamps
+     */
+    private int clockRate = Format.DEFAULT_CLOCK_RATE;
+
     /**
      * Last SR Packet timestamp
      */
@@ -135,7 +152,31 @@ public class RtpSource {
      * @return Extended sequence number
      */
     public int generateExtendedSequenceNumber(int seq) {
-        return seq + (RTP_SEQ_MOD * cycles);
+        int extendedSeq = seq + (RTP_SEQ_MOD * cycles);
+        int delta = seq - maxSeq;
+        if (delta > RTP_SEQ_MOD / 2 && cycles > 0) {
+            // Late packet sent before the last wrap around
+            extendedSeq -= RTP_SEQ_MOD;
+        }
+        return extendedSeq;
+    }
+
+    /**
+     * Sets the clock rate of the RTP timestamps, used to estimate the jitter
+     * 
+     * @param clockRate Clock rate in Hz
+     */
+    public void setClockRate(int clockRate) {
+        this.clockRate = clockRate;
+    }
+
+    /**
+     * Returns the estimated interarrival jitter
+     * 
+     * @return Jitter in milliseconds
+     */
+    public long getJitterInMillis() {
+        return (long) (jitterEstimate * 1000 / clockRate);
     }
 
     /**
@@ -161,8 +202,37 @@ public class RtpSource {
         if (baseSeq == -1) {
             // First packet received
             initSeq(packet.seqnum);
+            lastTransit = getTransit(packet);
         }
         updateSeq(packet.seqnum);
+        updateJitter(packet);
+    }
+
+    /**
+     * Returns the relative transit time of a RTP packet, the difference between its arrival time
+     * and its timestamp, in timestamp units modulo 2^32.
+     * 
+     * @param packet RTP packet
+     * @return Transit time
+     */
+    private int getTransit(RtpPacket packet) {
+        return (int) (packet.mReceivedAt * clockRate / 1000) - (int) packet.timestamp;
+    }
+
+    /**
+     * Updates the interarrival jitter estimate. Algorithm in the RFC 3550 (Appendix A.8)
+     * 
+     * @param packet RTP packet
+     */
+    private void updateJitter(RtpPacket packet) {
+        int transit = getTransit(packet);
+        int d = transit - lastTransit;
+        lastTransit = transit;
+        if (d < 0) {
+            d = -d;
+        }
+        jitterEstimate += (d - jitterEstimate) / 16;
+        jitter = (long) jitterEstimate;
     }
 
     /**
@@ -204,8 +274,7 @@ public class RtpSource {
             report.setFractionLost((lostInterval << 8) / (double) expectedInterval);
         }
 
-        // TODO : Calculate jitter
-        report.setInterarrivalJitter(0);
+        report.setInterarrivalJitter(jitter);
 
         report.setLastSenderReport(lastSenderReport);
         report.setSsrc(ssrc);
@@ -243,7 +312,8 @@ public class RtpSource {
      * @param seq Sequence Number
      */
     private int updateSeq(int seq) {
-        long udelta = seq - maxSeq;
+        // Distance from the highest sequence number, modulo 2^16
+        int udelta = (seq - maxSeq) & (RTP_SEQ_MOD - 1);
 
         // Source is not valid until MIN_SEQUENTIAL packets with sequential
         // sequence numbers have been received.
@@ -264,12 +334,6 @@ public class RtpSource {
             return 0;
         } else if (udelta < MAX_DROPOUT) {
             // in order, with permissible gap
-            if (seq < maxSeq && (udelta >= (MAX_MISORDER * -1))) {
-                // late packet within interval
-                received++;
-                return 1;
-            }
-
             if (seq < maxSeq) {
                 // Sequence number wrapped - count another 64K cycle.
                 cycles++;
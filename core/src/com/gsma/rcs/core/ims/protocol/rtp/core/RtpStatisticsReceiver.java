@@ -38,4 +38,25 @@ public class RtpStatisticsReceiver {
      * Number of bad RTP packet received
      */
     public int numBadRtpPkts = 0;
+
+    /**
+     * Number of RTP packets never played out, either never received or given up by the jitter
+     * buffer
+     */
+    public int numLostPkts = 0;
+
+    /**
+     * Number of RTP packets received after their playout time
+     */
+    public int numLatePkts = 0;
+
+    /**
+     * Number of duplicate RTP packets received
+     */
+    public int numDuplicatePkts = 0;
+
+    /**
+     * Number of gaps in the sequence skipped by the jitter buffer, to be concealed by the decoder
+     */
+    public int numConcealments = 0;
 }
@@ -35,10 +35,25 @@ public class AmrWbAudioFormat extends AudioFormat {
      */
     public static final int PAYLOAD = 126;
 
+    /**
+     * RTP clock rate (RFC 4867)
+     */
+    public static final int CLOCK_RATE = 16000;
+
     /**
      * Constructor
      */
     public AmrWbAudioFormat() {
         super(ENCODING, PAYLOAD);
     }
+
+    /**
+     * Get the clock rate of the RTP timestamps
+     * 
+     * @return Clock rate in Hz
+     */
+    @Override
+    public int getClockRate() {
+        return CLOCK_RATE;
+    }
 }
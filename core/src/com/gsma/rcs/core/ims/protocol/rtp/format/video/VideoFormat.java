@@ -24,6 +24,11 @@ import com.gsma.rcs.core.ims.protocol.rtp.format.Format;
  * Video format
  */
 public class VideoFormat extends Format {
+    /**
+     * RTP clock rate of the video payload formats
+     */
+    public static final int CLOCK_RATE = 90000;
+
     /**
      * Constructor
      * 
@@ -33,4 +38,14 @@ public class VideoFormat extends Format {
     public VideoFormat(String codec, int payload) {
         super(codec, payload);
     }
+
+    /**
+     * Get the clock rate of the RTP timestamps
+     * 
+     * @return Clock rate in Hz
+     */
+    @Override
+    public int getClockRate() {
+        return CLOCK_RATE;
+    }
 }
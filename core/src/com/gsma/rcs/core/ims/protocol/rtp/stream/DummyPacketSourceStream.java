@@ -22,7 +22,8 @@ import com.gsma.rcs.core.ims.protocol.rtp.format.DummyFormat;
 import com.gsma.rcs.core.ims.protocol.rtp.format.Format;
 import com.gsma.rcs.core.ims.protocol.rtp.util.Buffer;
 import com.gsma.rcs.core.ims.protocol.rtp.util.SystemTimeBase;
-import com.gsma.rcs.utils.FifoBuffer;
+import com.gsma.rcs.utils.BoundedQueue;
+import com.gsma.rcs.utils.BoundedQueue.OverflowPolicy;
 import com.gsma.rcs.utils.logger.Logger;
 
 /**
@@ -58,9 +59,15 @@ public class DummyPacketSourceStream extends Thread implements ProcessorInputStr
     private long mSeqNo;
 
     /**
-     * Message buffer
+     * Maximum number of packets in the buffer
      */
-    private FifoBuffer mBuffer = new FifoBuffer();
+    private static final int MAX_PENDING_PACKETS = 64;
+
+    /**
+     * Message buffer, the oldest packets are dropped when full
+     */
+    private final BoundedQueue<Buffer> mBuffer = new BoundedQueue<Buffer>(MAX_PENDING_PACKETS,
+            OverflowPolicy.DROP_OLDEST);
 
     /**
      * The logger
@@ -129,7 +136,7 @@ public class DummyPacketSourceStream extends Thread implements ProcessorInputStr
                     packet.setTimestamp(mSystemTimeBase.getTimestamp());
 
                     // Post the packet in the FIFO
-                    mBuffer.addObject(packet);
+                    mBuffer.put(packet);
 
                     // Make a pause
                     if (!mIncomingStarted) {
@@ -159,7 +166,7 @@ public class DummyPacketSourceStream extends Thread implements ProcessorInputStr
      */
     public Buffer read() {
         // Read the FIFO the buffer
-        Buffer buffer = (Buffer) mBuffer.getObject();
+        Buffer buffer = mBuffer.take();
         return buffer;
     }
 
@@ -91,7 +91,16 @@ public class MediaRendererStream implements ProcessorOutputStream {
      * @param buffer Input buffer
      */
     public void write(Buffer buffer) {
-        MediaSample sample = new MediaSample((byte[]) buffer.getData(), buffer.getTimestamp(),
+        /*
+         * The buffer may expose the data of a pooled RTP packet reused after this call: give the
+         * renderer its own copy of the payload.
+         */
+        byte[] data = (byte[]) buffer.getData();
+        if (data != null) {
+            data = new byte[buffer.getLength()];
+            System.arraycopy((byte[]) buffer.getData(), buffer.getOffset(), data, 0, data.length);
+        }
+        MediaSample sample = new MediaSample(data, buffer.getTimestamp(),
                 buffer.getSequenceNumber());
         renderer.writeSample(sample);
     }
@@ -28,17 +28,16 @@ import com.gsma.rcs.core.ims.protocol.rtp.core.RtcpPacketReceiver;
 import com.gsma.rcs.core.ims.protocol.rtp.core.RtcpPacketTransmitter;
 import com.gsma.rcs.core.ims.protocol.rtp.core.RtcpSession;
 import com.gsma.rcs.core.ims.protocol.rtp.core.RtpExtensionHeader.ExtensionElement;
+import com.gsma.rcs.core.ims.protocol.rtp.core.RtpJitterBuffer;
 import com.gsma.rcs.core.ims.protocol.rtp.core.RtpPacket;
 import com.gsma.rcs.core.ims.protocol.rtp.core.RtpPacketReceiver;
+import com.gsma.rcs.core.ims.protocol.rtp.core.RtpSource;
 import com.gsma.rcs.core.ims.protocol.rtp.format.Format;
 import com.gsma.rcs.core.ims.protocol.rtp.format.video.VideoOrientation;
 import com.gsma.rcs.core.ims.protocol.rtp.util.Buffer;
 import com.gsma.rcs.utils.CloseableUtils;
 
 import java.io.IOException;
-import java.util.Comparator;
-import java.util.PriorityQueue;
-import java.util.concurrent.TimeoutException;
 
 /**
  * RTP input stream
@@ -51,8 +50,6 @@ public class RtpInputStream implements ProcessorInputStream {
      */
     private static final int RTP_SOCKET_TIMEOUT = 20000;
 
-    private static final int MAX_RTP_PACKETS = 5;
-
     /**
      * Remote address
      */
@@ -114,9 +111,14 @@ public class RtpInputStream implements ProcessorInputStream {
     private boolean mIsClosed;
 
     /**
-     * Sequence RTP packets buffer
+     * Jitter buffer reordering the received RTP packets
+     */
+    private RtpJitterBuffer mJitterBuffer;
+
+    /**
+     * Packet whose data are exposed by the input buffer, recycled on the next read
      */
-    private PriorityQueue<RtpPacket> mRtpPacketsBuffer;
+    private RtpPacket mCurrentPacket;
 
     /**
      * Constructor
@@ -131,19 +133,9 @@ public class RtpInputStream implements ProcessorInputStream {
         mInputFormat = inputFormat;
 
         mRtcpSession = new RtcpSession(false, 16000);
-
-        mRtpPacketsBuffer = new PriorityQueue<RtpPacket>(10, new Comparator<RtpPacket>() {
-            @Override
-            public int compare(RtpPacket object1, RtpPacket object2) {
-                if (object1.seqnum == object2.seqnum) {
-                    return 0;
-                } else if (object1.seqnum < object2.seqnum) {
-                    return -1;
-                }
-                return 1;
-            }
-        });
-
+        if (inputFormat != null) {
+            mRtcpSession.getMySource().setClockRate(inputFormat.getClockRate());
+        }
     }
 
     /**
@@ -154,6 +146,7 @@ public class RtpInputStream implements ProcessorInputStream {
     public void open() throws IOException {
         mRtpReceiver = new RtpPacketReceiver(mLocalPort, mRtcpSession, RTP_SOCKET_TIMEOUT);
         mRtpReceiver.start();
+        mJitterBuffer = new RtpJitterBuffer(mRtpReceiver.getRtpReceptionStats());
 
         mRtcpReceiver = new RtcpPacketReceiver(mLocalPort + 1, mRtcpSession);
         mRtcpReceiver.start();
@@ -195,33 +188,48 @@ public class RtpInputStream implements ProcessorInputStream {
     }
 
     /**
-     * Read from the input stream without blocking
+     * Read from the input stream without blocking. The returned buffer and its data are only valid
+     * until the next read.
      * 
      * @return Buffer
      * @throws NetworkException
      */
     public Buffer read() throws NetworkException {
-        do {
-            try {
-                /* Wait and read a RTP packet */
-                RtpPacket rtpPacket = mRtpReceiver.readRtpPacket();
-                if (rtpPacket == null) {
-                    throw new NetworkException("Unable to read RTP packet!");
-                }
-
-                mRtpPacketsBuffer.add(rtpPacket);
-            } catch (TimeoutException e) {
-                if (!mIsClosed) {
-                    if (mRtpStreamListener != null) {
-                        mRtpStreamListener.rtpStreamAborted();
+        if (mCurrentPacket != null) {
+            mCurrentPacket.recycle();
+            mCurrentPacket = null;
+        }
+        RtpSource source = mRtcpSession.getMySource();
+        long deadline = System.currentTimeMillis() + RTP_SOCKET_TIMEOUT;
+        RtpPacket packet;
+        while ((packet = mJitterBuffer.poll(System.currentTimeMillis())) == null) {
+            long now = System.currentTimeMillis();
+            long timeout = mJitterBuffer.getWaitTime(now);
+            if (timeout < 0) {
+                if (now >= deadline) {
+                    if (!mIsClosed) {
+                        if (mRtpStreamListener != null) {
+                            mRtpStreamListener.rtpStreamAborted();
+                        }
                     }
+                    throw new NetworkException("RTP Packet reading timeout!");
                 }
-                throw new NetworkException("RTP Packet reading timeout!", e);
+                timeout = deadline - now;
             }
-        } while (mRtpPacketsBuffer.size() <= MAX_RTP_PACKETS);
-
-        RtpPacket packet = mRtpPacketsBuffer.poll();
+            /* Wait and read a RTP packet, a null timeout would wait forever */
+            RtpPacket rtpPacket = mRtpReceiver.readRtpPacket(Math.max(timeout, 1));
+            if (rtpPacket != null) {
+                if (!mJitterBuffer.put(rtpPacket)) {
+                    rtpPacket.recycle();
+                }
+                mJitterBuffer.setJitter(source.getJitterInMillis());
+                deadline = System.currentTimeMillis() + RTP_SOCKET_TIMEOUT;
+            } else if (mIsClosed) {
+                throw new NetworkException("Unable to read RTP packet!");
+            }
+        }
 
+        mCurrentPacket = packet;
         mBuffer.setData(packet.mData);
         mBuffer.setLength(packet.payloadlength);
         mBuffer.setOffset(0);
@@ -112,6 +112,16 @@ public class Buffer {
      */
     private VideoOrientation videoOrientation;
 
+    /**
+     * Header to send before the data, letting the data be a view over a larger buffer
+     */
+    protected byte[] header = null;
+
+    /**
+     * The size of used bytes of the header
+     */
+    protected int headerLength = 0;
+
     /**
      * Get the data format
      * 
@@ -364,6 +374,35 @@ public class Buffer {
         return (fragments != null && fragments.length > 0 && fragmentsSize > 0);
     }
 
+    /**
+     * Get the header to send before the data
+     * 
+     * @return Header or null
+     */
+    public byte[] getHeader() {
+        return header;
+    }
+
+    /**
+     * Get the length of the header
+     * 
+     * @return Length
+     */
+    public int getHeaderLength() {
+        return headerLength;
+    }
+
+    /**
+     * Set the header to send before the data
+     * 
+     * @param header Header or null
+     * @param length Length of the header
+     */
+    public void setHeader(byte[] header, int length) {
+        this.header = header;
+        this.headerLength = length;
+    }
+
     /**
      * Gets the VideoOrientation
      * 
@@ -27,6 +27,7 @@ import com.gsma.rcs.core.ims.network.sip.SipMessageFactory;
 import com.gsma.rcs.core.ims.network.sip.SipUtils;
 import com.gsma.rcs.core.ims.protocol.PayloadException;
 import com.gsma.rcs.core.ims.protocol.sip.SipTransactionContext.INotifySipProvisionalResponse;
+import com.gsma.rcs.core.ims.protocol.sip.SipTransactionContext.INotifySipTransactionResult;
 import com.gsma.rcs.core.ims.security.cert.KeyStoreManager;
 import com.gsma.rcs.core.ims.service.SessionAuthenticationAgent;
 import com.gsma.rcs.provider.settings.RcsSettings;
@@ -47,6 +48,11 @@ import java.util.ListIterator;
 import java.util.Properties;
 import java.util.TooManyListenersException;
 import java.util.Vector;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import javax2.sip.ClientTransaction;
 import javax2.sip.DialogTerminatedEvent;
@@ -150,7 +156,7 @@ public class SipInterface implements SipListener {
     /**
      * List of current SIP transactions
      */
-    private SipTransactionList mTransactions = new SipTransactionList();
+    private final SipTransactionList mTransactions;
 
     /**
      * SIP interface listeners
@@ -209,6 +215,20 @@ public class SipInterface implements SipListener {
 
     private static final Logger sLogger = Logger.getLogger(SipInterface.class.getSimpleName());
 
+    /**
+     * Scheduler of the timeouts of the transactions sent asynchronously, it also runs their result
+     * callbacks when no executor is given
+     */
+    private static final ScheduledExecutorService sTransactionScheduler = new ScheduledThreadPoolExecutor(
+            1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "SipTransactionScheduler");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
     private final RcsSettings mRcsSettings;
 
     /**
@@ -240,6 +260,12 @@ public class SipInterface implements SipListener {
         mTimerT2 = rcsSettings.getSipTimerT2();
         mTimerT4 = rcsSettings.getSipTimerT4();
 
+        /*
+         * The contexts are removed upon response or timeout of their transaction: keep the ones
+         * which never got any notification twice as long as a caller may wait for them
+         */
+        mTransactions = new SipTransactionList(2 * rcsSettings.getSipTransactionTimeout());
+
         /* Set the default route path */
         mDefaultRoutePath = new Vector<String>();
         mDefaultRoutePath.addElement(getDefaultRoute());
@@ -269,6 +295,10 @@ public class SipInterface implements SipListener {
             properties.setProperty("javax2.sip.STACK_NAME", mLocalIpAddress);
             properties.setProperty("gov2.nist.javax2.sip.THREAD_POOL_SIZE", "1");
             properties.setProperty("javax2.sip.OUTBOUND_PROXY", getOutboundProxy());
+            if (mRcsSettings.isSipLazyHeaderParsingActivated()) {
+                /* Only the headers read by the stack are parsed on reception */
+                properties.setProperty("gov2.nist.javax2.sip.LAZY_HEADER_PARSING", "true");
+            }
             if (mSipTraceEnabled) {
                 /* Activate SIP stack traces */
                 boolean cleanLog = true;
@@ -813,10 +843,19 @@ public class SipInterface implements SipListener {
      * 
      * @param id Transaction ID
      */
-    public synchronized void removeTransactionContext(String id) {
+    public void removeTransactionContext(String id) {
         mTransactions.remove(id);
     }
 
+    /**
+     * Returns the list of current transaction contexts
+     * 
+     * @return List of transaction contexts
+     */
+    public SipTransactionList getTransactionContexts() {
+        return mTransactions;
+    }
+
     /**
      * Notify the transaction context that a message has been received (response or ACK)
      * 
@@ -824,12 +863,12 @@ public class SipInterface implements SipListener {
      * @param msg SIP message
      */
     private void notifyTransactionContext(String transactionId, SipMessage msg) {
-        SipTransactionContext ctx = mTransactions.get(transactionId);
+        /* Remove and get at once so that a context is notified only once */
+        SipTransactionContext ctx = mTransactions.remove(transactionId);
         if (ctx != null) {
             if (sLogger.isActivated()) {
                 sLogger.debug("Callback object found for transaction " + transactionId);
             }
-            removeTransactionContext(transactionId);
             ctx.responseReceived(msg);
         }
     }
@@ -846,6 +885,58 @@ public class SipInterface implements SipListener {
     public SipTransactionContext sendSipMessageAndWait(SipMessage message,
             INotifySipProvisionalResponse callbackSipProvisionalResponse) throws PayloadException,
             NetworkException {
+        return sendSipMessage(message, callbackSipProvisionalResponse, null, null);
+    }
+
+    /**
+     * Send a SIP message without waiting: the callback is notified of the final response, of the
+     * ACK or of the timeout of the transaction
+     * 
+     * @param message SIP message
+     * @param timeout Timeout in milliseconds
+     * @param callback Callback to handle the result of the transaction
+     * @param executor Executor of the callback or null to run it from the shared transaction
+     *            scheduler, in which case it must not block
+     * @return Transaction context
+     * @throws PayloadException
+     * @throws NetworkException
+     */
+    public SipTransactionContext sendSipMessageAsync(SipMessage message, long timeout,
+            INotifySipTransactionResult callback, Executor executor) throws PayloadException,
+            NetworkException {
+        final SipTransactionContext ctx = sendSipMessage(message, null, callback,
+                executor != null ? executor : sTransactionScheduler);
+        final String id = SipTransactionContext.getTransactionContextId(message);
+        ctx.setTimeoutTask(sTransactionScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (mTransactions.remove(id, ctx)) {
+                    if (sLogger.isActivated()) {
+                        sLogger.debug("Transaction timeout ".concat(id));
+                    }
+                    ctx.responseReceived(null);
+                }
+            }
+        }, timeout, TimeUnit.MILLISECONDS));
+        return ctx;
+    }
+
+    /**
+     * Send a SIP message and create a context to handle its response
+     * 
+     * @param message SIP message
+     * @param callbackSipProvisionalResponse a callback to handle SIP provisional response
+     * @param callbackResult a callback to handle the result of the transaction or null
+     * @param executor Executor of the result callback
+     * @return Transaction context
+     * @throws PayloadException
+     * @throws NetworkException
+     */
+    private SipTransactionContext sendSipMessage(SipMessage message,
+            INotifySipProvisionalResponse callbackSipProvisionalResponse,
+            INotifySipTransactionResult callbackResult, Executor executor)
+            throws PayloadException, NetworkException {
+        String id = SipTransactionContext.getTransactionContextId(message);
         try {
             if (message instanceof SipRequest) {
                 SipRequest req = (SipRequest) message;
@@ -858,7 +949,9 @@ public class SipInterface implements SipListener {
 
                 SipTransactionContext ctx = new SipTransactionContext(transaction,
                         callbackSipProvisionalResponse);
-                String id = SipTransactionContext.getTransactionContextId(req);
+                if (callbackResult != null) {
+                    ctx.setResultCallback(callbackResult, executor);
+                }
                 mTransactions.put(id, ctx);
                 if (sLogger.isActivated()) {
                     sLogger.debug("Create a transaction context ".concat(id));
@@ -883,7 +976,9 @@ public class SipInterface implements SipListener {
                         .toString());
             }
             SipTransactionContext ctx = new SipTransactionContext(transaction);
-            String id = SipTransactionContext.getTransactionContextId(resp);
+            if (callbackResult != null) {
+                ctx.setResultCallback(callbackResult, executor);
+            }
             mTransactions.put(id, ctx);
             if (sLogger.isActivated()) {
                 sLogger.debug("Create a transaction context ".concat(id));
@@ -903,6 +998,7 @@ public class SipInterface implements SipListener {
             throw new PayloadException("Unable to instantiate SIP transaction!", e);
 
         } catch (SipException e) {
+            mTransactions.remove(id);
             throw new NetworkException("Can't send SIP message!", e);
         }
     }
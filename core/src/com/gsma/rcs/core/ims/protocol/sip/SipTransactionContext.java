@@ -18,6 +18,10 @@
 
 package com.gsma.rcs.core.ims.protocol.sip;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
 import javax2.sip.Transaction;
 import javax2.sip.header.CallIdHeader;
 import javax2.sip.message.Message;
@@ -40,6 +44,19 @@ public class SipTransactionContext {
         public void handle180Ringing(SipResponse response);
     }
 
+    /**
+     * An interface to handle the result of a transaction sent asynchronously
+     */
+    public interface INotifySipTransactionResult {
+        /**
+         * Called once the final response or the ACK has been received or the transaction has timed
+         * out (see {@link SipTransactionContext#isTimeout()})
+         * 
+         * @param ctx SIP transaction context
+         */
+        public void handleResult(SipTransactionContext ctx);
+    }
+
     /**
      * Transaction
      */
@@ -55,6 +72,26 @@ public class SipTransactionContext {
      */
     private INotifySipProvisionalResponse mCallbackSipProvisionalResponse;
 
+    /**
+     * Creation time of the context
+     */
+    private final long mCreationTime = System.currentTimeMillis();
+
+    /**
+     * Callback to handle the result of the transaction
+     */
+    private INotifySipTransactionResult mResultCallback;
+
+    /**
+     * Executor of the result callback
+     */
+    private Executor mResultExecutor;
+
+    /**
+     * Pending timeout of the transaction
+     */
+    private Future<?> mTimeoutTask;
+
     /**
      * Constructor
      * 
@@ -84,6 +121,15 @@ public class SipTransactionContext {
         return mTransaction;
     }
 
+    /**
+     * Get the creation time of the context
+     * 
+     * @return Time in milliseconds
+     */
+    public long getCreationTime() {
+        return mCreationTime;
+    }
+
     /**
      * Get the SIP message that has been received
      * 
@@ -197,11 +243,11 @@ public class SipTransactionContext {
      */
     public void waitResponse(long timeout) {
         try {
-            if (recvMsg != null) {
-                // Response already received, no need to wait
-                return;
-            }
             synchronized (this) {
+                if (recvMsg != null) {
+                    // Response already received, no need to wait
+                    return;
+                }
                 super.wait(timeout);
             }
         } catch (InterruptedException e) {
@@ -216,10 +262,63 @@ public class SipTransactionContext {
      * @param msg SIP message object
      */
     public void responseReceived(SipMessage msg) {
+        final INotifySipTransactionResult callback;
+        Executor executor;
+        Future<?> timeoutTask;
         synchronized (this) {
             recvMsg = msg;
             super.notify();
+            callback = mResultCallback;
+            executor = mResultExecutor;
+            timeoutTask = mTimeoutTask;
+            mResultCallback = null;
+            mResultExecutor = null;
+            mTimeoutTask = null;
+        }
+        if (timeoutTask != null) {
+            timeoutTask.cancel(false);
+        }
+        if (callback == null) {
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    callback.handleResult(SipTransactionContext.this);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            /* Executor has been shut down: the result is not expected anymore */
+        }
+    }
+
+    /**
+     * Set the callback to handle the result of the transaction
+     * 
+     * @param callback Callback
+     * @param executor Executor of the callback
+     */
+    /* package private */synchronized void setResultCallback(INotifySipTransactionResult callback,
+            Executor executor) {
+        mResultCallback = callback;
+        mResultExecutor = executor;
+    }
+
+    /**
+     * Set the pending timeout of the transaction, it is cancelled once the result is received
+     * 
+     * @param timeoutTask Timeout task
+     */
+    /* package private */void setTimeoutTask(Future<?> timeoutTask) {
+        synchronized (this) {
+            if (mResultCallback != null) {
+                mTimeoutTask = timeoutTask;
+                return;
+            }
         }
+        /* Result already received */
+        timeoutTask.cancel(false);
     }
 
     /**
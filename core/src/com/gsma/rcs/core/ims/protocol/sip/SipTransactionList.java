@@ -18,13 +18,161 @@
 
 package com.gsma.rcs.core.ims.protocol.sip;
 
-import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * List of SIP transactions
- * 
+ * List of SIP transactions.<br>
+ * The contexts are kept in a concurrent map so that the responses, ACKs and new requests of
+ * different transactions do not contend on a single monitor. The contexts which never get a
+ * response are swept once they are older than a maximum age.
+ *
  * @author JM. Auffret
  */
-public class SipTransactionList extends Hashtable<String, SipTransactionContext> {
-    static final long serialVersionUID = 1L;
+public class SipTransactionList {
+    /**
+     * Minimum interval between two sweeps of the expired contexts (in milliseconds)
+     */
+    private static final long SWEEP_PERIOD = 30000;
+
+    private final ConcurrentMap<String, SipTransactionContext> mContexts = new ConcurrentHashMap<String, SipTransactionContext>();
+
+    private final AtomicLong mCreatedCount = new AtomicLong();
+
+    private final AtomicLong mCompletedCount = new AtomicLong();
+
+    private final AtomicLong mExpiredCount = new AtomicLong();
+
+    private final AtomicLong mLastSweep = new AtomicLong(System.currentTimeMillis());
+
+    private final long mMaxAge;
+
+    /**
+     * Constructor
+     *
+     * @param maxAge Age in milliseconds after which a context without response is removed
+     */
+    public SipTransactionList(long maxAge) {
+        mMaxAge = maxAge;
+    }
+
+    /**
+     * Add a transaction context
+     *
+     * @param id Transaction ID
+     * @param ctx Transaction context
+     */
+    public void put(String id, SipTransactionContext ctx) {
+        mContexts.put(id, ctx);
+        mCreatedCount.incrementAndGet();
+        long now = System.currentTimeMillis();
+        long lastSweep = mLastSweep.get();
+        if (now - lastSweep >= SWEEP_PERIOD && mLastSweep.compareAndSet(lastSweep, now)) {
+            removeExpired(now);
+        }
+    }
+
+    /**
+     * Get a transaction context
+     *
+     * @param id Transaction ID
+     * @return Transaction context or null if not found
+     */
+    public SipTransactionContext get(String id) {
+        return mContexts.get(id);
+    }
+
+    /**
+     * Remove a transaction context
+     *
+     * @param id Transaction ID
+     * @return Removed transaction context or null if not found
+     */
+    public SipTransactionContext remove(String id) {
+        SipTransactionContext ctx = mContexts.remove(id);
+        if (ctx != null) {
+            mCompletedCount.incrementAndGet();
+        }
+        return ctx;
+    }
+
+    /**
+     * Remove a transaction context only if it is still registered with the given ID
+     *
+     * @param id Transaction ID
+     * @param ctx Transaction context
+     * @return True if the context has been removed
+     */
+    public boolean remove(String id, SipTransactionContext ctx) {
+        if (mContexts.remove(id, ctx)) {
+            mCompletedCount.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Remove the transaction contexts older than the maximum age. The result callback of a
+     * removed context, if any, is notified of a timeout.
+     *
+     * @param now Current time in milliseconds
+     * @return Number of removed contexts
+     */
+    public int removeExpired(long now) {
+        int count = 0;
+        Iterator<Map.Entry<String, SipTransactionContext>> iterator = mContexts.entrySet()
+                .iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, SipTransactionContext> entry = iterator.next();
+            SipTransactionContext ctx = entry.getValue();
+            /* Not removed if a response has been received meanwhile */
+            if (now - ctx.getCreationTime() > mMaxAge && mContexts.remove(entry.getKey(), ctx)) {
+                if (ctx.isTimeout()) {
+                    ctx.responseReceived(null);
+                }
+                count++;
+            }
+        }
+        mExpiredCount.addAndGet(count);
+        return count;
+    }
+
+    /**
+     * Returns the number of live transaction contexts
+     *
+     * @return Number of contexts
+     */
+    public int size() {
+        return mContexts.size();
+    }
+
+    /**
+     * Returns the number of transaction contexts created
+     *
+     * @return Number of contexts
+     */
+    public long getCreatedCount() {
+        return mCreatedCount.get();
+    }
+
+    /**
+     * Returns the number of transaction contexts removed upon a response, an ACK or a timeout
+     *
+     * @return Number of contexts
+     */
+    public long getCompletedCount() {
+        return mCompletedCount.get();
+    }
+
+    /**
+     * Returns the number of transaction contexts removed by the expiry sweep
+     *
+     * @return Number of contexts
+     */
+    public long getExpiredCount() {
+        return mExpiredCount.get();
+    }
 }
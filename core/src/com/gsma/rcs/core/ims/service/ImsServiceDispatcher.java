@@ -37,7 +37,8 @@ import com.gsma.rcs.core.ims.service.im.filetransfer.http.FileTransferHttpInfoDo
 import com.gsma.rcs.core.ims.service.presence.PresenceService;
 import com.gsma.rcs.core.ims.service.terms.TermsConditionsService;
 import com.gsma.rcs.provider.settings.RcsSettings;
-import com.gsma.rcs.utils.FifoBuffer;
+import com.gsma.rcs.utils.BoundedQueue;
+import com.gsma.rcs.utils.BoundedQueue.OverflowPolicy;
 import com.gsma.rcs.utils.IdGenerator;
 import com.gsma.rcs.utils.logger.Logger;
 
@@ -48,6 +49,7 @@ import java.text.ParseException;
 import javax2.sip.address.SipURI;
 import javax2.sip.header.ContactHeader;
 import javax2.sip.header.EventHeader;
+import javax2.sip.header.FromHeader;
 import javax2.sip.header.SubscriptionStateHeader;
 import javax2.sip.message.Request;
 import javax2.sip.message.Response;
@@ -57,14 +59,20 @@ import javax2.sip.message.Response;
  * 
  * @author jexa7410
  */
-public class ImsServiceDispatcher extends Thread {
+public class ImsServiceDispatcher {
 
     private ImsModule mImsModule;
 
     /**
-     * Buffer of messages
+     * Maximum number of SIP requests waiting to be dispatched by a lane
      */
-    private FifoBuffer mBuffer = new FifoBuffer();
+    private static final int MAX_PENDING_REQUESTS = 1024;
+
+    /**
+     * Lanes dispatching the SIP requests: the requests of a same remote party (i.e. with the same
+     * From URI) are always dispatched in order by the same lane
+     */
+    private final DispatchLane[] mLanes;
 
     private SipIntentManager mIntentMgr = new SipIntentManager();
 
@@ -79,9 +87,22 @@ public class ImsServiceDispatcher extends Thread {
      * @param rcsSettings
      */
     public ImsServiceDispatcher(ImsModule imsModule, RcsSettings rcsSettings) {
-        super("SipDispatcher");
         mImsModule = imsModule;
         mRcsSettings = rcsSettings;
+        int laneCount = Math.max(1, rcsSettings.getSipDispatcherLanes());
+        mLanes = new DispatchLane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            mLanes[i] = new DispatchLane(i);
+        }
+    }
+
+    /**
+     * Start the SIP dispatcher
+     */
+    public void start() {
+        for (DispatchLane lane : mLanes) {
+            lane.start();
+        }
     }
 
     /**
@@ -91,56 +112,153 @@ public class ImsServiceDispatcher extends Thread {
         if (sLogger.isActivated()) {
             sLogger.info("Terminate the multi-session manager");
         }
-        mBuffer.close();
+        for (DispatchLane lane : mLanes) {
+            lane.mBuffer.close();
+            if (sLogger.isActivated()) {
+                sLogger.info(new StringBuilder("SIP dispatcher lane ").append(lane.mIndex)
+                        .append(" reached a queue depth of ")
+                        .append(lane.mBuffer.getHighWaterMark()).toString());
+            }
+        }
         if (sLogger.isActivated()) {
             sLogger.info("Multi-session manager has been terminated");
         }
     }
 
     /**
-     * Post a SIP request in the buffer
+     * Post a SIP request in the buffer of the lane of its remote party. This method is called from
+     * the SIP stack thread and never waits: when the buffer is full the request is rejected with a
+     * 503 Service Unavailable response.
      * 
      * @param request SIP request
      */
     public void postSipRequest(SipRequest request) {
-        mBuffer.addObject(request);
+        String callId = request.getCallId();
+        BoundedQueue<SipRequest> buffer = mLanes[getLaneIndex(request)].mBuffer;
+        if (buffer.put(request) || buffer.isClosed()) {
+            return;
+        }
+        if (sLogger.isActivated()) {
+            sLogger.warn("SIP dispatcher overloaded: reject " + request.getMethod()
+                    + " request. CallId=" + callId);
+        }
+        if (Request.ACK.equals(request.getMethod())) {
+            /* No response to an ACK */
+            return;
+        }
+        try {
+            sendFinalResponse(request, Response.SERVICE_UNAVAILABLE);
+        } catch (NetworkException e) {
+            if (sLogger.isActivated()) {
+                sLogger.debug(e.getMessage());
+            }
+        } catch (PayloadException e) {
+            sLogger.error("Failed to reject SIP request! CallId=" + callId, e);
+        }
     }
 
     /**
-     * Background processing
+     * Returns the index of the lane dispatching a SIP request.<br>
+     * The lane is selected by the From URI of the request, which does not change during a dialog
+     * and is shared by the requests sent outside of a dialog by the same remote party. Thus the
+     * requests of a dialog, the out of dialog MESSAGE requests (e.g. the delivery reports of a
+     * message) of a contact, and the INVITE and conference NOTIFY requests sent by a conference
+     * focus are dispatched in order, while the requests of different remote parties are
+     * dispatched in parallel.
+     * 
+     * @param request SIP request
+     * @return Lane index
      */
-    public void run() {
-        if (sLogger.isActivated()) {
-            sLogger.info("Start background processing");
+    public int getLaneIndex(SipRequest request) {
+        String key = (request.getHeader(FromHeader.NAME) == null) ? request.getCallId() : request
+                .getFromUri();
+        int hash = (key == null) ? 0 : key.hashCode();
+        return (hash & Integer.MAX_VALUE) % mLanes.length;
+    }
+
+    /**
+     * Returns the number of dispatching lanes
+     * 
+     * @return Number of lanes
+     */
+    public int getLaneCount() {
+        return mLanes.length;
+    }
+
+    /**
+     * Returns the number of SIP requests waiting to be dispatched by a lane
+     * 
+     * @param lane Lane index
+     * @return Queue depth
+     */
+    public int getQueueDepth(int lane) {
+        return mLanes[lane].mBuffer.size();
+    }
+
+    /**
+     * Returns the highest number of SIP requests which waited to be dispatched by a lane
+     * 
+     * @param lane Lane index
+     * @return Queue high water mark
+     */
+    public int getQueueHighWaterMark(int lane) {
+        return mLanes[lane].mBuffer.getHighWaterMark();
+    }
+
+    /**
+     * Thread dispatching the SIP requests of a subset of the dialogs
+     */
+    private class DispatchLane extends Thread {
+
+        private final int mIndex;
+
+        /**
+         * Buffer of messages
+         */
+        private final BoundedQueue<SipRequest> mBuffer = new BoundedQueue<SipRequest>(
+                MAX_PENDING_REQUESTS, OverflowPolicy.REJECT);
+
+        private DispatchLane(int index) {
+            super("SipDispatcher-" + index);
+            mIndex = index;
         }
-        SipRequest request = null;
-        while ((request = (SipRequest) mBuffer.getObject()) != null) {
-            try {
-                dispatch(request, System.currentTimeMillis());
-            } catch (PayloadException e) {
-                sLogger.error("Failed to dispatch received SIP request! CallId=".concat(request
-                        .getCallId()), e);
-                handleImsDispatchError(request);
-            } catch (NetworkException e) {
-                if (sLogger.isActivated()) {
-                    sLogger.debug(e.getMessage());
+
+        /**
+         * Background processing
+         */
+        public void run() {
+            if (sLogger.isActivated()) {
+                sLogger.info("Start background processing");
+            }
+            SipRequest request = null;
+            while ((request = mBuffer.take()) != null) {
+                try {
+                    dispatch(request, System.currentTimeMillis());
+                } catch (PayloadException e) {
+                    sLogger.error("Failed to dispatch received SIP request! CallId="
+                            .concat(request.getCallId()), e);
+                    handleImsDispatchError(request);
+                } catch (NetworkException e) {
+                    if (sLogger.isActivated()) {
+                        sLogger.debug(e.getMessage());
+                    }
+                    handleImsDispatchError(request);
+                } catch (RuntimeException e) {
+                    /*
+                     * Normally we are not allowed to catch runtime exceptions as these are genuine
+                     * bugs which should be handled/fixed within the code. However the cases when
+                     * we are executing operations on a thread unhandling such exceptions will
+                     * eventually lead to exit the system and thus can bring the whole system down,
+                     * which is not intended.
+                     */
+                    sLogger.error("Failed to dispatch received SIP request! CallId="
+                            .concat(request.getCallId()), e);
+                    handleImsDispatchError(request);
                 }
-                handleImsDispatchError(request);
-            } catch (RuntimeException e) {
-                /*
-                 * Normally we are not allowed to catch runtime exceptions as these are genuine bugs
-                 * which should be handled/fixed within the code. However the cases when we are
-                 * executing operations on a thread unhandling such exceptions will eventually lead
-                 * to exit the system and thus can bring the whole system down, which is not
-                 * intended.
-                 */
-                sLogger.error("Failed to dispatch received SIP request! CallId=".concat(request
-                        .getCallId()), e);
-                handleImsDispatchError(request);
             }
-        }
-        if (sLogger.isActivated()) {
-            sLogger.info("End of background processing");
+            if (sLogger.isActivated()) {
+                sLogger.info("End of background processing");
+            }
         }
     }
 
@@ -45,6 +45,8 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 
 /**
  * Capability discovery manager using options procedure
@@ -57,6 +59,11 @@ public class OptionsManager implements DiscoveryManager {
      */
     private final static int MAX_PROCESSING_THREADS = 15;
 
+    /**
+     * Max number of OPTIONS requests waiting for their result
+     */
+    private final static int MAX_PENDING_OPTIONS = 15;
+
     private ImsModule mImsModule;
 
     /**
@@ -64,6 +71,17 @@ public class OptionsManager implements DiscoveryManager {
      */
     private ExecutorService mThreadPool;
 
+    /**
+     * Single thread handling the results of the OPTIONS requests: the results are not handled by
+     * the thread pool since its threads may all wait for a pending OPTIONS to end
+     */
+    private ExecutorService mResultWorker;
+
+    /**
+     * Permits of the OPTIONS requests waiting for their result
+     */
+    private Semaphore mPendingOptions;
+
     private final RcsSettings mRcsSettings;
 
     private final ContactManager mContactManager;
@@ -87,6 +105,8 @@ public class OptionsManager implements DiscoveryManager {
      * Start the manager
      */
     public void start() {
+        mPendingOptions = new Semaphore(MAX_PENDING_OPTIONS);
+        mResultWorker = Executors.newSingleThreadExecutor();
         mThreadPool = Executors.newFixedThreadPool(MAX_PROCESSING_THREADS);
     }
 
@@ -95,6 +115,7 @@ public class OptionsManager implements DiscoveryManager {
      */
     public void stop() {
         mThreadPool.shutdownNow();
+        mResultWorker.shutdown();
     }
 
     /**
@@ -111,15 +132,18 @@ public class OptionsManager implements DiscoveryManager {
         boolean richcall = mImsModule.getRichcallService().isCallConnectedWith(contact);
         OptionsRequestTask task = new OptionsRequestTask(mImsModule, contact,
                 CapabilityUtils.getSupportedFeatureTags(richcall, mRcsSettings), mRcsSettings,
-                mContactManager, listener);
-        if (mThreadPool.isShutdown()) {
+                mContactManager, listener, mResultWorker, mPendingOptions);
+        try {
+            mThreadPool.submit(task);
+        } catch (RejectedExecutionException e) {
             if (sLogger.isActivated()) {
                 sLogger.warn("Request capabilities in background for " + contact
                         + " rejected: manager is stopped!");
             }
-            return;
+            if (listener != null) {
+                listener.endOfOptionsRequestTask(contact);
+            }
         }
-        mThreadPool.submit(task);
     }
 
     /**
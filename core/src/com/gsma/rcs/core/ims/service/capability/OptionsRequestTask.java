@@ -31,6 +31,7 @@ import com.gsma.rcs.core.ims.protocol.sip.SipDialogPath;
 import com.gsma.rcs.core.ims.protocol.sip.SipRequest;
 import com.gsma.rcs.core.ims.protocol.sip.SipResponse;
 import com.gsma.rcs.core.ims.protocol.sip.SipTransactionContext;
+import com.gsma.rcs.core.ims.protocol.sip.SipTransactionContext.INotifySipTransactionResult;
 import com.gsma.rcs.core.ims.service.ContactInfo;
 import com.gsma.rcs.core.ims.service.ContactInfo.RcsStatus;
 import com.gsma.rcs.core.ims.service.ContactInfo.RegistrationState;
@@ -43,6 +44,9 @@ import com.gsma.rcs.utils.logger.Logger;
 import com.gsma.services.rcs.contact.ContactId;
 
 import java.text.ParseException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 
 import javax2.sip.InvalidArgumentException;
 import javax2.sip.message.Response;
@@ -52,7 +56,7 @@ import javax2.sip.message.Response;
  * 
  * @author Jean-Marc AUFFRET
  */
-public class OptionsRequestTask implements Runnable {
+public class OptionsRequestTask implements Runnable, INotifySipTransactionResult {
     private final ImsModule mImsModule;
 
     private final ContactId mContact;
@@ -71,6 +75,33 @@ public class OptionsRequestTask implements Runnable {
 
     private final IOptionsRequestTaskListener mCallback;
 
+    private final Executor mExecutor;
+
+    /**
+     * Permits of the OPTIONS requests waiting for their result: a permit is held from the sending
+     * of the first OPTIONS until the end of the task
+     */
+    private final Semaphore mPendingOptions;
+
+    /**
+     * Executor of the response callback: if the executor of the responses rejects it (i.e. it has
+     * been shut down), the response is dropped and the end of the task is notified
+     */
+    private final Executor mResultExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            try {
+                mExecutor.execute(command);
+            } catch (RejectedExecutionException e) {
+                if (sLogger.isActivated()) {
+                    sLogger.debug("Options response dropped for contact : ".concat(mContact
+                            .toString()));
+                }
+                endOfTask();
+            }
+        }
+    };
+
     /**
      * Constructor
      * 
@@ -80,10 +111,12 @@ public class OptionsRequestTask implements Runnable {
      * @param rcsSettings accessor to RCS settings
      * @param contactManager accessor to contact manager
      * @param callback Callback to be executed at end of task
+     * @param executor Executor handling the responses
+     * @param pendingOptions Permits of the OPTIONS requests waiting for their result
      */
     public OptionsRequestTask(ImsModule parent, ContactId contact, String[] featureTags,
             RcsSettings rcsSettings, ContactManager contactManager,
-            IOptionsRequestTaskListener callback) {
+            IOptionsRequestTaskListener callback, Executor executor, Semaphore pendingOptions) {
         mImsModule = parent;
         mContact = contact;
         mFeatureTags = featureTags;
@@ -91,12 +124,25 @@ public class OptionsRequestTask implements Runnable {
         mRcsSettings = rcsSettings;
         mContactManager = contactManager;
         mCallback = callback;
+        mExecutor = executor;
+        mPendingOptions = pendingOptions;
     }
 
     @Override
     public void run() {
         try {
-            sendOptions();
+            mPendingOptions.acquire();
+        } catch (InterruptedException e) {
+            if (sLogger.isActivated()) {
+                sLogger.debug("Options request interrupted for contact : ".concat(mContact
+                        .toString()));
+            }
+            notifyEndOfTask();
+            return;
+        }
+        boolean pending = false;
+        try {
+            pending = sendOptions();
         } catch (ContactManagerException e) {
             sLogger.error("Options request failed for contact : ".concat(mContact.toString()), e);
             handleError(new CapabilityError(CapabilityError.OPTIONS_FAILED, e));
@@ -117,32 +163,82 @@ public class OptionsRequestTask implements Runnable {
              */
             sLogger.error("Options request failed for contact : ".concat(mContact.toString()), e);
         } finally {
-            if (mCallback != null) {
-                try {
-                    mCallback.endOfOptionsRequestTask(mContact);
-                } catch (RuntimeException e) {
-                    /*
-                     * Normally we are not allowed to catch runtime exceptions as these are genuine
-                     * bugs which should be handled/fixed within the code. However the cases when we
-                     * are executing operations on a thread unhandling such exceptions will
-                     * eventually lead to exit the system and thus can bring the whole system down,
-                     * which is not intended.
-                     */
-                    sLogger.error("Failed to notify end of options request for contact : "
-                            .concat(mContact.toString()), e);
-                }
+            if (!pending) {
+                endOfTask();
             }
         }
     }
 
+    @Override
+    public void handleResult(SipTransactionContext ctx) {
+        boolean pending = false;
+        try {
+            pending = analyzeOptionsResult(ctx);
+        } catch (ContactManagerException e) {
+            sLogger.error("Options request failed for contact : ".concat(mContact.toString()), e);
+            handleError(new CapabilityError(CapabilityError.OPTIONS_FAILED, e));
+        } catch (PayloadException e) {
+            sLogger.error("Options request failed for contact : ".concat(mContact.toString()), e);
+            handleError(new CapabilityError(CapabilityError.OPTIONS_FAILED, e));
+        } catch (NetworkException e) {
+            if (sLogger.isActivated()) {
+                sLogger.debug(e.getMessage());
+            }
+            handleError(new CapabilityError(CapabilityError.OPTIONS_FAILED, e));
+        } catch (RuntimeException e) {
+            /*
+             * Normally we are not allowed to catch runtime exceptions as these are genuine bugs
+             * which should be handled/fixed within the code. However the cases when we are
+             * executing operations on a thread unhandling such exceptions will eventually lead to
+             * exit the system and thus can bring the whole system down, which is not intended.
+             */
+            sLogger.error("Options request failed for contact : ".concat(mContact.toString()), e);
+        } finally {
+            if (!pending) {
+                endOfTask();
+            }
+        }
+    }
+
+    /**
+     * End the task: release its permit then notify the end of the task
+     */
+    private void endOfTask() {
+        mPendingOptions.release();
+        notifyEndOfTask();
+    }
+
+    /**
+     * Notify the end of the task
+     */
+    private void notifyEndOfTask() {
+        if (mCallback == null) {
+            return;
+        }
+        try {
+            mCallback.endOfOptionsRequestTask(mContact);
+        } catch (RuntimeException e) {
+            /*
+             * Normally we are not allowed to catch runtime exceptions as these are genuine bugs
+             * which should be handled/fixed within the code. However the cases when we are
+             * executing operations on a thread unhandling such exceptions will eventually lead to
+             * exit the system and thus can bring the whole system down, which is not intended.
+             */
+            sLogger.error("Failed to notify end of options request for contact : "
+                    .concat(mContact.toString()), e);
+        }
+    }
+
     /**
      * Send an OPTIONS request
      * 
+     * @return True if the OPTIONS has been sent and its result is pending
      * @throws PayloadException
      * @throws ContactManagerException
      * @throws NetworkException
      */
-    private void sendOptions() throws PayloadException, NetworkException, ContactManagerException {
+    private boolean sendOptions() throws PayloadException, NetworkException,
+            ContactManagerException {
         if (sLogger.isActivated()) {
             sLogger.info("Send an options request to ".concat(mContact.toString()));
         }
@@ -150,7 +246,7 @@ public class OptionsRequestTask implements Runnable {
             if (sLogger.isActivated()) {
                 sLogger.debug("IMS not registered, do nothing");
             }
-            return;
+            return false;
         }
         // @FIXME: This should be an URI instead of String
         String contactUri = PhoneUtils.formatContactIdToUri(mContact).toString();
@@ -164,24 +260,37 @@ public class OptionsRequestTask implements Runnable {
         }
         SipRequest options = SipMessageFactory.createOptions(mDialogPath, mFeatureTags);
 
-        sendAndWaitOptions(options);
+        sendAsyncOptions(options);
+        return true;
     }
 
     /**
-     * Sends OPTIONS message and waits for response
+     * Sends OPTIONS message without waiting: the response is handled by
+     * {@link #handleResult(SipTransactionContext)}
      * 
      * @param options SIP OPTIONS
      * @throws PayloadException
      * @throws NetworkException
+     */
+    private void sendAsyncOptions(SipRequest options) throws PayloadException, NetworkException {
+        if (sLogger.isActivated()) {
+            sLogger.info("Send OPTIONS");
+        }
+        mImsModule.getSipManager().sendSipMessageAsync(options, this, mResultExecutor);
+    }
+
+    /**
+     * Analyze the result of an OPTIONS transaction
+     * 
+     * @param ctx SIP transaction context
+     * @return True if a new OPTIONS has been sent and its result is pending
+     * @throws PayloadException
+     * @throws NetworkException
      * @throws ContactManagerException
      */
-    private void sendAndWaitOptions(SipRequest options) throws PayloadException, NetworkException,
-            ContactManagerException {
+    private boolean analyzeOptionsResult(SipTransactionContext ctx) throws PayloadException,
+            NetworkException, ContactManagerException {
         try {
-            if (sLogger.isActivated()) {
-                sLogger.info("Send OPTIONS");
-            }
-            SipTransactionContext ctx = mImsModule.getSipManager().sendSipMessageAndWait(options);
             final int statusCode = ctx.getStatusCode();
             if (ctx.isSipResponse()) {
                 switch (statusCode) {
@@ -190,7 +299,7 @@ public class OptionsRequestTask implements Runnable {
                         break;
                     case Response.PROXY_AUTHENTICATION_REQUIRED:
                         handle407Authentication(ctx);
-                        break;
+                        return true;
                     case Response.REQUEST_TIMEOUT:
                         /* Intentional fall through */
                     case Response.TEMPORARILY_UNAVAILABLE:
@@ -214,6 +323,8 @@ public class OptionsRequestTask implements Runnable {
                         String.valueOf(statusCode)).append(' ').append(ctx.getReasonPhrase())
                         .toString()));
             }
+            return false;
+
         } catch (FileAccessException e) {
             throw new PayloadException("Failed to send OPTIONS!", e);
         }
@@ -321,10 +432,9 @@ public class OptionsRequestTask implements Runnable {
      * @param ctx SIP transaction context
      * @throws PayloadException
      * @throws NetworkException
-     * @throws ContactManagerException
      */
     private void handle407Authentication(SipTransactionContext ctx) throws PayloadException,
-            NetworkException, ContactManagerException {
+            NetworkException {
         try {
             if (sLogger.isActivated()) {
                 sLogger.info("407 response received");
@@ -344,7 +454,7 @@ public class OptionsRequestTask implements Runnable {
 
             mAuthenticationAgent.setProxyAuthorizationHeader(options);
 
-            sendAndWaitOptions(options);
+            sendAsyncOptions(options);
         } catch (InvalidArgumentException e) {
             throw new PayloadException("Failed to handle 407 authentication response!", e);
 
@@ -32,17 +32,27 @@ import com.gsma.rcs.core.ims.protocol.PayloadException;
 import com.gsma.rcs.core.ims.protocol.sip.SipDialogPath;
 import com.gsma.rcs.core.ims.protocol.sip.SipRequest;
 import com.gsma.rcs.core.ims.protocol.sip.SipTransactionContext;
+import com.gsma.rcs.core.ims.protocol.sip.SipTransactionContext.INotifySipTransactionResult;
 import com.gsma.rcs.core.ims.service.SessionAuthenticationAgent;
 import com.gsma.rcs.core.ims.service.im.InstantMessagingService;
 import com.gsma.rcs.core.ims.service.im.chat.ChatUtils;
 import com.gsma.rcs.core.ims.service.im.chat.cpim.CpimMessage;
 import com.gsma.rcs.provider.settings.RcsSettings;
-import com.gsma.rcs.utils.FifoBuffer;
+import com.gsma.rcs.utils.BoundedQueue;
+import com.gsma.rcs.utils.BoundedQueue.OverflowPolicy;
 import com.gsma.rcs.utils.PhoneUtils;
 import com.gsma.rcs.utils.logger.Logger;
 import com.gsma.services.rcs.contact.ContactId;
 
 import java.text.ParseException;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 
 import javax2.sip.InvalidArgumentException;
 import javax2.sip.message.Response;
@@ -56,7 +66,49 @@ public class ImdnManager extends Thread {
 
     private final InstantMessagingService mImService;
 
-    private FifoBuffer mBuffer = new FifoBuffer();
+    /**
+     * Maximum number of delivery statuses waiting to be sent
+     */
+    private static final int MAX_PENDING_DELIVERY_STATUSES = 1024;
+
+    private final BoundedQueue<DeliveryStatus> mBuffer = new BoundedQueue<DeliveryStatus>(
+            MAX_PENDING_DELIVERY_STATUSES, OverflowPolicy.REJECT);
+
+    /**
+     * Maximum number of delivery statuses sent without response
+     */
+    private static final int MAX_PENDING_TRANSACTIONS = 16;
+
+    private final Semaphore mPendingTransactions = new Semaphore(MAX_PENDING_TRANSACTIONS);
+
+    /**
+     * Delivery statuses waiting for the end of the transaction of a previous delivery status of
+     * the same message, indexed by message ID: the delivery statuses of a message are sent one
+     * after the other so that a DISPLAYED report never overtakes the DELIVERED report.
+     */
+    private final Map<String, LinkedList<DeliveryStatus>> mMessagesInProgress =
+            new HashMap<String, LinkedList<DeliveryStatus>>();
+
+    /**
+     * Worker handling the responses to the delivery statuses, as the handling writes in the
+     * database and may send a new request
+     */
+    private final ExecutorService mResultWorker = Executors.newSingleThreadExecutor();
+
+    /**
+     * Executor of the response callbacks: once the manager is terminated, a response is dropped
+     * and its pending transaction released
+     */
+    private final Executor mResultExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            try {
+                mResultWorker.execute(command);
+            } catch (RejectedExecutionException e) {
+                mPendingTransactions.release();
+            }
+        }
+    };
 
     private final RcsSettings mRcsSettings;
 
@@ -81,6 +133,7 @@ public class ImdnManager extends Thread {
             sLogger.info("Terminate the IMDN manager");
         }
         mBuffer.close();
+        mResultWorker.shutdown();
     }
 
     /**
@@ -127,17 +180,36 @@ public class ImdnManager extends Thread {
      */
     public void run() {
         DeliveryStatus delivery = null;
-        while ((delivery = (DeliveryStatus) mBuffer.getObject()) != null) {
-            try {
-                sendSipMessageDeliveryStatus(delivery, null); // TODO: add sip.instance
-                /*
-                 * Update rich messaging history when sending DISPLAYED report Since the requested
-                 * display report was now successfully send we mark this message as fully received
-                 */
-                if (ImdnDocument.DELIVERY_STATUS_DISPLAYED.equals(delivery.getStatus())) {
-                    mImService.onChatMessageDisplayReportSent(delivery.getChatId(),
-                            delivery.getRemote(), delivery.getMsgId());
+        while ((delivery = mBuffer.take()) != null) {
+            synchronized (mMessagesInProgress) {
+                LinkedList<DeliveryStatus> nextDeliveries = mMessagesInProgress.get(delivery
+                        .getMsgId());
+                if (nextDeliveries != null) {
+                    /* Sent once the transaction of the previous delivery status has ended */
+                    nextDeliveries.add(delivery);
+                    continue;
                 }
+                mMessagesInProgress.put(delivery.getMsgId(), new LinkedList<DeliveryStatus>());
+            }
+            /* Wait for room among the pending transactions */
+            mPendingTransactions.acquireUninterruptibly();
+            startTransaction(delivery);
+        }
+    }
+
+    /**
+     * Start the transaction of a delivery status while holding a pending transaction. If the
+     * delivery status cannot be sent, the next delivery status of the same message is sent
+     * instead.
+     * 
+     * @param delivery Delivery status
+     */
+    private void startTransaction(DeliveryStatus delivery) {
+        while (delivery != null) {
+            try {
+                new DeliveryReportTransaction(delivery).send();
+                return;
+
             } catch (PayloadException e) {
                 sLogger.error(
                         "Failed to send delivery status for chatId : ".concat(delivery.getChatId()),
@@ -155,11 +227,33 @@ public class ImdnManager extends Thread {
                         "Failed to send delivery status for chatId : ".concat(delivery.getChatId()),
                         e);
             }
+            delivery = endTransaction(delivery);
         }
     }
 
     /**
-     * Send a message delivery status
+     * End the transaction of a delivery status
+     * 
+     * @param delivery Delivery status
+     * @return The next delivery status of the same message to send while still holding the
+     *         pending transaction, or null if the pending transaction has been released
+     */
+    private DeliveryStatus endTransaction(DeliveryStatus delivery) {
+        synchronized (mMessagesInProgress) {
+            LinkedList<DeliveryStatus> nextDeliveries = mMessagesInProgress.get(delivery
+                    .getMsgId());
+            DeliveryStatus next = nextDeliveries.poll();
+            if (next == null) {
+                mMessagesInProgress.remove(delivery.getMsgId());
+                mPendingTransactions.release();
+            }
+            return next;
+        }
+    }
+
+    /**
+     * Send a message delivery status. This method never waits: when too many delivery statuses
+     * are waiting to be sent, the delivery status is dropped.
      * 
      * @param chatId ChatId
      * @param remote Remote contact
@@ -171,7 +265,11 @@ public class ImdnManager extends Thread {
             String status, long timestamp) {
         // Add request in the buffer for background processing
         DeliveryStatus delivery = new DeliveryStatus(chatId, remote, msgId, status, timestamp);
-        mBuffer.addObject(delivery);
+        if (!mBuffer.put(delivery) && !mBuffer.isClosed()) {
+            sLogger.warn(new StringBuilder("IMDN manager overloaded: drop delivery status ")
+                    .append(status).append(" for msgId ").append(msgId).append(" (")
+                    .append(mBuffer.getRejectedCount()).append(" dropped)").toString());
+        }
     }
 
     /**
@@ -202,27 +300,8 @@ public class ImdnManager extends Thread {
         int statusCode = ctx.getStatusCode();
         switch (statusCode) {
             case Response.PROXY_AUTHENTICATION_REQUIRED:
-
-                if (sLogger.isActivated()) {
-                    sLogger.info("407 response received");
-                }
-
-                /* Set the Proxy-Authorization header */
-                authenticationAgent.readProxyAuthenticateHeader(ctx.getSipResponse());
-
-                /* Increment the Cseq number of the dialog path */
-                dialogPath.incrementCseq();
-
-                /* Create a second MESSAGE request with the right token */
-                if (sLogger.isActivated()) {
-                    sLogger.info("Send second MESSAGE.");
-                }
-                SipRequest msg = SipMessageFactory.createMessage(dialogPath,
-                        FeatureTags.FEATURE_OMA_IM, CpimMessage.MIME_TYPE, cpim.getBytes(UTF8));
-
-                /* Set the Authorization header */
-                authenticationAgent.setProxyAuthorizationHeader(msg);
-
+                SipRequest msg = createAuthenticatedMessage(ctx, authenticationAgent, dialogPath,
+                        cpim);
                 ctx = mImService.getImsModule().getSipManager().sendSipMessageAndWait(msg);
 
                 analyzeSipResponse(ctx, authenticationAgent, dialogPath, cpim);
@@ -239,6 +318,94 @@ public class ImdnManager extends Thread {
         }
     }
 
+    /**
+     * Create the MESSAGE request sent again with the right token after a 407 response
+     * 
+     * @param ctx SIP transaction context of the 407 response
+     * @param authenticationAgent Authentication agent
+     * @param dialogPath Dialog path
+     * @param cpim CPIM document of the delivery status
+     * @return MESSAGE request
+     * @throws PayloadException
+     * @throws InvalidArgumentException
+     * @throws ParseException
+     */
+    private SipRequest createAuthenticatedMessage(SipTransactionContext ctx,
+            SessionAuthenticationAgent authenticationAgent, SipDialogPath dialogPath, String cpim)
+            throws PayloadException, InvalidArgumentException, ParseException {
+        if (sLogger.isActivated()) {
+            sLogger.info("407 response received");
+        }
+
+        /* Set the Proxy-Authorization header */
+        authenticationAgent.readProxyAuthenticateHeader(ctx.getSipResponse());
+
+        /* Increment the Cseq number of the dialog path */
+        dialogPath.incrementCseq();
+
+        /* Create a second MESSAGE request with the right token */
+        if (sLogger.isActivated()) {
+            sLogger.info("Send second MESSAGE.");
+        }
+        SipRequest msg = SipMessageFactory.createMessage(dialogPath, FeatureTags.FEATURE_OMA_IM,
+                CpimMessage.MIME_TYPE, cpim.getBytes(UTF8));
+
+        /* Set the Authorization header */
+        authenticationAgent.setProxyAuthorizationHeader(msg);
+        return msg;
+    }
+
+    /**
+     * Create the CPIM document of a delivery status
+     * 
+     * @param deliveryStatus Delivery status
+     * @return CPIM document
+     */
+    private String buildCpimDeliveryReport(DeliveryStatus deliveryStatus) {
+        String from = ChatUtils.ANONYMOUS_URI;
+        String to = ChatUtils.ANONYMOUS_URI;
+        /* Timestamp for IMDN datetime */
+        String imdn = ChatUtils.buildImdnDeliveryReport(deliveryStatus.getMsgId(),
+                deliveryStatus.getStatus(), deliveryStatus.getTimestamp());
+        /* Timestamp for CPIM DateTime */
+        return ChatUtils.buildCpimDeliveryReport(from, to, imdn, System.currentTimeMillis());
+    }
+
+    /**
+     * Create the dialog path of a delivery status
+     * 
+     * @param deliveryStatus Delivery status
+     * @param remoteInstanceId Remote SIP instance
+     * @return Dialog path
+     */
+    private SipDialogPath createDialogPath(DeliveryStatus deliveryStatus, String remoteInstanceId) {
+        // @FIXME: This should be an URI instead of String
+        String toUri = PhoneUtils.formatContactIdToUri(deliveryStatus.getRemote()).toString();
+        SipDialogPath dialogPath = new SipDialogPath(mImService.getImsModule().getSipManager()
+                .getSipStack(), mImService.getImsModule().getSipManager().getSipStack()
+                .generateCallId(), 1, toUri, ImsModule.getImsUserProfile().getPublicUri(), toUri,
+                mImService.getImsModule().getSipManager().getSipStack().getServiceRoutePath(),
+                mRcsSettings);
+        dialogPath.setRemoteSipInstance(remoteInstanceId);
+        return dialogPath;
+    }
+
+    /**
+     * Handle a delivery status successfully sent
+     * 
+     * @param deliveryStatus Delivery status
+     */
+    private void onDeliveryStatusSent(DeliveryStatus deliveryStatus) {
+        /*
+         * Update rich messaging history when sending DISPLAYED report Since the requested display
+         * report was now successfully send we mark this message as fully received
+         */
+        if (ImdnDocument.DELIVERY_STATUS_DISPLAYED.equals(deliveryStatus.getStatus())) {
+            mImService.onChatMessageDisplayReportSent(deliveryStatus.getChatId(),
+                    deliveryStatus.getRemote(), deliveryStatus.getMsgId());
+        }
+    }
+
     /**
      * Send message delivery status via SIP MESSAGE
      * 
@@ -256,27 +423,13 @@ public class ImdnManager extends Thread {
             }
 
             // Create CPIM/IDMN document
-            String from = ChatUtils.ANONYMOUS_URI;
-            String to = ChatUtils.ANONYMOUS_URI;
-            /* Timestamp for IMDN datetime */
-            String imdn = ChatUtils.buildImdnDeliveryReport(deliveryStatus.getMsgId(),
-                    deliveryStatus.getStatus(), deliveryStatus.getTimestamp());
-            /* Timestamp for CPIM DateTime */
-            String cpim = ChatUtils.buildCpimDeliveryReport(from, to, imdn,
-                    System.currentTimeMillis());
+            String cpim = buildCpimDeliveryReport(deliveryStatus);
 
             // Create authentication agent
             SessionAuthenticationAgent authenticationAgent = new SessionAuthenticationAgent(
                     mImService.getImsModule());
-            // @FIXME: This should be an URI instead of String
-            String toUri = PhoneUtils.formatContactIdToUri(deliveryStatus.getRemote()).toString();
             // Create a dialog path
-            SipDialogPath dialogPath = new SipDialogPath(mImService.getImsModule().getSipManager()
-                    .getSipStack(), mImService.getImsModule().getSipManager().getSipStack()
-                    .generateCallId(), 1, toUri, ImsModule.getImsUserProfile().getPublicUri(),
-                    toUri, mImService.getImsModule().getSipManager().getSipStack()
-                            .getServiceRoutePath(), mRcsSettings);
-            dialogPath.setRemoteSipInstance(remoteInstanceId);
+            SipDialogPath dialogPath = createDialogPath(deliveryStatus, remoteInstanceId);
 
             // Create MESSAGE request
             if (sLogger.isActivated()) {
@@ -305,6 +458,104 @@ public class ImdnManager extends Thread {
         }
     }
 
+    /**
+     * Delivery status sent via SIP MESSAGE without waiting for the response
+     */
+    private class DeliveryReportTransaction implements INotifySipTransactionResult {
+        private final DeliveryStatus mDeliveryStatus;
+
+        private final String mCpim;
+
+        private final SessionAuthenticationAgent mAuthenticationAgent;
+
+        private final SipDialogPath mDialogPath;
+
+        private DeliveryReportTransaction(DeliveryStatus deliveryStatus) {
+            mDeliveryStatus = deliveryStatus;
+            mCpim = buildCpimDeliveryReport(deliveryStatus);
+            mAuthenticationAgent = new SessionAuthenticationAgent(mImService.getImsModule());
+            mDialogPath = createDialogPath(deliveryStatus, null); // TODO: add sip.instance
+        }
+
+        /**
+         * Send the first MESSAGE request
+         * 
+         * @throws PayloadException
+         * @throws NetworkException
+         */
+        private void send() throws PayloadException, NetworkException {
+            if (sLogger.isActivated()) {
+                sLogger.debug("Send delivery status " + mDeliveryStatus.getStatus()
+                        + " for message " + mDeliveryStatus.getMsgId());
+            }
+            send(SipMessageFactory.createMessage(mDialogPath, FeatureTags.FEATURE_OMA_IM,
+                    CpimMessage.MIME_TYPE, mCpim.getBytes(UTF8)));
+        }
+
+        /**
+         * Send a MESSAGE request, the response is handled by
+         * {@link #handleResult(SipTransactionContext)}
+         * 
+         * @param msg MESSAGE request
+         * @throws PayloadException
+         * @throws NetworkException
+         */
+        private void send(SipRequest msg) throws PayloadException, NetworkException {
+            mImService.getImsModule().getSipManager().sendSipMessageAsync(msg, this,
+                    mResultExecutor);
+        }
+
+        @Override
+        public void handleResult(SipTransactionContext ctx) {
+            boolean pending = false;
+            try {
+                int statusCode = ctx.getStatusCode();
+                switch (statusCode) {
+                    case Response.PROXY_AUTHENTICATION_REQUIRED:
+                        send(createAuthenticatedMessage(ctx, mAuthenticationAgent, mDialogPath,
+                                mCpim));
+                        pending = true;
+                        break;
+                    case Response.OK:
+                    case Response.ACCEPTED:
+                        if (sLogger.isActivated()) {
+                            sLogger.info("20x OK response received");
+                        }
+                        onDeliveryStatusSent(mDeliveryStatus);
+                        break;
+                    default:
+                        throw new NetworkException(new StringBuilder(
+                                "Delivery report has failed: ").append(statusCode)
+                                .append(" response received").toString());
+                }
+            } catch (PayloadException e) {
+                sLogger.error("Failed to send delivery status for chatId : ".concat(mDeliveryStatus
+                        .getChatId()), e);
+            } catch (NetworkException e) {
+                if (sLogger.isActivated()) {
+                    sLogger.debug(e.getMessage());
+                }
+            } catch (InvalidArgumentException e) {
+                sLogger.error("Failed to send delivery status for chatId : ".concat(mDeliveryStatus
+                        .getChatId()), e);
+            } catch (ParseException e) {
+                sLogger.error("Failed to send delivery status for chatId : ".concat(mDeliveryStatus
+                        .getChatId()), e);
+            } catch (RuntimeException e) {
+                /*
+                 * Intentionally catch runtime exceptions as else it will abruptly end the thread
+                 * and eventually bring the whole system down, which is not intended.
+                 */
+                sLogger.error("Failed to send delivery status for chatId : ".concat(mDeliveryStatus
+                        .getChatId()), e);
+            } finally {
+                if (!pending) {
+                    startTransaction(endTransaction(mDeliveryStatus));
+                }
+            }
+        }
+    }
+
     /**
      * Delivery status
      */
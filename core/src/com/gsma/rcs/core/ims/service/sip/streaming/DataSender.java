@@ -24,7 +24,8 @@ package com.gsma.rcs.core.ims.service.sip.streaming;
 
 import com.gsma.rcs.core.ims.protocol.rtp.media.MediaInput;
 import com.gsma.rcs.core.ims.protocol.rtp.media.MediaSample;
-import com.gsma.rcs.utils.FifoBuffer;
+import com.gsma.rcs.utils.BoundedQueue;
+import com.gsma.rcs.utils.BoundedQueue.OverflowPolicy;
 
 /**
  * Data player in charge of sending data payload to the network via the RTP protocol
@@ -33,9 +34,14 @@ import com.gsma.rcs.utils.FifoBuffer;
  */
 public class DataSender implements MediaInput {
     /**
-     * Received frames
+     * Maximum number of frames waiting to be sent
      */
-    private FifoBuffer mFifo;
+    private static final int MAX_PENDING_SAMPLES = 64;
+
+    /**
+     * Received frames, the oldest frames are dropped when full
+     */
+    private BoundedQueue<MediaSample> mFifo;
 
     /**
      * Constructor
@@ -52,7 +58,7 @@ public class DataSender implements MediaInput {
     public void addFrame(byte[] data, long timestamp) {
         if (mFifo != null) {
             MediaSample sample = new MediaSample(data, timestamp);
-            mFifo.addObject(sample);
+            mFifo.put(sample);
         }
     }
 
@@ -60,7 +66,7 @@ public class DataSender implements MediaInput {
      * Open the player
      */
     public void open() {
-        mFifo = new FifoBuffer();
+        mFifo = new BoundedQueue<MediaSample>(MAX_PENDING_SAMPLES, OverflowPolicy.DROP_OLDEST);
     }
 
     /**
@@ -79,6 +85,6 @@ public class DataSender implements MediaInput {
      * @return Media sample
      */
     public MediaSample readSample() {
-        return (MediaSample) mFifo.getObject();
+        return mFifo.take();
     }
 }
@@ -40,11 +40,28 @@ public class AndroidDatagramConnection implements DatagramConnection {
      */
     private DatagramSocket connection = null;
 
+    /**
+     * Buffer of the received data
+     */
+    private final byte[] receiveBuffer = new byte[DatagramConnection.DEFAULT_DATAGRAM_SIZE];
+
     /**
      * Datagram Packet
      */
     private DatagramPacket packet = null;
 
+    /**
+     * Datagram Packet used to send data
+     */
+    private final DatagramPacket sendPacket = new DatagramPacket(new byte[0], 0);
+
+    /**
+     * Last remote address to which data have been sent and its resolved value
+     */
+    private String lastRemoteAddr;
+
+    private InetAddress lastRemoteAddress;
+
     /**
      * Connection timeout
      */
@@ -54,8 +71,7 @@ public class AndroidDatagramConnection implements DatagramConnection {
      * Constructor
      */
     public AndroidDatagramConnection() {
-        packet = new DatagramPacket(new byte[DatagramConnection.DEFAULT_DATAGRAM_SIZE],
-                DatagramConnection.DEFAULT_DATAGRAM_SIZE);
+        packet = new DatagramPacket(receiveBuffer, DatagramConnection.DEFAULT_DATAGRAM_SIZE);
     }
 
     /**
@@ -108,13 +124,27 @@ public class AndroidDatagramConnection implements DatagramConnection {
      * @throws NetworkException
      */
     public byte[] receive() throws NetworkException {
+        int packetLength = receive(receiveBuffer, 0, receiveBuffer.length);
+        byte[] data = new byte[packetLength];
+        System.arraycopy(receiveBuffer, 0, data, 0, packetLength);
+        return data;
+    }
+
+    /**
+     * Receive data in a buffer provided by the caller
+     * 
+     * @param buffer Buffer
+     * @param offset Offset where to store the data in the buffer
+     * @param length Maximum length of the data
+     * @return Length of the data received
+     * @throws NetworkException
+     */
+    public int receive(byte[] buffer, int offset, int length) throws NetworkException {
         try {
-            packet.setLength(DatagramConnection.DEFAULT_DATAGRAM_SIZE);
+            /* The packet only wraps the buffer, nothing is allocated per datagram */
+            packet.setData(buffer, offset, length);
             connection.receive(packet);
-            int packetLength = packet.getLength();
-            byte[] data = new byte[packetLength];
-            System.arraycopy(packet.getData(), 0, data, 0, packetLength);
-            return data;
+            return packet.getLength();
         } catch (IOException e) {
             throw new NetworkException("Failed to receive datagram packet!", e);
         }
@@ -129,15 +159,34 @@ public class AndroidDatagramConnection implements DatagramConnection {
      * @throws NetworkException
      */
     public void send(String remoteAddr, int remotePort, byte[] data) throws NetworkException {
+        send(remoteAddr, remotePort, data, 0, data.length);
+    }
+
+    /**
+     * Send data from a part of a buffer
+     * 
+     * @param remoteAddr Remote address
+     * @param remotePort Remote port
+     * @param data Buffer holding the data
+     * @param offset Offset of the data in the buffer
+     * @param length Length of the data
+     * @throws NetworkException
+     */
+    public synchronized void send(String remoteAddr, int remotePort, byte[] data, int offset,
+            int length) throws NetworkException {
         try {
-            InetAddress address = InetAddress.getByName(remoteAddr);
-            DatagramPacket packet = new DatagramPacket(data, data.length, address, remotePort);
-            connection.send(packet);
+            if (!remoteAddr.equals(lastRemoteAddr)) {
+                lastRemoteAddress = InetAddress.getByName(remoteAddr);
+                lastRemoteAddr = remoteAddr;
+            }
+            sendPacket.setData(data, offset, length);
+            sendPacket.setAddress(lastRemoteAddress);
+            sendPacket.setPort(remotePort);
+            connection.send(sendPacket);
         } catch (IOException e) {
             throw new NetworkException(
                     "Failed to send data to remoteAddr : ".concat(remoteAddr), e);
         }
-
     }
 
     /**
@@ -66,6 +66,19 @@ public interface DatagramConnection extends Closeable {
      */
     public void send(String remoteAddr, int remotePort, byte[] data) throws NetworkException;
 
+    /**
+     * Send data from a part of a buffer
+     * 
+     * @param remoteAddr Remote address
+     * @param remotePort Remote port
+     * @param data Buffer holding the data
+     * @param offset Offset of the data in the buffer
+     * @param length Length of the data
+     * @throws NetworkException
+     */
+    public void send(String remoteAddr, int remotePort, byte[] data, int offset, int length)
+            throws NetworkException;
+
     /**
      * Receive data
      * 
@@ -74,6 +87,17 @@ public interface DatagramConnection extends Closeable {
      */
     public byte[] receive() throws NetworkException;
 
+    /**
+     * Receive data in a buffer provided by the caller, the data exceeding the buffer is discarded
+     * 
+     * @param buffer Buffer
+     * @param offset Offset where to store the data in the buffer
+     * @param length Maximum length of the data
+     * @return Length of the data received
+     * @throws NetworkException
+     */
+    public int receive(byte[] buffer, int offset, int length) throws NetworkException;
+
     /**
      * Returns the local address
      * 
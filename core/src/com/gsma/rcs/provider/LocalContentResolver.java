@@ -17,9 +17,12 @@
 package com.gsma.rcs.provider;
 
 import android.content.ContentProviderClient;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.net.Uri;
 
@@ -27,6 +30,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 
 /**
  * The purpose of this class is to allow query-/insert-/update-/delete- and stream operations
@@ -147,6 +151,29 @@ public class LocalContentResolver {
         }
     }
 
+    /**
+     * Handles requests to apply a batch of operations on a provider. The local providers apply a
+     * batch in a single transaction.
+     * 
+     * @param uri URI of the provider
+     * @param operations Operations to apply
+     * @return The results of the operations
+     * @throws OperationApplicationException
+     */
+    public final ContentProviderResult[] applyBatch(Uri uri,
+            ArrayList<ContentProviderOperation> operations) throws OperationApplicationException {
+        ContentProviderClient contentProviderClient = null;
+        try {
+            contentProviderClient = mContentResolver.acquireContentProviderClient(uri);
+            return contentProviderClient.getLocalContentProvider().applyBatch(operations);
+
+        } finally {
+            if (contentProviderClient != null) {
+                contentProviderClient.release();
+            }
+        }
+    }
+
     /**
      * Create and return a new auto-close input stream for this URI
      * 
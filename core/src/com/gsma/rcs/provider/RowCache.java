@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.provider;
+
+import android.content.ContentValues;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of provider rows keyed by their identifier<br>
+ * A row is loaded once with all its columns and then answers the single column getters of the
+ * logs. The cached rows are never modified: a write through replaces the row by an updated copy, so
+ * that a row returned by get() can be read without holding any lock. The least recently used rows
+ * are evicted once the cache is full.
+ * <p>
+ * The cache relies on the rows being only written through its owner, which must call update() or
+ * remove() after each write. A row loaded from the provider is only stored if no write happened
+ * since the load started (see getModificationCount()), so a load racing with a write can not store
+ * an outdated row.
+ */
+public class RowCache {
+
+    private final LinkedHashMap<String, ContentValues> mRows;
+
+    private long mModificationCount;
+
+    private long mHits;
+
+    private long mMisses;
+
+    /**
+     * Constructor
+     *
+     * @param maxSize Maximum number of cached rows
+     */
+    public RowCache(final int maxSize) {
+        mRows = new LinkedHashMap<String, ContentValues>(maxSize, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ContentValues> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns a cached row
+     *
+     * @param id Row identifier
+     * @return Row or null if it is not cached
+     */
+    public synchronized ContentValues get(String id) {
+        ContentValues row = mRows.get(id);
+        if (row == null) {
+            mMisses++;
+        } else {
+            mHits++;
+        }
+        return row;
+    }
+
+    /**
+     * Returns the number of writes applied to the cache, to be read before loading a row
+     *
+     * @return Modification count
+     */
+    public synchronized long getModificationCount() {
+        return mModificationCount;
+    }
+
+    /**
+     * Stores a row loaded from the provider
+     *
+     * @param id Row identifier
+     * @param row Row with all its columns
+     * @param modificationCount Modification count read before the row was loaded
+     */
+    public synchronized void put(String id, ContentValues row, long modificationCount) {
+        if (modificationCount != mModificationCount) {
+            /* The row may have been written meanwhile */
+            return;
+        }
+        mRows.put(id, row);
+    }
+
+    /**
+     * Writes through the values updated in a row of the provider
+     *
+     * @param id Row identifier
+     * @param values Updated columns
+     */
+    public synchronized void update(String id, ContentValues values) {
+        mModificationCount++;
+        ContentValues row = mRows.get(id);
+        if (row == null) {
+            return;
+        }
+        ContentValues updatedRow = new ContentValues(row);
+        updatedRow.putAll(values);
+        mRows.put(id, updatedRow);
+    }
+
+    /**
+     * Removes a row, to be called when a row is inserted, deleted or updated in a way that can not
+     * be written through
+     *
+     * @param id Row identifier
+     */
+    public synchronized void remove(String id) {
+        mModificationCount++;
+        mRows.remove(id);
+    }
+
+    /**
+     * Removes all the rows
+     */
+    public synchronized void clear() {
+        mModificationCount++;
+        mRows.clear();
+    }
+
+    /**
+     * Returns the number of cached rows
+     *
+     * @return Size
+     */
+    public synchronized int size() {
+        return mRows.size();
+    }
+
+    /**
+     * Returns the number of get() answered from the cache
+     *
+     * @return Hits
+     */
+    public synchronized long getHits() {
+        return mHits;
+    }
+
+    /**
+     * Returns the number of get() which had to load the row from the provider
+     *
+     * @return Misses
+     */
+    public synchronized long getMisses() {
+        return mMisses;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long lookups = mHits + mMisses;
+        return new StringBuilder("RowCache: size=").append(mRows.size()).append(", hits=")
+                .append(mHits).append(", misses=").append(mMisses).append(", hitRatio=")
+                .append(lookups == 0 ? 0 : mHits * 100 / lookups).append("%").toString();
+    }
+}
@@ -28,6 +28,7 @@ import com.gsma.rcs.core.ims.service.im.filetransfer.http.FileTransferHttpInfoDo
 import com.gsma.rcs.core.ims.service.im.filetransfer.http.FileTransferHttpThumbnail;
 import com.gsma.rcs.provider.CursorUtil;
 import com.gsma.rcs.provider.LocalContentResolver;
+import com.gsma.rcs.provider.RowCache;
 import com.gsma.rcs.provider.fthttp.FtHttpResume;
 import com.gsma.rcs.provider.fthttp.FtHttpResumeDownload;
 import com.gsma.rcs.provider.fthttp.FtHttpResumeUpload;
@@ -44,6 +45,7 @@ import com.gsma.services.rcs.groupdelivery.GroupDeliveryInfo;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.net.Uri;
 import android.text.TextUtils;
 
@@ -102,14 +104,24 @@ public class FileTransferLog implements IFileTransferLog {
         FileTransferData.KEY_FT_ID
     };
 
-    private static final int FIRST_COLUMN_IDX = 0;
-
     private final LocalContentResolver mLocalContentResolver;
 
     private final GroupDeliveryInfoLog mGroupChatDeliveryInfoLog;
 
     private final RcsSettings mRcsSettings;
 
+    /**
+     * File transfer rows read by the getters, written through by the setters
+     */
+    private final RowCache mRowCache = new RowCache(MAX_CACHED_FILE_TRANSFERS);
+
+    /**
+     * Orders the provider updates and their write through to the row cache
+     */
+    private final Object mUpdateLock = new Object();
+
+    private static final int MAX_CACHED_FILE_TRANSFERS = 50;
+
     private static final Logger logger = Logger.getLogger(FileTransferLog.class.getSimpleName());
 
     /**
@@ -170,6 +182,7 @@ public class FileTransferLog implements IFileTransferLog {
         values.put(FileTransferData.KEY_EXPIRED_DELIVERY, 0);
         values.put(FileTransferData.KEY_FILE_EXPIRATION, fileExpiration);
         mLocalContentResolver.insert(FileTransferData.CONTENT_URI, values);
+        mRowCache.remove(fileTransferId);
     }
 
     @Override
@@ -211,6 +224,7 @@ public class FileTransferLog implements IFileTransferLog {
         }
         values.put(FileTransferData.KEY_FILE_EXPIRATION, FileTransferData.UNKNOWN_EXPIRATION);
         mLocalContentResolver.insert(FileTransferData.CONTENT_URI, values);
+        mRowCache.remove(fileTransferId);
 
         try {
             for (ContactId contact : recipients) {
@@ -229,6 +243,8 @@ public class FileTransferLog implements IFileTransferLog {
             mLocalContentResolver.delete(
                     Uri.withAppendedPath(GroupDeliveryInfoData.CONTENT_URI, fileTransferId), null,
                     null);
+            mRowCache.remove(fileTransferId);
+            mGroupChatDeliveryInfoLog.removeRecipients(Collections.singleton(fileTransferId));
             /* TODO: Throw exception */
         }
     }
@@ -277,6 +293,7 @@ public class FileTransferLog implements IFileTransferLog {
         }
         values.put(FileTransferData.KEY_FILE_EXPIRATION, fileExpiration);
         mLocalContentResolver.insert(FileTransferData.CONTENT_URI, values);
+        mRowCache.remove(fileTransferId);
     }
 
     /**
@@ -309,9 +326,7 @@ public class FileTransferLog implements IFileTransferLog {
         ContentValues values = new ContentValues();
         values.put(FileTransferData.KEY_STATE, state.toInt());
         values.put(FileTransferData.KEY_REASON_CODE, reasonCode.toInt());
-        return mLocalContentResolver.update(
-                Uri.withAppendedPath(FileTransferData.CONTENT_URI, fileTransferId), values, null,
-                null) > 0;
+        return updateFileTransfer(fileTransferId, values, null);
     }
 
     @Override
@@ -322,9 +337,7 @@ public class FileTransferLog implements IFileTransferLog {
         }
         ContentValues values = new ContentValues();
         values.put(FileTransferData.KEY_READ_STATUS, ReadStatus.READ.toInt());
-        if (mLocalContentResolver.update(
-                Uri.withAppendedPath(FileTransferData.CONTENT_URI, fileTransferId), values, null,
-                null) < 1) {
+        if (!updateFileTransfer(fileTransferId, values, null)) {
             /* TODO: Throw exception */
             if (logger.isActivated()) {
                 logger.warn("There was no file with fileTransferId '" + fileTransferId
@@ -337,9 +350,7 @@ public class FileTransferLog implements IFileTransferLog {
     public boolean setFileTransferProgress(String fileTransferId, long currentSize) {
         ContentValues values = new ContentValues();
         values.put(FileTransferData.KEY_TRANSFERRED, currentSize);
-        return mLocalContentResolver.update(
-                Uri.withAppendedPath(FileTransferData.CONTENT_URI, fileTransferId), values, null,
-                null) > 0;
+        return updateFileTransfer(fileTransferId, values, null);
     }
 
     @Override
@@ -356,9 +367,7 @@ public class FileTransferLog implements IFileTransferLog {
         values.put(FileTransferData.KEY_FILE_EXPIRATION, fileExpiration);
         values.put(FileTransferData.KEY_FILEICON_EXPIRATION, fileIconExpiration);
         values.put(FileTransferData.KEY_DELIVERY_EXPIRATION, deliveryExpiration);
-        return mLocalContentResolver.update(
-                Uri.withAppendedPath(FileTransferData.CONTENT_URI, fileTransferId), values, null,
-                null) > 0;
+        return updateFileTransfer(fileTransferId, values, null);
     }
 
     @Override
@@ -383,9 +392,7 @@ public class FileTransferLog implements IFileTransferLog {
         }
         ContentValues values = new ContentValues();
         values.put(FileTransferData.KEY_UPLOAD_TID, tId);
-        return mLocalContentResolver.update(
-                Uri.withAppendedPath(FileTransferData.CONTENT_URI, fileTransferId), values, null,
-                null) > 0;
+        return updateFileTransfer(fileTransferId, values, null);
     }
 
     @Override
@@ -397,9 +404,7 @@ public class FileTransferLog implements IFileTransferLog {
         }
         ContentValues values = new ContentValues();
         values.put(FileTransferData.KEY_DOWNLOAD_URI, downloadAddress.toString());
-        return mLocalContentResolver.update(
-                Uri.withAppendedPath(FileTransferData.CONTENT_URI, fileTransferId), values, null,
-                null) > 0;
+        return updateFileTransfer(fileTransferId, values, null);
     }
 
     @Override
@@ -410,9 +415,7 @@ public class FileTransferLog implements IFileTransferLog {
         }
         ContentValues values = new ContentValues();
         values.put(FileTransferData.KEY_REMOTE_SIP_ID, remoteInstanceId);
-        return mLocalContentResolver.update(
-                Uri.withAppendedPath(FileTransferData.CONTENT_URI, fileTransferId), values, null,
-                null) > 0;
+        return updateFileTransfer(fileTransferId, values, null);
     }
 
     @Override
@@ -539,63 +542,82 @@ public class FileTransferLog implements IFileTransferLog {
         }
     }
 
-    private Cursor getFileTransferData(String columnName, String fileTransferId) {
-        String[] projection = {
-            columnName
-        };
-        Uri contentUri = Uri.withAppendedPath(FileTransferData.CONTENT_URI, fileTransferId);
-        Cursor cursor = mLocalContentResolver.query(contentUri, projection, null, null, null);
-        CursorUtil.assertCursorIsNotNull(cursor, contentUri);
-        if (!cursor.moveToNext()) {
-            CursorUtil.close(cursor);
-            return null;
+    /**
+     * Returns the row of a file transfer, from the row cache or else loaded with all its columns
+     * 
+     * @param fileTransferId File transfer ID
+     * @return Row or null if there is no such file transfer
+     */
+    private ContentValues getFileTransferRow(String fileTransferId) {
+        ContentValues row = mRowCache.get(fileTransferId);
+        if (row != null) {
+            return row;
         }
-        return cursor;
-    }
-
-    private Integer getDataAsInteger(Cursor cursor) {
+        long modificationCount = mRowCache.getModificationCount();
+        Uri contentUri = Uri.withAppendedPath(FileTransferData.CONTENT_URI, fileTransferId);
+        Cursor cursor = null;
         try {
-            if (cursor.isNull(FIRST_COLUMN_IDX)) {
+            cursor = mLocalContentResolver.query(contentUri, null, null, null, null);
+            CursorUtil.assertCursorIsNotNull(cursor, contentUri);
+            if (!cursor.moveToNext()) {
                 return null;
             }
-            return cursor.getInt(FIRST_COLUMN_IDX);
-
+            row = new ContentValues();
+            DatabaseUtils.cursorRowToContentValues(cursor, row);
         } finally {
             CursorUtil.close(cursor);
         }
+        mRowCache.put(fileTransferId, row, modificationCount);
+        return row;
     }
 
-    private Long getDataAsLong(Cursor cursor) {
-        try {
-            if (cursor.isNull(FIRST_COLUMN_IDX)) {
-                return null;
+    /**
+     * Updates a file transfer and writes the update through to the row cache
+     * 
+     * @param fileTransferId File transfer ID
+     * @param values Updated columns
+     * @param selection Additional selection or null
+     * @return True if the file transfer was updated
+     */
+    private boolean updateFileTransfer(String fileTransferId, ContentValues values,
+            String selection) {
+        synchronized (mUpdateLock) {
+            if (mLocalContentResolver.update(
+                    Uri.withAppendedPath(FileTransferData.CONTENT_URI, fileTransferId), values,
+                    selection, null) < 1) {
+                mRowCache.remove(fileTransferId);
+                return false;
             }
-            return cursor.getLong(FIRST_COLUMN_IDX);
-
-        } finally {
-            CursorUtil.close(cursor);
+            mRowCache.update(fileTransferId, values);
+            return true;
         }
     }
 
-    private String getDataAsString(Cursor cursor) {
-        try {
-            return cursor.getString(FIRST_COLUMN_IDX);
-
-        } finally {
-            CursorUtil.close(cursor);
+    /**
+     * Removes file transfers deleted from the provider from the row cache
+     * 
+     * @param fileTransferIds File transfer IDs
+     */
+    /* package private */void removeCachedFileTransfers(Set<String> fileTransferIds) {
+        for (String fileTransferId : fileTransferIds) {
+            mRowCache.remove(fileTransferId);
         }
     }
 
-    private Boolean getDataAsBoolean(Cursor cursor) {
-        try {
-            if (cursor.isNull(FIRST_COLUMN_IDX)) {
-                return null;
-            }
-            return cursor.getInt(FIRST_COLUMN_IDX) == 1;
+    /**
+     * Removes all file transfers from the row cache
+     */
+    /* package private */void clearCachedFileTransfers() {
+        mRowCache.clear();
+    }
 
-        } finally {
-            CursorUtil.close(cursor);
-        }
+    /**
+     * Returns the row cache of the file transfers
+     * 
+     * @return Row cache
+     */
+    /* package private */RowCache getRowCache() {
+        return mRowCache;
     }
 
     @Override
@@ -608,11 +630,11 @@ public class FileTransferLog implements IFileTransferLog {
 
     @Override
     public String getFileTransferIcon(String fileTransferId) {
-        Cursor cursor = getFileTransferData(FileTransferData.KEY_FILEICON, fileTransferId);
-        if (cursor == null) {
+        ContentValues row = getFileTransferRow(fileTransferId);
+        if (row == null) {
             return null;
         }
-        return getDataAsString(cursor);
+        return row.getAsString(FileTransferData.KEY_FILEICON);
     }
 
     @Override
@@ -620,11 +642,11 @@ public class FileTransferLog implements IFileTransferLog {
         if (logger.isActivated()) {
             logger.debug("Get file transfer state for ".concat(fileTransferId));
         }
-        Cursor cursor = getFileTransferData(FileTransferData.KEY_STATE, fileTransferId);
-        if (cursor == null) {
+        ContentValues row = getFileTransferRow(fileTransferId);
+        if (row == null) {
             return null;
         }
-        return State.valueOf(getDataAsInteger(cursor));
+        return State.valueOf(row.getAsInteger(FileTransferData.KEY_STATE));
     }
 
     @Override
@@ -632,11 +654,11 @@ public class FileTransferLog implements IFileTransferLog {
         if (logger.isActivated()) {
             logger.debug("Get file transfer reason code for ".concat(fileTransferId));
         }
-        Cursor cursor = getFileTransferData(FileTransferData.KEY_REASON_CODE, fileTransferId);
-        if (cursor == null) {
+        ContentValues row = getFileTransferRow(fileTransferId);
+        if (row == null) {
             return null;
         }
-        return ReasonCode.valueOf(getDataAsInteger(cursor));
+        return ReasonCode.valueOf(row.getAsInteger(FileTransferData.KEY_REASON_CODE));
     }
 
     @Override
@@ -644,11 +666,11 @@ public class FileTransferLog implements IFileTransferLog {
         if (logger.isActivated()) {
             logger.debug("Get file transfer timestamp for ".concat(fileTransferId));
         }
-        Cursor cursor = getFileTransferData(FileTransferData.KEY_TIMESTAMP, fileTransferId);
-        if (cursor == null) {
+        ContentValues row = getFileTransferRow(fileTransferId);
+        if (row == null) {
             return null;
         }
-        return getDataAsLong(cursor);
+        return row.getAsLong(FileTransferData.KEY_TIMESTAMP);
     }
 
     @Override
@@ -656,29 +678,33 @@ public class FileTransferLog implements IFileTransferLog {
         if (logger.isActivated()) {
             logger.debug("Get file transfer sent timestamp for ".concat(fileTransferId));
         }
-        Cursor cursor = getFileTransferData(FileTransferData.KEY_TIMESTAMP_SENT, fileTransferId);
-        if (cursor == null) {
+        ContentValues row = getFileTransferRow(fileTransferId);
+        if (row == null) {
             return null;
         }
-        return getDataAsLong(cursor);
+        return row.getAsLong(FileTransferData.KEY_TIMESTAMP_SENT);
     }
 
     @Override
     public String getFileTransferChatId(String fileTransferId) {
-        Cursor cursor = getFileTransferData(FileTransferData.KEY_CHAT_ID, fileTransferId);
-        if (cursor == null) {
+        ContentValues row = getFileTransferRow(fileTransferId);
+        if (row == null) {
             return null;
         }
-        return getDataAsString(cursor);
+        return row.getAsString(FileTransferData.KEY_CHAT_ID);
     }
 
     @Override
     public Boolean isFileTransferExpiredDelivery(String fileTransferId) {
-        Cursor cursor = getFileTransferData(FileTransferData.KEY_EXPIRED_DELIVERY, fileTransferId);
-        if (cursor == null) {
+        ContentValues row = getFileTransferRow(fileTransferId);
+        if (row == null) {
             return null;
         }
-        return getDataAsBoolean(cursor);
+        Integer expiredDelivery = row.getAsInteger(FileTransferData.KEY_EXPIRED_DELIVERY);
+        if (expiredDelivery == null) {
+            return null;
+        }
+        return expiredDelivery == 1;
     }
 
     @Override
@@ -796,9 +822,7 @@ public class FileTransferLog implements IFileTransferLog {
         values.put(FileTransferData.KEY_REASON_CODE, reasonCode.toInt());
         values.put(FileTransferData.KEY_TIMESTAMP, timestamp);
         values.put(FileTransferData.KEY_TIMESTAMP_SENT, timestampSent);
-        return mLocalContentResolver.update(
-                Uri.withAppendedPath(FileTransferData.CONTENT_URI, fileTransferId), values, null,
-                null) > 0;
+        return updateFileTransfer(fileTransferId, values, null);
     }
 
     public boolean setFileTransferDelivered(String fileTransferId, long timestampDelivered) {
@@ -814,9 +838,7 @@ public class FileTransferLog implements IFileTransferLog {
         values.put(FileTransferData.KEY_TIMESTAMP_DELIVERED, timestampDelivered);
         values.put(FileTransferData.KEY_EXPIRED_DELIVERY, 0);
 
-        return mLocalContentResolver.update(
-                Uri.withAppendedPath(FileTransferData.CONTENT_URI, fileTransferId), values,
-                SELECTION_BY_NOT_DISPLAYED, null) > 0;
+        return updateFileTransfer(fileTransferId, values, SELECTION_BY_NOT_DISPLAYED);
     }
 
     public boolean setFileTransferDisplayed(String fileTransferId, long timestampDisplayed) {
@@ -833,9 +855,7 @@ public class FileTransferLog implements IFileTransferLog {
         values.put(FileTransferData.KEY_TIMESTAMP_DISPLAYED, timestampDisplayed);
         values.put(FileTransferData.KEY_EXPIRED_DELIVERY, 0);
 
-        return mLocalContentResolver.update(
-                Uri.withAppendedPath(FileTransferData.CONTENT_URI, fileTransferId), values, null,
-                null) > 0;
+        return updateFileTransfer(fileTransferId, values, null);
     }
 
     @Override
@@ -849,17 +869,20 @@ public class FileTransferLog implements IFileTransferLog {
         }
         String selection = new StringBuilder(FileTransferData.KEY_FT_ID).append(" IN (")
                 .append(TextUtils.join(",", parameters)).append(")").toString();
-        mLocalContentResolver.update(FileTransferData.CONTENT_URI, values, selection,
-                fileTransferIds.toArray(new String[fileTransferIds.size()]));
+        synchronized (mUpdateLock) {
+            mLocalContentResolver.update(FileTransferData.CONTENT_URI, values, selection,
+                    fileTransferIds.toArray(new String[fileTransferIds.size()]));
+            for (String fileTransferId : fileTransferIds) {
+                mRowCache.update(fileTransferId, values);
+            }
+        }
     }
 
     @Override
     public boolean setFileTransferDeliveryExpired(String fileTransferId) {
         ContentValues values = new ContentValues();
         values.put(FileTransferData.KEY_EXPIRED_DELIVERY, 1);
-        return mLocalContentResolver.update(
-                Uri.withAppendedPath(FileTransferData.CONTENT_URI, fileTransferId), values, null,
-                null) > 0;
+        return updateFileTransfer(fileTransferId, values, null);
     }
 
     @Override
@@ -887,9 +910,7 @@ public class FileTransferLog implements IFileTransferLog {
             values.put(FileTransferData.KEY_FILEICON_MIME_TYPE, fileIcon.getMimeType());
             values.put(FileTransferData.KEY_FILEICON_EXPIRATION, fileIcon.getExpiration());
         }
-        mLocalContentResolver.update(
-                Uri.withAppendedPath(FileTransferData.CONTENT_URI, fileTransferId), values, null,
-                null);
+        updateFileTransfer(fileTransferId, values, null);
     }
 
     @Override
@@ -942,9 +963,7 @@ public class FileTransferLog implements IFileTransferLog {
         ContentValues values = new ContentValues();
         values.put(FileTransferData.KEY_TIMESTAMP, timestamp);
         values.put(FileTransferData.KEY_TIMESTAMP_SENT, timestampSent);
-        mLocalContentResolver.update(
-                Uri.withAppendedPath(FileTransferData.CONTENT_URI, fileTransferId), values, null,
-                null);
+        updateFileTransfer(fileTransferId, values, null);
     }
 
     @Override
@@ -958,8 +977,6 @@ public class FileTransferLog implements IFileTransferLog {
         values.put(FileTransferData.KEY_STATE, State.TRANSFERRED.toInt());
         values.put(FileTransferData.KEY_REASON_CODE, ReasonCode.UNSPECIFIED.toInt());
         values.put(FileTransferData.KEY_DELIVERY_EXPIRATION, deliveryExpiration);
-        return mLocalContentResolver.update(
-                Uri.withAppendedPath(FileTransferData.CONTENT_URI, fileTransferId), values, null,
-                null) > 0;
+        return updateFileTransfer(fileTransferId, values, null);
     }
 }
@@ -125,6 +125,7 @@ public class GroupChatMessageDeleteTask extends DeleteTask.GroupedByChatId {
 
     @Override
     protected void onCompleted(String chatId, Set<String> msgIds) {
+        mChatService.removeCachedChatMessages(msgIds);
         mChatService.broadcastGroupChatMessagesDeleted(chatId, msgIds);
     }
 
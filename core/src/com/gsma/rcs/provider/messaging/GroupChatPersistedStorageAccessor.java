@@ -199,6 +199,10 @@ public class GroupChatPersistedStorageAccessor {
                 status, reasonCode);
     }
 
+    public void executeAfterPendingDeliveryInfoUpdates(Runnable action) {
+        mMessagingLog.executeAfterPendingDeliveryInfoUpdates(action);
+    }
+
     public boolean isDeliveredToAllRecipients(String msgId) {
         return mMessagingLog.isDeliveredToAllRecipients(msgId);
     }
@@ -24,48 +24,177 @@ package com.gsma.rcs.provider.messaging;
 
 import com.gsma.rcs.provider.CursorUtil;
 import com.gsma.rcs.provider.LocalContentResolver;
+import com.gsma.rcs.utils.logger.Logger;
 import com.gsma.services.rcs.contact.ContactId;
 import com.gsma.services.rcs.groupdelivery.GroupDeliveryInfo;
 import com.gsma.services.rcs.groupdelivery.GroupDeliveryInfo.ReasonCode;
 import com.gsma.services.rcs.groupdelivery.GroupDeliveryInfo.Status;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.net.Uri;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
 /**
- * Class to interface the deliveryinfo table
+ * Class to interface the deliveryinfo table<br>
+ * The delivered and displayed reports of the recipients of a group chat message or file are
+ * written behind: they are decided against the statuses of the recipients kept in memory for the
+ * recently reported messages, then gathered and applied in a single transaction per
+ * {@link #BATCH_WINDOW}. The actions depending on these updates being persisted, like the
+ * broadcasts to the clients, are run once the batch is committed through
+ * {@link #executeAfterPendingUpdates(Runnable)}. They are always run from the writer thread, in
+ * the order they were queued, whichever thread writes the batch.
  */
 public class GroupDeliveryInfoLog implements IGroupDeliveryInfoLog {
 
+    /**
+     * Period during which the delivered and displayed updates are gathered in a batch (in
+     * milliseconds)
+     */
+    private static final long BATCH_WINDOW = 100;
+
+    /**
+     * Maximum number of messages for which the statuses of the recipients are kept in memory
+     */
+    private static final int MAX_TRACKED_MESSAGES = 32;
+
     private static final String SELECTION_DELIVERY_INFO_BY_MSG_ID_AND_CONTACT = new StringBuilder(
             GroupDeliveryInfoData.KEY_ID).append("=? AND ")
             .append(GroupDeliveryInfoData.KEY_CONTACT).append("=?").toString();
 
-    private static final String SELECTION_DELIVERY_INFO_BY_MSG_ID_AND_CONTACT_EXCLUDE_DISPLAYED = new StringBuilder(
-            GroupDeliveryInfoData.KEY_ID).append("=? AND ")
-            .append(GroupDeliveryInfoData.KEY_CONTACT).append("=?").append(" AND ")
-            .append(GroupDeliveryInfoData.KEY_STATUS).append("<>").append(Status.DISPLAYED.toInt())
-            .toString();
-
-    private static final String SELECTION_CONTACTS_NOT_RECEIVED_MESSAGE = new StringBuilder(
-            GroupDeliveryInfoData.KEY_STATUS).append("=").append(Status.NOT_DELIVERED.toInt())
-            .append(" OR (").append(GroupDeliveryInfoData.KEY_STATUS).append("=")
-            .append(Status.FAILED.toInt()).append(" AND ")
-            .append(GroupDeliveryInfoData.KEY_REASON_CODE).append(" IN (")
-            .append(ReasonCode.FAILED_DELIVERY.toInt()).append(",")
-            .append(ReasonCode.FAILED_DISPLAY.toInt()).append("))").toString();
-
-    private static final String SELECTION_DELIVERY_INFO_NOT_DISPLAYED = new StringBuilder(
-            GroupDeliveryInfoData.KEY_STATUS).append("<>").append(Status.DISPLAYED.toInt())
-            .toString();
-
-    private static final String[] PROJECTION_MESSAGE_ID = new String[] {
-        GroupDeliveryInfoData.KEY_ID
+    private static final String[] PROJECTION_CONTACT_STATUS_REASON_CODE = new String[] {
+            GroupDeliveryInfoData.KEY_CONTACT, GroupDeliveryInfoData.KEY_STATUS,
+            GroupDeliveryInfoData.KEY_REASON_CODE
     };
 
+    private static final Logger sLogger = Logger.getLogger(GroupDeliveryInfoLog.class
+            .getSimpleName());
+
+    private static final ScheduledExecutorService sScheduler = new ScheduledThreadPoolExecutor(1,
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "GroupDeliveryInfoWriter");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
     private final LocalContentResolver mLocalContentResolver;
 
+    /**
+     * Statuses of the recipients of the recently reported messages, by message ID
+     */
+    private final LinkedHashMap<String, Recipients> mRecipients = new LinkedHashMap<String, Recipients>(
+            MAX_TRACKED_MESSAGES, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Recipients> eldest) {
+            return size() > MAX_TRACKED_MESSAGES;
+        }
+    };
+
+    private ArrayList<ContentProviderOperation> mPendingUpdates = new ArrayList<ContentProviderOperation>();
+
+    private List<Runnable> mPendingActions = new ArrayList<Runnable>();
+
+    private boolean mFlushScheduled = false;
+
+    /**
+     * Serializes the flushes so that the batches are committed and their actions dispatched in
+     * order
+     */
+    private final Object mFlushLock = new Object();
+
+    private final Runnable mFlushTask = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                flushPendingUpdates();
+            } catch (RuntimeException e) {
+                /*
+                 * Intentionally catch runtime exceptions as else it will abruptly end the shared
+                 * scheduler thread.
+                 */
+                sLogger.error("Failed to write group delivery info updates!", e);
+            }
+        }
+    };
+
+    /**
+     * Statuses of the recipients of a message and the number of recipients which have not yet
+     * received or displayed it
+     */
+    private static final class Recipients {
+
+        private final Map<String, int[]> mStatuses = new HashMap<String, int[]>();
+
+        private int mNotReceivedCount;
+
+        private int mNotDisplayedCount;
+
+        private static boolean isNotReceived(int status, int reasonCode) {
+            if (Status.NOT_DELIVERED.toInt() == status) {
+                return true;
+            }
+            return Status.FAILED.toInt() == status
+                    && (ReasonCode.FAILED_DELIVERY.toInt() == reasonCode || ReasonCode.FAILED_DISPLAY
+                            .toInt() == reasonCode);
+        }
+
+        /**
+         * Returns the status of a recipient
+         * 
+         * @param contact Contact
+         * @return Status or -1 if there is no entry for this recipient
+         */
+        int getStatus(String contact) {
+            int[] status = mStatuses.get(contact);
+            return status == null ? -1 : status[0];
+        }
+
+        void setStatus(String contact, int status, int reasonCode) {
+            int[] oldStatus = mStatuses.put(contact, new int[] {
+                    status, reasonCode
+            });
+            if (oldStatus != null) {
+                if (isNotReceived(oldStatus[0], oldStatus[1])) {
+                    mNotReceivedCount--;
+                }
+                if (Status.DISPLAYED.toInt() != oldStatus[0]) {
+                    mNotDisplayedCount--;
+                }
+            }
+            if (isNotReceived(status, reasonCode)) {
+                mNotReceivedCount++;
+            }
+            if (Status.DISPLAYED.toInt() != status) {
+                mNotDisplayedCount++;
+            }
+        }
+
+        boolean isDeliveredToAll() {
+            return mNotReceivedCount == 0;
+        }
+
+        boolean isDisplayedByAll() {
+            return mNotDisplayedCount == 0;
+        }
+    }
+
     /**
      * Constructor
      * 
@@ -75,9 +204,218 @@ public class GroupDeliveryInfoLog implements IGroupDeliveryInfoLog {
         mLocalContentResolver = localContentResolver;
     }
 
+    /**
+     * Returns the statuses of the recipients of a message, loaded from the provider once the
+     * pending updates are written if they are not in memory
+     * 
+     * @param msgId Message ID
+     * @return Recipients
+     */
+    private Recipients getRecipients(String msgId) {
+        synchronized (this) {
+            Recipients recipients = mRecipients.get(msgId);
+            if (recipients != null) {
+                return recipients;
+            }
+        }
+        /* The entries of the message may have pending updates if it was evicted meanwhile */
+        flushPendingUpdates();
+        Recipients recipients = new Recipients();
+        Uri contentUri = Uri.withAppendedPath(GroupDeliveryInfoData.CONTENT_URI, msgId);
+        Cursor cursor = null;
+        try {
+            cursor = mLocalContentResolver.query(contentUri, PROJECTION_CONTACT_STATUS_REASON_CODE,
+                    null, null, null);
+            CursorUtil.assertCursorIsNotNull(cursor, contentUri);
+            int columnIdxContact = cursor.getColumnIndexOrThrow(GroupDeliveryInfoData.KEY_CONTACT);
+            int columnIdxStatus = cursor.getColumnIndexOrThrow(GroupDeliveryInfoData.KEY_STATUS);
+            int columnIdxReasonCode = cursor
+                    .getColumnIndexOrThrow(GroupDeliveryInfoData.KEY_REASON_CODE);
+            while (cursor.moveToNext()) {
+                recipients.setStatus(cursor.getString(columnIdxContact),
+                        cursor.getInt(columnIdxStatus), cursor.getInt(columnIdxReasonCode));
+            }
+        } finally {
+            CursorUtil.close(cursor);
+        }
+        synchronized (this) {
+            Recipients loadedRecipients = mRecipients.get(msgId);
+            if (loadedRecipients != null) {
+                return loadedRecipients;
+            }
+            mRecipients.put(msgId, recipients);
+            return recipients;
+        }
+    }
+
+    /**
+     * Queues an update of the provider, to be written with the next batch
+     * 
+     * @param operation Content provider operation
+     */
+    private void queueUpdate(ContentProviderOperation operation) {
+        mPendingUpdates.add(operation);
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (mFlushScheduled) {
+            return;
+        }
+        mFlushScheduled = true;
+        sScheduler.schedule(mFlushTask, BATCH_WINDOW, TimeUnit.MILLISECONDS);
+    }
+
+    private ContentProviderOperation createInsert(String chatId, String contact, String msgId,
+            Status status, ReasonCode reasonCode, long timestampDelivered, long timestampDisplayed) {
+        return ContentProviderOperation.newInsert(GroupDeliveryInfoData.CONTENT_URI)
+                .withValue(GroupDeliveryInfoData.KEY_CHAT_ID, chatId)
+                .withValue(GroupDeliveryInfoData.KEY_ID, msgId)
+                .withValue(GroupDeliveryInfoData.KEY_CONTACT, contact)
+                .withValue(GroupDeliveryInfoData.KEY_STATUS, status.toInt())
+                .withValue(GroupDeliveryInfoData.KEY_REASON_CODE, reasonCode.toInt())
+                .withValue(GroupDeliveryInfoData.KEY_TIMESTAMP_DELIVERED, timestampDelivered)
+                .withValue(GroupDeliveryInfoData.KEY_TIMESTAMP_DISPLAYED, timestampDisplayed)
+                .build();
+    }
+
+    /**
+     * Writes the pending delivered and displayed updates in a single transaction, then hands the
+     * actions which were waiting for them to the writer thread. The actions are never run from the
+     * calling thread, so that a caller flushing the updates before its own write does not run the
+     * actions queued for other messages, possibly under its own locks.
+     */
+    public void flushPendingUpdates() {
+        synchronized (mFlushLock) {
+            ArrayList<ContentProviderOperation> updates;
+            List<Runnable> actions;
+            synchronized (this) {
+                mFlushScheduled = false;
+                if (mPendingUpdates.isEmpty() && mPendingActions.isEmpty()) {
+                    return;
+                }
+                updates = mPendingUpdates;
+                actions = mPendingActions;
+                mPendingUpdates = new ArrayList<ContentProviderOperation>();
+                mPendingActions = new ArrayList<Runnable>();
+            }
+            if (!updates.isEmpty()) {
+                try {
+                    mLocalContentResolver.applyBatch(GroupDeliveryInfoData.CONTENT_URI, updates);
+                } catch (OperationApplicationException e) {
+                    applyUpdatesOneByOne(updates, e);
+                } catch (RuntimeException e) {
+                    /*
+                     * Intentionally catch runtime exceptions as a single failed update rolls back
+                     * the whole batch.
+                     */
+                    applyUpdatesOneByOne(updates, e);
+                }
+            }
+            if (!actions.isEmpty()) {
+                /* Dispatched under the flush lock so that the batches of actions stay in order */
+                sScheduler.execute(new ActionsTask(actions));
+            }
+        }
+    }
+
+    /**
+     * Runs the actions of a committed batch on the writer thread
+     */
+    private static final class ActionsTask implements Runnable {
+
+        private final List<Runnable> mActions;
+
+        ActionsTask(List<Runnable> actions) {
+            mActions = actions;
+        }
+
+        @Override
+        public void run() {
+            for (Runnable action : mActions) {
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    /*
+                     * Intentionally catch runtime exceptions as else it will abruptly end the shared
+                     * scheduler thread and skip the following actions.
+                     */
+                    sLogger.error("Failed to run action after group delivery info updates!", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies the updates of a failed batch one by one so that a single failure does not lose all
+     * the others
+     * 
+     * @param updates Updates of the batch
+     * @param cause Failure of the batch
+     */
+    private void applyUpdatesOneByOne(ArrayList<ContentProviderOperation> updates, Exception cause) {
+        if (sLogger.isActivated()) {
+            sLogger.warn(new StringBuilder("Failed to write a batch of ").append(updates.size())
+                    .append(" group delivery info updates: ").append(cause.getMessage())
+                    .toString());
+        }
+        ArrayList<ContentProviderOperation> update = new ArrayList<ContentProviderOperation>(1);
+        for (ContentProviderOperation operation : updates) {
+            update.clear();
+            update.add(operation);
+            try {
+                mLocalContentResolver.applyBatch(GroupDeliveryInfoData.CONTENT_URI, update);
+            } catch (OperationApplicationException e) {
+                sLogger.error("Failed to write group delivery info update!", e);
+            } catch (RuntimeException e) {
+                sLogger.error("Failed to write group delivery info update!", e);
+            }
+        }
+        /* The statuses in memory may no longer match the provider */
+        synchronized (this) {
+            mRecipients.clear();
+        }
+    }
+
+    /**
+     * Runs an action once the delivered and displayed updates made so far are written, from the
+     * writer thread and after the actions queued before it
+     * 
+     * @param action Action
+     */
+    public void executeAfterPendingUpdates(Runnable action) {
+        synchronized (this) {
+            mPendingActions.add(action);
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Forgets the statuses of the recipients of messages deleted from the provider
+     * 
+     * @param msgIds Message IDs
+     */
+    /* package private */void removeRecipients(Set<String> msgIds) {
+        synchronized (this) {
+            for (String msgId : msgIds) {
+                mRecipients.remove(msgId);
+            }
+        }
+    }
+
+    /**
+     * Forgets the statuses of the recipients of all messages
+     */
+    /* package private */void clearRecipients() {
+        synchronized (this) {
+            mRecipients.clear();
+        }
+    }
+
     @Override
     public Uri addGroupChatDeliveryInfoEntry(String chatId, ContactId contact, String msgId,
             Status status, ReasonCode reasonCode, long timestampDelivered, long timestampDisplayed) {
+        flushPendingUpdates();
         ContentValues values = new ContentValues();
         values.put(GroupDeliveryInfoData.KEY_CHAT_ID, chatId);
         values.put(GroupDeliveryInfoData.KEY_ID, msgId);
@@ -86,7 +424,14 @@ public class GroupDeliveryInfoLog implements IGroupDeliveryInfoLog {
         values.put(GroupDeliveryInfoData.KEY_REASON_CODE, reasonCode.toInt());
         values.put(GroupDeliveryInfoData.KEY_TIMESTAMP_DELIVERED, timestampDelivered);
         values.put(GroupDeliveryInfoData.KEY_TIMESTAMP_DISPLAYED, timestampDisplayed);
-        return mLocalContentResolver.insert(GroupDeliveryInfoData.CONTENT_URI, values);
+        Uri uri = mLocalContentResolver.insert(GroupDeliveryInfoData.CONTENT_URI, values);
+        synchronized (this) {
+            Recipients recipients = mRecipients.get(msgId);
+            if (recipients != null) {
+                recipients.setStatus(contact.toString(), status.toInt(), reasonCode.toInt());
+            }
+        }
+        return uri;
     }
 
     /**
@@ -120,42 +465,40 @@ public class GroupDeliveryInfoLog implements IGroupDeliveryInfoLog {
             default:
         }
 
-        return (mLocalContentResolver.update(GroupDeliveryInfoData.CONTENT_URI, values,
-                SELECTION_DELIVERY_INFO_BY_MSG_ID_AND_CONTACT, selectionArgs) >= 1);
+        /* Written at once as its caller broadcasts the new status straight away */
+        flushPendingUpdates();
+        if (mLocalContentResolver.update(GroupDeliveryInfoData.CONTENT_URI, values,
+                SELECTION_DELIVERY_INFO_BY_MSG_ID_AND_CONTACT, selectionArgs) < 1) {
+            return false;
+        }
+        synchronized (this) {
+            Recipients recipients = mRecipients.get(msgId);
+            if (recipients != null) {
+                recipients.setStatus(contact.toString(), status.toInt(), reasonCode.toInt());
+            }
+        }
+        return true;
     }
 
     @Override
     public boolean isDeliveredToAllRecipients(String msgId) {
-        Cursor cursor = null;
-        try {
-            cursor = mLocalContentResolver.query(
-                    Uri.withAppendedPath(GroupDeliveryInfoData.CONTENT_URI, msgId), null,
-                    SELECTION_CONTACTS_NOT_RECEIVED_MESSAGE, null, null);
-            CursorUtil.assertCursorIsNotNull(cursor, GroupDeliveryInfoData.CONTENT_URI);
-            return !cursor.moveToFirst();
-
-        } finally {
-            CursorUtil.close(cursor);
+        Recipients recipients = getRecipients(msgId);
+        synchronized (this) {
+            return recipients.isDeliveredToAll();
         }
     }
 
     @Override
     public boolean isDisplayedByAllRecipients(String msgId) {
-        Cursor cursor = null;
-        try {
-            Uri contentUri = Uri.withAppendedPath(GroupDeliveryInfoData.CONTENT_URI, msgId);
-            cursor = mLocalContentResolver.query(contentUri, null,
-                    SELECTION_DELIVERY_INFO_NOT_DISPLAYED, null, null);
-            CursorUtil.assertCursorIsNotNull(cursor, contentUri);
-            return !cursor.moveToFirst();
-
-        } finally {
-            CursorUtil.close(cursor);
+        Recipients recipients = getRecipients(msgId);
+        synchronized (this) {
+            return recipients.isDisplayedByAll();
         }
     }
 
     /**
-     * Set outgoing group chat message or file to delivered
+     * Set outgoing group chat message or file to delivered. The update is written with the next
+     * batch.
      * 
      * @param chatId Group chat ID
      * @param contact The contact ID for which the entry is to be updated
@@ -166,70 +509,69 @@ public class GroupDeliveryInfoLog implements IGroupDeliveryInfoLog {
             String msgId, long timestampDelivered) {
         GroupDeliveryInfo.Status status = GroupDeliveryInfo.Status.DELIVERED;
         GroupDeliveryInfo.ReasonCode reason = GroupDeliveryInfo.ReasonCode.UNSPECIFIED;
-
-        ContentValues values = new ContentValues();
-        values.put(GroupDeliveryInfoData.KEY_STATUS, status.toInt());
-        values.put(GroupDeliveryInfoData.KEY_TIMESTAMP_DELIVERED, timestampDelivered);
-        values.put(GroupDeliveryInfoData.KEY_REASON_CODE, reason.toInt());
-        String[] selectionArgs = new String[] {
-                msgId, contact.toString()
-        };
-
-        if (mLocalContentResolver.update(GroupDeliveryInfoData.CONTENT_URI, values,
-                SELECTION_DELIVERY_INFO_BY_MSG_ID_AND_CONTACT_EXCLUDE_DISPLAYED, selectionArgs) > 0) {
-            /* A matching GDI row was found and updated. */
-            return true;
-        }
-
-        Cursor cursor = null;
-        try {
-            Uri contentUri = GroupDeliveryInfoData.CONTENT_URI;
-            cursor = mLocalContentResolver.query(contentUri, PROJECTION_MESSAGE_ID,
-                    SELECTION_DELIVERY_INFO_BY_MSG_ID_AND_CONTACT, selectionArgs, null);
-            CursorUtil.assertCursorIsNotNull(cursor, contentUri);
-            if (cursor.getCount() < 1) {
+        String contactId = contact.toString();
+        Recipients recipients = getRecipients(msgId);
+        synchronized (this) {
+            int currentStatus = recipients.getStatus(contactId);
+            if (currentStatus == -1) {
                 /*
-                 * No entry updated means that there was no matching row. Adding row and setting
-                 * displayed timestamp to 0.
+                 * No matching row. Adding row and setting displayed timestamp to 0.
                  */
-                addGroupChatDeliveryInfoEntry(chatId, contact, msgId, status, reason,
-                        timestampDelivered, 0);
-                return true;
+                queueUpdate(createInsert(chatId, contactId, msgId, status, reason,
+                        timestampDelivered, 0));
+
+            } else if (Status.DISPLAYED.toInt() == currentStatus) {
+                /* A displayed entry shouldn't go back to delivered. */
+                return false;
+
+            } else {
+                queueUpdate(ContentProviderOperation
+                        .newUpdate(GroupDeliveryInfoData.CONTENT_URI)
+                        .withValue(GroupDeliveryInfoData.KEY_STATUS, status.toInt())
+                        .withValue(GroupDeliveryInfoData.KEY_TIMESTAMP_DELIVERED,
+                                timestampDelivered)
+                        .withValue(GroupDeliveryInfoData.KEY_REASON_CODE, reason.toInt())
+                        .withSelection(SELECTION_DELIVERY_INFO_BY_MSG_ID_AND_CONTACT, new String[] {
+                                msgId, contactId
+                        }).build());
             }
-            /*
-             * A matching row was found but since it was not already updated above we can assume it
-             * shouldn't be updated.
-             */
-            return false;
-        } finally {
-            CursorUtil.close(cursor);
+            recipients.setStatus(contactId, status.toInt(), reason.toInt());
+            return true;
         }
     }
 
+    /**
+     * Set outgoing group chat message or file to displayed. The update is written with the next
+     * batch.
+     */
     @Override
     public boolean setGroupChatDeliveryInfoDisplayed(String chatId, ContactId contact,
             String msgId, long timestampDisplayed) {
-        ContentValues values = new ContentValues();
         GroupDeliveryInfo.Status status = GroupDeliveryInfo.Status.DISPLAYED;
         GroupDeliveryInfo.ReasonCode reason = GroupDeliveryInfo.ReasonCode.UNSPECIFIED;
-
-        values.put(GroupDeliveryInfoData.KEY_STATUS, status.toInt());
-        values.put(GroupDeliveryInfoData.KEY_TIMESTAMP_DISPLAYED, timestampDisplayed);
-        values.put(GroupDeliveryInfoData.KEY_REASON_CODE, reason.toInt());
-        String[] selectionArgs = new String[] {
-                msgId, contact.toString()
-        };
-
-        if (mLocalContentResolver.update(GroupDeliveryInfoData.CONTENT_URI, values,
-                SELECTION_DELIVERY_INFO_BY_MSG_ID_AND_CONTACT, selectionArgs) < 1) {
-            /*
-             * No entry updated means that there was no matching row. Adding row and setting
-             * delivered timestamp to same as displayed timestamp. This is the most reasonable value
-             * we can set at this point.
-             */
-            addGroupChatDeliveryInfoEntry(chatId, contact, msgId, status, reason,
-                    timestampDisplayed, timestampDisplayed);
+        String contactId = contact.toString();
+        Recipients recipients = getRecipients(msgId);
+        synchronized (this) {
+            if (recipients.getStatus(contactId) == -1) {
+                /*
+                 * No matching row. Adding row and setting delivered timestamp to same as displayed
+                 * timestamp. This is the most reasonable value we can set at this point.
+                 */
+                queueUpdate(createInsert(chatId, contactId, msgId, status, reason,
+                        timestampDisplayed, timestampDisplayed));
+            } else {
+                queueUpdate(ContentProviderOperation
+                        .newUpdate(GroupDeliveryInfoData.CONTENT_URI)
+                        .withValue(GroupDeliveryInfoData.KEY_STATUS, status.toInt())
+                        .withValue(GroupDeliveryInfoData.KEY_TIMESTAMP_DISPLAYED,
+                                timestampDisplayed)
+                        .withValue(GroupDeliveryInfoData.KEY_REASON_CODE, reason.toInt())
+                        .withSelection(SELECTION_DELIVERY_INFO_BY_MSG_ID_AND_CONTACT, new String[] {
+                                msgId, contactId
+                        }).build());
+            }
+            recipients.setStatus(contactId, status.toInt(), reason.toInt());
+            return true;
         }
-        return true;
     }
 }
@@ -12,8 +12,12 @@ import com.gsma.rcs.utils.DatabaseUtils;
 import com.gsma.services.rcs.groupdelivery.GroupDeliveryInfoLog;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
@@ -21,6 +25,10 @@ import android.database.sqlite.SQLiteOpenHelper;
 import android.net.Uri;
 import android.text.TextUtils;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+
 /**
  * Group Delivery info provider of chat and file messages
  */
@@ -110,6 +118,21 @@ public class GroupDeliveryInfoProvider extends ContentProvider {
 
     private SQLiteOpenHelper mOpenHelper;
 
+    /**
+     * Notification URIs of the changes made by the batch applied by the current thread, notified
+     * once the batch is committed
+     */
+    private final ThreadLocal<Set<Uri>> mBatchNotificationUris = new ThreadLocal<Set<Uri>>();
+
+    private void notifyChange(Uri notificationUri) {
+        Set<Uri> batchNotificationUris = mBatchNotificationUris.get();
+        if (batchNotificationUris != null) {
+            batchNotificationUris.add(notificationUri);
+            return;
+        }
+        getContext().getContentResolver().notifyChange(notificationUri, null);
+    }
+
     private String getSelectionWithAppendedId(String selection) {
         if (TextUtils.isEmpty(selection)) {
             return SELECTION_WITH_ID_ONLY;
@@ -229,7 +252,7 @@ public class GroupDeliveryInfoProvider extends ContentProvider {
                 }
                 Uri notificationUri = Uri.withAppendedPath(GroupDeliveryInfoLog.CONTENT_URI,
                         appendedId);
-                getContext().getContentResolver().notifyChange(notificationUri, null);
+                notifyChange(notificationUri);
                 return notificationUri;
 
             case UriType.GroupDeliveryInfo.DELIVERY:
@@ -259,7 +282,7 @@ public class GroupDeliveryInfoProvider extends ContentProvider {
                 SQLiteDatabase db = mOpenHelper.getWritableDatabase();
                 int count = db.update(DATABASE_TABLE, values, selection, selectionArgs);
                 if (count > 0) {
-                    getContext().getContentResolver().notifyChange(notificationUri, null);
+                    notifyChange(notificationUri);
                 }
                 return count;
 
@@ -290,7 +313,7 @@ public class GroupDeliveryInfoProvider extends ContentProvider {
                 SQLiteDatabase db = mOpenHelper.getWritableDatabase();
                 int count = db.delete(DATABASE_TABLE, selection, selectionArgs);
                 if (count > 0) {
-                    getContext().getContentResolver().notifyChange(notificationUri, null);
+                    notifyChange(notificationUri);
                 }
                 return count;
 
@@ -305,4 +328,26 @@ public class GroupDeliveryInfoProvider extends ContentProvider {
                         .append(uri).append("!").toString());
         }
     }
+
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        Set<Uri> notificationUris = new HashSet<Uri>();
+        ContentProviderResult[] results;
+        mBatchNotificationUris.set(notificationUris);
+        db.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            mBatchNotificationUris.remove();
+        }
+        ContentResolver contentResolver = getContext().getContentResolver();
+        for (Uri notificationUri : notificationUris) {
+            contentResolver.notifyChange(notificationUri, null);
+        }
+        return results;
+    }
 }
@@ -123,6 +123,7 @@ public class GroupFileTransferDeleteTask extends DeleteTask.GroupedByChatId {
 
     @Override
     protected void onCompleted(String chatId, Set<String> transferIds) {
+        mFileTransferService.removeCachedFileTransfers(transferIds);
         mFileTransferService.broadcastGroupFileTransfersDeleted(chatId, transferIds);
     }
 
@@ -28,6 +28,7 @@ import com.gsma.rcs.core.ims.service.im.chat.ChatMessage;
 import com.gsma.rcs.core.ims.service.im.chat.ChatUtils;
 import com.gsma.rcs.provider.CursorUtil;
 import com.gsma.rcs.provider.LocalContentResolver;
+import com.gsma.rcs.provider.RowCache;
 import com.gsma.rcs.provider.settings.RcsSettings;
 import com.gsma.rcs.utils.ContactUtil;
 import com.gsma.rcs.utils.IdGenerator;
@@ -43,6 +44,7 @@ import com.gsma.services.rcs.groupdelivery.GroupDeliveryInfo;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.net.Uri;
 import android.text.TextUtils;
 
@@ -64,6 +66,18 @@ public class MessageLog implements IMessageLog {
 
     private final RcsSettings mRcsSettings;
 
+    /**
+     * Chat message rows read by the getters, written through by the setters
+     */
+    private final RowCache mRowCache = new RowCache(MAX_CACHED_MESSAGES);
+
+    /**
+     * Orders the provider updates and their write through to the row cache
+     */
+    private final Object mUpdateLock = new Object();
+
+    private static final int MAX_CACHED_MESSAGES = 100;
+
     private static final Logger sLogger = Logger.getLogger(MessageLog.class.getSimpleName());
 
     private static final String[] PROJECTION_MESSAGE_ID = new String[] {
@@ -79,8 +93,6 @@ public class MessageLog implements IMessageLog {
             .append("='").append(MimeType.GROUPCHAT_EVENT).append("' GROUP BY ")
             .append(MessageData.KEY_CONTACT).toString();
 
-    private static final int FIRST_COLUMN_IDX = 0;
-
     private static final String SELECTION_QUEUED_ONETOONE_CHAT_MESSAGES = new StringBuilder(
             MessageData.KEY_CHAT_ID).append("=? AND ").append(MessageData.KEY_STATUS).append("=")
             .append(Status.QUEUED.toInt()).toString();
@@ -149,6 +161,7 @@ public class MessageLog implements IMessageLog {
         values.put(MessageData.KEY_STATUS, status.toInt());
         values.put(MessageData.KEY_REASON_CODE, reasonCode.toInt());
         mLocalContentResolver.insert(MessageData.CONTENT_URI, values);
+        mRowCache.remove(msgId);
     }
 
     /**
@@ -189,6 +202,7 @@ public class MessageLog implements IMessageLog {
         values.put(MessageData.KEY_STATUS, status.toInt());
         values.put(MessageData.KEY_REASON_CODE, reasonCode.toInt());
         mLocalContentResolver.insert(MessageData.CONTENT_URI, values);
+        mRowCache.remove(msgId);
     }
 
     @Override
@@ -289,6 +303,7 @@ public class MessageLog implements IMessageLog {
         values.put(MessageData.KEY_DELIVERY_EXPIRATION, 0);
         values.put(MessageData.KEY_EXPIRED_DELIVERY, 0);
         mLocalContentResolver.insert(MessageData.CONTENT_URI, values);
+        mRowCache.remove(msgId);
 
         if (direction == Direction.OUTGOING) {
             try {
@@ -306,6 +321,8 @@ public class MessageLog implements IMessageLog {
                         null, null);
                 mLocalContentResolver.delete(
                         Uri.withAppendedPath(GroupDeliveryInfoData.CONTENT_URI, msgId), null, null);
+                mRowCache.remove(msgId);
+                mGroupChatDeliveryInfoLog.removeRecipients(Collections.singleton(msgId));
                 if (sLogger.isActivated()) {
                     sLogger.warn("Group chat message with msgId '" + msgId
                             + "' could not be added to database!");
@@ -352,8 +369,7 @@ public class MessageLog implements IMessageLog {
         ContentValues values = new ContentValues();
         values.put(MessageData.KEY_READ_STATUS, ReadStatus.READ.toInt());
 
-        if (mLocalContentResolver.update(Uri.withAppendedPath(MessageData.CONTENT_URI, msgId),
-                values, null, null) < 1) {
+        if (!updateMessage(msgId, values, null)) {
             if (sLogger.isActivated()) {
                 sLogger.warn("There was no message with msgId '" + msgId + "' to mark as read.");
             }
@@ -389,8 +405,7 @@ public class MessageLog implements IMessageLog {
         ContentValues values = new ContentValues();
         values.put(MessageData.KEY_STATUS, status.toInt());
         values.put(MessageData.KEY_REASON_CODE, reasonCode.toInt());
-        return mLocalContentResolver.update(Uri.withAppendedPath(MessageData.CONTENT_URI, msgId),
-                values, null, null) > 0;
+        return updateMessage(msgId, values, null);
     }
 
     @Override
@@ -407,144 +422,165 @@ public class MessageLog implements IMessageLog {
         }
     }
 
-    private Cursor getMessageData(String columnName, String msgId) {
-        String[] projection = new String[] {
-            columnName
-        };
-        Uri contentUri = Uri.withAppendedPath(MessageData.CONTENT_URI, msgId);
-        Cursor cursor = mLocalContentResolver.query(contentUri, projection, null, null, null);
-        CursorUtil.assertCursorIsNotNull(cursor, contentUri);
-        if (!cursor.moveToNext()) {
-            CursorUtil.close(cursor);
-            return null;
+    /**
+     * Returns the row of a chat message, from the row cache or else loaded with all its columns
+     * 
+     * @param msgId Message ID
+     * @return Row or null if there is no such message
+     */
+    private ContentValues getMessageRow(String msgId) {
+        ContentValues row = mRowCache.get(msgId);
+        if (row != null) {
+            return row;
         }
-        return cursor;
-    }
-
-    private Integer getDataAsInteger(Cursor cursor) {
+        long modificationCount = mRowCache.getModificationCount();
+        Uri contentUri = Uri.withAppendedPath(MessageData.CONTENT_URI, msgId);
+        Cursor cursor = null;
         try {
-            if (cursor.isNull(FIRST_COLUMN_IDX)) {
+            cursor = mLocalContentResolver.query(contentUri, null, null, null, null);
+            CursorUtil.assertCursorIsNotNull(cursor, contentUri);
+            if (!cursor.moveToNext()) {
                 return null;
             }
-            return cursor.getInt(FIRST_COLUMN_IDX);
-
+            row = new ContentValues();
+            DatabaseUtils.cursorRowToContentValues(cursor, row);
         } finally {
             CursorUtil.close(cursor);
         }
+        mRowCache.put(msgId, row, modificationCount);
+        return row;
     }
 
-    private Long getDataAsLong(Cursor cursor) {
-        try {
-            if (cursor.isNull(FIRST_COLUMN_IDX)) {
-                return null;
+    /**
+     * Updates a chat message and writes the update through to the row cache
+     * 
+     * @param msgId Message ID
+     * @param values Updated columns
+     * @param selection Additional selection or null
+     * @return True if the message was updated
+     */
+    private boolean updateMessage(String msgId, ContentValues values, String selection) {
+        synchronized (mUpdateLock) {
+            if (mLocalContentResolver.update(Uri.withAppendedPath(MessageData.CONTENT_URI, msgId),
+                    values, selection, null) < 1) {
+                mRowCache.remove(msgId);
+                return false;
             }
-            return cursor.getLong(FIRST_COLUMN_IDX);
-
-        } finally {
-            CursorUtil.close(cursor);
+            mRowCache.update(msgId, values);
+            return true;
         }
     }
 
-    private String getDataAsString(Cursor cursor) {
-        try {
-            return cursor.getString(FIRST_COLUMN_IDX);
-
-        } finally {
-            CursorUtil.close(cursor);
+    /**
+     * Removes chat messages deleted from the provider from the row cache
+     * 
+     * @param msgIds Message IDs
+     */
+    /* package private */void removeCachedMessages(Set<String> msgIds) {
+        for (String msgId : msgIds) {
+            mRowCache.remove(msgId);
         }
     }
 
-    private Boolean getDataAsBoolean(Cursor cursor) {
-        try {
-            if (cursor.isNull(FIRST_COLUMN_IDX)) {
-                return null;
-            }
-            return cursor.getInt(FIRST_COLUMN_IDX) == 1;
+    /**
+     * Removes all chat messages from the row cache
+     */
+    /* package private */void clearCachedMessages() {
+        mRowCache.clear();
+    }
 
-        } finally {
-            CursorUtil.close(cursor);
-        }
+    /**
+     * Returns the row cache of the chat messages
+     * 
+     * @return Row cache
+     */
+    /* package private */RowCache getRowCache() {
+        return mRowCache;
     }
 
     @Override
     public Boolean isMessageRead(String msgId) {
-        Cursor cursor = getMessageData(MessageData.KEY_READ_STATUS, msgId);
-        if (cursor == null) {
+        ContentValues row = getMessageRow(msgId);
+        if (row == null) {
             return null;
         }
-        return (getDataAsInteger(cursor) == ReadStatus.READ.toInt());
+        return (row.getAsInteger(MessageData.KEY_READ_STATUS) == ReadStatus.READ.toInt());
     }
 
     @Override
     public Long getMessageSentTimestamp(String msgId) {
-        Cursor cursor = getMessageData(MessageData.KEY_TIMESTAMP_SENT, msgId);
-        if (cursor == null) {
+        ContentValues row = getMessageRow(msgId);
+        if (row == null) {
             return null;
         }
-        return getDataAsLong(cursor);
+        return row.getAsLong(MessageData.KEY_TIMESTAMP_SENT);
     }
 
     @Override
     public Long getMessageTimestamp(String msgId) {
-        Cursor cursor = getMessageData(MessageData.KEY_TIMESTAMP, msgId);
-        if (cursor == null) {
+        ContentValues row = getMessageRow(msgId);
+        if (row == null) {
             return null;
         }
-        return getDataAsLong(cursor);
+        return row.getAsLong(MessageData.KEY_TIMESTAMP);
     }
 
     @Override
     public Status getMessageStatus(String msgId) {
-        Cursor cursor = getMessageData(MessageData.KEY_STATUS, msgId);
-        if (cursor == null) {
+        ContentValues row = getMessageRow(msgId);
+        if (row == null) {
             return null;
         }
-        return Status.valueOf(getDataAsInteger(cursor));
+        return Status.valueOf(row.getAsInteger(MessageData.KEY_STATUS));
     }
 
     @Override
     public ReasonCode getMessageReasonCode(String msgId) {
-        Cursor cursor = getMessageData(MessageData.KEY_REASON_CODE, msgId);
-        if (cursor == null) {
+        ContentValues row = getMessageRow(msgId);
+        if (row == null) {
             return null;
         }
-        return ReasonCode.valueOf(getDataAsInteger(cursor));
+        return ReasonCode.valueOf(row.getAsInteger(MessageData.KEY_REASON_CODE));
     }
 
     @Override
     public String getMessageMimeType(String msgId) {
-        Cursor cursor = getMessageData(MessageData.KEY_MIME_TYPE, msgId);
-        if (cursor == null) {
+        ContentValues row = getMessageRow(msgId);
+        if (row == null) {
             return null;
         }
-        return getDataAsString(cursor);
+        return row.getAsString(MessageData.KEY_MIME_TYPE);
     }
 
     @Override
     public String getMessageChatId(String msgId) {
-        Cursor cursor = getMessageData(MessageData.KEY_CHAT_ID, msgId);
-        if (cursor == null) {
+        ContentValues row = getMessageRow(msgId);
+        if (row == null) {
             return null;
         }
-        return getDataAsString(cursor);
+        return row.getAsString(MessageData.KEY_CHAT_ID);
     }
 
     @Override
     public String getChatMessageContent(String msgId) {
-        Cursor cursor = getMessageData(MessageData.KEY_CONTENT, msgId);
-        if (cursor == null) {
+        ContentValues row = getMessageRow(msgId);
+        if (row == null) {
             return null;
         }
-        return getDataAsString(cursor);
+        return row.getAsString(MessageData.KEY_CONTENT);
     }
 
     @Override
     public Boolean isChatMessageExpiredDelivery(String msgId) {
-        Cursor cursor = getMessageData(MessageData.KEY_EXPIRED_DELIVERY, msgId);
-        if (cursor == null) {
+        ContentValues row = getMessageRow(msgId);
+        if (row == null) {
             return null;
         }
-        return getDataAsBoolean(cursor);
+        Integer expiredDelivery = row.getAsInteger(MessageData.KEY_EXPIRED_DELIVERY);
+        if (expiredDelivery == null) {
+            return null;
+        }
+        return expiredDelivery == 1;
     }
 
     @Override
@@ -584,8 +620,7 @@ public class MessageLog implements IMessageLog {
         ContentValues values = new ContentValues();
         values.put(MessageData.KEY_TIMESTAMP, timestamp);
         values.put(MessageData.KEY_TIMESTAMP_SENT, timestampSent);
-        return mLocalContentResolver.update(Uri.withAppendedPath(MessageData.CONTENT_URI, msgId),
-                values, null, null) > 0;
+        return updateMessage(msgId, values, null);
     }
 
     @Override
@@ -654,8 +689,7 @@ public class MessageLog implements IMessageLog {
         values.put(MessageData.KEY_TIMESTAMP_DELIVERED, timestampDelivered);
         values.put(MessageData.KEY_EXPIRED_DELIVERY, 0);
 
-        return mLocalContentResolver.update(Uri.withAppendedPath(MessageData.CONTENT_URI, msgId),
-                values, SELECTION_BY_NOT_DISPLAYED, null) > 0;
+        return updateMessage(msgId, values, SELECTION_BY_NOT_DISPLAYED);
     }
 
     @Override
@@ -670,8 +704,7 @@ public class MessageLog implements IMessageLog {
         values.put(MessageData.KEY_REASON_CODE, ReasonCode.UNSPECIFIED.toInt());
         values.put(MessageData.KEY_TIMESTAMP_DISPLAYED, timestampDisplayed);
         values.put(MessageData.KEY_EXPIRED_DELIVERY, 0);
-        return mLocalContentResolver.update(Uri.withAppendedPath(MessageData.CONTENT_URI, msgId),
-                values, null, null) > 0;
+        return updateMessage(msgId, values, null);
     }
 
     @Override
@@ -685,16 +718,20 @@ public class MessageLog implements IMessageLog {
         }
         String selection = new StringBuilder(MessageData.KEY_MESSAGE_ID).append(" IN (")
                 .append(TextUtils.join(",", parameters)).append(")").toString();
-        mLocalContentResolver.update(MessageData.CONTENT_URI, values, selection,
-                msgIds.toArray(new String[msgIds.size()]));
+        synchronized (mUpdateLock) {
+            mLocalContentResolver.update(MessageData.CONTENT_URI, values, selection,
+                    msgIds.toArray(new String[msgIds.size()]));
+            for (String msgId : msgIds) {
+                mRowCache.update(msgId, values);
+            }
+        }
     }
 
     @Override
     public boolean setChatMessageDeliveryExpired(String msgId) {
         ContentValues values = new ContentValues();
         values.put(MessageData.KEY_EXPIRED_DELIVERY, 1);
-        return mLocalContentResolver.update(Uri.withAppendedPath(MessageData.CONTENT_URI, msgId),
-                values, null, null) > 0;
+        return updateMessage(msgId, values, null);
     }
 
     @Override
@@ -719,7 +756,6 @@ public class MessageLog implements IMessageLog {
         values.put(MessageData.KEY_REASON_CODE, reasonCode.toInt());
         values.put(MessageData.KEY_TIMESTAMP, timestamp);
         values.put(MessageData.KEY_TIMESTAMP_SENT, timestampSent);
-        return mLocalContentResolver.update(Uri.withAppendedPath(MessageData.CONTENT_URI, msgId),
-                values, null, null) > 0;
+        return updateMessage(msgId, values, null);
     }
 }
@@ -28,6 +28,7 @@ import com.gsma.rcs.core.ims.service.im.chat.ChatMessage;
 import com.gsma.rcs.core.ims.service.im.chat.GroupChatInfo;
 import com.gsma.rcs.core.ims.service.im.filetransfer.http.FileTransferHttpInfoDocument;
 import com.gsma.rcs.provider.LocalContentResolver;
+import com.gsma.rcs.provider.RowCache;
 import com.gsma.rcs.provider.fthttp.FtHttpResume;
 import com.gsma.rcs.provider.fthttp.FtHttpResumeUpload;
 import com.gsma.rcs.provider.settings.RcsSettings;
@@ -305,10 +306,52 @@ public class MessagingLog implements IGroupChatLog, IMessageLog, IFileTransferLo
      * Delete all entries in Chat, Message and FileTransfer Logs
      */
     public void deleteAllEntries() {
+        mGroupChatDeliveryInfoLog.flushPendingUpdates();
         mLocalContentResolver.delete(GroupChatData.CONTENT_URI, null, null);
         mLocalContentResolver.delete(MessageData.CONTENT_URI, null, null);
         mLocalContentResolver.delete(FileTransferData.CONTENT_URI, null, null);
         mLocalContentResolver.delete(GroupDeliveryInfoData.CONTENT_URI, null, null);
+        mMessageLog.clearCachedMessages();
+        mFileTransferLog.clearCachedFileTransfers();
+        mGroupChatDeliveryInfoLog.clearRecipients();
+    }
+
+    /**
+     * Removes chat messages deleted from the provider by a delete task from the row cache
+     * 
+     * @param msgIds Message IDs
+     */
+    public void removeCachedChatMessages(Set<String> msgIds) {
+        mMessageLog.removeCachedMessages(msgIds);
+        mGroupChatDeliveryInfoLog.removeRecipients(msgIds);
+    }
+
+    /**
+     * Removes file transfers deleted from the provider by a delete task from the row cache
+     * 
+     * @param fileTransferIds File transfer IDs
+     */
+    public void removeCachedFileTransfers(Set<String> fileTransferIds) {
+        mFileTransferLog.removeCachedFileTransfers(fileTransferIds);
+        mGroupChatDeliveryInfoLog.removeRecipients(fileTransferIds);
+    }
+
+    /**
+     * Returns the row cache of the chat messages, to read its metrics
+     * 
+     * @return Row cache
+     */
+    public RowCache getChatMessageRowCache() {
+        return mMessageLog.getRowCache();
+    }
+
+    /**
+     * Returns the row cache of the file transfers, to read its metrics
+     * 
+     * @return Row cache
+     */
+    public RowCache getFileTransferRowCache() {
+        return mFileTransferLog.getRowCache();
     }
 
     @Override
@@ -326,6 +369,17 @@ public class MessagingLog implements IGroupChatLog, IMessageLog, IFileTransferLo
                 contact, msgId, status, reasonCode);
     }
 
+    /**
+     * Runs an action once the group delivery info updates made so far are written. The delivered
+     * and displayed updates of the group delivery info are written behind, the actions depending on
+     * them being persisted like the broadcasts to the clients must be run through this method.
+     * 
+     * @param action Action
+     */
+    public void executeAfterPendingDeliveryInfoUpdates(Runnable action) {
+        mGroupChatDeliveryInfoLog.executeAfterPendingUpdates(action);
+    }
+
     @Override
     public boolean isDeliveredToAllRecipients(String msgId) {
         return mGroupChatDeliveryInfoLog.isDeliveredToAllRecipients(msgId);
@@ -124,6 +124,7 @@ public class OneToOneChatMessageDeleteTask extends DeleteTask.GroupedByContactId
 
     @Override
     protected void onCompleted(ContactId contact, Set<String> msgIds) {
+        mChatService.removeCachedChatMessages(msgIds);
         DeliveryExpirationManager expirationManager = mImService.getDeliveryExpirationManager();
         for (String messageId : msgIds) {
             expirationManager.cancelDeliveryTimeoutAlarm(messageId);
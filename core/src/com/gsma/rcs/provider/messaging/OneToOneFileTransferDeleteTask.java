@@ -120,6 +120,7 @@ public class OneToOneFileTransferDeleteTask extends DeleteTask.GroupedByContactI
 
     @Override
     protected void onCompleted(ContactId contact, Set<String> transferIds) {
+        mFileTransferService.removeCachedFileTransfers(transferIds);
         DeliveryExpirationManager expirationManager = mImService.getDeliveryExpirationManager();
         for (String transferId : transferIds) {
             expirationManager.cancelDeliveryTimeoutAlarm(transferId);
@@ -37,18 +37,20 @@ import com.gsma.rcs.provider.settings.RcsSettingsData.ImSessionStartMode;
 import com.gsma.rcs.provider.settings.RcsSettingsData.NetworkAccessType;
 import com.gsma.rcs.provider.settings.RcsSettingsData.TermsAndConditionsResponse;
 import com.gsma.rcs.provisioning.ProvisioningInfo;
-import com.gsma.rcs.utils.ContactUtil;
 import com.gsma.services.rcs.CommonServiceConfiguration.MessagingMethod;
 import com.gsma.services.rcs.CommonServiceConfiguration.MessagingMode;
 import com.gsma.services.rcs.CommonServiceConfiguration.MinimumBatteryLevel;
 import com.gsma.services.rcs.contact.ContactId;
 import com.gsma.services.rcs.filetransfer.FileTransferServiceConfiguration.ImageResizeOption;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.net.Uri;
 import android.text.TextUtils;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -74,6 +76,10 @@ public class RcsSettings {
     private static final String WHERE_CLAUSE = new StringBuilder(RcsSettingsData.KEY_KEY).append(
             "=?").toString();
 
+    private static final String[] PROJECTION_KEY_VALUE = new String[] {
+            RcsSettingsData.KEY_KEY, RcsSettingsData.KEY_VALUE
+    };
+
     /**
      * Current instance
      */
@@ -85,9 +91,19 @@ public class RcsSettings {
     final private LocalContentResolver mLocalContentResolver;
 
     /**
-     * A cache for storing settings in order to increase performance
+     * Snapshot of all the settings, replaced on each write
+     */
+    private volatile RcsSettingsSnapshot mSnapshot;
+
+    /**
+     * Serializes the writes so that no write is lost when publishing a new snapshot
      */
-    final private Map<String, Object> mCache;
+    private final Object mWriteLock = new Object();
+
+    /**
+     * Values written by the current thread since it began a change set, by key
+     */
+    private final ThreadLocal<Map<String, String>> mChangeSet = new ThreadLocal<Map<String, String>>();
 
     /**
      * Create singleton instance
@@ -115,7 +131,25 @@ public class RcsSettings {
     private RcsSettings(LocalContentResolver localContentResolver) {
         super();
         mLocalContentResolver = localContentResolver;
-        mCache = new HashMap<String, Object>();
+    }
+
+    /**
+     * Returns the snapshot of the settings, loading all the settings in a single query the first
+     * time
+     * 
+     * @return Snapshot
+     */
+    private RcsSettingsSnapshot getSnapshot() {
+        RcsSettingsSnapshot snapshot = mSnapshot;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (mWriteLock) {
+            if (mSnapshot == null) {
+                mSnapshot = RcsSettingsSnapshot.create(readParameters());
+            }
+            return mSnapshot;
+        }
     }
 
     /**
@@ -127,12 +161,7 @@ public class RcsSettings {
      * @return the value field
      */
     public boolean readBoolean(String key) {
-        Boolean value = (Boolean) mCache.get(key);
-        if (value == null) {
-            value = Boolean.parseBoolean(readParameter(key));
-            mCache.put(key, value);
-        }
-        return value;
+        return getSnapshot().get(key).getBoolean();
     }
 
     /**
@@ -142,9 +171,7 @@ public class RcsSettings {
      * @param value the boolean value
      */
     public void writeBoolean(String key, Boolean value) {
-        if (writeParameter(key, value.toString()) != 0) {
-            mCache.put(key, value);
-        }
+        writeParameter(key, value.toString());
     }
 
     /**
@@ -156,12 +183,7 @@ public class RcsSettings {
      * @return the value field
      */
     public int readInteger(String key) {
-        Integer value = (Integer) mCache.get(key);
-        if (value == null) {
-            value = Integer.parseInt(readParameter(key));
-            mCache.put(key, value);
-        }
-        return value;
+        return getSnapshot().get(key).getInteger();
     }
 
     /**
@@ -173,12 +195,7 @@ public class RcsSettings {
      * @return the value field
      */
     public long readLong(String key) {
-        Long value = (Long) mCache.get(key);
-        if (value == null) {
-            value = Long.parseLong(readParameter(key));
-            mCache.put(key, value);
-        }
-        return value;
+        return getSnapshot().get(key).getLong();
     }
 
     /**
@@ -188,12 +205,7 @@ public class RcsSettings {
      * @return the value field or defaultValue (if read fails)
      */
     public String readString(String key) {
-        String value = (String) mCache.get(key);
-        if (value == null && !mCache.containsKey(key)) {
-            value = readParameter(key);
-            mCache.put(key, value);
-        }
-        return value;
+        return getSnapshot().get(key).getString();
     }
 
     /**
@@ -203,9 +215,7 @@ public class RcsSettings {
      * @param value the integer value
      */
     public void writeInteger(String key, Integer value) {
-        if (writeParameter(key, value.toString()) != 0) {
-            mCache.put(key, value);
-        }
+        writeParameter(key, value.toString());
     }
 
     /**
@@ -215,9 +225,7 @@ public class RcsSettings {
      * @param value the long value
      */
     public void writeLong(String key, Long value) {
-        if (writeParameter(key, value.toString()) != 0) {
-            mCache.put(key, value);
-        }
+        writeParameter(key, value.toString());
     }
 
     /**
@@ -227,9 +235,7 @@ public class RcsSettings {
      * @param value the long value
      */
     public void writeString(String key, String value) {
-        if (writeParameter(key, value) != 0) {
-            mCache.put(key, value);
-        }
+        writeParameter(key, value);
     }
 
     /**
@@ -239,15 +245,7 @@ public class RcsSettings {
      * @return the value field or defaultValue (if read fails)
      */
     public Uri readUri(String key) {
-        Uri value = (Uri) mCache.get(key);
-        if (value == null && !mCache.containsKey(key)) {
-            String dbValue = readParameter(key);
-            if (dbValue != null) {
-                value = Uri.parse(dbValue);
-            }
-            mCache.put(key, value);
-        }
-        return value;
+        return getSnapshot().get(key).getUri();
     }
 
     /**
@@ -257,9 +255,7 @@ public class RcsSettings {
      * @param value the long value
      */
     public void writeUri(String key, Uri value) {
-        if (writeParameter(key, value == null ? null : value.toString()) != 0) {
-            mCache.put(key, value);
-        }
+        writeParameter(key, value == null ? null : value.toString());
     }
 
     /**
@@ -269,15 +265,7 @@ public class RcsSettings {
      * @return the value field or defaultValue (if read fails)
      */
     public ContactId readContactId(String key) {
-        ContactId value = (ContactId) mCache.get(key);
-        if (value == null && !mCache.containsKey(key)) {
-            String dbValue = readParameter(key);
-            if (dbValue != null) {
-                value = ContactUtil.createContactIdFromTrustedData(dbValue);
-            }
-            mCache.put(key, value);
-        }
-        return value;
+        return getSnapshot().get(key).getContactId();
     }
 
     /**
@@ -287,40 +275,101 @@ public class RcsSettings {
      * @param value the long value
      */
     public void writeContactId(String key, ContactId value) {
-        if (writeParameter(key, value == null ? null : value.toString()) != 0) {
-            mCache.put(key, value);
-        }
+        writeParameter(key, value == null ? null : value.toString());
     }
 
     /**
-     * Read a parameter from database
+     * Read all the parameters from database
      * 
-     * @param key Key
-     * @return Value
+     * @return Values by key
      */
-    private String readParameter(String key) {
+    private Map<String, String> readParameters() {
         Cursor c = null;
         try {
-            String[] whereArg = new String[] {
-                key
-            };
-            c = mLocalContentResolver.query(RcsSettingsData.CONTENT_URI, null, WHERE_CLAUSE,
-                    whereArg, null);
+            c = mLocalContentResolver.query(RcsSettingsData.CONTENT_URI, PROJECTION_KEY_VALUE,
+                    null, null, null);
             CursorUtil.assertCursorIsNotNull(c, RcsSettingsData.CONTENT_URI);
-            if (!c.moveToFirst()) {
-                throw new IllegalArgumentException("Illegal setting key:".concat(key));
+            Map<String, String> values = new HashMap<String, String>(c.getCount() * 4 / 3 + 1);
+            int columnIdxKey = c.getColumnIndexOrThrow(RcsSettingsData.KEY_KEY);
+            int columnIdxValue = c.getColumnIndexOrThrow(RcsSettingsData.KEY_VALUE);
+            while (c.moveToNext()) {
+                values.put(c.getString(columnIdxKey), c.getString(columnIdxValue));
             }
-            return c.getString(c.getColumnIndexOrThrow(RcsSettingsData.KEY_VALUE));
+            return values;
 
         } finally {
-            if (c != null) {
-                c.close();
+            CursorUtil.close(c);
+        }
+    }
+
+    /**
+     * Begins a change set: the settings written afterwards by the calling thread are only gathered
+     * until applyChangeSet() is called. The settings read in the meantime keep their applied value.
+     */
+    public void beginChangeSet() {
+        mChangeSet.set(new HashMap<String, String>());
+    }
+
+    /**
+     * Applies the change set of the calling thread: the settings whose value differs from their
+     * current value are written in a single transaction, with a single change notification.
+     * 
+     * @return the number of settings changed
+     */
+    public int applyChangeSet() {
+        Map<String, String> changeSet = mChangeSet.get();
+        if (changeSet == null) {
+            throw new IllegalStateException("No change set begun by this thread!");
+        }
+        mChangeSet.remove();
+        synchronized (mWriteLock) {
+            RcsSettingsSnapshot snapshot = getSnapshot();
+            Map<String, String> changes = new HashMap<String, String>();
+            ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+            for (Map.Entry<String, String> change : changeSet.entrySet()) {
+                String key = change.getKey();
+                String value = change.getValue();
+                if (!snapshot.contains(key) || value.equals(snapshot.get(key).getString())) {
+                    continue;
+                }
+                changes.put(key, value);
+                operations.add(ContentProviderOperation.newUpdate(RcsSettingsData.CONTENT_URI)
+                        .withValue(RcsSettingsData.KEY_VALUE, value)
+                        .withSelection(WHERE_CLAUSE, new String[] {
+                            key
+                        }).build());
+            }
+            if (changes.isEmpty()) {
+                return 0;
             }
+            try {
+                mLocalContentResolver.applyBatch(RcsSettingsData.CONTENT_URI, operations);
+            } catch (OperationApplicationException e) {
+                throw new IllegalStateException(new StringBuilder("Failed to apply ")
+                        .append(changes.size()).append(" settings changes!").toString(), e);
+            }
+            mSnapshot = snapshot.with(changes);
+            return changes.size();
         }
     }
 
     /**
-     * Write a string setting parameter to Database
+     * Discards the change set of the calling thread without writing it
+     * 
+     * @return the values written since the change set was begun, by key
+     */
+    public Map<String, String> discardChangeSet() {
+        Map<String, String> changeSet = mChangeSet.get();
+        if (changeSet == null) {
+            throw new IllegalStateException("No change set begun by this thread!");
+        }
+        mChangeSet.remove();
+        return changeSet;
+    }
+
+    /**
+     * Write a string setting parameter to Database and publish a new snapshot containing it, or
+     * add it to the change set of the calling thread
      * 
      * @param key
      * @param value
@@ -330,13 +379,24 @@ public class RcsSettings {
         if (value == null) {
             return 0;
         }
+        Map<String, String> changeSet = mChangeSet.get();
+        if (changeSet != null) {
+            changeSet.put(key, value);
+            return 1;
+        }
         ContentValues values = new ContentValues();
         values.put(RcsSettingsData.KEY_VALUE, value);
         String[] whereArgs = new String[] {
             key
         };
-        return mLocalContentResolver.update(RcsSettingsData.CONTENT_URI, values, WHERE_CLAUSE,
-                whereArgs);
+        synchronized (mWriteLock) {
+            int count = mLocalContentResolver.update(RcsSettingsData.CONTENT_URI, values,
+                    WHERE_CLAUSE, whereArgs);
+            if (count != 0 && mSnapshot != null) {
+                mSnapshot = mSnapshot.with(key, value);
+            }
+            return count;
+        }
     }
 
     /**
@@ -1111,6 +1171,15 @@ public class RcsSettings {
         return readLong(RcsSettingsData.SIP_TRANSACTION_TIMEOUT);
     }
 
+    /**
+     * Is the lazy parsing of the headers of the received SIP messages activated
+     * 
+     * @return Boolean
+     */
+    public boolean isSipLazyHeaderParsingActivated() {
+        return readBoolean(RcsSettingsData.SIP_LAZY_HEADER_PARSING);
+    }
+
     /**
      * Get default MSRP port
      * 
@@ -1138,6 +1207,34 @@ public class RcsSettings {
         return readLong(RcsSettingsData.MSRP_TRANSACTION_TIMEOUT);
     }
 
+    /**
+     * Is the buffer based MSRP chunk receiver activated
+     * 
+     * @return Boolean
+     */
+    public boolean isMsrpNioReceiverActivated() {
+        return readBoolean(RcsSettingsData.MSRP_NIO_RECEIVER);
+    }
+
+    /**
+     * Get the maximum number of MSRP chunks sent without response when failure reports are
+     * requested
+     * 
+     * @return Window size, no limit if lower than 1
+     */
+    public int getMsrpSendWindowSize() {
+        return readInteger(RcsSettingsData.MSRP_SEND_WINDOW_SIZE);
+    }
+
+    /**
+     * Get the maximum size of the MSRP chunks sent
+     * 
+     * @return Size in bytes
+     */
+    public int getMsrpMaxChunkSize() {
+        return readInteger(RcsSettingsData.MSRP_MAX_CHUNK_SIZE);
+    }
+
     /**
      * Get default expire period for REGISTER
      * 
@@ -1633,6 +1730,15 @@ public class RcsSettings {
         return readLong(RcsSettingsData.SIP_KEEP_ALIVE_PERIOD);
     }
 
+    /**
+     * Get the number of lanes dispatching the incoming SIP requests in parallel
+     * 
+     * @return Number of lanes
+     */
+    public int getSipDispatcherLanes() {
+        return readInteger(RcsSettingsData.SIP_DISPATCHER_LANES);
+    }
+
     /**
      * Get APN used to connect to RCS platform
      * 
@@ -805,6 +805,12 @@ public class RcsSettingsData {
     public static final String SIP_TRANSACTION_TIMEOUT = "SipTransactionTimeout";
     /* package private */static final Long DEFAULT_SIP_TRANSACTION_TIMEOUT = 120000L;
 
+    /**
+     * Parse the headers of the received SIP messages on first access only
+     */
+    public static final String SIP_LAZY_HEADER_PARSING = "SipLazyHeaderParsing";
+    /* package private */static final Boolean DEFAULT_SIP_LAZY_HEADER_PARSING = false;
+
     /**
      * Default TCP port for MSRP session
      */
@@ -823,6 +829,26 @@ public class RcsSettingsData {
     public static final String MSRP_TRANSACTION_TIMEOUT = "MsrpTransactionTimeout";
     /* package private */static final Long DEFAULT_MSRP_TRANSACTION_TIMEOUT = 5000L;
 
+    /**
+     * Receive MSRP chunks with the buffer based receiver instead of the byte per byte one
+     */
+    public static final String MSRP_NIO_RECEIVER = "MsrpNioReceiver";
+    /* package private */static final Boolean DEFAULT_MSRP_NIO_RECEIVER = false;
+
+    /**
+     * Maximum number of MSRP chunks sent without response when failure reports are requested, no
+     * limit if lower than 1
+     */
+    public static final String MSRP_SEND_WINDOW_SIZE = "MsrpSendWindowSize";
+    /* package private */static final Integer DEFAULT_MSRP_SEND_WINDOW_SIZE = 16;
+
+    /**
+     * Maximum size of the MSRP chunks sent in bytes, the chunk size being adapted to the round
+     * trip time of the responses
+     */
+    public static final String MSRP_MAX_CHUNK_SIZE = "MsrpMaxChunkSize";
+    /* package private */static final Integer DEFAULT_MSRP_MAX_CHUNK_SIZE = 64 * 1024;
+
     /**
      * Registration expire period
      */
@@ -1141,6 +1167,12 @@ public class RcsSettingsData {
     public static final String SIP_KEEP_ALIVE_PERIOD = "SipKeepAlivePeriod";
     /* package private */static final Long DEFAULT_SIP_KEEP_ALIVE_PERIOD = 60000L;
 
+    /**
+     * Number of lanes dispatching the incoming SIP requests in parallel
+     */
+    public static final String SIP_DISPATCHER_LANES = "SipDispatcherLanes";
+    /* package private */static final Integer DEFAULT_SIP_DISPATCHER_LANES = 4;
+
     /**
      * RCS APN
      */
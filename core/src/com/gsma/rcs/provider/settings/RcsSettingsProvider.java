@@ -27,8 +27,12 @@ import com.gsma.rcs.utils.DatabaseUtils;
 import com.gsma.services.rcs.contact.ContactId;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
@@ -37,6 +41,8 @@ import android.net.Uri;
 import android.text.TextUtils;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * RCS settings provider
@@ -78,7 +84,7 @@ public class RcsSettingsProvider extends ContentProvider {
     }
 
     private static class DatabaseHelper extends SQLiteOpenHelper {
-        private static final int DATABASE_VERSION = 115;
+        private static final int DATABASE_VERSION = 120;
 
         /**
          * Add a parameter in the db
@@ -255,12 +261,20 @@ public class RcsSettingsProvider extends ContentProvider {
                     RcsSettingsData.DEFAULT_TLS_CERTIFICATE_INTERMEDIATE);
             addParameter(db, RcsSettingsData.SIP_TRANSACTION_TIMEOUT,
                     RcsSettingsData.DEFAULT_SIP_TRANSACTION_TIMEOUT);
+            addParameter(db, RcsSettingsData.SIP_LAZY_HEADER_PARSING,
+                    RcsSettingsData.DEFAULT_SIP_LAZY_HEADER_PARSING);
             addParameter(db, RcsSettingsData.MSRP_DEFAULT_PORT,
                     RcsSettingsData.DEFAULT_MSRP_DEFAULT_PORT);
             addParameter(db, RcsSettingsData.RTP_DEFAULT_PORT,
                     RcsSettingsData.DEFAULT_RTP_DEFAULT_PORT);
             addParameter(db, RcsSettingsData.MSRP_TRANSACTION_TIMEOUT,
                     RcsSettingsData.DEFAULT_MSRP_TRANSACTION_TIMEOUT);
+            addParameter(db, RcsSettingsData.MSRP_NIO_RECEIVER,
+                    RcsSettingsData.DEFAULT_MSRP_NIO_RECEIVER);
+            addParameter(db, RcsSettingsData.MSRP_SEND_WINDOW_SIZE,
+                    RcsSettingsData.DEFAULT_MSRP_SEND_WINDOW_SIZE);
+            addParameter(db, RcsSettingsData.MSRP_MAX_CHUNK_SIZE,
+                    RcsSettingsData.DEFAULT_MSRP_MAX_CHUNK_SIZE);
             addParameter(db, RcsSettingsData.REGISTER_EXPIRE_PERIOD,
                     RcsSettingsData.DEFAULT_REGISTER_EXPIRE_PERIOD);
             addParameter(db, RcsSettingsData.REGISTER_RETRY_BASE_TIME,
@@ -319,6 +333,8 @@ public class RcsSettingsProvider extends ContentProvider {
             addParameter(db, RcsSettingsData.SIP_KEEP_ALIVE, RcsSettingsData.DEFAULT_SIP_KEEP_ALIVE);
             addParameter(db, RcsSettingsData.SIP_KEEP_ALIVE_PERIOD,
                     RcsSettingsData.DEFAULT_SIP_KEEP_ALIVE_PERIOD);
+            addParameter(db, RcsSettingsData.SIP_DISPATCHER_LANES,
+                    RcsSettingsData.DEFAULT_SIP_DISPATCHER_LANES);
             addParameter(db, RcsSettingsData.RCS_APN, RcsSettingsData.DEFAULT_RCS_APN);
             addParameter(db, RcsSettingsData.RCS_OPERATOR, RcsSettingsData.DEFAULT_RCS_OPERATOR);
             addParameter(db, RcsSettingsData.MAX_CHAT_LOG_ENTRIES,
@@ -455,6 +471,21 @@ public class RcsSettingsProvider extends ContentProvider {
 
     private SQLiteOpenHelper mOpenHelper;
 
+    /**
+     * Notification URIs of the changes made by the batch applied by the current thread, notified
+     * once the batch is committed
+     */
+    private final ThreadLocal<Set<Uri>> mBatchNotificationUris = new ThreadLocal<Set<Uri>>();
+
+    private void notifyChange(Uri notificationUri) {
+        Set<Uri> batchNotificationUris = mBatchNotificationUris.get();
+        if (batchNotificationUris != null) {
+            batchNotificationUris.add(notificationUri);
+            return;
+        }
+        getContext().getContentResolver().notifyChange(notificationUri, null);
+    }
+
     private String getSelectionWithKey(String selection) {
         if (TextUtils.isEmpty(selection)) {
             return SELECTION_WITH_KEY_ONLY;
@@ -544,7 +575,7 @@ public class RcsSettingsProvider extends ContentProvider {
                 SQLiteDatabase database = mOpenHelper.getWritableDatabase();
                 int count = database.update(TABLE, values, selection, selectionArgs);
                 if (count > 0) {
-                    getContext().getContentResolver().notifyChange(uri, null);
+                    notifyChange(uri);
                 }
                 return count;
 
@@ -565,4 +596,26 @@ public class RcsSettingsProvider extends ContentProvider {
         throw new UnsupportedOperationException(new StringBuilder("Cannot delete URI ").append(uri)
                 .append("!").toString());
     }
+
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        Set<Uri> notificationUris = new HashSet<Uri>();
+        ContentProviderResult[] results;
+        mBatchNotificationUris.set(notificationUris);
+        db.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            mBatchNotificationUris.remove();
+        }
+        ContentResolver contentResolver = getContext().getContentResolver();
+        for (Uri notificationUri : notificationUris) {
+            contentResolver.notifyChange(notificationUri, null);
+        }
+        return results;
+    }
 }
@@ -0,0 +1,234 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.provider.settings;
+
+import com.gsma.rcs.utils.ContactUtil;
+import com.gsma.services.rcs.contact.ContactId;
+
+import android.net.Uri;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of all the RCS settings<br>
+ * The settings are loaded at once and each value is parsed a single time into its boolean, integer
+ * and long representations, so that reading a setting neither queries the provider nor boxes its
+ * value. A snapshot is never modified: a write creates a new snapshot sharing the unchanged
+ * settings, which is then published in place of the previous one.
+ */
+/* package private */final class RcsSettingsSnapshot {
+
+    /**
+     * Value of a setting in its different representations
+     */
+    /* package private */static final class Setting {
+
+        private final String mValue;
+
+        private final boolean mBoolean;
+
+        private final boolean mIsLong;
+
+        private final long mLong;
+
+        private final boolean mIsInteger;
+
+        private final int mInteger;
+
+        /*
+         * The Uri and ContactId representations are only parsed when first read. They are cached
+         * without synchronization as parsing the same value always gives an equal result.
+         */
+        private Uri mUri;
+
+        private ContactId mContactId;
+
+        /* package private */Setting(String value) {
+            mValue = value;
+            mBoolean = Boolean.parseBoolean(value);
+            mIsLong = isLong(value);
+            mLong = mIsLong ? Long.parseLong(value) : 0;
+            mIsInteger = mIsLong && mLong >= Integer.MIN_VALUE && mLong <= Integer.MAX_VALUE;
+            mInteger = (int) mLong;
+        }
+
+        /**
+         * Checks that a value can be parsed as a long without relying on a NumberFormatException,
+         * as most of the settings values are not numbers
+         *
+         * @param value Value
+         * @return True if the value is a decimal number in the range of a long
+         */
+        private static boolean isLong(String value) {
+            if (value == null) {
+                return false;
+            }
+            int length = value.length();
+            int start = (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) ? 1 : 0;
+            if (start == length || length - start > 19) {
+                return false;
+            }
+            for (int i = start; i < length; i++) {
+                char digit = value.charAt(i);
+                if (digit < '0' || digit > '9') {
+                    return false;
+                }
+            }
+            if (length - start < 19) {
+                return true;
+            }
+            try {
+                Long.parseLong(value);
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        /* package private */String getString() {
+            return mValue;
+        }
+
+        /* package private */boolean getBoolean() {
+            return mBoolean;
+        }
+
+        /* package private */int getInteger() {
+            if (!mIsInteger) {
+                throw new NumberFormatException(new StringBuilder("Invalid int: \"")
+                        .append(mValue).append("\"").toString());
+            }
+            return mInteger;
+        }
+
+        /* package private */long getLong() {
+            if (!mIsLong) {
+                throw new NumberFormatException(new StringBuilder("Invalid long: \"")
+                        .append(mValue).append("\"").toString());
+            }
+            return mLong;
+        }
+
+        /* package private */Uri getUri() {
+            if (mValue == null) {
+                return null;
+            }
+            Uri uri = mUri;
+            if (uri == null) {
+                uri = Uri.parse(mValue);
+                mUri = uri;
+            }
+            return uri;
+        }
+
+        /* package private */ContactId getContactId() {
+            if (mValue == null) {
+                return null;
+            }
+            ContactId contactId = mContactId;
+            if (contactId == null) {
+                contactId = ContactUtil.createContactIdFromTrustedData(mValue);
+                mContactId = contactId;
+            }
+            return contactId;
+        }
+    }
+
+    private final Map<String, Setting> mSettings;
+
+    private RcsSettingsSnapshot(Map<String, Setting> settings) {
+        mSettings = settings;
+    }
+
+    /**
+     * Creates a snapshot from the values of all the settings
+     *
+     * @param values Values by key
+     * @return Snapshot
+     */
+    /* package private */static RcsSettingsSnapshot create(Map<String, String> values) {
+        Map<String, Setting> settings = new HashMap<String, Setting>(values.size() * 4 / 3 + 1);
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            settings.put(value.getKey(), new Setting(value.getValue()));
+        }
+        return new RcsSettingsSnapshot(settings);
+    }
+
+    /**
+     * Returns a setting
+     *
+     * @param key Key
+     * @return Setting
+     * @throws IllegalArgumentException if there is no setting with this key
+     */
+    /* package private */Setting get(String key) {
+        Setting setting = mSettings.get(key);
+        if (setting == null) {
+            throw new IllegalArgumentException("Illegal setting key:".concat(key));
+        }
+        return setting;
+    }
+
+    /**
+     * Checks if there is a setting with a key
+     *
+     * @param key Key
+     * @return True if the setting exists
+     */
+    /* package private */boolean contains(String key) {
+        return mSettings.containsKey(key);
+    }
+
+    /**
+     * Returns the number of settings
+     *
+     * @return Size
+     */
+    /* package private */int size() {
+        return mSettings.size();
+    }
+
+    /**
+     * Returns a copy of this snapshot with the values of some settings replaced
+     *
+     * @param values New values by key
+     * @return Snapshot
+     */
+    /* package private */RcsSettingsSnapshot with(Map<String, String> values) {
+        Map<String, Setting> settings = new HashMap<String, Setting>(mSettings);
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            settings.put(value.getKey(), new Setting(value.getValue()));
+        }
+        return new RcsSettingsSnapshot(settings);
+    }
+
+    /**
+     * Returns a copy of this snapshot with the value of a setting replaced
+     *
+     * @param key Key
+     * @param value New value
+     * @return Snapshot
+     */
+    /* package private */RcsSettingsSnapshot with(String key, String value) {
+        Map<String, Setting> settings = new HashMap<String, Setting>(mSettings);
+        settings.put(key, new Setting(value));
+        return new RcsSettingsSnapshot(settings);
+    }
+}
@@ -20,9 +20,8 @@
  * Modifications are licensed under the License.
  ******************************************************************************/
 
-package com.gsma.rcs.provisioning;
 
-import static com.gsma.rcs.utils.StringUtils.UTF8;
+package com.gsma.rcs.provisioning;
 
 import com.gsma.rcs.provider.settings.RcsSettings;
 import com.gsma.rcs.provider.settings.RcsSettingsData;
@@ -32,7 +31,6 @@ import com.gsma.rcs.provider.settings.RcsSettingsData.FileTransferProtocol;
 import com.gsma.rcs.provider.settings.RcsSettingsData.GsmaRelease;
 import com.gsma.rcs.provider.settings.RcsSettingsData.ImMsgTech;
 import com.gsma.rcs.provider.settings.RcsSettingsData.ImSessionStartMode;
-import com.gsma.rcs.utils.CloseableUtils;
 import com.gsma.rcs.utils.ContactUtil;
 import com.gsma.rcs.utils.ContactUtil.PhoneNumber;
 import com.gsma.rcs.utils.DeviceUtils;
@@ -44,21 +42,32 @@ import com.gsma.services.rcs.contact.ContactId;
 
 import android.net.Uri;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
 import javax2.sip.ListeningPoint;
 
 /**
- * Provisioning parser
+ * Provisioning parser<br>
+ * The provisioning document is streamed through a SAX parser instead of being loaded as a DOM, so
+ * that only the path of the characteristic being parsed is kept in memory. The characteristics and
+ * parameters are mapped to the settings through the SECTIONS and PARMS tables: a characteristic is
+ * parsed as the section its type maps to under the section of its parent, and a parameter is
+ * applied by the handler mapped to its name in the section of its characteristic. As with the DOM
+ * parser, only the first valid occurrence of a parameter is applied in each characteristic.
  * 
  * @author jexa7410
  */
@@ -75,10 +84,26 @@ public class ProvisioningParser {
 
     private static final long SECONDS_TO_MILLISECONDS_CONVERSION_RATE = 1000;
 
+    private static final long KILOBYTES_TO_BYTES_CONVERSION_RATE = 1024;
+
     private static final String UUID_VALUE = "uuid_Value";
 
+    private static final String APP_REF = "AppRef";
+
     private static final String PROTOCOL_HTTPS = "https";
 
+    private static final String ELEMENT_CHARACTERISTIC = "characteristic";
+
+    private static final String ELEMENT_PARM = "parm";
+
+    private static final String ELEMENT_PARAM = "param";
+
+    private static final String ATTRIBUTE_TYPE = "type";
+
+    private static final String ATTRIBUTE_NAME = "name";
+
+    private static final String ATTRIBUTE_VALUE = "value";
+
     private ProvisioningInfo provisioningInfo = new ProvisioningInfo();
 
     private String mContent;
@@ -92,1907 +117,1107 @@ public class ProvisioningParser {
     private static final Logger sLogger = Logger.getLogger(ProvisioningParser.class.getName());
 
     /**
-     * Enumerated type for the root node
+     * Sections of the provisioning document, a section being the type of a characteristic in the
+     * context of its parent
      */
-    private enum RootNodeType {
-        VERS, TOKEN, MSG, APPLICATION, IMS, PRESENCE, XDMS, IM, CAPDISCOVERY, APN, OTHER, SERVICES, SUPL, SERVICEPROVIDEREXT, UX
+    private enum Section {
+        ROOT, VERS, TOKEN, MSG, APPLICATION, IMS, PRESENCE, XDMS, IM, CAPDISCOVERY, APN, OTHER, SERVICES, SUPL, SERVICEPROVIDEREXT, UX, RCSE, JOYN, JOYN_UX, MESSAGING, EXT, TRANSPORT_PROTOCOL, CONREFS, PUBLIC_USER_IDENTITY_LIST, LBO_PCSCF_ADDRESS, APPAUTH
     }
 
     /**
-     * Enumerated type for the IMS server version
+     * Sections of the child characteristics by section of their parent and by lower case type. The
+     * characteristics whose type is not in this table are skipped.
      */
-    enum ImsServerVersion {
-        JOYN, NON_JOYN
-    }
+    private static final Map<Section, Map<String, Section>> SECTIONS = new EnumMap<Section, Map<String, Section>>(
+            Section.class);
 
     /**
-     * Constructor
-     * 
-     * @param content The content to be parsed.
-     * @param rcsSettings the RCS settings.
+     * Parameter handlers by section and by lower case parameter name. The parameters whose name is
+     * not in this table are ignored.
      */
-    public ProvisioningParser(String content, RcsSettings rcsSettings) {
-        mContent = content;
-        mRcsSettings = rcsSettings;
-    }
+    private static final Map<Section, Map<String, Parm>> PARMS = new EnumMap<Section, Map<String, Parm>>(
+            Section.class);
 
     /**
-     * Returns provisioning info
-     * 
-     * @return Provisioning info
+     * Handler applying the value of a parameter
      */
-    public ProvisioningInfo getProvisioningInfo() {
-        return provisioningInfo;
+    private static abstract class Parm {
+
+        private final String mName;
+
+        private final int mType;
+
+        Parm(String name, int type) {
+            mName = name;
+            mType = type;
+        }
+
+        /**
+         * Applies the value of the parameter
+         * 
+         * @param parser Parser
+         * @param value Value, already checked to be an integer for a parameter of type integer
+         */
+        abstract void apply(ProvisioningParser parser, String value);
     }
 
     /**
-     * Parse the provisioning document
-     * 
-     * @param release The GSMA release (Albatros, Blackbird, Crane...) before parsing
-     * @param messagingMode the messaging mode
-     * @param first True if it is a first provisioning
-     * @throws SAXException
+     * Boolean setting which is true when the parameter value is (or is not) a reference value
      */
-    public void parse(GsmaRelease release, MessagingMode messagingMode, boolean first)
-            throws SAXException {
-        ByteArrayInputStream inputStream = null;
-        try {
-            final boolean logActivated = sLogger.isActivated();
-            if (logActivated) {
-                sLogger.debug("Start the parsing of content first=".concat(Boolean.toString(first)));
-            }
-            mFirst = first;
-            inputStream = new ByteArrayInputStream(mContent.getBytes(UTF8));
-            DocumentBuilderFactory dfactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder dbuilder = dfactory.newDocumentBuilder();
-            Document doc = dbuilder.parse(inputStream);
-            if (doc == null) {
-                throw new SAXException("The provisioning content document is null!");
-            }
-            if (logActivated) {
-                sLogger.debug("Parsed Doc =" + doc);
-            }
-            Node rootnode = doc.getDocumentElement();
-            Node childnode = rootnode.getFirstChild();
-            if (childnode == null) {
-                throw new SAXException(
-                        "The first chid node in the provisioning content document is null!");
-            }
-            int nodeNumber = 0;
-            do {
-                if (childnode.getNodeName().equals("characteristic")) {
-                    if (childnode.getAttributes().getLength() > 0) {
-                        Node typenode = childnode.getAttributes().getNamedItem("type");
-                        if (typenode != null && typenode.getNodeValue() != null) {
-                            if (logActivated) {
-                                sLogger.debug("Node " + childnode.getNodeName() + " with type "
-                                        + typenode.getNodeValue());
-                            }
-                            nodeNumber++;
-                            String nodeType = typenode.getNodeValue().toUpperCase();
-                            try {
-                                RootNodeType rootNodeType = RootNodeType.valueOf(nodeType);
-                                switch (rootNodeType) {
-                                    case VERS:
-                                        parseVersion(childnode);
-                                        break;
-                                    case TOKEN:
-                                        parseToken(childnode);
-                                        break;
-                                    case MSG:
-                                        parseTermsMessage(childnode);
-                                        break;
-                                    case APPLICATION:
-                                        parseApplication(childnode);
-                                        break;
-                                    case IMS:
-                                        parseIMS(childnode);
-                                        break;
-                                    case PRESENCE:
-                                        parsePresence(childnode);
-                                        break;
-                                    case XDMS:
-                                        parseXDMS(childnode);
-                                        break;
-                                    case IM:
-                                        parseIM(childnode);
-                                        break;
-                                    case APN:
-                                        parseAPN(childnode);
-                                        break;
-                                    case OTHER:
-                                        parseOther(childnode);
-                                        break;
-                                    case SERVICES:
-                                        parseServices(childnode);
-                                        break;
-                                    case SUPL:
-                                        parseSupl(childnode);
-                                        break;
-                                    case SERVICEPROVIDEREXT:
-                                        parseServiceProviderExt(childnode);
-                                        break;
-                                    case UX:
-                                        parseUx(childnode, ImsServerVersion.NON_JOYN);
-                                        break;
-                                    default:
-                                        if (sLogger.isActivated()) {
-                                            sLogger.warn("unhandled node type: " + nodeType);
-                                        }
-                                }
-                            } catch (IllegalArgumentException e) {
-                                if (sLogger.isActivated()) {
-                                    sLogger.warn("invalid node type: " + nodeType);
-                                }
-                            }
-                        }
-                    }
-                }
-            } while ((childnode = childnode.getNextSibling()) != null);
-            if (nodeNumber == 1) {
-                /*
-                 * We received a single node (the version one) ! This is the case if the version
-                 * number is negative or in order to extend the validity of the provisioning. In
-                 * that case we restore the relevant GSMA release saved before parsing.
-                 */
-                mRcsSettings.setGsmaRelease(release);
-                /* We do the same for the messaging mode */
-                mRcsSettings.setMessagingMode(messagingMode);
-            }
-        } catch (ParserConfigurationException e) {
-            throw new SAXException("Can't parse provisioning content document!", e);
+    private static class BooleanParm extends Parm {
 
-        } catch (IOException e) {
-            throw new SAXException("Can't parse provisioning content document!", e);
+        private final String mKey;
 
-        } finally {
-            CloseableUtils.tryToClose(inputStream);
+        private final String mReferenceValue;
+
+        private final boolean mTrueIfEqual;
+
+        BooleanParm(String name, String key, String referenceValue, boolean trueIfEqual) {
+            super(name, TYPE_INT);
+            mKey = key;
+            mReferenceValue = referenceValue;
+            mTrueIfEqual = trueIfEqual;
+        }
+
+        @Override
+        void apply(ProvisioningParser parser, String value) {
+            parser.mRcsSettings.writeBoolean(mKey, mTrueIfEqual == mReferenceValue.equals(value));
         }
     }
 
     /**
-     * Parse the provisioning version
-     * 
-     * @param node Node
+     * Boolean setting which is true when the 4 lower bits of the parameter value are not all 0
      */
-    private void parseVersion(Node node) {
-        String version = null;
-        String validity = null;
-        Node versionchild = node.getFirstChild();
-
-        if (versionchild != null) {
-            do {
-                if (version == null) {
-                    if ((version = getValueByParamName("version", versionchild, TYPE_TXT)) != null) {
-                        provisioningInfo.setVersion(Integer.parseInt(version));
-                        continue;
-                    }
-                }
-                if (validity == null) {
-                    if ((validity = getValueByParamName("validity", versionchild, TYPE_INT)) != null) {
-                        provisioningInfo.setValidity(Long.parseLong(validity)
-                                * SECONDS_TO_MILLISECONDS_CONVERSION_RATE);
-                        continue;
-                    }
-                }
-            } while ((versionchild = versionchild.getNextSibling()) != null);
+    private static class FlagsParm extends Parm {
+
+        private final String mKey;
+
+        FlagsParm(String name, String key) {
+            super(name, TYPE_INT);
+            mKey = key;
+        }
+
+        @Override
+        void apply(ProvisioningParser parser, String value) {
+            parser.mRcsSettings.writeBoolean(mKey, (Integer.decode(value) % 16) != 0);
         }
     }
 
     /**
-     * Parse the provisioning Token
-     * 
-     * @param node Node
+     * Long setting which is the parameter value multiplied by a unit conversion rate
      */
-    private void parseToken(Node node) {
-        String token = null;
-        String tokenValidity = null;
-        Node tokenChild = node.getFirstChild();
-
-        if (tokenChild != null) {
-            do {
-                if (token == null) {
-                    if ((token = getValueByParamName("token", tokenChild, TYPE_TXT)) != null) {
-                        provisioningInfo.setToken(token);
-                        continue;
-                    }
-                }
-                if (tokenValidity == null) {
-                    if ((tokenValidity = getValueByParamName("validity", tokenChild, TYPE_INT)) != null) {
-                        provisioningInfo.setTokenValidity(Long.parseLong(tokenValidity));
-                        continue;
-                    }
-                }
-            } while ((tokenChild = tokenChild.getNextSibling()) != null);
+    private static class LongParm extends Parm {
+
+        private final String mKey;
+
+        private final long mConversionRate;
+
+        LongParm(String name, String key, long conversionRate) {
+            super(name, TYPE_INT);
+            mKey = key;
+            mConversionRate = conversionRate;
+        }
+
+        @Override
+        void apply(ProvisioningParser parser, String value) {
+            parser.mRcsSettings.writeLong(mKey, Long.parseLong(value) * mConversionRate);
         }
     }
 
     /**
-     * Parse terms message
-     * 
-     * @param node Node
+     * Integer setting which is the parameter value
      */
-    private void parseTermsMessage(Node node) {
-        String title = null;
-        String message = null;
-        String acceptBtn = null;
-        String rejectBtn = null;
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (title == null) {
-                    if ((title = getValueByParamName("title", childnode, TYPE_TXT)) != null) {
-                        mRcsSettings.setProvisioningUserMessageTitle("".equals(title) ? null
-                                : title);
-                        provisioningInfo.setTitle(title);
-                        continue;
-                    }
-                }
-                if (message == null) {
-                    if ((message = getValueByParamName("message", childnode, TYPE_TXT)) != null) {
-                        mRcsSettings.setProvisioningUserMessageContent("".equals(message) ? null
-                                : message);
-                        provisioningInfo.setMessage(message);
-                        continue;
-                    }
-                }
-                if (acceptBtn == null) {
-                    if ((acceptBtn = getValueByParamName("Accept_btn", childnode, TYPE_INT)) != null) {
-                        boolean accept = STRING_BOOLEAN_TRUE.equals(acceptBtn);
-                        mRcsSettings.setProvisioningAcceptButton(accept);
-                        provisioningInfo.setAcceptBtn(accept);
-                        continue;
-                    }
-                }
-                if (rejectBtn == null) {
-                    if ((rejectBtn = getValueByParamName("Reject_btn", childnode, TYPE_INT)) != null) {
-                        boolean reject = STRING_BOOLEAN_TRUE.equals(rejectBtn);
-                        mRcsSettings.setProvisioningRejectButton(reject);
-                        provisioningInfo.setRejectBtn(reject);
-                        continue;
-                    }
-                }
-            } while ((childnode = childnode.getNextSibling()) != null);
+    private static class IntegerParm extends Parm {
+
+        private final String mKey;
+
+        IntegerParm(String name, String key) {
+            super(name, TYPE_INT);
+            mKey = key;
+        }
+
+        @Override
+        void apply(ProvisioningParser parser, String value) {
+            parser.mRcsSettings.writeInteger(mKey, Integer.parseInt(value));
         }
     }
 
     /**
-     * Parse the application infos
-     * 
-     * @param node Node
+     * String setting which is the parameter value, left unchanged if the value is empty
      */
-    private void parseApplication(Node node) {
-        String appId = null;
-        String name = null;
-        String appRef = null;
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (appId == null) {
-                    if ((appId = getValueByParamName("AppID", childnode, TYPE_TXT)) != null) {
-                        continue;
-                    }
-                }
-                if (name == null) {
-                    if ((name = getValueByParamName("Name", childnode, TYPE_TXT)) != null) {
-                        continue;
-                    }
-                }
-                if (appRef == null) {
-                    if ((appRef = getValueByParamName("AppRef", childnode, TYPE_TXT)) != null) {
-                        continue;
-                    }
-                }
-            } while ((childnode = childnode.getNextSibling()) != null);
-        }
+    private static class StringParm extends Parm {
 
-        if (appRef != null
-                && (appRef.equalsIgnoreCase("IMS-Settings") || appRef.equalsIgnoreCase("ims-rcse"))) {
-            parseIMS(node);
+        private final String mKey;
+
+        StringParm(String name, String key) {
+            super(name, TYPE_TXT);
+            mKey = key;
         }
 
-        if (appRef != null && appRef.equalsIgnoreCase("RCSe-Settings")) {
-            parseRCSe(node);
+        @Override
+        void apply(ProvisioningParser parser, String value) {
+            parser.mRcsSettings.writeString(mKey, "".equals(value) ? null : value);
         }
     }
 
     /**
-     * Parse presence favorite link
-     * 
-     * @param node Node
+     * SIP-URI setting which is the parameter value, left unchanged if the value is empty
      */
-    private void parseFavoriteLink(Node node) {
-        // Not supported
+    private static class SipUriParm extends Parm {
+
+        private final String mKey;
+
+        SipUriParm(String name, String key) {
+            super(name, TYPE_TXT);
+            mKey = key;
+        }
+
+        @Override
+        void apply(ProvisioningParser parser, String value) {
+            parser.mRcsSettings.writeUri(mKey,
+                    "".equals(value) ? null : formatSipUri(value.trim()));
+        }
     }
 
     /**
-     * Parse presence watcher
-     * 
-     * @param node Node
+     * SIP protocol setting mapped from the transport protocol parameter value
      */
-    private void parsePresenceWatcher(Node node) {
-        // TODO: "FetchAuth"
-        // TODO: "ContactCapPresAut"
+    private static class SignallingParm extends Parm {
+
+        private final String mKey;
+
+        SignallingParm(String name, String key) {
+            super(name, TYPE_TXT);
+            mKey = key;
+        }
+
+        @Override
+        void apply(ProvisioningParser parser, String value) {
+            if (value.equals("SIPoUDP")) {
+                parser.mRcsSettings.writeString(mKey, ListeningPoint.UDP);
+            } else if (value.equals("SIPoTCP")) {
+                parser.mRcsSettings.writeString(mKey, ListeningPoint.TCP);
+            } else if (value.equals("SIPoTLS")) {
+                parser.mRcsSettings.writeString(mKey, ListeningPoint.TLS);
+            }
+        }
     }
 
     /**
-     * Parse presentity watcher
-     * 
-     * @param node Node
+     * Secure media setting mapped from the transport protocol parameter value
      */
-    private void parsePresentityWatcher(Node node) {
-        // TODO: "WATCHERFETCHAUTH"
+    private static class SecureMediaParm extends Parm {
+
+        private final String mKey;
+
+        private final String mUnsecureValue;
+
+        private final String mSecureValue;
+
+        SecureMediaParm(String name, String key, String unsecureValue, String secureValue) {
+            super(name, TYPE_TXT);
+            mKey = key;
+            mUnsecureValue = unsecureValue;
+            mSecureValue = secureValue;
+        }
+
+        @Override
+        void apply(ProvisioningParser parser, String value) {
+            if (mUnsecureValue.equals(value)) {
+                parser.mRcsSettings.writeBoolean(mKey, false);
+            } else if (mSecureValue.equals(value)) {
+                parser.mRcsSettings.writeBoolean(mKey, true);
+            }
+        }
     }
 
     /**
-     * Parse presence
-     * 
-     * @param node Node
+     * Messaging mode mapped from the messaging UX parameter value
      */
-    private void parsePresence(Node node) {
-        String usePresence = null;
-        String presencePrfl = null;
-        String iconMaxSize = null;
-        String noteMaxSize = null;
-        String publishTimer = null;
-        Node typenode = null;
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (childnode.getNodeName().equals("characteristic")) {
-                    if (childnode.getAttributes().getLength() > 0) {
-                        typenode = childnode.getAttributes().getNamedItem("type");
-                        if (typenode != null) {
-                            if (typenode.getNodeValue().equalsIgnoreCase("FAVLINK")) {
-                                parseFavoriteLink(childnode);
-                            } else if (typenode.getNodeValue().equalsIgnoreCase("SERVCAPWATCH")) {
-                                parsePresenceWatcher(childnode);
-                            } else if (typenode.getNodeValue()
-                                    .equalsIgnoreCase("ServCapPresentity")) {
-                                parsePresentityWatcher(childnode);
-                            }
-                        }
-                    }
-                }
-
-                if (usePresence == null) {
-                    if ((usePresence = getValueByParamName("usePresence", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeBoolean(RcsSettingsData.CAPABILITY_SOCIAL_PRESENCE,
-                                !usePresence.equals("0"));
-                        continue;
-                    }
-                }
+    private static class MessagingUxParm extends Parm {
 
-                if (presencePrfl == null) {
-                    if ((presencePrfl = getValueByParamName("presencePrfl", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeBoolean(RcsSettingsData.CAPABILITY_PRESENCE_DISCOVERY,
-                                !presencePrfl.equals("0"));
-                        continue;
-                    }
-                }
+        private final MessagingMode mNonIntegratedMode;
 
-                if (iconMaxSize == null) {
-                    if ((iconMaxSize = getValueByParamName("IconMaxSize", childnode, TYPE_INT)) != null) {
-                        long size = Long.parseLong(iconMaxSize);
-                        mRcsSettings.setMaxPhotoIconSize(size);
-                        continue;
-                    }
-                }
+        MessagingUxParm(MessagingMode nonIntegratedMode) {
+            super("messagingUX", TYPE_INT);
+            mNonIntegratedMode = nonIntegratedMode;
+        }
 
-                if (noteMaxSize == null) {
-                    if ((noteMaxSize = getValueByParamName("NoteMaxSize", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeInteger(RcsSettingsData.MAX_FREETXT_LENGTH,
-                                Integer.parseInt(noteMaxSize));
-                        continue;
-                    }
-                }
+        @Override
+        void apply(ProvisioningParser parser, String value) {
+            if (value.equals("1")) {
+                parser.mRcsSettings.setMessagingMode(MessagingMode.INTEGRATED);
+            } else {
+                parser.mRcsSettings.setMessagingMode(mNonIntegratedMode);
+            }
+        }
+    }
 
-                if (publishTimer == null) {
-                    if ((publishTimer = getValueByParamName("PublishTimer", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeLong(RcsSettingsData.PUBLISH_EXPIRE_PERIOD,
-                                Long.parseLong(publishTimer)
-                                        * SECONDS_TO_MILLISECONDS_CONVERSION_RATE);
-                        continue;
-                    }
-                }
+    private static final Parm UUID_PARM = new StringParm(UUID_VALUE, RcsSettingsData.UUID);
 
-                // Not supported: "AvailabilityAuth"
-                // Not supported: "client-obj-datalimit"
-                // Not used for RCS: "content-serveruri"
-                // Not supported: "source-throttlepublish"
-                // Not supported: "max-number-ofsubscriptions-inpresence-list"
-                // TODO: "service-uritemplate"
+    private static void addSection(Section parent, String type, Section section) {
+        Map<String, Section> sections = SECTIONS.get(parent);
+        if (sections == null) {
+            sections = new HashMap<String, Section>();
+            SECTIONS.put(parent, sections);
+        }
+        sections.put(type.toLowerCase(Locale.US), section);
+    }
 
-            } while ((childnode = childnode.getNextSibling()) != null);
+    private static void addParm(Section section, Parm parm) {
+        Map<String, Parm> parms = PARMS.get(section);
+        if (parms == null) {
+            parms = new HashMap<String, Parm>();
+            PARMS.put(section, parms);
         }
+        parms.put(parm.mName.toLowerCase(Locale.US), parm);
     }
 
-    /**
-     * Parse services
-     * 
-     * @param node Node
-     */
-    private void parseServices(Node node) {
-        String presencePrfl = null;
-        String chatAuth = null;
-        String groupChatAuth = null;
-        String ftAuth = null;
-        String geolocPushAuth = null;
-        String vsAuth = null;
-        String isAuth = null;
-        String rcsIPVoiceCallAuth = null;
-        String rcsIPVideoCallAuth = null;
-        String allowExtensions = null;
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            // Node "SERVICES" is mandatory in GSMA release Blackbird and not present in previous
-            // one Albatros.
-            // Only if the parsing result contains a SERVICE tree, Blackbird is assumed as release.
-            // This trick is used to detect the GSMA release as provisioned by the network.
-            mRcsSettings.setGsmaRelease(GsmaRelease.BLACKBIRD);
-            do {
-
-                if (chatAuth == null) {
-                    if ((chatAuth = getValueByParamName("ChatAuth", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeBoolean(RcsSettingsData.CAPABILITY_IM_SESSION,
-                                chatAuth.equals("1"));
-                        continue;
-                    }
-                }
+    static {
+        addSection(Section.ROOT, "VERS", Section.VERS);
+        addSection(Section.ROOT, "TOKEN", Section.TOKEN);
+        addSection(Section.ROOT, "MSG", Section.MSG);
+        addSection(Section.ROOT, "APPLICATION", Section.APPLICATION);
+        addSection(Section.ROOT, "IMS", Section.IMS);
+        addSection(Section.ROOT, "PRESENCE", Section.PRESENCE);
+        addSection(Section.ROOT, "XDMS", Section.XDMS);
+        addSection(Section.ROOT, "IM", Section.IM);
+        // Not parsed at the root: "CAPDISCOVERY"
+        addSection(Section.ROOT, "APN", Section.APN);
+        addSection(Section.ROOT, "OTHER", Section.OTHER);
+        addSection(Section.ROOT, "SERVICES", Section.SERVICES);
+        addSection(Section.ROOT, "SUPL", Section.SUPL);
+        addSection(Section.ROOT, "SERVICEPROVIDEREXT", Section.SERVICEPROVIDEREXT);
+        addSection(Section.ROOT, "UX", Section.UX);
 
-                if (groupChatAuth == null) {
-                    if ((groupChatAuth = getValueByParamName("groupChatAuth", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeBoolean(RcsSettingsData.CAPABILITY_IM_GROUP_SESSION,
-                                groupChatAuth.equals("1"));
-                        continue;
-                    }
-                }
+        /*
+         * The settings of an application are parsed as IMS or RCSe settings depending on its
+         * AppRef parameter
+         */
+        addSection(Section.RCSE, "IMS", Section.IMS);
+        addSection(Section.RCSE, "PRESENCE", Section.PRESENCE);
+        addSection(Section.RCSE, "XDMS", Section.XDMS);
+        addSection(Section.RCSE, "IM", Section.IM);
+        addSection(Section.RCSE, "CAPDISCOVERY", Section.CAPDISCOVERY);
+        addSection(Section.RCSE, "APN", Section.APN);
+        addSection(Section.RCSE, "OTHER", Section.OTHER);
+        addSection(Section.RCSE, "SERVICES", Section.SERVICES);
+        addSection(Section.RCSE, "SUPL", Section.SUPL);
+        addSection(Section.RCSE, "SERVICEPROVIDEREXT", Section.SERVICEPROVIDEREXT);
+
+        addSection(Section.IMS, "ConRefs", Section.CONREFS);
+        addSection(Section.IMS, "Public_user_identity_List", Section.PUBLIC_USER_IDENTITY_LIST);
+        addSection(Section.IMS, "Ext", Section.EXT);
+        addSection(Section.IMS, "LBO_P-CSCF_Address", Section.LBO_PCSCF_ADDRESS);
+        addSection(Section.IMS, "APPAUTH", Section.APPAUTH);
+        // Not used for RCS: "ICSI_List"
+        // Not used: "PhoneContext_List"
+
+        // Not supported: "FAVLINK"
+        // TODO: "SERVCAPWATCH", "ServCapPresentity"
+
+        addSection(Section.SERVICEPROVIDEREXT, "joyn", Section.JOYN);
+        addSection(Section.JOYN, "UX", Section.JOYN_UX);
+        addSection(Section.JOYN, "Messaging", Section.MESSAGING);
+        addSection(Section.CAPDISCOVERY, "Ext", Section.EXT);
+        addSection(Section.EXT, "joyn", Section.JOYN);
+        // TODO: "SecondaryDevicePar" to be managed thks to a flag main/secondary device
+        addSection(Section.OTHER, "transportProto", Section.TRANSPORT_PROTOCOL);
+
+        addParm(Section.VERS, new Parm("version", TYPE_TXT) {
+            @Override
+            void apply(ProvisioningParser parser, String value) {
+                parser.provisioningInfo.setVersion(Integer.parseInt(value));
+            }
+        });
+        addParm(Section.VERS, new Parm("validity", TYPE_INT) {
+            @Override
+            void apply(ProvisioningParser parser, String value) {
+                parser.provisioningInfo.setValidity(Long.parseLong(value)
+                        * SECONDS_TO_MILLISECONDS_CONVERSION_RATE);
+            }
+        });
 
-                if (ftAuth == null) {
-                    if ((ftAuth = getValueByParamName("ftAuth", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeBoolean(RcsSettingsData.CAPABILITY_FILE_TRANSFER,
-                                ftAuth.equals("1"));
-                        continue;
-                    }
-                }
+        addParm(Section.TOKEN, new Parm("token", TYPE_TXT) {
+            @Override
+            void apply(ProvisioningParser parser, String value) {
+                parser.provisioningInfo.setToken(value);
+            }
+        });
+        addParm(Section.TOKEN, new Parm("validity", TYPE_INT) {
+            @Override
+            void apply(ProvisioningParser parser, String value) {
+                parser.provisioningInfo.setTokenValidity(Long.parseLong(value));
+            }
+        });
+
+        addParm(Section.MSG, new Parm("title", TYPE_TXT) {
+            @Override
+            void apply(ProvisioningParser parser, String value) {
+                parser.mRcsSettings.setProvisioningUserMessageTitle("".equals(value) ? null
+                        : value);
+                parser.provisioningInfo.setTitle(value);
+            }
+        });
+        addParm(Section.MSG, new Parm("message", TYPE_TXT) {
+            @Override
+            void apply(ProvisioningParser parser, String value) {
+                parser.mRcsSettings.setProvisioningUserMessageContent("".equals(value) ? null
+                        : value);
+                parser.provisioningInfo.setMessage(value);
+            }
+        });
+        addParm(Section.MSG, new Parm("Accept_btn", TYPE_INT) {
+            @Override
+            void apply(ProvisioningParser parser, String value) {
+                boolean accept = STRING_BOOLEAN_TRUE.equals(value);
+                parser.mRcsSettings.setProvisioningAcceptButton(accept);
+                parser.provisioningInfo.setAcceptBtn(accept);
+            }
+        });
+        addParm(Section.MSG, new Parm("Reject_btn", TYPE_INT) {
+            @Override
+            void apply(ProvisioningParser parser, String value) {
+                boolean reject = STRING_BOOLEAN_TRUE.equals(value);
+                parser.mRcsSettings.setProvisioningRejectButton(reject);
+                parser.provisioningInfo.setRejectBtn(reject);
+            }
+        });
+
+        addParm(Section.PRESENCE, new BooleanParm("usePresence",
+                RcsSettingsData.CAPABILITY_SOCIAL_PRESENCE, "0", false));
+        addParm(Section.PRESENCE, new BooleanParm("presencePrfl",
+                RcsSettingsData.CAPABILITY_PRESENCE_DISCOVERY, "0", false));
+        addParm(Section.PRESENCE, new LongParm("IconMaxSize", RcsSettingsData.MAX_PHOTO_ICON_SIZE,
+                1));
+        addParm(Section.PRESENCE, new IntegerParm("NoteMaxSize",
+                RcsSettingsData.MAX_FREETXT_LENGTH));
+        addParm(Section.PRESENCE, new LongParm("PublishTimer",
+                RcsSettingsData.PUBLISH_EXPIRE_PERIOD, SECONDS_TO_MILLISECONDS_CONVERSION_RATE));
+        // Not supported: "AvailabilityAuth"
+        // Not supported: "client-obj-datalimit"
+        // Not used for RCS: "content-serveruri"
+        // Not supported: "source-throttlepublish"
+        // Not supported: "max-number-ofsubscriptions-inpresence-list"
+        // TODO: "service-uritemplate"
+
+        addParm(Section.SERVICES, new BooleanParm("ChatAuth",
+                RcsSettingsData.CAPABILITY_IM_SESSION, "1", true));
+        addParm(Section.SERVICES, new BooleanParm("groupChatAuth",
+                RcsSettingsData.CAPABILITY_IM_GROUP_SESSION, "1", true));
+        addParm(Section.SERVICES, new BooleanParm("ftAuth",
+                RcsSettingsData.CAPABILITY_FILE_TRANSFER, "1", true));
+        addParm(Section.SERVICES, new BooleanParm("vsAuth",
+                RcsSettingsData.CAPABILITY_VIDEO_SHARING, "1", true));
+        addParm(Section.SERVICES, new BooleanParm("isAuth",
+                RcsSettingsData.CAPABILITY_IMAGE_SHARING, "1", true));
+        addParm(Section.SERVICES, new BooleanParm("geolocPushAuth",
+                RcsSettingsData.CAPABILITY_GEOLOCATION_PUSH, "1", true));
+        addParm(Section.SERVICES, new Parm("presencePrfl", TYPE_INT) {
+            @Override
+            void apply(ProvisioningParser parser, String value) {
+                if (value.equals("1")) {
+                    sLogger.error(new String("Social presence is not supported in TAPI 1.5.1, ")
+                            .concat("ignoring capability received through provisioning."));
+                }
+                parser.mRcsSettings.writeBoolean(RcsSettingsData.CAPABILITY_SOCIAL_PRESENCE,
+                        false);
+            }
+        });
+        addParm(Section.SERVICES, new FlagsParm("rcsIPVoiceCallAuth",
+                RcsSettingsData.CAPABILITY_IP_VOICE_CALL));
+        addParm(Section.SERVICES, new FlagsParm("rcsIPVideoCallAuth",
+                RcsSettingsData.CAPABILITY_IP_VIDEO_CALL));
+        addParm(Section.SERVICES, new FlagsParm("allowRCSExtensions",
+                RcsSettingsData.ALLOW_EXTENSIONS));
+        // Not used: "standaloneMsgAuth"
+        // Not used: "geolocPullAuth"
+
+        addParm(Section.XDMS, new LongParm("RevokeTimer", RcsSettingsData.REVOKE_TIMEOUT,
+                SECONDS_TO_MILLISECONDS_CONVERSION_RATE));
+        addParm(Section.XDMS, new Parm("XCAPRootURI", TYPE_TXT) {
+            @Override
+            void apply(ProvisioningParser parser, String value) {
+                parser.mRcsSettings.setXdmServer("".equals(value) ? null : Uri.parse(value));
+            }
+        });
+        addParm(Section.XDMS, new StringParm("XCAPAuthenticationUserName",
+                RcsSettingsData.XDM_LOGIN));
+        addParm(Section.XDMS, new StringParm("XCAPAuthenticationSecret",
+                RcsSettingsData.XDM_PASSWORD));
+        // Not used (only Digest is used): "XCAPAuthenticationType"
+
+        addParm(Section.SUPL, new IntegerParm("TextMaxLength",
+                RcsSettingsData.MAX_GEOLOC_LABEL_LENGTH));
+        addParm(Section.SUPL, new LongParm("LocInfoMaxValidTime",
+                RcsSettingsData.GEOLOC_EXPIRATION_TIME, SECONDS_TO_MILLISECONDS_CONVERSION_RATE));
+        // Not used: "geolocPullOpenValue"
+        // Not used: "geolocPullApiGwAddress"
+        // Not used: "geolocPullBlockTimer"
+
+        addParm(Section.JOYN, new LongParm("msgCapValidity",
+                RcsSettingsData.MSG_CAP_VALIDITY_PERIOD, SECONDS_TO_MILLISECONDS_CONVERSION_RATE));
+
+        addParm(Section.MESSAGING, new BooleanParm("ftHTTPCapAlwaysOn",
+                RcsSettingsData.FT_HTTP_CAP_ALWAYS_ON, "0", false));
+        addParm(Section.MESSAGING, new LongParm("deliveryTimeout",
+                RcsSettingsData.MSG_DELIVERY_TIMEOUT, SECONDS_TO_MILLISECONDS_CONVERSION_RATE));
+
+        addParm(Section.UX, new MessagingUxParm(MessagingMode.SEAMLESS));
+        addParm(Section.JOYN_UX, new MessagingUxParm(MessagingMode.CONVERGED));
+        // Not used: oneButtonVoiceCall
+        // Not used: oneButtonVideoCall
 
-                if (vsAuth == null) {
-                    if ((vsAuth = getValueByParamName("vsAuth", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeBoolean(RcsSettingsData.CAPABILITY_VIDEO_SHARING,
-                                vsAuth.equals("1"));
-                        continue;
+        addParm(Section.IM, new Parm("imCapAlwaysON", TYPE_INT) {
+            @Override
+            void apply(ProvisioningParser parser, String value) {
+                boolean imCapAlwaysOn = !value.equals("0");
+                parser.mRcsSettings.writeBoolean(RcsSettingsData.IM_CAPABILITY_ALWAYS_ON,
+                        imCapAlwaysOn);
+                // set default IM messaging method if first provisioning
+                if (parser.mFirst) {
+                    if (imCapAlwaysOn) {
+                        parser.mRcsSettings.setDefaultMessagingMethod(MessagingMethod.RCS);
+                    } else {
+                        parser.mRcsSettings.setDefaultMessagingMethod(MessagingMethod.AUTOMATIC);
                     }
                 }
-
-                if (isAuth == null) {
-                    if ((isAuth = getValueByParamName("isAuth", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeBoolean(RcsSettingsData.CAPABILITY_IMAGE_SHARING,
-                                isAuth.equals("1"));
-                        continue;
+            }
+        });
+        addParm(Section.IM, new BooleanParm("ftCapAlwaysON",
+                RcsSettingsData.FT_CAPABILITY_ALWAYS_ON, "0", false));
+        addParm(Section.IM, new IntegerParm("MaxConcurrentSession",
+                RcsSettingsData.MAX_CHAT_SESSIONS));
+        addParm(Section.IM, new BooleanParm("GroupChatFullStandFwd",
+                RcsSettingsData.CAPABILITY_GROUP_CHAT_SF, "0", false));
+        addParm(Section.IM, new BooleanParm("GroupChatOnlyFStandFwd",
+                RcsSettingsData.GROUP_CHAT_INVITE_ONLY_FULL_SF, "0", false));
+        addParm(Section.IM, new BooleanParm("imWarnSF", RcsSettingsData.WARN_SF_SERVICE, "0",
+                false));
+        addParm(Section.IM, new Parm("ftAutAccept", TYPE_INT) {
+            @Override
+            void apply(ProvisioningParser parser, String value) {
+                RcsSettings rcsSettings = parser.mRcsSettings;
+                boolean aaModeChangeable = !value.equals("0");
+                // Check if first provisioning or transition of MNO setting
+                if (parser.mFirst
+                        || (aaModeChangeable != rcsSettings.isFtAutoAcceptedModeChangeable())) {
+                    // Save first or new setting value
+                    rcsSettings.setFtAutoAcceptedModeChangeable(aaModeChangeable);
+                    if (aaModeChangeable) {
+                        // Enforce user settings for AA to default value
+                        // By default, AA is enabled in normal conditions
+                        rcsSettings.setFileTransferAutoAccepted(true);
+                        // By default, AA is disabled in roaming
+                        rcsSettings.setFileTransferAutoAcceptedInRoaming(false);
+                    } else {
+                        // Enforce user settings for AA for normal conditions and roaming
+                        rcsSettings.setFileTransferAutoAccepted(false);
+                        rcsSettings.setFileTransferAutoAcceptedInRoaming(false);
                     }
                 }
-
-                if (geolocPushAuth == null) {
-                    if ((geolocPushAuth = getValueByParamName("geolocPushAuth", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeBoolean(RcsSettingsData.CAPABILITY_GEOLOCATION_PUSH,
-                                geolocPushAuth.equals("1"));
-                        continue;
-                    }
+            }
+        });
+        addParm(Section.IM, new BooleanParm("ftStAndFwEnabled",
+                RcsSettingsData.CAPABILITY_FILE_TRANSFER_SF, "0", false));
+        addParm(Section.IM, new Parm("ftHTTPCSURI", TYPE_TXT) {
+            @Override
+            void apply(ProvisioningParser parser, String value) {
+                /*
+                 * According to "Rich Communication Suite 5.1 Advanced Communications Services and
+                 * Client Specification Version 4.0" 3.5.4.8.3 File transfer procedure 3.5.4.8.3.1
+                 * Sender procedures This specification uses the term 'HTTP POST' and 'HTTP GET' as
+                 * a generic reference to the action of using the POST or GET method. However, it
+                 * is strongly recommended that whenever the POST action contains sensitive
+                 * information such as a user ID or password, the action should take place over a
+                 * secure connection and/or via HTTPS explicitly.
+                 */
+                Uri ftHttpServAddr = "".equals(value) ? null : Uri.parse(value);
+                if (ftHttpServAddr != null && !PROTOCOL_HTTPS.equals(ftHttpServAddr.getScheme())) {
+                    sLogger.error(new StringBuilder(value).append(
+                            " is not a secure protocol, hence disabling ftHttp capability.")
+                            .toString());
+                    return;
+                }
+                parser.mRcsSettings.setFtHttpServer(ftHttpServAddr);
+            }
+        });
+        addParm(Section.IM, new StringParm("ftHTTPCSUser", RcsSettingsData.FT_HTTP_LOGIN));
+        addParm(Section.IM, new StringParm("ftHTTPCSPwd", RcsSettingsData.FT_HTTP_PASSWORD));
+        addParm(Section.IM, new Parm("ftDefaultMech", TYPE_TXT) {
+            @Override
+            void apply(ProvisioningParser parser, String value) {
+                parser.mRcsSettings.setFtProtocol(FileTransferProtocol.valueOf(value));
+            }
+        });
+        addParm(Section.IM, new Parm("imSessionStart", TYPE_INT) {
+            @Override
+            void apply(ProvisioningParser parser, String value) {
+                parser.mRcsSettings.setImSessionStartMode(ImSessionStartMode.valueOf(Integer
+                        .parseInt(value)));
+            }
+        });
+        addParm(Section.IM, new LongParm("ftWarnSize", RcsSettingsData.WARN_FILE_TRANSFER_SIZE,
+                KILOBYTES_TO_BYTES_CONVERSION_RATE));
+        addParm(Section.IM, new BooleanParm("ChatAuth", RcsSettingsData.CAPABILITY_IM_SESSION,
+                "0", false));
+        // Careful: 0 indicates authorization is ok, 1 indicates authorization is non ok
+        addParm(Section.IM, new BooleanParm("SmsFallBackAuth",
+                RcsSettingsData.SMS_FALLBACK_SERVICE, "0", true));
+        addParm(Section.IM, new BooleanParm("AutAccept", RcsSettingsData.AUTO_ACCEPT_CHAT, "0",
+                false));
+        addParm(Section.IM, new BooleanParm("AutAcceptGroupChat",
+                RcsSettingsData.AUTO_ACCEPT_GROUP_CHAT, "0", false));
+        addParm(Section.IM, new IntegerParm("MaxSize1to1", RcsSettingsData.MAX_CHAT_MSG_LENGTH));
+        addParm(Section.IM, new IntegerParm("MaxSize1toM",
+                RcsSettingsData.MAX_GROUPCHAT_MSG_LENGTH));
+        addParm(Section.IM, new LongParm("TimerIdle", RcsSettingsData.CHAT_IDLE_DURATION,
+                SECONDS_TO_MILLISECONDS_CONVERSION_RATE));
+        addParm(Section.IM, new LongParm("MaxSizeFileTr", RcsSettingsData.MAX_FILE_TRANSFER_SIZE,
+                KILOBYTES_TO_BYTES_CONVERSION_RATE));
+        addParm(Section.IM, new BooleanParm("ftThumb",
+                RcsSettingsData.CAPABILITY_FILE_TRANSFER_THUMBNAIL, "0", false));
+        addParm(Section.IM, new IntegerParm("max_adhoc_group_size",
+                RcsSettingsData.MAX_CHAT_PARTICIPANTS));
+        addParm(Section.IM, new SipUriParm("conf-fcty-uri", RcsSettingsData.IM_CONF_URI));
+        addParm(Section.IM, new Parm("imMsgTech", TYPE_INT) {
+            @Override
+            void apply(ProvisioningParser parser, String value) {
+                parser.mRcsSettings.setImMsgTech(ImMsgTech.valueOf(Integer.parseInt(value)));
+            }
+        });
+        addParm(Section.IM, new Parm("firstMsgInvite", TYPE_INT) {
+            @Override
+            void apply(ProvisioningParser parser, String value) {
+                /*
+                 * Stack only support simple IM now, means isFirstMessageInvite must be set to
+                 * true. Specification reference: Rich Communication Suite 5.1 Advanced
+                 * Communications Services and Client Specification Version 3.0 Page 182 3.3.4.2
+                 * Technical Realization of 1-to-1 Chat features when using OMA SIMPLE IM For OMA
+                 * SIMPLE IM, first message is always included in a CPIM/IMDN wrapper carried in
+                 * the SIP INVITE request. So the configuration parameter FIRST MSG IN INVITE
+                 * defined in Table 77 is always set to 1.
+                 */
+                if (value.equals("0")) {
+                    sLogger.error("isFirstMessageInInvite is set to false, it is incorrect according"
+                            + " to Blackbird protocol, please check provisioning values. Ignoring the "
+                            + "set to false request.");
+                    return;
                 }
+                parser.mRcsSettings.setFirstMessageInInvite(true);
+            }
+        });
+        // Not used for RCS: "pres-srv-cap"
+        // Not used for RCS: "deferred-msg-func-uri"
+        // Not used for RCS: "exploder-uri"
+
+        addParm(Section.CAPDISCOVERY, new LongParm("pollingPeriod",
+                RcsSettingsData.CAPABILITY_POLLING_PERIOD,
+                SECONDS_TO_MILLISECONDS_CONVERSION_RATE));
+        addParm(Section.CAPDISCOVERY, new LongParm("capInfoExpiry",
+                RcsSettingsData.CAPABILITY_EXPIRY_TIMEOUT,
+                SECONDS_TO_MILLISECONDS_CONVERSION_RATE));
+        addParm(Section.CAPDISCOVERY, new BooleanParm("presenceDisc",
+                RcsSettingsData.CAPABILITY_PRESENCE_DISCOVERY, "0", false));
 
-                if (presencePrfl == null) {
-                    if ((presencePrfl = getValueByParamName("presencePrfl", childnode, TYPE_INT)) != null) {
-                        if (presencePrfl.equals("1")) {
-                            sLogger.error(new String(
-                                    "Social presence is not supported in TAPI 1.5.1, ")
-                                    .concat("ignoring capability received through provisioning."));
-                        }
-                        mRcsSettings
-                                .writeBoolean(RcsSettingsData.CAPABILITY_SOCIAL_PRESENCE, false);
-                        continue;
-                    }
+        // Not supported: "rcseOnlyAPN"
+        addParm(Section.APN, new Parm("enableRcseSwitch", TYPE_INT) {
+            @Override
+            void apply(ProvisioningParser parser, String value) {
+                parser.mRcsSettings.setEnableRcseSwitch(EnableRcseSwitch.valueOf(Integer
+                        .valueOf(value)));
+            }
+        });
+
+        addParm(Section.TRANSPORT_PROTOCOL, new SignallingParm("psSignalling",
+                RcsSettingsData.SIP_DEFAULT_PROTOCOL_FOR_MOBILE));
+        addParm(Section.TRANSPORT_PROTOCOL, new SignallingParm("wifiSignalling",
+                RcsSettingsData.SIP_DEFAULT_PROTOCOL_FOR_WIFI));
+        addParm(Section.TRANSPORT_PROTOCOL, new SecureMediaParm("wifiMedia",
+                RcsSettingsData.SECURE_MSRP_OVER_WIFI, "MSRP", "MSRPoTLS"));
+        addParm(Section.TRANSPORT_PROTOCOL, new SecureMediaParm("wifiRTMedia",
+                RcsSettingsData.SECURE_RTP_OVER_WIFI, "RTP", "SRTP"));
+        // Not supported: "psMedia"
+        // Not supported: "psRTMedia"
+
+        addParm(Section.OTHER, new SipUriParm("endUserConfReqId",
+                RcsSettingsData.ENDUSER_CONFIRMATION_URI));
+        addParm(Section.OTHER, new BooleanParm("deviceID", RcsSettingsData.USE_IMEI_AS_DEVICE_ID,
+                "0", true));
+        addParm(Section.OTHER, UUID_PARM);
+        addParm(Section.OTHER, new BooleanParm("IPCallBreakOut",
+                RcsSettingsData.IPVOICECALL_BREAKOUT_AA, "1", true));
+        addParm(Section.OTHER, new BooleanParm("IPCallBreakOutCS",
+                RcsSettingsData.IPVOICECALL_BREAKOUT_CS, "1", true));
+        addParm(Section.OTHER, new BooleanParm("rcsIPVideoCallUpgradeFromCS",
+                RcsSettingsData.IPVIDEOCALL_UPGRADE_FROM_CS, "1", true));
+        addParm(Section.OTHER, new BooleanParm("rcsIPVideoCallUpgradeOnCapError",
+                RcsSettingsData.IPVIDEOCALL_UPGRADE_ON_CAPERROR, "1", true));
+        addParm(Section.OTHER, new BooleanParm("rcsIPVideoCallUpgradeAttemptEarly",
+                RcsSettingsData.IPVIDEOCALL_UPGRADE_ATTEMPT_EARLY, "1", true));
+        addParm(Section.OTHER, new IntegerParm("extensionsMaxMSRPSize",
+                RcsSettingsData.MAX_MSRP_SIZE_EXTENSIONS));
+        // Not supported: "WarnSizeImageShare"
+
+        addParm(Section.CONREFS, new StringParm("ConRef", RcsSettingsData.RCS_APN));
+
+        addParm(Section.PUBLIC_USER_IDENTITY_LIST, new Parm("Public_User_Identity", TYPE_TXT) {
+            @Override
+            void apply(ProvisioningParser parser, String value) {
+                String username = extractUserNamePart(value.trim());
+                PhoneNumber number = ContactUtil.getValidPhoneNumberFromUri(username);
+                if (number == null) {
+                    if (sLogger.isActivated()) {
+                        sLogger.error("Invalid public user identity '" + username + "'");
+                    }
+                    parser.mRcsSettings.setUserProfileImsUserName(null);
+                } else {
+                    ContactId contact = ContactUtil.createContactIdFromValidatedData(number);
+                    parser.mRcsSettings.setUserProfileImsUserName(contact);
                 }
-
-                if (rcsIPVoiceCallAuth == null) {
-                    if ((rcsIPVoiceCallAuth = getValueByParamName("rcsIPVoiceCallAuth", childnode,
-                            TYPE_INT)) != null) {
-                        int value = Integer.decode(rcsIPVoiceCallAuth);
-                        mRcsSettings.writeBoolean(RcsSettingsData.CAPABILITY_IP_VOICE_CALL,
-                                (value % 16) != 0);
-                        continue;
-                    }
+            }
+        });
+
+        addParm(Section.EXT, new BooleanParm("IntUrlFmt", RcsSettingsData.TEL_URI_FORMAT, "0",
+                true));
+        addParm(Section.EXT, new LongParm("MaxSizeImageShare",
+                RcsSettingsData.MAX_IMAGE_SHARE_SIZE, 1));
+        addParm(Section.EXT, new LongParm("MaxTimeVideoShare",
+                RcsSettingsData.MAX_VIDEO_SHARE_DURATION, SECONDS_TO_MILLISECONDS_CONVERSION_RATE));
+        // Not used (all number are formatted in international format): "NatUrlFmt"
+        // Not supported: "Q-Value"
+
+        addParm(Section.LBO_PCSCF_ADDRESS, new Parm("Address", TYPE_TXT) {
+            @Override
+            void apply(ProvisioningParser parser, String value) {
+                String[] address = value.split(":");
+                String proxyAddr = address[0];
+                parser.mRcsSettings.setImsProxyAddrForMobile("".equals(proxyAddr) ? null
+                        : proxyAddr);
+                parser.mRcsSettings.setImsProxyAddrForWifi("".equals(proxyAddr) ? null
+                        : proxyAddr);
+                if (address.length > 1) {
+                    int port = Integer.valueOf(address[1]);
+                    parser.mRcsSettings.setImsProxyPortForMobile(port);
+                    parser.mRcsSettings.setImsProxyPortForWifi(port);
                 }
-
-                if (rcsIPVideoCallAuth == null) {
-                    if ((rcsIPVideoCallAuth = getValueByParamName("rcsIPVideoCallAuth", childnode,
-                            TYPE_INT)) != null) {
-                        int value = Integer.decode(rcsIPVoiceCallAuth);
-                        mRcsSettings.writeBoolean(RcsSettingsData.CAPABILITY_IP_VIDEO_CALL,
-                                (value % 16) != 0);
-                        continue;
-                    }
+            }
+        });
+        // Not used: "AddressType"
+
+        addParm(Section.APPAUTH, new Parm("AuthType", TYPE_TXT) {
+            @Override
+            void apply(ProvisioningParser parser, String value) {
+                if (value.equals("EarlyIMS")) {
+                    parser.mRcsSettings
+                            .setImsAuthenticationProcedureForMobile(AuthenticationProcedure.GIBA);
+                } else {
+                    parser.mRcsSettings
+                            .setImsAuthenticationProcedureForMobile(AuthenticationProcedure.DIGEST);
                 }
+            }
+        });
+        addParm(Section.APPAUTH, new StringParm("Realm", RcsSettingsData.USERPROFILE_IMS_REALM));
+        addParm(Section.APPAUTH, new StringParm("UserName",
+                RcsSettingsData.USERPROFILE_IMS_PRIVATE_ID));
+        addParm(Section.APPAUTH, new StringParm("UserPwd",
+                RcsSettingsData.USERPROFILE_IMS_PASSWORD));
+
+        addParm(Section.IMS, new LongParm("Timer_T1", RcsSettingsData.SIP_TIMER_T1, 1));
+        addParm(Section.IMS, new LongParm("Timer_T2", RcsSettingsData.SIP_TIMER_T2, 1));
+        addParm(Section.IMS, new LongParm("Timer_T4", RcsSettingsData.SIP_TIMER_T4, 1));
+        addParm(Section.IMS, new StringParm("Private_User_Identity",
+                RcsSettingsData.USERPROFILE_IMS_PRIVATE_ID));
+        addParm(Section.IMS, new StringParm("Home_network_domain_name",
+                RcsSettingsData.USERPROFILE_IMS_HOME_DOMAIN));
+        addParm(Section.IMS, new BooleanParm("Keep_Alive_Enabled", RcsSettingsData.SIP_KEEP_ALIVE,
+                "1", true));
+        addParm(Section.IMS, new LongParm("RegRetryBaseTime",
+                RcsSettingsData.REGISTER_RETRY_BASE_TIME, SECONDS_TO_MILLISECONDS_CONVERSION_RATE));
+        addParm(Section.IMS, new LongParm("RegRetryMaxTime",
+                RcsSettingsData.REGISTER_RETRY_MAX_TIME, SECONDS_TO_MILLISECONDS_CONVERSION_RATE));
+        // Not supported under Android: "PDP_ContextOperPref"
+        // Not used for RCS: "Voice_Domain_Preference_E_UTRAN"
+        // Not used for RCS: "SMS_Over_IP_Networks_Indication"
+        // Not used for RCS: "Voice_Domain_Preference_UTRAN"
+        // Not used for RCS: "Mobility_Management_IMS_Voice_Termination"
+    }
 
-                if (allowExtensions == null) {
-                    if ((allowExtensions = getValueByParamName("allowRCSExtensions", childnode,
-                            TYPE_INT)) != null) {
-                        int value = Integer.decode(allowExtensions);
-                        mRcsSettings.writeBoolean(RcsSettingsData.ALLOW_EXTENSIONS,
-                                (value % 16) != 0);
-                        continue;
-                    }
-                }
+    /**
+     * Characteristic being parsed
+     */
+    private static class Frame {
+
+        /**
+         * Section of the characteristic or null if its content is skipped
+         */
+        private Section mSection;
+
+        private boolean mHasChildren;
+
+        /**
+         * Parameters already applied in this characteristic
+         */
+        private List<Parm> mAppliedParms;
+
+        /**
+         * Events of an application buffered until its AppRef parameter gives its section, or null
+         */
+        private List<Event> mBufferedEvents;
+
+        /**
+         * Depth of the buffered events, relative to the application
+         */
+        private int mBufferedDepth;
 
-                // Not used: "standaloneMsgAuth"
-                // Not used: "geolocPullAuth"
+        Frame(Section section) {
+            mSection = section;
+        }
+
+        boolean isApplied(Parm parm) {
+            return mAppliedParms != null && mAppliedParms.contains(parm);
+        }
 
-            } while ((childnode = childnode.getNextSibling()) != null);
+        void setApplied(Parm parm) {
+            if (mAppliedParms == null) {
+                mAppliedParms = new ArrayList<Parm>();
+            }
+            mAppliedParms.add(parm);
         }
     }
 
     /**
-     * Parse XDMS
-     * 
-     * @param node Node
+     * Frame of the elements whose content is skipped. It is shared as it is never modified.
      */
-    private void parseXDMS(Node node) {
-        String revokeTimer = null;
-        String xcapRootURI = null;
-        String xcapAuthenticationUsername = null;
-        String xcapAuthenticationSecret = null;
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (revokeTimer == null) {
-                    if ((revokeTimer = getValueByParamName("RevokeTimer", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeLong(RcsSettingsData.REVOKE_TIMEOUT,
-                                Long.parseLong(revokeTimer)
-                                        * SECONDS_TO_MILLISECONDS_CONVERSION_RATE);
-                        continue;
-                    }
-                }
+    private static final Frame IGNORED_FRAME = new Frame(null);
 
-                if (xcapRootURI == null) {
-                    if ((xcapRootURI = getValueByParamName("XCAPRootURI", childnode, TYPE_TXT)) != null) {
-                        mRcsSettings.setXdmServer("".equals(xcapRootURI) ? null : Uri
-                                .parse(xcapRootURI));
-                        continue;
-                    }
-                }
+    private static final int EVENT_CHARACTERISTIC = 0;
 
-                if (xcapAuthenticationUsername == null) {
-                    if ((xcapAuthenticationUsername = getValueByParamName(
-                            "XCAPAuthenticationUserName", childnode, TYPE_TXT)) != null) {
-                        mRcsSettings.setXdmLogin("".equals(xcapAuthenticationUsername) ? null
-                                : xcapAuthenticationUsername);
-                        continue;
-                    }
-                }
+    private static final int EVENT_PARM = 1;
 
-                if (xcapAuthenticationSecret == null) {
-                    if ((xcapAuthenticationSecret = getValueByParamName("XCAPAuthenticationSecret",
-                            childnode, TYPE_TXT)) != null) {
-                        mRcsSettings.setXdmPassword("".equals(xcapAuthenticationSecret) ? null
-                                : xcapAuthenticationSecret);
-                        continue;
-                    }
-                }
+    private static final int EVENT_OTHER = 2;
 
-                // Not used (only Digest is used): "XCAPAuthenticationType"
+    private static final int EVENT_TEXT = 3;
 
-            } while ((childnode = childnode.getNextSibling()) != null);
-        }
-    }
+    private static final int EVENT_END = 4;
 
     /**
-     * Parse supl services
-     * 
-     * @param node Node
+     * Buffered parsing event
      */
-    private void parseSupl(Node node) {
-        String textMaxLength = null;
-        String locInfoMaxValidTime = null;
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (textMaxLength == null) {
-                    if ((textMaxLength = getValueByParamName("TextMaxLength", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeInteger(RcsSettingsData.MAX_GEOLOC_LABEL_LENGTH,
-                                Integer.parseInt(textMaxLength));
-                        continue;
-                    }
-                }
+    private static class Event {
 
-                if (locInfoMaxValidTime == null) {
-                    if ((locInfoMaxValidTime = getValueByParamName("LocInfoMaxValidTime",
-                            childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeLong(RcsSettingsData.GEOLOC_EXPIRATION_TIME,
-                                Long.parseLong(locInfoMaxValidTime)
-                                        * SECONDS_TO_MILLISECONDS_CONVERSION_RATE);
-                        continue;
-                    }
-                }
+        private final int mKind;
 
-                // Not used: "geolocPullOpenValue"
-                // Not used: "geolocPullApiGwAddress"
-                // Not used: "geolocPullBlockTimer"
+        private final String mName;
 
-            } while ((childnode = childnode.getNextSibling()) != null);
+        private final String mValue;
+
+        Event(int kind, String name, String value) {
+            mKind = kind;
+            mName = name;
+            mValue = value;
         }
     }
 
+    private static final Event TEXT_EVENT = new Event(EVENT_TEXT, null, null);
+
+    private static final Event END_EVENT = new Event(EVENT_END, null, null);
+
     /**
-     * Parse service provider ext
-     * 
-     * @param node Node
+     * SAX handler dispatching the characteristics and parameters to the sections
      */
-    private void parseServiceProviderExt(Node node) {
-        Node typenode = null;
-        Node childnode = node.getFirstChild();
-        if (childnode != null) {
-            do {
-                if (childnode.getNodeName().equals("characteristic")) {
-                    if (childnode.getAttributes().getLength() > 0) {
-                        typenode = childnode.getAttributes().getNamedItem("type");
-                        if (typenode != null) {
-                            if (typenode.getNodeValue().equalsIgnoreCase("joyn")) {
-                                parseRcs(childnode);
-                            }
-                        }
-                    }
-                }
-            } while ((childnode = childnode.getNextSibling()) != null);
+    private class ProvisioningHandler extends DefaultHandler {
+
+        private final List<Frame> mFrames = new ArrayList<Frame>();
+
+        private Frame mRoot;
+
+        private String mRootType;
+
+        private int mNodeNumber = 0;
+
+        @Override
+        public void startElement(String uri, String localName, String qName,
+                Attributes attributes) {
+            String name = qName.length() > 0 ? qName : localName;
+            if (mRoot == null) {
+                mRoot = new Frame(Section.ROOT);
+                mFrames.add(mRoot);
+            } else if (ELEMENT_CHARACTERISTIC.equals(name)) {
+                start(EVENT_CHARACTERISTIC, attributes.getValue(ATTRIBUTE_TYPE), null);
+            } else if (ELEMENT_PARM.equals(name) || ELEMENT_PARAM.equals(name)) {
+                start(EVENT_PARM, attributes.getValue(ATTRIBUTE_NAME),
+                        attributes.getValue(ATTRIBUTE_VALUE));
+            } else {
+                start(EVENT_OTHER, null, null);
+            }
         }
-    }
 
-    /**
-     * Parse RCS
-     * 
-     * @param node Node
-     */
-    private void parseRcs(Node node) {
-        Node typenode = null;
-        if (node == null) {
-            return;
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            end();
         }
-        String msgCapValidity = null;
-        Node childnode = node.getFirstChild();
-        if (childnode != null) {
-            do {
-                if (childnode.getNodeName().equals("characteristic")) {
-                    NamedNodeMap attributes = childnode.getAttributes();
-                    if (attributes.getLength() > 0) {
-                        typenode = attributes.getNamedItem("type");
-                        if (typenode != null) {
-                            String nodeValue = typenode.getNodeValue();
-                            if (nodeValue.equalsIgnoreCase("UX")) {
-                                parseUx(childnode, ImsServerVersion.JOYN);
-                            } else if (nodeValue.equalsIgnoreCase("Messaging")) {
-                                parseMessaging(childnode);
-                            }
-                        }
-                    }
-                }
-                if (msgCapValidity == null) {
-                    if ((msgCapValidity = getValueByParamName("msgCapValidity", childnode, TYPE_INT)) != null) {
-                        long validity = Long.parseLong(msgCapValidity)
-                                * SECONDS_TO_MILLISECONDS_CONVERSION_RATE;
-                        mRcsSettings.writeLong(RcsSettingsData.MSG_CAP_VALIDITY_PERIOD, validity);
-                    }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            text();
+        }
+
+        private void start(int kind, String name, String value) {
+            Frame frame = mFrames.get(mFrames.size() - 1);
+            if (frame.mBufferedEvents != null) {
+                if (kind == EVENT_PARM && frame.mBufferedDepth == 0
+                        && APP_REF.equalsIgnoreCase(name) && value != null) {
+                    startApplication(frame, value);
+                } else {
+                    frame.mBufferedEvents.add(new Event(kind, name, value));
+                    frame.mBufferedDepth++;
+                    return;
                 }
-            } while ((childnode = childnode.getNextSibling()) != null);
+            }
+            addChild(frame);
+            switch (kind) {
+                case EVENT_CHARACTERISTIC:
+                    startCharacteristic(frame, name);
+                    break;
+                case EVENT_PARM:
+                    if (frame.mSection != null && name != null && value != null) {
+                        applyParm(frame, name, value);
+                    }
+                    mFrames.add(IGNORED_FRAME);
+                    break;
+                default:
+                    mFrames.add(IGNORED_FRAME);
+            }
         }
-    }
 
-    /**
-     * Parse Messaging
-     * 
-     * @param node Node
-     */
-    private void parseMessaging(Node node) {
-        String ftHTTPCapAlwaysOn = null;
-        String deliveryTimeout = null;
-        if (node == null) {
-            return;
+        private void end() {
+            int top = mFrames.size() - 1;
+            Frame frame = mFrames.get(top);
+            if (frame.mBufferedEvents != null && frame.mBufferedDepth > 0) {
+                frame.mBufferedEvents.add(END_EVENT);
+                frame.mBufferedDepth--;
+                return;
+            }
+            mFrames.remove(top);
+            if (Section.OTHER == frame.mSection && frame.mHasChildren
+                    && !frame.isApplied(UUID_PARM)) {
+                /*
+                 * UUID value is still null at this point, generate it as per RFC4122, section 4.2.
+                 */
+                mRcsSettings.writeString(RcsSettingsData.UUID, DeviceUtils.generateUUID()
+                        .toString());
+            }
         }
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (ftHTTPCapAlwaysOn == null) {
-                    if ((ftHTTPCapAlwaysOn = getValueByParamName("ftHTTPCapAlwaysOn", childnode,
-                            TYPE_INT)) != null) {
-                        mRcsSettings.writeBoolean(RcsSettingsData.FT_HTTP_CAP_ALWAYS_ON,
-                                !ftHTTPCapAlwaysOn.equals("0"));
-                        continue;
-                    }
-                }
-                if (deliveryTimeout == null) {
-                    if ((deliveryTimeout = getValueByParamName("deliveryTimeout", childnode,
-                            TYPE_INT)) != null) {
-                        long timeout = Long.parseLong(deliveryTimeout)
-                                * SECONDS_TO_MILLISECONDS_CONVERSION_RATE;
-                        mRcsSettings.writeLong(RcsSettingsData.MSG_DELIVERY_TIMEOUT, timeout);
-                        continue;
-                    }
+
+        private void text() {
+            Frame frame = mFrames.get(mFrames.size() - 1);
+            if (frame.mBufferedEvents != null) {
+                if (frame.mBufferedDepth > 0) {
+                    frame.mBufferedEvents.add(TEXT_EVENT);
                 }
-            } while ((childnode = childnode.getNextSibling()) != null);
+                return;
+            }
+            addChild(frame);
         }
-    }
 
-    /**
-     * Parse Ux
-     * 
-     * @param node Node
-     * @param isJoyn
-     */
-    private void parseUx(Node node, ImsServerVersion isJoyn) {
-        String messagingUX = null;
-
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-
-                if (messagingUX == null) {
-                    if ((messagingUX = getValueByParamName("messagingUX", childnode, TYPE_INT)) != null) {
-                        if (messagingUX.equals("1")) {
-                            mRcsSettings.setMessagingMode(MessagingMode.INTEGRATED);
-                        } else {
-                            if (ImsServerVersion.JOYN.equals(isJoyn)) {
-                                mRcsSettings.setMessagingMode(MessagingMode.CONVERGED);
-                            } else {
-                                mRcsSettings.setMessagingMode(MessagingMode.SEAMLESS);
-                            }
-                        }
-                        continue;
-                    }
-                }
-
-            } while ((childnode = childnode.getNextSibling()) != null);
-        }
-
-        // Not used: oneButtonVoiceCall
-        // Not used: oneButtonVideoCall
-    }
-
-    /**
-     * Parse IM
-     * 
-     * @param node Node
-     */
-    private void parseIM(Node node) {
-        String imCapAlwaysOn = null;
-        String ftCapAlwaysOn = null;
-        String imWarnSF = null;
-        String imSessionStart = null;
-        String ftWarnSize = null;
-        String autoAcceptFt = null;
-        String ftHttpCsUri = null;
-        String ftHttpCsUser = null;
-        String ftHttpCsPwd = null;
-        String ftDefaultMech = null;
-        String ftSF = null;
-        String chatAuth = null;
-        String smsFallBackAuth = null;
-        String autoAcceptChat = null;
-        String autoAcceptGroupChat = null;
-        String maxSize1to1 = null;
-        String maxSize1toM = null;
-        String timerIdle = null;
-        String maxSizeFileTransfer = null;
-        String ftThumb = null;
-        String maxAdhocGroupSize = null;
-        String confFctyUri = null;
-        String groupChatSF = null;
-        String groupChatOnlySF = null;
-        String maxConcurrentSession = null;
-        String imMsgTech = null;
-        String firstMessageInvite = null;
-
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (imCapAlwaysOn == null) {
-                    if ((imCapAlwaysOn = getValueByParamName("imCapAlwaysON", childnode, TYPE_INT)) != null) {
-                        boolean _imCapAlwaysOn = !imCapAlwaysOn.equals("0");
-                        mRcsSettings.writeBoolean(RcsSettingsData.IM_CAPABILITY_ALWAYS_ON,
-                                _imCapAlwaysOn);
-                        // set default IM messaging method if first provisioning
-                        if (mFirst) {
-                            if (_imCapAlwaysOn) {
-                                mRcsSettings.setDefaultMessagingMethod(MessagingMethod.RCS);
-                            } else {
-                                mRcsSettings.setDefaultMessagingMethod(MessagingMethod.AUTOMATIC);
-                            }
-                        }
-                        continue;
-                    }
-                }
-
-                if (ftCapAlwaysOn == null) {
-                    if ((ftCapAlwaysOn = getValueByParamName("ftCapAlwaysON", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeBoolean(RcsSettingsData.FT_CAPABILITY_ALWAYS_ON,
-                                !ftCapAlwaysOn.equals("0"));
-                        continue;
-                    }
-                }
-
-                if (maxConcurrentSession == null) {
-                    if ((maxConcurrentSession = getValueByParamName("MaxConcurrentSession",
-                            childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeInteger(RcsSettingsData.MAX_CHAT_SESSIONS,
-                                Integer.parseInt(maxConcurrentSession));
-                        continue;
-                    }
-                }
-
-                if (groupChatSF == null) {
-                    if ((groupChatSF = getValueByParamName("GroupChatFullStandFwd", childnode,
-                            TYPE_INT)) != null) {
-                        mRcsSettings.writeBoolean(RcsSettingsData.CAPABILITY_GROUP_CHAT_SF,
-                                !groupChatSF.equals("0"));
-                        continue;
-                    }
-                }
-
-                if (groupChatOnlySF == null) {
-                    if ((groupChatOnlySF = getValueByParamName("GroupChatOnlyFStandFwd", childnode,
-                            TYPE_INT)) != null) {
-                        mRcsSettings.writeBoolean(RcsSettingsData.GROUP_CHAT_INVITE_ONLY_FULL_SF,
-                                !groupChatOnlySF.equals("0"));
-                        continue;
-                    }
-                }
-
-                if (imWarnSF == null) {
-                    if ((imWarnSF = getValueByParamName("imWarnSF", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeBoolean(RcsSettingsData.WARN_SF_SERVICE,
-                                !imWarnSF.equals("0"));
-                        continue;
-                    }
-                }
-
-                if (autoAcceptFt == null) {
-                    if ((autoAcceptFt = getValueByParamName("ftAutAccept", childnode, TYPE_INT)) != null) {
-                        boolean aaModeChangeable = !autoAcceptFt.equals("0");
-                        // Check if first provisioning or transition of MNO setting
-                        if (mFirst
-                                || (aaModeChangeable != mRcsSettings
-                                        .isFtAutoAcceptedModeChangeable())) {
-                            // Save first or new setting value
-                            mRcsSettings.setFtAutoAcceptedModeChangeable(aaModeChangeable);
-                            if (aaModeChangeable) {
-                                // Enforce user settings for AA to default value
-                                // By default, AA is enabled in normal conditions
-                                mRcsSettings.setFileTransferAutoAccepted(true);
-                                // By default, AA is disabled in roaming
-                                mRcsSettings.setFileTransferAutoAcceptedInRoaming(false);
-                            } else {
-                                // Enforce user settings for AA for normal conditions and roaming
-                                mRcsSettings.setFileTransferAutoAccepted(false);
-                                mRcsSettings.setFileTransferAutoAcceptedInRoaming(false);
-                            }
-                        }
-                        continue;
-                    }
-                }
-
-                if (ftSF == null) {
-                    if ((ftSF = getValueByParamName("ftStAndFwEnabled", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeBoolean(RcsSettingsData.CAPABILITY_FILE_TRANSFER_SF,
-                                !ftSF.equals("0"));
-                        continue;
-                    }
-                }
-
-                if (ftHttpCsUri == null) {
-                    if ((ftHttpCsUri = getValueByParamName("ftHTTPCSURI", childnode, TYPE_TXT)) != null) {
-                        /*
-                         * According to "Rich Communication Suite 5.1 Advanced Communications
-                         * Services and Client Specification Version 4.0" 3.5.4.8.3 File transfer
-                         * procedure 3.5.4.8.3.1 Sender procedures This specification uses the term
-                         * 'HTTP POST' and 'HTTP GET' as a generic reference to the action of using
-                         * the POST or GET method. However, it is strongly recommended that whenever
-                         * the POST action contains sensitive information such as a user ID or
-                         * password, the action should take place over a secure connection and/or
-                         * via HTTPS explicitly.
-                         */
-                        Uri ftHttpServAddr = "".equals(ftHttpCsUri) ? null : Uri.parse(ftHttpCsUri);
-                        if (ftHttpServAddr != null
-                                && !PROTOCOL_HTTPS.equals(ftHttpServAddr.getScheme())) {
-                            sLogger.error(new StringBuilder(ftHttpCsUri)
-                                    .append(" is not a secure protocol, hence disabling ftHttp capability.")
-                                    .toString());
-                            continue;
-                        }
-                        mRcsSettings.setFtHttpServer(ftHttpServAddr);
-                        continue;
-                    }
-                }
-
-                if (ftHttpCsUser == null) {
-                    if ((ftHttpCsUser = getValueByParamName("ftHTTPCSUser", childnode, TYPE_TXT)) != null) {
-                        mRcsSettings.setFtHttpLogin("".equals(ftHttpCsUser) ? null : ftHttpCsUser);
-                        continue;
-                    }
-                }
-
-                if (ftHttpCsPwd == null) {
-                    if ((ftHttpCsPwd = getValueByParamName("ftHTTPCSPwd", childnode, TYPE_TXT)) != null) {
-                        mRcsSettings.setFtHttpPassword("".equals(ftHttpCsPwd) ? null : ftHttpCsPwd);
-                        continue;
-                    }
-                }
-
-                if (ftDefaultMech == null) {
-                    if ((ftDefaultMech = getValueByParamName("ftDefaultMech", childnode, TYPE_TXT)) != null) {
-                        FileTransferProtocol protocol = FileTransferProtocol.valueOf(ftDefaultMech);
-                        mRcsSettings.setFtProtocol(protocol);
-                        continue;
-                    }
-                }
-
-                if (imSessionStart == null) {
-                    if ((imSessionStart = getValueByParamName("imSessionStart", childnode, TYPE_INT)) != null) {
-                        ImSessionStartMode mode = ImSessionStartMode.valueOf(Integer
-                                .parseInt(imSessionStart));
-                        mRcsSettings.setImSessionStartMode(mode);
-                        continue;
-                    }
-                }
-
-                if (ftWarnSize == null) {
-                    if ((ftWarnSize = getValueByParamName("ftWarnSize", childnode, TYPE_INT)) != null) {
-                        long size = Long.parseLong(ftWarnSize) * 1024L;
-                        mRcsSettings.setWarningMaxFileTransferSize(size);
-                        continue;
-                    }
-                }
-
-                if (chatAuth == null) {
-                    if ((chatAuth = getValueByParamName("ChatAuth", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeBoolean(RcsSettingsData.CAPABILITY_IM_SESSION,
-                                !chatAuth.equals("0"));
-                        continue;
-                    }
-                }
-
-                if (smsFallBackAuth == null) {
-                    if ((smsFallBackAuth = getValueByParamName("SmsFallBackAuth", childnode,
-                            TYPE_INT)) != null) {
-                        // Careful:
-                        // 0- Indicates authorization is ok
-                        // 1- Indicates authorization is non ok
-                        mRcsSettings.writeBoolean(RcsSettingsData.SMS_FALLBACK_SERVICE,
-                                smsFallBackAuth.equals("0"));
-                        continue;
-                    }
-                }
-
-                if (autoAcceptChat == null) {
-                    if ((autoAcceptChat = getValueByParamName("AutAccept", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeBoolean(RcsSettingsData.AUTO_ACCEPT_CHAT,
-                                !autoAcceptChat.equals("0"));
-                        continue;
-                    }
-                }
-
-                if (autoAcceptGroupChat == null) {
-                    if ((autoAcceptGroupChat = getValueByParamName("AutAcceptGroupChat", childnode,
-                            TYPE_INT)) != null) {
-                        mRcsSettings.writeBoolean(RcsSettingsData.AUTO_ACCEPT_GROUP_CHAT,
-                                !autoAcceptGroupChat.equals("0"));
-                        continue;
-                    }
-                }
-
-                if (maxSize1to1 == null) {
-                    if ((maxSize1to1 = getValueByParamName("MaxSize1to1", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeInteger(RcsSettingsData.MAX_CHAT_MSG_LENGTH,
-                                Integer.parseInt(maxSize1to1));
-                        continue;
-                    }
-                }
-
-                if (maxSize1toM == null) {
-                    if ((maxSize1toM = getValueByParamName("MaxSize1toM", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeInteger(RcsSettingsData.MAX_GROUPCHAT_MSG_LENGTH,
-                                Integer.parseInt(maxSize1toM));
-                        continue;
-                    }
-                }
-
-                if (timerIdle == null) {
-                    if ((timerIdle = getValueByParamName("TimerIdle", childnode, TYPE_INT)) != null) {
-                        mRcsSettings
-                                .writeLong(RcsSettingsData.CHAT_IDLE_DURATION,
-                                        Long.parseLong(timerIdle)
-                                                * SECONDS_TO_MILLISECONDS_CONVERSION_RATE);
-                        continue;
-                    }
-                }
-
-                if (maxSizeFileTransfer == null) {
-                    if ((maxSizeFileTransfer = getValueByParamName("MaxSizeFileTr", childnode,
-                            TYPE_INT)) != null) {
-                        long size = Long.parseLong(maxSizeFileTransfer) * 1024L;
-                        mRcsSettings.setMaxFileTransferSize(size);
-                        continue;
-                    }
-                }
-
-                if (ftThumb == null) {
-                    if ((ftThumb = getValueByParamName("ftThumb", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeBoolean(
-                                RcsSettingsData.CAPABILITY_FILE_TRANSFER_THUMBNAIL,
-                                !ftThumb.equals("0"));
-                        continue;
-                    }
-                }
-
-                if (maxAdhocGroupSize == null) {
-                    if ((maxAdhocGroupSize = getValueByParamName("max_adhoc_group_size", childnode,
-                            TYPE_INT)) != null) {
-                        mRcsSettings.writeInteger(RcsSettingsData.MAX_CHAT_PARTICIPANTS,
-                                Integer.parseInt(maxAdhocGroupSize));
-                        continue;
-                    }
-                }
-
-                if (confFctyUri == null) {
-                    if ((confFctyUri = getValueByParamName("conf-fcty-uri", childnode, TYPE_TXT)) != null) {
-                        mRcsSettings.setImConferenceUri("".equals(confFctyUri) ? null
-                                : formatSipUri(confFctyUri.trim()));
-                        continue;
-                    }
-                }
-
-                if (imMsgTech == null) {
-                    if ((imMsgTech = getValueByParamName("imMsgTech", childnode, TYPE_INT)) != null) {
-                        ImMsgTech value = ImMsgTech.valueOf(Integer.parseInt(imMsgTech));
-                        mRcsSettings.setImMsgTech(value);
-                        continue;
-                    }
-                }
-
-                if (firstMessageInvite == null) {
-                    if ((firstMessageInvite = getValueByParamName("firstMsgInvite", childnode,
-                            TYPE_INT)) != null) {
-                        boolean isFirstMessageInvite = !firstMessageInvite.equals("0");
-                        /*
-                         * Stack only support simple IM now, means isFirstMessageInvite must be set
-                         * to true. Specification reference: Rich Communication Suite 5.1 Advanced
-                         * Communications Services and Client Specification Version 3.0 Page 182
-                         * 3.3.4.2 Technical Realization of 1-to-1 Chat features when using OMA
-                         * SIMPLE IM For OMA SIMPLE IM, first message is always included in a
-                         * CPIM/IMDN wrapper carried in the SIP INVITE request. So the configuration
-                         * parameter FIRST MSG IN INVITE defined in Table 77 is always set to 1. A
-                         * client should always include "positive-delivery" in the value for the
-                         * Disposition-Notification header field in that message. That means that
-                         * the value of the header field is either "positive-delivery" or
-                         * "positive-delivery,display" depending on whether display notifications
-                         * were requested. The value of "negativedelivery" is not used in RCS for
-                         * 1-to-1 Chat. SIP INVITE requests for a one-to-one session that carry a
-                         * message in CPIM/IMDN wrapper shall be rejected by the server unless they
-                         * carry a Disposition-Notification header that at least includes
-                         * "positivedelivery".
-                         */
-                        if (!isFirstMessageInvite) {
-                            sLogger.error("isFirstMessageInInvite is set to false, it is incorrect according"
-                                    + " to Blackbird protocol, please check provisioning values. Ignoring the "
-                                    + "set to false request.");
-                            continue;
-                        }
-                        mRcsSettings.setFirstMessageInInvite(isFirstMessageInvite);
-                        continue;
-                    }
-                }
-
-                // Not used for RCS: "pres-srv-cap"
-                // Not used for RCS: "deferred-msg-func-uri"
-                // Not used for RCS: "exploder-uri"
-
-            } while ((childnode = childnode.getNextSibling()) != null);
-        }
-    }
-
-    /**
-     * Parse capability discovery
-     * 
-     * @param node Node
-     */
-    private void parseCapabilityDiscovery(Node node) {
-        String pollingPeriod = null;
-        String capInfoExpiry = null;
-        String presenceDiscovery = null;
-        if (node == null) {
-            return;
+        private void addChild(Frame frame) {
+            if (frame.mSection == null || frame.mHasChildren) {
+                return;
+            }
+            frame.mHasChildren = true;
+            if (Section.SERVICES == frame.mSection) {
+                /*
+                 * Node "SERVICES" is mandatory in GSMA release Blackbird and not present in
+                 * previous one Albatros. Only if the parsing result contains a SERVICE tree,
+                 * Blackbird is assumed as release. This trick is used to detect the GSMA release
+                 * as provisioned by the network.
+                 */
+                mRcsSettings.setGsmaRelease(GsmaRelease.BLACKBIRD);
+            }
         }
-        Node childnode = node.getFirstChild();
-        Node typenode = null;
-        if (childnode != null) {
-            do {
-                if (childnode.getNodeName().equals("characteristic")) {
-                    NamedNodeMap attributes = childnode.getAttributes();
-                    if (attributes.getLength() > 0) {
-                        typenode = attributes.getNamedItem("type");
-                        if (typenode != null) {
-                            if (typenode.getNodeValue().equalsIgnoreCase("Ext")) {
-                                parseExt(childnode);
-                            }
-                        }
-                    }
-                }
-                if (pollingPeriod == null) {
-                    if ((pollingPeriod = getValueByParamName("pollingPeriod", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeLong(RcsSettingsData.CAPABILITY_POLLING_PERIOD,
-                                Long.parseLong(pollingPeriod)
-                                        * SECONDS_TO_MILLISECONDS_CONVERSION_RATE);
-                        continue;
-                    }
-                }
 
-                if (capInfoExpiry == null) {
-                    if ((capInfoExpiry = getValueByParamName("capInfoExpiry", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeLong(RcsSettingsData.CAPABILITY_EXPIRY_TIMEOUT,
-                                Long.parseLong(capInfoExpiry)
-                                        * SECONDS_TO_MILLISECONDS_CONVERSION_RATE);
-                        continue;
-                    }
-                }
-
-                if (presenceDiscovery == null) {
-                    if ((presenceDiscovery = getValueByParamName("presenceDisc", childnode,
-                            TYPE_INT)) != null) {
-                        mRcsSettings.writeBoolean(RcsSettingsData.CAPABILITY_PRESENCE_DISCOVERY,
-                                !presenceDiscovery.equals("0"));
-                        continue;
-                    }
+        private void startCharacteristic(Frame parent, String type) {
+            if (parent.mSection == null || type == null) {
+                mFrames.add(IGNORED_FRAME);
+                return;
+            }
+            Map<String, Section> sections = SECTIONS.get(parent.mSection);
+            Section section = sections == null ? null : sections.get(type.toLowerCase(Locale.US));
+            if (Section.ROOT == parent.mSection) {
+                if (sLogger.isActivated()) {
+                    sLogger.debug("Node characteristic with type ".concat(type));
                 }
-            } while ((childnode = childnode.getNextSibling()) != null);
-        }
-    }
-
-    /**
-     * Parse APN
-     * 
-     * @param node Node
-     */
-    private void parseAPN(Node node) {
-        // Not supported: "rcseOnlyAPN"
-        String enableRcseSwitch = null;
-
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-
-                if (enableRcseSwitch == null) {
-                    if ((enableRcseSwitch = getValueByParamName("enableRcseSwitch", childnode,
-                            TYPE_INT)) != null) {
-                        mRcsSettings.setEnableRcseSwitch(EnableRcseSwitch.valueOf(Integer
-                                .valueOf(enableRcseSwitch)));
-                    }
+                mNodeNumber++;
+                mRootType = type.toUpperCase(Locale.US);
+                if (section == null && sLogger.isActivated()) {
+                    sLogger.warn("invalid node type: ".concat(mRootType));
                 }
-
-            } while ((childnode = childnode.getNextSibling()) != null);
-        }
-    }
-
-    /**
-     * Parse transport protocol
-     * 
-     * @param node Node
-     */
-    private void parseTransportProtocol(Node node) {
-        String psSignalling = null;
-        String wifiSignalling = null;
-        String wifiMedia = null;
-        String wifiRtMedia = null;
-        if (node == null) {
-            return;
+            }
+            if (section == null) {
+                mFrames.add(IGNORED_FRAME);
+                return;
+            }
+            Frame frame = new Frame(section);
+            if (Section.APPLICATION == section) {
+                frame.mBufferedEvents = new ArrayList<Event>();
+            }
+            mFrames.add(frame);
         }
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (psSignalling == null) {
-                    if ((psSignalling = getValueByParamName("psSignalling", childnode, TYPE_TXT)) != null) {
-                        if (psSignalling.equals("SIPoUDP")) {
-                            mRcsSettings.writeString(
-                                    RcsSettingsData.SIP_DEFAULT_PROTOCOL_FOR_MOBILE,
-                                    ListeningPoint.UDP);
-                        } else if (psSignalling.equals("SIPoTCP")) {
-                            mRcsSettings.writeString(
-                                    RcsSettingsData.SIP_DEFAULT_PROTOCOL_FOR_MOBILE,
-                                    ListeningPoint.TCP);
-                        } else if (psSignalling.equals("SIPoTLS")) {
-                            mRcsSettings.writeString(
-                                    RcsSettingsData.SIP_DEFAULT_PROTOCOL_FOR_MOBILE,
-                                    ListeningPoint.TLS);
-                        }
-                        continue;
-                    }
-                }
-
-                if (wifiSignalling == null) {
-                    if ((wifiSignalling = getValueByParamName("wifiSignalling", childnode, TYPE_TXT)) != null) {
-                        if (wifiSignalling.equals("SIPoUDP")) {
-                            mRcsSettings.writeString(RcsSettingsData.SIP_DEFAULT_PROTOCOL_FOR_WIFI,
-                                    ListeningPoint.UDP);
-                        } else if (wifiSignalling.equals("SIPoTCP")) {
-                            mRcsSettings.writeString(RcsSettingsData.SIP_DEFAULT_PROTOCOL_FOR_WIFI,
-                                    ListeningPoint.TCP);
-                        } else if (wifiSignalling.equals("SIPoTLS")) {
-                            mRcsSettings.writeString(RcsSettingsData.SIP_DEFAULT_PROTOCOL_FOR_WIFI,
-                                    ListeningPoint.TLS);
-                        }
-                        continue;
-                    }
-                }
 
-                if (wifiMedia == null) {
-                    if ((wifiMedia = getValueByParamName("wifiMedia", childnode, TYPE_TXT)) != null) {
-                        if (wifiMedia.equals("MSRP")) {
-                            mRcsSettings.writeBoolean(RcsSettingsData.SECURE_MSRP_OVER_WIFI, false);
-                        } else if (wifiMedia.equals("MSRPoTLS")) {
-                            mRcsSettings.writeBoolean(RcsSettingsData.SECURE_MSRP_OVER_WIFI, true);
-                        }
-                        continue;
-                    }
-                }
-
-                if (wifiRtMedia == null) {
-                    if ((wifiRtMedia = getValueByParamName("wifiRTMedia", childnode, TYPE_TXT)) != null) {
-                        if ("RTP".equals(wifiMedia)) {
-                            mRcsSettings.writeBoolean(RcsSettingsData.SECURE_RTP_OVER_WIFI, false);
-                        } else if ("SRTP".equals(wifiMedia)) {
-                            mRcsSettings.writeBoolean(RcsSettingsData.SECURE_RTP_OVER_WIFI, true);
-                        }
-                        continue;
-                    }
+        /**
+         * Gives its section to an application from its AppRef parameter, then replays its
+         * buffered content in this section
+         */
+        private void startApplication(Frame frame, String appRef) {
+            List<Event> events = frame.mBufferedEvents;
+            frame.mBufferedEvents = null;
+            if (appRef.equalsIgnoreCase("IMS-Settings") || appRef.equalsIgnoreCase("ims-rcse")) {
+                frame.mSection = Section.IMS;
+            } else if (appRef.equalsIgnoreCase("RCSe-Settings")) {
+                frame.mSection = Section.RCSE;
+            } else {
+                frame.mSection = null;
+            }
+            for (Event event : events) {
+                switch (event.mKind) {
+                    case EVENT_TEXT:
+                        text();
+                        break;
+                    case EVENT_END:
+                        end();
+                        break;
+                    default:
+                        start(event.mKind, event.mName, event.mValue);
                 }
-
-                // Not supported: "psMedia"
-                // Not supported: "psRTMedia"
-
-            } while ((childnode = childnode.getNextSibling()) != null);
+            }
         }
-    }
-
-    /**
-     * Parse other
-     * 
-     * @param node Node
-     */
-    private void parseOther(Node node) {
-        String endUserConfReqId = null;
-        String deviceID = null;
-        String uuidValue = null;
-        String aaIPCallBreakOut = null;
-        String csIPCallBreakOut = null;
-        String rcsIPVideoCallUpgradeFromCS = null;
-        String rcsIPVideoCallUpgradeOnCapError = null;
-        String beIPVideoCallUpgradeAttemptEarly = null;
-        String maxMsrpLengthExtensions = null;
-
-        Node typenode = null;
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (childnode.getNodeName().equals("characteristic")) {
-                    if (childnode.getAttributes().getLength() > 0) {
-                        typenode = childnode.getAttributes().getNamedItem("type");
-                        if (typenode != null) {
-                            if (typenode.getNodeValue().equalsIgnoreCase("transportProto")) {
-                                parseTransportProtocol(childnode);
-                            }
-                        }
-                    }
-                }
-
-                if (endUserConfReqId == null) {
-                    if ((endUserConfReqId = getValueByParamName("endUserConfReqId", childnode,
-                            TYPE_TXT)) != null) {
-                        mRcsSettings
-                                .setEndUserConfirmationRequestUri("".equals(endUserConfReqId) ? null
-                                        : formatSipUri(endUserConfReqId.trim()));
-                        continue;
-                    }
-                }
 
-                if (deviceID == null) {
-                    if ((deviceID = getValueByParamName("deviceID", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeBoolean(RcsSettingsData.USE_IMEI_AS_DEVICE_ID,
-                                deviceID.equals("0"));
-                        continue;
-                    }
-                }
-
-                if (uuidValue == null) {
-                    if ((uuidValue = getValueByParamName(UUID_VALUE, childnode, TYPE_TXT)) != null) {
-                        mRcsSettings.writeString(RcsSettingsData.UUID, "".equals(uuidValue) ? null
-                                : uuidValue);
-                        continue;
-                    }
-                }
-
-                if (aaIPCallBreakOut == null) {
-                    if ((aaIPCallBreakOut = getValueByParamName("IPCallBreakOut", childnode,
-                            TYPE_INT)) != null) {
-                        mRcsSettings.writeBoolean(RcsSettingsData.IPVOICECALL_BREAKOUT_AA,
-                                aaIPCallBreakOut.equals("1"));
-                        continue;
-                    }
-                }
-
-                if (csIPCallBreakOut == null) {
-                    if ((csIPCallBreakOut = getValueByParamName("IPCallBreakOutCS", childnode,
-                            TYPE_INT)) != null) {
-                        mRcsSettings.writeBoolean(RcsSettingsData.IPVOICECALL_BREAKOUT_CS,
-                                csIPCallBreakOut.equals("1"));
-                        continue;
-                    }
-                }
-
-                if (rcsIPVideoCallUpgradeFromCS == null) {
-                    if ((rcsIPVideoCallUpgradeFromCS = getValueByParamName(
-                            "rcsIPVideoCallUpgradeFromCS", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeBoolean(RcsSettingsData.IPVIDEOCALL_UPGRADE_FROM_CS,
-                                rcsIPVideoCallUpgradeFromCS.equals("1"));
-                        continue;
-                    }
-                }
-
-                if (rcsIPVideoCallUpgradeOnCapError == null) {
-                    if ((rcsIPVideoCallUpgradeOnCapError = getValueByParamName(
-                            "rcsIPVideoCallUpgradeOnCapError", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeBoolean(RcsSettingsData.IPVIDEOCALL_UPGRADE_ON_CAPERROR,
-                                rcsIPVideoCallUpgradeOnCapError.equals("1"));
-                        continue;
-                    }
-                }
-
-                if (beIPVideoCallUpgradeAttemptEarly == null) {
-                    if ((beIPVideoCallUpgradeAttemptEarly = getValueByParamName(
-                            "rcsIPVideoCallUpgradeAttemptEarly", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeBoolean(
-                                RcsSettingsData.IPVIDEOCALL_UPGRADE_ATTEMPT_EARLY,
-                                beIPVideoCallUpgradeAttemptEarly.equals("1"));
-                        continue;
-                    }
-                }
-
-                if (maxMsrpLengthExtensions == null) {
-                    if ((maxMsrpLengthExtensions = getValueByParamName("extensionsMaxMSRPSize",
-                            childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeInteger(RcsSettingsData.MAX_MSRP_SIZE_EXTENSIONS,
-                                Integer.parseInt(maxMsrpLengthExtensions));
-                        continue;
+        private void applyParm(Frame frame, String name, String value) {
+            Map<String, Parm> parms = PARMS.get(frame.mSection);
+            Parm parm = parms == null ? null : parms.get(name.toLowerCase(Locale.US));
+            if (parm == null || frame.isApplied(parm)) {
+                return;
+            }
+            if (parm.mType == TYPE_INT) {
+                try {
+                    Integer.parseInt(value);
+                } catch (NumberFormatException e) {
+                    if (sLogger.isActivated()) {
+                        sLogger.warn("Bad value for integer parameter ".concat(parm.mName));
                     }
+                    return;
                 }
-
-                // Not supported: "WarnSizeImageShare"
-
-            } while ((childnode = childnode.getNextSibling()) != null);
-
-            /**
-             * Check if UUID value is still null at this point. If NULL,then generate it as per
-             * RFC4122, section 4.2.
-             */
-            if (uuidValue == null) {
-                mRcsSettings.writeString(RcsSettingsData.UUID, DeviceUtils.generateUUID()
-                        .toString());
             }
-        }
-    }
-
-    /**
-     * Parse connection reference
-     * 
-     * @param node Node
-     */
-    private void parseConRefs(Node node) {
-        String conRef = null;
-        if (node == null) {
-            return;
-        }
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (conRef == null) {
-                    if ((conRef = getValueByParamName("ConRef", childnode, TYPE_TXT)) != null) {
-                        mRcsSettings.writeString(RcsSettingsData.RCS_APN, "".equals(conRef) ? null
-                                : conRef);
-                        continue;
-                    }
+            frame.setApplied(parm);
+            try {
+                parm.apply(ProvisioningParser.this, value);
+            } catch (IllegalArgumentException e) {
+                /* An invalid value aborts the parsing of the root characteristic */
+                if (sLogger.isActivated()) {
+                    sLogger.warn("invalid node type: ".concat(mRootType));
                 }
-            } while ((childnode = childnode.getNextSibling()) != null);
-        }
-    }
-
-    /**
-     * Parse public user identity
-     * 
-     * @param node Node
-     */
-    private void parsePublicUserIdentity(Node node) {
-        String publicUserIdentity = null;
-        if (node == null) {
-            return;
-        }
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (publicUserIdentity == null) {
-                    if ((publicUserIdentity = getValueByParamName("Public_User_Identity",
-                            childnode, TYPE_TXT)) != null) {
-                        String username = extractUserNamePart(publicUserIdentity.trim());
-                        PhoneNumber number = ContactUtil.getValidPhoneNumberFromUri(username);
-                        if (number == null) {
-                            if (sLogger.isActivated()) {
-                                sLogger.error("Invalid public user identity '" + username + "'");
-                            }
-                            mRcsSettings.setUserProfileImsUserName(null);
-                        } else {
-                            ContactId contact = ContactUtil
-                                    .createContactIdFromValidatedData(number);
-                            mRcsSettings.setUserProfileImsUserName(contact);
-                        }
-                        continue;
-                    }
+                for (int i = 1; i < mFrames.size(); i++) {
+                    mFrames.get(i).mSection = null;
                 }
-            } while ((childnode = childnode.getNextSibling()) != null);
+            }
         }
     }
 
     /**
-     * Parse the secondary device parameter
-     * 
-     * @param node Node
-     */
-    private void parseSecondaryDevicePar(Node node) {
-        // TODO: to be managed thks to a flag main/secondary device
-        /*
-         * String voiceCall = null; String chat = null; String sendSms = null; String fileTranfer =
-         * null; String videoShare = null; String imageShare = null; String geolocPush = null; if
-         * (node == null) { return; } Node childnode = node.getFirstChild(); if (childnode != null)
-         * { do { if (chat == null) { if ((chat = getValueByParamName("Chat", childnode, TYPE_INT))
-         * != null) { if (chat.equals("0")) { mRcsSettings.writeParameter(
-         * RcsSettingsData.CAPABILITY_IM_SESSION, RcsSettingsData.TRUE); } else {
-         * mRcsSettings.writeParameter( RcsSettingsData.CAPABILITY_IM_SESSION,
-         * RcsSettingsData.FALSE); } continue; } } if (fileTranfer == null) { if ((fileTranfer =
-         * getValueByParamName("FileTranfer", childnode, TYPE_INT)) != null) { if
-         * (fileTranfer.equals("0")) { mRcsSettings.writeParameter(
-         * RcsSettingsData.CAPABILITY_FILE_TRANSFER, RcsSettingsData.TRUE); } else {
-         * mRcsSettings.writeParameter( RcsSettingsData.CAPABILITY_FILE_TRANSFER,
-         * RcsSettingsData.FALSE); } continue; } } if (videoShare == null) { if ((videoShare =
-         * getValueByParamName("VideoShare", childnode, TYPE_INT)) != null) { if
-         * (videoShare.equals("0")) { mRcsSettings.writeParameter(
-         * RcsSettingsData.CAPABILITY_VIDEO_SHARING, RcsSettingsData.TRUE); } else {
-         * mRcsSettings.writeParameter( RcsSettingsData.CAPABILITY_VIDEO_SHARING,
-         * RcsSettingsData.FALSE); } continue; } } if (imageShare == null) { if ((imageShare =
-         * getValueByParamName("ImageShare", childnode, TYPE_INT)) != null) { if
-         * (imageShare.equals("0")) { mRcsSettings.writeParameter(
-         * RcsSettingsData.CAPABILITY_IMAGE_SHARING, RcsSettingsData.TRUE); } else {
-         * mRcsSettings.writeParameter( RcsSettingsData.CAPABILITY_IMAGE_SHARING,
-         * RcsSettingsData.FALSE); } continue; } } if (geolocPush == null) { if ((geolocPush =
-         * getValueByParamName("GeoLocPush", childnode, TYPE_INT)) != null) { if
-         * (geolocPush.equals("0")) { mRcsSettings.writeParameter(
-         * RcsSettingsData.CAPABILITY_GEOLOCATION_PUSH, RcsSettingsData.TRUE); } else {
-         * mRcsSettings.writeParameter( RcsSettingsData.CAPABILITY_GEOLOCATION_PUSH,
-         * RcsSettingsData.FALSE); } continue; } } // Not used for RCS: "SendSms" // Not used for
-         * RCS: "VoiceCall" } while ((childnode = childnode.getNextSibling()) != null); }
-         */
-    }
-
-    /**
-     * Parse ext
+     * Constructor
      * 
-     * @param node Node
+     * @param content The content to be parsed.
+     * @param rcsSettings the RCS settings.
      */
-    private void parseExt(Node node) {
-        String intUrlFmt = null;
-        String maxSizeImageShare = null;
-        String maxTimeVideoShare = null;
-        Node typenode = null;
-        if (node == null) {
-            return;
-        }
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (childnode.getNodeName().equals("characteristic")) {
-                    if (childnode.getAttributes().getLength() > 0) {
-                        typenode = childnode.getAttributes().getNamedItem("type");
-                        if (typenode != null) {
-                            String nodeValue = typenode.getNodeValue();
-                            if (nodeValue.equalsIgnoreCase("SecondaryDevicePar")) {
-                                parseSecondaryDevicePar(childnode);
-                            } else if (nodeValue.equalsIgnoreCase("joyn")) {
-                                parseRcs(childnode);
-                            }
-                        }
-                    }
-                }
-
-                if (intUrlFmt == null) {
-                    if ((intUrlFmt = getValueByParamName("IntUrlFmt", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeBoolean(RcsSettingsData.TEL_URI_FORMAT,
-                                intUrlFmt.equals("0"));
-                        continue;
-                    }
-                }
-
-                if (maxSizeImageShare == null) {
-                    if ((maxSizeImageShare = getValueByParamName("MaxSizeImageShare", childnode,
-                            TYPE_INT)) != null) {
-                        long size = Long.parseLong(maxSizeImageShare);
-                        mRcsSettings.setMaxImageSharingSize(size);
-                        continue;
-                    }
-                }
-
-                if (maxTimeVideoShare == null) {
-                    if ((maxTimeVideoShare = getValueByParamName("MaxTimeVideoShare", childnode,
-                            TYPE_INT)) != null) {
-                        mRcsSettings.writeLong(RcsSettingsData.MAX_VIDEO_SHARE_DURATION,
-                                Long.parseLong(maxTimeVideoShare)
-                                        * SECONDS_TO_MILLISECONDS_CONVERSION_RATE);
-                        continue;
-                    }
-                }
-
-                // Not used (all number are formatted in international format): "NatUrlFmt"
-                // Not supported: "Q-Value"
-
-            } while ((childnode = childnode.getNextSibling()) != null);
-        }
+    public ProvisioningParser(String content, RcsSettings rcsSettings) {
+        mContent = content;
+        mRcsSettings = rcsSettings;
     }
 
     /**
-     * Parse ICSI
+     * Returns provisioning info
      * 
-     * @param node Node
+     * @return Provisioning info
      */
-    private void parseICSI(Node node) {
-        // Not used for RCS: "ICSI"
-        // Not used for RCS: "ICSI_Resource_Allocation_Mode"
+    public ProvisioningInfo getProvisioningInfo() {
+        return provisioningInfo;
     }
 
     /**
-     * Parse PCSCF address
+     * Parse the provisioning document<br>
+     * The settings are applied once the whole document is parsed: only the settings whose value
+     * changed are written, in a single transaction. None is written if the parsing fails, even
+     * for the characteristics read before the failure.
      * 
-     * @param node Node
+     * @param release The GSMA release (Albatros, Blackbird, Crane...) before parsing
+     * @param messagingMode the messaging mode
+     * @param first True if it is a first provisioning
+     * @throws SAXException
      */
-    private void parsePcscfAddress(Node node) {
-        String addr = null;
-        if (node == null) {
-            return;
-        }
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (addr == null) {
-                    if ((addr = getValueByParamName("Address", childnode, TYPE_TXT)) != null) {
-                        String[] address = addr.split(":");
-                        String proxyAddr = address[0];
-                        mRcsSettings.setImsProxyAddrForMobile("".equals(proxyAddr) ? null
-                                : proxyAddr);
-                        mRcsSettings
-                                .setImsProxyAddrForWifi("".equals(proxyAddr) ? null : proxyAddr);
-                        if (address.length > 1) {
-                            int port = Integer.valueOf(address[1]);
-                            mRcsSettings.setImsProxyPortForMobile(port);
-                            mRcsSettings.setImsProxyPortForWifi(port);
-                        }
-                        continue;
-                    }
+    public void parse(GsmaRelease release, MessagingMode messagingMode, boolean first)
+            throws SAXException {
+        /* Gather the settings written while parsing to only apply the changed ones at once */
+        mRcsSettings.beginChangeSet();
+        boolean parsed = false;
+        try {
+            parseContent(release, messagingMode, first);
+            parsed = true;
+        } finally {
+            if (!parsed) {
+                /* A truncated or invalid document must not leave half of its settings applied */
+                Map<String, String> discarded = mRcsSettings.discardChangeSet();
+                if (sLogger.isActivated()) {
+                    sLogger.warn(new StringBuilder("Provisioning failed, discarded ")
+                            .append(discarded.size()).append(" settings").toString());
                 }
-
-                // Not used: "AddressType"
-
-            } while ((childnode = childnode.getNextSibling()) != null);
+            }
         }
-    }
-
-    /**
-     * Parse phone context
-     * 
-     * @param node Node
-     */
-    private void parsePhoneContextList(Node node) {
-        // Not used: "PhoneContext"
-        // Not used: "Public_user_identity"
-    }
-
-    /**
-     * Parse application authentication
-     * 
-     * @param node Node
-     */
-    private void parseAppAuthent(Node node) {
-        String authType = null;
-        String realm = null;
-        String userName = null;
-        String userPwd = null;
-        if (node == null) {
-            return;
-        }
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (authType == null) {
-                    if ((authType = getValueByParamName("AuthType", childnode, TYPE_TXT)) != null) {
-                        if (authType.equals("EarlyIMS")) {
-                            mRcsSettings
-                                    .setImsAuthenticationProcedureForMobile(AuthenticationProcedure.GIBA);
-                        } else {
-                            mRcsSettings
-                                    .setImsAuthenticationProcedureForMobile(AuthenticationProcedure.DIGEST);
-                        }
-                        continue;
-                    }
-                }
-
-                if (realm == null) {
-                    if ((realm = getValueByParamName("Realm", childnode, TYPE_TXT)) != null) {
-                        mRcsSettings.setUserProfileImsRealm("".equals(realm) ? null : realm);
-                        continue;
-                    }
-                }
-
-                if (userName == null) {
-                    if ((userName = getValueByParamName("UserName", childnode, TYPE_TXT)) != null) {
-                        mRcsSettings.setUserProfileImsPrivateId("".equals(userName) ? null
-                                : userName);
-                        continue;
-                    }
-                }
-
-                if (userPwd == null) {
-                    if ((userPwd = getValueByParamName("UserPwd", childnode, TYPE_TXT)) != null) {
-                        mRcsSettings.setUserProfileImsPassword("".equals(userPwd) ? null : userPwd);
-                        continue;
-                    }
-                }
-            } while ((childnode = childnode.getNextSibling()) != null);
+        int changes = mRcsSettings.applyChangeSet();
+        if (sLogger.isActivated()) {
+            sLogger.debug(new StringBuilder("Provisioning changed ").append(changes)
+                    .append(" settings").toString());
         }
     }
 
     /**
-     * Parse RCSe settings
+     * Parse the provisioning document and write the settings
      * 
-     * @param node Node
+     * @param release The GSMA release (Albatros, Blackbird, Crane...) before parsing
+     * @param messagingMode the messaging mode
+     * @param first True if it is a first provisioning
+     * @throws SAXException
      */
-    private void parseRCSe(Node node) {
-        Node typenode = null;
-        if (node == null) {
-            return;
-        }
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (childnode.getNodeName().equals("characteristic")) {
-                    NamedNodeMap attributes = childnode.getAttributes();
-                    if (attributes.getLength() > 0) {
-                        typenode = attributes.getNamedItem("type");
-                        if (typenode != null) {
-                            String nodeValue = typenode.getNodeValue();
-                            if (nodeValue.equalsIgnoreCase("IMS")) {
-                                parseIMS(childnode);
-                            } else if (nodeValue.equalsIgnoreCase("PRESENCE")) {
-                                parsePresence(childnode);
-                            } else if (nodeValue.equalsIgnoreCase("XDMS")) {
-                                parseXDMS(childnode);
-                            } else if (nodeValue.equalsIgnoreCase("IM")) {
-                                parseIM(childnode);
-                            } else if (nodeValue.equalsIgnoreCase("CAPDISCOVERY")) {
-                                parseCapabilityDiscovery(childnode);
-                            } else if (nodeValue.equalsIgnoreCase("APN")) {
-                                parseAPN(childnode);
-                            } else if (nodeValue.equalsIgnoreCase("OTHER")) {
-                                parseOther(childnode);
-                            } else if (nodeValue.equalsIgnoreCase("SERVICES")) {
-                                parseServices(childnode);
-                            } else if (nodeValue.equalsIgnoreCase("SUPL")) {
-                                parseSupl(childnode);
-                            } else if (nodeValue.equalsIgnoreCase("SERVICEPROVIDEREXT")) {
-                                parseServiceProviderExt(childnode);
-                            }
-                        }
-                    }
-                }
-            } while ((childnode = childnode.getNextSibling()) != null);
+    /* package private */void parseContent(GsmaRelease release, MessagingMode messagingMode,
+            boolean first) throws SAXException {
+        if (sLogger.isActivated()) {
+            sLogger.debug("Start the parsing of content first=".concat(Boolean.toString(first)));
         }
-    }
-
-    /**
-     * Parse IMS settings
-     * 
-     * @param node IMS settings node
-     */
-    private void parseIMS(Node node) {
-        String timert1 = null;
-        String timert2 = null;
-        String timert4 = null;
-        String privateUserIdentity = null;
-        String homeDomain = null;
-        String keepAliveEnabled = null;
-        String regRetryBasetime = null;
-        String regRetryMaxtime = null;
-        Node typenode = null;
-        Node childnode = node.getFirstChild();
-
-        if (childnode != null) {
-            do {
-                if (childnode.getNodeName().equals("characteristic")) {
-                    if (childnode.getAttributes().getLength() > 0) {
-                        typenode = childnode.getAttributes().getNamedItem("type");
-                        if (typenode != null) {
-                            if (typenode.getNodeValue().equalsIgnoreCase("ConRefs")) {
-                                parseConRefs(childnode);
-                            } else if (typenode.getNodeValue().equalsIgnoreCase(
-                                    "Public_user_identity_List")) {
-                                parsePublicUserIdentity(childnode);
-                            } else if (typenode.getNodeValue().equalsIgnoreCase("Ext")) {
-                                parseExt(childnode);
-                            } else if (typenode.getNodeValue().equalsIgnoreCase("ICSI_List")) {
-                                parseICSI(childnode);
-                            } else if (typenode.getNodeValue().equalsIgnoreCase(
-                                    "LBO_P-CSCF_Address")) {
-                                parsePcscfAddress(childnode);
-                            } else if (typenode.getNodeValue()
-                                    .equalsIgnoreCase("PhoneContext_List")) {
-                                parsePhoneContextList(childnode);
-                            } else if (typenode.getNodeValue().equalsIgnoreCase("APPAUTH")) {
-                                parseAppAuthent(childnode);
-                            }
-                        }
-                    }
-                }
-
-                if (timert1 == null) {
-                    if ((timert1 = getValueByParamName("Timer_T1", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeLong(RcsSettingsData.SIP_TIMER_T1,
-                                Long.parseLong(timert1));
-                        continue;
-                    }
-                }
-
-                if (timert2 == null) {
-                    if ((timert2 = getValueByParamName("Timer_T2", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeLong(RcsSettingsData.SIP_TIMER_T2,
-                                Long.parseLong(timert2));
-                        continue;
-                    }
-                }
-
-                if (timert4 == null) {
-                    if ((timert4 = getValueByParamName("Timer_T4", childnode, TYPE_INT)) != null) {
-                        mRcsSettings.writeLong(RcsSettingsData.SIP_TIMER_T4,
-                                Long.parseLong(timert4));
-                        continue;
-                    }
-                }
-
-                if (privateUserIdentity == null) {
-                    if ((privateUserIdentity = getValueByParamName("Private_User_Identity",
-                            childnode, TYPE_TXT)) != null) {
-                        mRcsSettings
-                                .setUserProfileImsPrivateId("".equals(privateUserIdentity) ? null
-                                        : privateUserIdentity);
-                        continue;
-                    }
-                }
-
-                if (homeDomain == null) {
-                    if ((homeDomain = getValueByParamName("Home_network_domain_name", childnode,
-                            TYPE_TXT)) != null) {
-                        mRcsSettings.setUserProfileImsDomain("".equals(homeDomain) ? null
-                                : homeDomain);
-                        continue;
-                    }
-                }
-
-                if (keepAliveEnabled == null) {
-                    if ((keepAliveEnabled = getValueByParamName("Keep_Alive_Enabled", childnode,
-                            TYPE_INT)) != null) {
-                        mRcsSettings.writeBoolean(RcsSettingsData.SIP_KEEP_ALIVE,
-                                keepAliveEnabled.equals("1"));
-                        continue;
-                    }
-                }
-
-                if (regRetryBasetime == null) {
-                    if ((regRetryBasetime = getValueByParamName("RegRetryBaseTime", childnode,
-                            TYPE_INT)) != null) {
-                        mRcsSettings.writeLong(RcsSettingsData.REGISTER_RETRY_BASE_TIME,
-                                Long.parseLong(regRetryBasetime)
-                                        * SECONDS_TO_MILLISECONDS_CONVERSION_RATE);
-                        continue;
-                    }
-                }
-
-                if (regRetryMaxtime == null) {
-                    if ((regRetryMaxtime = getValueByParamName("RegRetryMaxTime", childnode,
-                            TYPE_INT)) != null) {
-                        mRcsSettings.writeLong(RcsSettingsData.REGISTER_RETRY_MAX_TIME,
-                                Long.parseLong(regRetryMaxtime)
-                                        * SECONDS_TO_MILLISECONDS_CONVERSION_RATE);
-                        continue;
-                    }
-                }
-
-                // Not supported under Android: "PDP_ContextOperPref"
-                // Not used for RCS: "Voice_Domain_Preference_E_UTRAN"
-                // Not used for RCS: "SMS_Over_IP_Networks_Indication"
-                // Not used for RCS: "Voice_Domain_Preference_UTRAN"
-                // Not used for RCS: "Mobility_Management_IMS_Voice_Termination"
+        mFirst = first;
+        ProvisioningHandler handler = new ProvisioningHandler();
+        try {
+            SAXParserFactory.newInstance().newSAXParser()
+                    .parse(new InputSource(new StringReader(mContent)), handler);
+        } catch (ParserConfigurationException e) {
+            throw new SAXException("Can't parse provisioning content document!", e);
 
-            } while ((childnode = childnode.getNextSibling()) != null);
+        } catch (IOException e) {
+            throw new SAXException("Can't parse provisioning content document!", e);
         }
-    }
-
-    /**
-     * Get value of a parameter
-     * 
-     * @param paramName Parameter name
-     * @param node Node
-     * @param type Parameter type
-     * @return Value or null
-     */
-    private String getValueByParamName(String paramName, Node node, int type) {
-        Node nameNode = null;
-        Node valueNode = null;
-        if ((node == null)
-                || !(node.getNodeName().equals("parm") || node.getNodeName().equals("param"))) {
-            return null;
+        if (handler.mRoot == null || !handler.mRoot.mHasChildren) {
+            throw new SAXException(
+                    "The first chid node in the provisioning content document is null!");
         }
-
-        if (node.getAttributes().getLength() > 0) {
-            nameNode = node.getAttributes().getNamedItem("name");
-            if (nameNode == null) {
-                return null;
-            }
-            valueNode = node.getAttributes().getNamedItem("value");
-            if (valueNode == null) {
-                return null;
-            }
-            if (nameNode.getNodeValue().equalsIgnoreCase(paramName)) {
-                String value = valueNode.getNodeValue();
-                // Check type
-                if (type == TYPE_INT) {
-                    try {
-                        Integer.parseInt(value);
-                    } catch (NumberFormatException e) {
-                        if (sLogger.isActivated()) {
-                            sLogger.warn("Bad value for integer parameter " + paramName);
-                        }
-                        return null;
-                    }
-                }
-
-                return value;
-            }
-            return null;
+        if (handler.mNodeNumber == 1) {
+            /*
+             * We received a single node (the version one) ! This is the case if the version number
+             * is negative or in order to extend the validity of the provisioning. In that case we
+             * restore the relevant GSMA release saved before parsing.
+             */
+            mRcsSettings.setGsmaRelease(release);
+            /* We do the same for the messaging mode */
+            mRcsSettings.setMessagingMode(messagingMode);
         }
-        return null;
     }
 
     /**
@@ -2001,7 +1226,7 @@ public class ProvisioningParser {
      * @param uri SIP-URI
      * @return Username
      */
-    private String extractUserNamePart(String uri) {
+    private static String extractUserNamePart(String uri) {
         int indexOfSipHeader = uri.indexOf(PhoneUtils.SIP_URI_HEADER);
         if (indexOfSipHeader != -1) {
             int startIndexOfUriAddress = uri.indexOf("@", indexOfSipHeader);
@@ -2018,7 +1243,7 @@ public class ProvisioningParser {
      * @param path Sip Uri path
      * @return SIP-URI
      */
-    private Uri formatSipUri(String path) {
+    private static Uri formatSipUri(String path) {
         return path.startsWith(PhoneUtils.SIP_URI_HEADER) ? Uri.parse(path) : Uri
                 .parse(new StringBuilder(PhoneUtils.SIP_URI_HEADER).append(path).toString());
     }
@@ -1106,6 +1106,15 @@ public class ChatServiceImpl extends IChatService.Stub {
         }
     }
 
+    /**
+     * Removes chat messages deleted by a delete task from the messaging log caches
+     * 
+     * @param msgIds Message IDs
+     */
+    public void removeCachedChatMessages(Set<String> msgIds) {
+        mMessagingLog.removeCachedChatMessages(msgIds);
+    }
+
     public void broadcastGroupChatMessagesDeleted(String chatId, Set<String> msgIds) {
         mGroupChatEventBroadcaster.broadcastMessagesDeleted(chatId, msgIds);
     }
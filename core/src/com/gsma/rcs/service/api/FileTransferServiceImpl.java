@@ -1104,64 +1104,82 @@ public class FileTransferServiceImpl extends IFileTransferService.Stub {
         }
     }
 
-    private void setGroupFileDeliveryStatusDelivered(String chatId, String fileTransferId,
-            ContactId contact, long timestampDelivered) {
+    private void setGroupFileDeliveryStatusDelivered(final String chatId,
+            final String fileTransferId, final ContactId contact, final long timestampDelivered) {
         if (mMessagingLog.setGroupChatDeliveryInfoDelivered(chatId, contact, fileTransferId,
                 timestampDelivered)) {
-            mGroupFileTransferBroadcaster.broadcastDeliveryInfoChanged(chatId, contact,
-                    fileTransferId, GroupDeliveryInfo.Status.DELIVERED,
-                    GroupDeliveryInfo.ReasonCode.UNSPECIFIED);
-            if (mMessagingLog.isDeliveredToAllRecipients(fileTransferId)) {
-                if (mMessagingLog.setFileTransferDelivered(fileTransferId, timestampDelivered)) {
-                    mGroupFileTransferBroadcaster.broadcastStateChanged(chatId, fileTransferId,
-                            State.DELIVERED, ReasonCode.UNSPECIFIED);
+            /* The state is written at once, in the order of the other state writes */
+            final boolean fileTransferDelivered = mMessagingLog
+                    .isDeliveredToAllRecipients(fileTransferId)
+                    && mMessagingLog.setFileTransferDelivered(fileTransferId, timestampDelivered);
+            /*
+             * Broadcast once the delivery info update is written, from the writer thread and in
+             * the order of the reports
+             */
+            mMessagingLog.executeAfterPendingDeliveryInfoUpdates(new Runnable() {
+                @Override
+                public void run() {
+                    mGroupFileTransferBroadcaster.broadcastDeliveryInfoChanged(chatId, contact,
+                            fileTransferId, GroupDeliveryInfo.Status.DELIVERED,
+                            GroupDeliveryInfo.ReasonCode.UNSPECIFIED);
+                    if (fileTransferDelivered) {
+                        mGroupFileTransferBroadcaster.broadcastStateChanged(chatId,
+                                fileTransferId, State.DELIVERED, ReasonCode.UNSPECIFIED);
+                    }
                 }
-            }
+            });
         }
     }
 
-    private void setGroupFileDeliveryStatusDisplayed(String chatId, String fileTransferId,
-            ContactId contact, long timestampDisplayed) {
+    private void setGroupFileDeliveryStatusDisplayed(final String chatId,
+            final String fileTransferId, final ContactId contact, final long timestampDisplayed) {
         if (mMessagingLog.setGroupChatDeliveryInfoDisplayed(chatId, contact, fileTransferId,
                 timestampDisplayed)) {
-            mGroupFileTransferBroadcaster.broadcastDeliveryInfoChanged(chatId, contact,
-                    fileTransferId, GroupDeliveryInfo.Status.DISPLAYED,
-                    GroupDeliveryInfo.ReasonCode.UNSPECIFIED);
-            if (mMessagingLog.isDisplayedByAllRecipients(fileTransferId)) {
-                if (mMessagingLog.setFileTransferDisplayed(fileTransferId, timestampDisplayed)) {
-                    mGroupFileTransferBroadcaster.broadcastStateChanged(chatId, fileTransferId,
-                            State.DISPLAYED, ReasonCode.UNSPECIFIED);
+            /* The state is written at once, in the order of the other state writes */
+            final boolean fileTransferDisplayed = mMessagingLog
+                    .isDisplayedByAllRecipients(fileTransferId)
+                    && mMessagingLog.setFileTransferDisplayed(fileTransferId, timestampDisplayed);
+            /*
+             * Broadcast once the delivery info update is written, from the writer thread and in
+             * the order of the reports
+             */
+            mMessagingLog.executeAfterPendingDeliveryInfoUpdates(new Runnable() {
+                @Override
+                public void run() {
+                    mGroupFileTransferBroadcaster.broadcastDeliveryInfoChanged(chatId, contact,
+                            fileTransferId, GroupDeliveryInfo.Status.DISPLAYED,
+                            GroupDeliveryInfo.ReasonCode.UNSPECIFIED);
+                    if (fileTransferDisplayed) {
+                        mGroupFileTransferBroadcaster.broadcastStateChanged(chatId,
+                                fileTransferId, State.DISPLAYED, ReasonCode.UNSPECIFIED);
+                    }
                 }
-            }
+            });
         }
     }
 
-    private void setGroupFileDeliveryStatusFailed(String chatId, String fileTransferId,
-            ContactId contact, ReasonCode reasonCode) {
+    private void setGroupFileDeliveryStatusFailed(final String chatId,
+            final String fileTransferId, final ContactId contact, ReasonCode reasonCode) {
+        final GroupDeliveryInfo.ReasonCode deliveryInfoReasonCode;
         if (ReasonCode.FAILED_DELIVERY == reasonCode) {
-            if (!mMessagingLog.setGroupChatDeliveryInfoStatusAndReasonCode(chatId, contact,
-                    fileTransferId, GroupDeliveryInfo.Status.FAILED,
-                    GroupDeliveryInfo.ReasonCode.FAILED_DELIVERY)) {
-                /* Add entry with delivered and displayed timestamps set to 0. */
-                mMessagingLog.addGroupChatDeliveryInfoEntry(chatId, contact, fileTransferId,
-                        GroupDeliveryInfo.Status.FAILED,
-                        GroupDeliveryInfo.ReasonCode.FAILED_DELIVERY, 0, 0);
-            }
-            mGroupFileTransferBroadcaster.broadcastDeliveryInfoChanged(chatId, contact,
-                    fileTransferId, GroupDeliveryInfo.Status.FAILED,
-                    GroupDeliveryInfo.ReasonCode.FAILED_DELIVERY);
-            return;
+            deliveryInfoReasonCode = GroupDeliveryInfo.ReasonCode.FAILED_DELIVERY;
+        } else {
+            deliveryInfoReasonCode = GroupDeliveryInfo.ReasonCode.FAILED_DISPLAY;
         }
         if (!mMessagingLog.setGroupChatDeliveryInfoStatusAndReasonCode(chatId, contact,
-                fileTransferId, GroupDeliveryInfo.Status.FAILED,
-                GroupDeliveryInfo.ReasonCode.FAILED_DISPLAY)) {
+                fileTransferId, GroupDeliveryInfo.Status.FAILED, deliveryInfoReasonCode)) {
             /* Add entry with delivered and displayed timestamps set to 0. */
             mMessagingLog.addGroupChatDeliveryInfoEntry(chatId, contact, fileTransferId,
-                    GroupDeliveryInfo.Status.FAILED, GroupDeliveryInfo.ReasonCode.FAILED_DISPLAY,
-                    0, 0);
+                    GroupDeliveryInfo.Status.FAILED, deliveryInfoReasonCode, 0, 0);
         }
-        mGroupFileTransferBroadcaster.broadcastDeliveryInfoChanged(chatId, contact, fileTransferId,
-                GroupDeliveryInfo.Status.FAILED, GroupDeliveryInfo.ReasonCode.FAILED_DISPLAY);
+        /* Broadcast after the delivered and displayed reports received before this one */
+        mMessagingLog.executeAfterPendingDeliveryInfoUpdates(new Runnable() {
+            @Override
+            public void run() {
+                mGroupFileTransferBroadcaster.broadcastDeliveryInfoChanged(chatId, contact,
+                        fileTransferId, GroupDeliveryInfo.Status.FAILED, deliveryInfoReasonCode);
+            }
+        });
     }
 
     /**
@@ -1455,6 +1473,15 @@ public class FileTransferServiceImpl extends IFileTransferService.Stub {
         }
     }
 
+    /**
+     * Removes file transfers deleted by a delete task from the messaging log caches
+     * 
+     * @param transferIds File transfer IDs
+     */
+    public void removeCachedFileTransfers(Set<String> transferIds) {
+        mMessagingLog.removeCachedFileTransfers(transferIds);
+    }
+
     public void broadcastOneToOneFileTransferDeleted(ContactId contact, Set<String> transferIds) {
         mOneToOneFileTransferBroadcaster.broadcastFileTransferDeleted(contact, transferIds);
     }
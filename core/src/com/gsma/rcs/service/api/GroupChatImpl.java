@@ -182,73 +182,89 @@ public class GroupChatImpl extends IGroupChat.Stub implements GroupChatSessionLi
         mImService.tryToDequeueAllOneToOneChatMessagesAndOneToOneFileTransfers();
     }
 
-    private void onMessageDeliveryStatusDelivered(ContactId contact, String msgId,
-            long timestampDelivered) {
-        String mimeType = mMessagingLog.getMessageMimeType(msgId);
+    private void onMessageDeliveryStatusDelivered(final ContactId contact, final String msgId,
+            final long timestampDelivered) {
+        final String mimeType = mMessagingLog.getMessageMimeType(msgId);
         synchronized (mLock) {
             if (mPersistedStorage.setGroupChatDeliveryInfoDelivered(mChatId, contact, msgId,
                     timestampDelivered)) {
-                mBroadcaster.broadcastMessageGroupDeliveryInfoChanged(mChatId, contact, mimeType,
-                        msgId, GroupDeliveryInfo.Status.DELIVERED,
-                        GroupDeliveryInfo.ReasonCode.UNSPECIFIED);
-                if (mPersistedStorage.isDeliveredToAllRecipients(msgId)) {
-                    if (mPersistedStorage.setMessageStatusDelivered(msgId, timestampDelivered)) {
-                        mBroadcaster.broadcastMessageStatusChanged(mChatId, mimeType, msgId,
-                                Status.DELIVERED, Content.ReasonCode.UNSPECIFIED);
+                /* The message status is written under the lock, with the other status writes */
+                final boolean messageDelivered = mPersistedStorage.isDeliveredToAllRecipients(msgId)
+                        && mPersistedStorage.setMessageStatusDelivered(msgId, timestampDelivered);
+                /*
+                 * Broadcast once the delivery info update is written, from the writer thread and
+                 * in the order of the reports
+                 */
+                mPersistedStorage.executeAfterPendingDeliveryInfoUpdates(new Runnable() {
+                    @Override
+                    public void run() {
+                        mBroadcaster.broadcastMessageGroupDeliveryInfoChanged(mChatId, contact,
+                                mimeType, msgId, GroupDeliveryInfo.Status.DELIVERED,
+                                GroupDeliveryInfo.ReasonCode.UNSPECIFIED);
+                        if (messageDelivered) {
+                            mBroadcaster.broadcastMessageStatusChanged(mChatId, mimeType, msgId,
+                                    Status.DELIVERED, Content.ReasonCode.UNSPECIFIED);
+                        }
                     }
-                }
+                });
             }
         }
     }
 
-    private void onMessageDeliveryStatusDisplayed(ContactId contact, String msgId,
-            long timestampDisplayed) {
-        String mimeType = mMessagingLog.getMessageMimeType(msgId);
+    private void onMessageDeliveryStatusDisplayed(final ContactId contact, final String msgId,
+            final long timestampDisplayed) {
+        final String mimeType = mMessagingLog.getMessageMimeType(msgId);
         synchronized (mLock) {
             if (mPersistedStorage.setDeliveryInfoDisplayed(mChatId, contact, msgId,
                     timestampDisplayed)) {
-                mBroadcaster.broadcastMessageGroupDeliveryInfoChanged(mChatId, contact, mimeType,
-                        msgId, GroupDeliveryInfo.Status.DISPLAYED,
-                        GroupDeliveryInfo.ReasonCode.UNSPECIFIED);
-                if (mPersistedStorage.isDisplayedByAllRecipients(msgId)) {
-                    if (mPersistedStorage.setMessageStatusDisplayed(msgId, timestampDisplayed)) {
-                        mBroadcaster.broadcastMessageStatusChanged(mChatId, mimeType, msgId,
-                                Status.DISPLAYED, Content.ReasonCode.UNSPECIFIED);
+                /* The message status is written under the lock, with the other status writes */
+                final boolean messageDisplayed = mPersistedStorage.isDisplayedByAllRecipients(msgId)
+                        && mPersistedStorage.setMessageStatusDisplayed(msgId, timestampDisplayed);
+                /*
+                 * Broadcast once the delivery info update is written, from the writer thread and
+                 * in the order of the reports
+                 */
+                mPersistedStorage.executeAfterPendingDeliveryInfoUpdates(new Runnable() {
+                    @Override
+                    public void run() {
+                        mBroadcaster.broadcastMessageGroupDeliveryInfoChanged(mChatId, contact,
+                                mimeType, msgId, GroupDeliveryInfo.Status.DISPLAYED,
+                                GroupDeliveryInfo.ReasonCode.UNSPECIFIED);
+                        if (messageDisplayed) {
+                            mBroadcaster.broadcastMessageStatusChanged(mChatId, mimeType, msgId,
+                                    Status.DISPLAYED, Content.ReasonCode.UNSPECIFIED);
+                        }
                     }
-                }
+                });
             }
         }
     }
 
-    private void onMessageDeliveryStatusFailed(ContactId contact, String msgId,
+    private void onMessageDeliveryStatusFailed(final ContactId contact, final String msgId,
             Content.ReasonCode reasonCode) {
-        String mimeType = mMessagingLog.getMessageMimeType(msgId);
+        final String mimeType = mMessagingLog.getMessageMimeType(msgId);
+        final GroupDeliveryInfo.ReasonCode deliveryInfoReasonCode;
+        if (Content.ReasonCode.FAILED_DELIVERY == reasonCode) {
+            deliveryInfoReasonCode = GroupDeliveryInfo.ReasonCode.FAILED_DELIVERY;
+        } else {
+            deliveryInfoReasonCode = GroupDeliveryInfo.ReasonCode.FAILED_DISPLAY;
+        }
         synchronized (mLock) {
-            if (Content.ReasonCode.FAILED_DELIVERY == reasonCode) {
-                if (!mPersistedStorage.setGroupDeliveryInfoStatusAndReasonCode(mChatId, contact,
-                        msgId, GroupDeliveryInfo.Status.FAILED,
-                        GroupDeliveryInfo.ReasonCode.FAILED_DELIVERY)) {
-                    /* Add entry with delivered and displayed timestamps set to 0. */
-                    mMessagingLog.addGroupChatDeliveryInfoEntry(mChatId, contact, msgId,
-                            GroupDeliveryInfo.Status.FAILED,
-                            GroupDeliveryInfo.ReasonCode.FAILED_DELIVERY, 0, 0);
-                }
-                mBroadcaster.broadcastMessageGroupDeliveryInfoChanged(mChatId, contact, mimeType,
-                        msgId, GroupDeliveryInfo.Status.FAILED,
-                        GroupDeliveryInfo.ReasonCode.FAILED_DELIVERY);
-            } else {
-                if (!mPersistedStorage.setGroupDeliveryInfoStatusAndReasonCode(mChatId, contact,
-                        msgId, GroupDeliveryInfo.Status.FAILED,
-                        GroupDeliveryInfo.ReasonCode.FAILED_DISPLAY)) {
-                    /* Add entry with delivered and displayed timestamps set to 0. */
-                    mMessagingLog.addGroupChatDeliveryInfoEntry(mChatId, contact, msgId,
-                            GroupDeliveryInfo.Status.FAILED,
-                            GroupDeliveryInfo.ReasonCode.FAILED_DISPLAY, 0, 0);
+            if (!mPersistedStorage.setGroupDeliveryInfoStatusAndReasonCode(mChatId, contact, msgId,
+                    GroupDeliveryInfo.Status.FAILED, deliveryInfoReasonCode)) {
+                /* Add entry with delivered and displayed timestamps set to 0. */
+                mMessagingLog.addGroupChatDeliveryInfoEntry(mChatId, contact, msgId,
+                        GroupDeliveryInfo.Status.FAILED, deliveryInfoReasonCode, 0, 0);
+            }
+            /* Broadcast after the delivered and displayed reports received before this one */
+            mPersistedStorage.executeAfterPendingDeliveryInfoUpdates(new Runnable() {
+                @Override
+                public void run() {
+                    mBroadcaster.broadcastMessageGroupDeliveryInfoChanged(mChatId, contact,
+                            mimeType, msgId, GroupDeliveryInfo.Status.FAILED,
+                            deliveryInfoReasonCode);
                 }
-                mBroadcaster.broadcastMessageGroupDeliveryInfoChanged(mChatId, contact, mimeType,
-                        msgId, GroupDeliveryInfo.Status.FAILED,
-                        GroupDeliveryInfo.ReasonCode.FAILED_DISPLAY);
-            }
+            });
         }
     }
 
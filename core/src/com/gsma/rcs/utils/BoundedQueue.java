@@ -0,0 +1,342 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded FIFO queue.<br>
+ * Elements are stored in a ring buffer whose slots carry a sequence number, so that producers and
+ * consumers only compete on an atomic counter and never take a lock while the queue is neither
+ * empty nor full. A monitor is only used to park the consumers waiting for an element and the
+ * producers waiting for room, and is only notified when somebody waits on it.<br>
+ * The behavior when the queue is full is given by an {@link OverflowPolicy}.
+ *
+ * @param <E> Type of the elements
+ */
+public class BoundedQueue<E> {
+    /**
+     * Behavior of a put on a full queue
+     */
+    public enum OverflowPolicy {
+        /**
+         * Wait until there is room in the queue
+         */
+        BLOCK,
+        /**
+         * Drop the oldest elements of the queue to make room
+         */
+        DROP_OLDEST,
+        /**
+         * Reject the new element
+         */
+        REJECT
+    }
+
+    private final Object[] mElements;
+
+    private final AtomicLongArray mSequences;
+
+    private final int mMask;
+
+    private final OverflowPolicy mPolicy;
+
+    private final AtomicLong mTail = new AtomicLong();
+
+    private final AtomicLong mHead = new AtomicLong();
+
+    private final Object mLock = new Object();
+
+    private final AtomicInteger mWaitingConsumers = new AtomicInteger();
+
+    private final AtomicInteger mWaitingProducers = new AtomicInteger();
+
+    private final AtomicInteger mHighWaterMark = new AtomicInteger();
+
+    private final AtomicLong mDroppedCount = new AtomicLong();
+
+    private final AtomicLong mRejectedCount = new AtomicLong();
+
+    private volatile boolean mClosed = false;
+
+    /**
+     * Constructor
+     *
+     * @param capacity Minimum number of elements the queue can hold, rounded up to a power of two
+     * @param policy Behavior when the queue is full
+     */
+    public BoundedQueue(int capacity, OverflowPolicy policy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity + "!");
+        }
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        mElements = new Object[size];
+        mSequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            mSequences.set(i, i);
+        }
+        mMask = size - 1;
+        mPolicy = policy;
+    }
+
+    /**
+     * Try to add an element without waiting
+     *
+     * @param element Element
+     * @return False if the queue is full
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException("Null elements are not supported!");
+        }
+        long position = mTail.get();
+        while (true) {
+            int index = (int) (position & mMask);
+            long delta = mSequences.get(index) - position;
+            if (delta == 0) {
+                if (mTail.compareAndSet(position, position + 1)) {
+                    mElements[index] = element;
+                    mSequences.set(index, position + 1);
+                    updateHighWaterMark();
+                    if (mWaitingConsumers.get() > 0) {
+                        synchronized (mLock) {
+                            mLock.notifyAll();
+                        }
+                    }
+                    return true;
+                }
+                position = mTail.get();
+            } else if (delta < 0) {
+                return false;
+            } else {
+                position = mTail.get();
+            }
+        }
+    }
+
+    /**
+     * Add an element according to the overflow policy of the queue. With the
+     * {@link OverflowPolicy#BLOCK} policy this method waits until there is room in the queue.
+     *
+     * @param element Element
+     * @return False if the element has been rejected or the queue has been closed
+     */
+    public boolean put(E element) {
+        while (!mClosed) {
+            if (offer(element)) {
+                return true;
+            }
+            switch (mPolicy) {
+                case REJECT:
+                    mRejectedCount.incrementAndGet();
+                    return false;
+
+                case DROP_OLDEST:
+                    if (poll() != null) {
+                        mDroppedCount.incrementAndGet();
+                    }
+                    break;
+
+                default:
+                    waitRoom();
+                    break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove the oldest element without waiting
+     *
+     * @return Element or null if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long position = mHead.get();
+        while (true) {
+            int index = (int) (position & mMask);
+            long delta = mSequences.get(index) - (position + 1);
+            if (delta == 0) {
+                if (mHead.compareAndSet(position, position + 1)) {
+                    E element = (E) mElements[index];
+                    mElements[index] = null;
+                    mSequences.set(index, position + mMask + 1);
+                    if (mWaitingProducers.get() > 0) {
+                        synchronized (mLock) {
+                            mLock.notifyAll();
+                        }
+                    }
+                    return element;
+                }
+                position = mHead.get();
+            } else if (delta < 0) {
+                return null;
+            } else {
+                position = mHead.get();
+            }
+        }
+    }
+
+    /**
+     * Remove the oldest element. This is a blocking method until an element is available or the
+     * queue is closed.
+     *
+     * @return Element or null if the queue has been closed
+     */
+    public E take() {
+        return take(0);
+    }
+
+    /**
+     * Remove the oldest element. This is a blocking method until an element is available, a
+     * timeout occurs or the queue is closed.
+     *
+     * @param timeout Timeout in milliseconds, no timeout if lower than 1
+     * @return Element or null if the timeout occurred or the queue has been closed
+     */
+    public E take(long timeout) {
+        E element = poll();
+        if (element != null) {
+            return element;
+        }
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (mLock) {
+            mWaitingConsumers.incrementAndGet();
+            try {
+                while ((element = poll()) == null && !mClosed) {
+                    long delay = 0;
+                    if (timeout > 0) {
+                        delay = deadline - System.currentTimeMillis();
+                        if (delay <= 0) {
+                            return null;
+                        }
+                    }
+                    try {
+                        mLock.wait(delay);
+                    } catch (InterruptedException e) {
+                        /* Nothing to do */
+                    }
+                }
+            } finally {
+                mWaitingConsumers.decrementAndGet();
+            }
+        }
+        return element;
+    }
+
+    private void waitRoom() {
+        synchronized (mLock) {
+            mWaitingProducers.incrementAndGet();
+            try {
+                if (size() > mMask && !mClosed) {
+                    mLock.wait();
+                }
+            } catch (InterruptedException e) {
+                /* Nothing to do */
+            } finally {
+                mWaitingProducers.decrementAndGet();
+            }
+        }
+    }
+
+    private void updateHighWaterMark() {
+        int size = size();
+        int highWaterMark;
+        while (size > (highWaterMark = mHighWaterMark.get())) {
+            if (mHighWaterMark.compareAndSet(highWaterMark, size)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Close the queue: the waiting producers and consumers are released and the next elements are
+     * not queued anymore
+     */
+    public void close() {
+        mClosed = true;
+        synchronized (mLock) {
+            mLock.notifyAll();
+        }
+    }
+
+    /**
+     * Is the queue closed
+     *
+     * @return True if closed
+     */
+    public boolean isClosed() {
+        return mClosed;
+    }
+
+    /**
+     * Returns the number of elements in the queue
+     *
+     * @return Depth of the queue
+     */
+    public int size() {
+        long size = mTail.get() - mHead.get();
+        if (size < 0) {
+            return 0;
+        }
+        return (int) Math.min(size, mMask + 1);
+    }
+
+    /**
+     * Returns the maximum number of elements the queue can hold
+     *
+     * @return Capacity
+     */
+    public int getCapacity() {
+        return mMask + 1;
+    }
+
+    /**
+     * Returns the highest depth reached by the queue
+     *
+     * @return High water mark
+     */
+    public int getHighWaterMark() {
+        return mHighWaterMark.get();
+    }
+
+    /**
+     * Returns the number of elements dropped to make room with the
+     * {@link OverflowPolicy#DROP_OLDEST} policy
+     *
+     * @return Number of dropped elements
+     */
+    public long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    /**
+     * Returns the number of elements rejected with the {@link OverflowPolicy#REJECT} policy
+     *
+     * @return Number of rejected elements
+     */
+    public long getRejectedCount() {
+        return mRejectedCount.get();
+    }
+}
@@ -19,29 +19,44 @@
 package com.gsma.rcs.im.chat;
 
 import com.gsma.rcs.provider.LocalContentResolver;
+import com.gsma.rcs.provider.RowCache;
 import com.gsma.rcs.provider.messaging.MessageData;
 import com.gsma.rcs.provider.messaging.MessagingLog;
 import com.gsma.rcs.provider.settings.RcsSettings;
 import com.gsma.rcs.utils.ContactUtilMockContext;
 import com.gsma.services.rcs.RcsService.Direction;
+import com.gsma.services.rcs.RcsService.ReadStatus;
 import com.gsma.services.rcs.chat.ChatLog;
 import com.gsma.services.rcs.chat.ChatLog.Message;
 import com.gsma.services.rcs.chat.ChatLog.Message.Content.ReasonCode;
+import com.gsma.services.rcs.chat.ChatLog.Message.Content.Status;
 import com.gsma.services.rcs.chat.ChatLog.Message.GroupChatEvent;
 import com.gsma.services.rcs.contact.ContactId;
 import com.gsma.services.rcs.contact.ContactUtil;
+import com.gsma.services.rcs.groupdelivery.GroupDeliveryInfo;
+import com.gsma.services.rcs.groupdelivery.GroupDeliveryInfoLog;
 
 import android.content.ContentResolver;
+import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
 import android.test.AndroidTestCase;
+import android.util.Log;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 public class MessageLogTest extends AndroidTestCase {
 
+    private static final String TAG = MessageLogTest.class.getSimpleName();
+
+    private static final int SYNTHETIC_STORE_SIZE = 500;
+
     private ContactId mContact1;
     private ContactId mContact2;
     private ContentResolver mContentResolver;
@@ -145,4 +160,216 @@ public class MessageLogTest extends AndroidTestCase {
         assertEquals(GroupChatEvent.Status.JOINED, groupChatEvents.get(mContact1));
         assertEquals(GroupChatEvent.Status.DEPARTED, groupChatEvents.get(mContact2));
     }
+
+    private String addSyntheticMessage(int index) {
+        String msgId = new StringBuilder(mChatId).append("-").append(index).toString();
+        ContentValues values = new ContentValues();
+        values.put(ChatLog.Message.CHAT_ID, mContact1.toString());
+        values.put(ChatLog.Message.MESSAGE_ID, msgId);
+        values.put(ChatLog.Message.CONTACT, mContact1.toString());
+        values.put(ChatLog.Message.DIRECTION, Direction.OUTGOING.toInt());
+        values.put(ChatLog.Message.READ_STATUS, ReadStatus.UNREAD.toInt());
+        values.put(ChatLog.Message.MIME_TYPE, Message.MimeType.TEXT_MESSAGE);
+        values.put(ChatLog.Message.CONTENT, "Synthetic message ".concat(msgId));
+        values.put(ChatLog.Message.TIMESTAMP, mTimestamp + index);
+        values.put(ChatLog.Message.TIMESTAMP_SENT, mTimestamp + index);
+        values.put(ChatLog.Message.TIMESTAMP_DELIVERED, 0);
+        values.put(ChatLog.Message.TIMESTAMP_DISPLAYED, 0);
+        values.put("delivery_expiration", 0);
+        values.put(ChatLog.Message.EXPIRED_DELIVERY, 0);
+        values.put(ChatLog.Message.STATUS, Status.SENT.toInt());
+        values.put(ChatLog.Message.REASON_CODE, ReasonCode.UNSPECIFIED.toInt());
+        mLocalContentResolver.insert(MessageData.CONTENT_URI, values);
+        return msgId;
+    }
+
+    private Object queryColumn(String msgId, String column) {
+        Cursor cursor = mContentResolver.query(
+                Uri.withAppendedPath(MessageData.CONTENT_URI, msgId), new String[] {
+                    column
+                }, null, null, null);
+        try {
+            assertTrue(cursor.moveToNext());
+            return cursor.getString(0);
+
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testRowCacheWriteThrough() {
+        String msgId = addSyntheticMessage(0);
+        RowCache cache = mMessagingLog.getChatMessageRowCache();
+        long misses = cache.getMisses();
+        long hits = cache.getHits();
+        assertEquals(Status.SENT, mMessagingLog.getMessageStatus(msgId));
+        assertEquals(mContact1.toString(), mMessagingLog.getMessageChatId(msgId));
+        assertEquals(Boolean.FALSE, mMessagingLog.isMessageRead(msgId));
+        assertEquals(misses + 1, cache.getMisses());
+        assertEquals(hits + 2, cache.getHits());
+
+        mMessagingLog.setChatMessageStatusDelivered(msgId, mTimestamp + 1);
+        mMessagingLog.markMessageAsRead(msgId);
+        assertEquals(Status.DELIVERED, mMessagingLog.getMessageStatus(msgId));
+        assertEquals(ReasonCode.UNSPECIFIED, mMessagingLog.getMessageReasonCode(msgId));
+        assertEquals(Boolean.TRUE, mMessagingLog.isMessageRead(msgId));
+        assertEquals(misses + 1, cache.getMisses());
+
+        /* A displayed message can not go back to delivered */
+        mMessagingLog.setChatMessageStatusDisplayed(msgId, mTimestamp + 2);
+        assertFalse(mMessagingLog.setChatMessageStatusDelivered(msgId, mTimestamp + 3));
+        assertEquals(Status.DISPLAYED, mMessagingLog.getMessageStatus(msgId));
+        assertEquals(String.valueOf(Status.DISPLAYED.toInt()),
+                queryColumn(msgId, ChatLog.Message.STATUS));
+    }
+
+    public void testRowCacheDeleteAll() {
+        String msgId = addSyntheticMessage(0);
+        assertEquals(Status.SENT, mMessagingLog.getMessageStatus(msgId));
+        mMessagingLog.deleteAllEntries();
+        assertNull(mMessagingLog.getMessageStatus(msgId));
+        assertNull(mMessagingLog.getMessageMimeType(msgId));
+    }
+
+    /**
+     * Compares the single column queries with the row cache for the getters called for each
+     * delivery report, over a synthetic message store larger than the cache.
+     */
+    public void testRowCacheBenchmark() {
+        String[] msgIds = new String[SYNTHETIC_STORE_SIZE];
+        for (int i = 0; i < SYNTHETIC_STORE_SIZE; i++) {
+            msgIds[i] = addSyntheticMessage(i);
+        }
+        long start = System.nanoTime();
+        for (String msgId : msgIds) {
+            queryColumn(msgId, ChatLog.Message.CHAT_ID);
+            queryColumn(msgId, ChatLog.Message.MIME_TYPE);
+            queryColumn(msgId, ChatLog.Message.STATUS);
+            queryColumn(msgId, ChatLog.Message.TIMESTAMP_SENT);
+        }
+        long queryDuration = System.nanoTime() - start;
+
+        RowCache cache = mMessagingLog.getChatMessageRowCache();
+        long misses = cache.getMisses();
+        long hits = cache.getHits();
+        start = System.nanoTime();
+        for (String msgId : msgIds) {
+            assertEquals(mContact1.toString(), mMessagingLog.getMessageChatId(msgId));
+            assertEquals(Message.MimeType.TEXT_MESSAGE, mMessagingLog.getMessageMimeType(msgId));
+            assertEquals(Status.SENT, mMessagingLog.getMessageStatus(msgId));
+            assertNotNull(mMessagingLog.getMessageSentTimestamp(msgId));
+        }
+        long cacheDuration = System.nanoTime() - start;
+        Log.i(TAG, new StringBuilder("Single column queries: ").append(queryDuration / 1000000)
+                .append("ms, row cache: ").append(cacheDuration / 1000000).append("ms, ")
+                .append(cache).toString());
+
+        assertEquals(misses + SYNTHETIC_STORE_SIZE, cache.getMisses());
+        assertEquals(hits + 3 * SYNTHETIC_STORE_SIZE, cache.getHits());
+        assertTrue(cacheDuration < queryDuration);
+    }
+
+    private void waitForPendingDeliveryInfoUpdates() throws InterruptedException {
+        final CountDownLatch written = new CountDownLatch(1);
+        mMessagingLog.executeAfterPendingDeliveryInfoUpdates(new Runnable() {
+            @Override
+            public void run() {
+                written.countDown();
+            }
+        });
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+    }
+
+    private int queryDeliveryInfoStatus(String msgId, ContactId contact) {
+        Cursor cursor = mContentResolver.query(GroupDeliveryInfoLog.CONTENT_URI, new String[] {
+            GroupDeliveryInfoLog.STATUS
+        }, GroupDeliveryInfoLog.ID + "=? AND " + GroupDeliveryInfoLog.CONTACT + "=?",
+                new String[] {
+                        msgId, contact.toString()
+                }, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testGroupDeliveryInfoBatchedUpdates() throws InterruptedException {
+        String msgId = addSyntheticMessage(0);
+        mMessagingLog.addGroupChatDeliveryInfoEntry(mChatId, mContact1, msgId,
+                GroupDeliveryInfo.Status.NOT_DELIVERED, GroupDeliveryInfo.ReasonCode.UNSPECIFIED,
+                0, 0);
+        mMessagingLog.addGroupChatDeliveryInfoEntry(mChatId, mContact2, msgId,
+                GroupDeliveryInfo.Status.NOT_DELIVERED, GroupDeliveryInfo.ReasonCode.UNSPECIFIED,
+                0, 0);
+
+        assertTrue(mMessagingLog.setGroupChatDeliveryInfoDelivered(mChatId, mContact1, msgId,
+                mTimestamp));
+        assertFalse(mMessagingLog.isDeliveredToAllRecipients(msgId));
+        assertTrue(mMessagingLog.setGroupChatDeliveryInfoDisplayed(mChatId, mContact1, msgId,
+                mTimestamp));
+        /* A displayed entry is not reverted to delivered by a late delivery report */
+        assertFalse(mMessagingLog.setGroupChatDeliveryInfoDelivered(mChatId, mContact1, msgId,
+                mTimestamp));
+        assertTrue(mMessagingLog.setGroupChatDeliveryInfoDelivered(mChatId, mContact2, msgId,
+                mTimestamp));
+        assertTrue(mMessagingLog.isDeliveredToAllRecipients(msgId));
+        assertFalse(mMessagingLog.isDisplayedByAllRecipients(msgId));
+
+        waitForPendingDeliveryInfoUpdates();
+        assertEquals(GroupDeliveryInfo.Status.DISPLAYED.toInt(),
+                queryDeliveryInfoStatus(msgId, mContact1));
+        assertEquals(GroupDeliveryInfo.Status.DELIVERED.toInt(),
+                queryDeliveryInfoStatus(msgId, mContact2));
+    }
+
+    public void testGroupDeliveryInfoActionsRunOnWriterThreadInOrder()
+            throws InterruptedException {
+        String msgId = addSyntheticMessage(0);
+        mMessagingLog.addGroupChatDeliveryInfoEntry(mChatId, mContact1, msgId,
+                GroupDeliveryInfo.Status.NOT_DELIVERED, GroupDeliveryInfo.ReasonCode.UNSPECIFIED,
+                0, 0);
+        mMessagingLog.addGroupChatDeliveryInfoEntry(mChatId, mContact2, msgId,
+                GroupDeliveryInfo.Status.NOT_DELIVERED, GroupDeliveryInfo.ReasonCode.UNSPECIFIED,
+                0, 0);
+        final List<String> actions = new ArrayList<String>();
+        final List<Thread> threads = new ArrayList<Thread>();
+
+        assertTrue(mMessagingLog.setGroupChatDeliveryInfoDelivered(mChatId, mContact1, msgId,
+                mTimestamp));
+        mMessagingLog.executeAfterPendingDeliveryInfoUpdates(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (actions) {
+                    actions.add("delivered");
+                    threads.add(Thread.currentThread());
+                }
+            }
+        });
+        /* Written at once, the action queued for the delivered report is not run from here */
+        assertTrue(mMessagingLog.setGroupChatDeliveryInfoStatusAndReasonCode(mChatId, mContact2,
+                msgId, GroupDeliveryInfo.Status.FAILED,
+                GroupDeliveryInfo.ReasonCode.FAILED_DELIVERY));
+        assertEquals(GroupDeliveryInfo.Status.DELIVERED.toInt(),
+                queryDeliveryInfoStatus(msgId, mContact1));
+        mMessagingLog.executeAfterPendingDeliveryInfoUpdates(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (actions) {
+                    actions.add("failed");
+                    threads.add(Thread.currentThread());
+                }
+            }
+        });
+
+        waitForPendingDeliveryInfoUpdates();
+        synchronized (actions) {
+            assertEquals(2, actions.size());
+            assertEquals("delivered", actions.get(0));
+            assertEquals("failed", actions.get(1));
+            assertNotSame(Thread.currentThread(), threads.get(0));
+            assertNotSame(Thread.currentThread(), threads.get(1));
+        }
+    }
 }
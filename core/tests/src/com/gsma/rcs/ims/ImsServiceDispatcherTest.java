@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.ims;
+
+import com.gsma.rcs.core.ims.protocol.sip.SipRequest;
+import com.gsma.rcs.core.ims.service.ImsServiceDispatcher;
+import com.gsma.rcs.provider.LocalContentResolver;
+import com.gsma.rcs.provider.settings.RcsSettings;
+
+import android.test.AndroidTestCase;
+
+import gov2.nist.javax2.sip.parser.StringMsgParser;
+
+import javax2.sip.message.Request;
+
+/**
+ * Lane selection tests of the SIP request dispatcher
+ */
+public class ImsServiceDispatcherTest extends AndroidTestCase {
+
+    private static final String CONTACT = "sip:+33612345678@domain.com";
+
+    private static final String FOCUS = "sip:conf-4f2a@conference.domain.com";
+
+    private ImsServiceDispatcher mDispatcher;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        RcsSettings rcsSettings = RcsSettings.createInstance(new LocalContentResolver(
+                getContext().getContentResolver()));
+        mDispatcher = new ImsServiceDispatcher(null, rcsSettings);
+    }
+
+    public void testRequestsOfARemotePartyShareALane() throws Exception {
+        int lane = mDispatcher.getLaneIndex(createRequest(Request.MESSAGE, CONTACT, "call-1"));
+        for (int i = 2; i < 64; i++) {
+            assertEquals(lane,
+                    mDispatcher.getLaneIndex(createRequest(Request.MESSAGE, CONTACT, "call-" + i)));
+        }
+    }
+
+    public void testConferenceInviteAndNotifyShareALane() throws Exception {
+        assertEquals(mDispatcher.getLaneIndex(createRequest(Request.INVITE, FOCUS, "invite")),
+                mDispatcher.getLaneIndex(createRequest(Request.NOTIFY, FOCUS, "subscription")));
+    }
+
+    public void testRemotePartiesAreSpreadOverTheLanes() throws Exception {
+        if (mDispatcher.getLaneCount() < 2) {
+            return;
+        }
+        int lane = mDispatcher.getLaneIndex(createRequest(Request.MESSAGE, CONTACT, "call"));
+        for (int i = 0; i < 64; i++) {
+            String from = "sip:+336000000" + (10 + i) + "@domain.com";
+            if (mDispatcher.getLaneIndex(createRequest(Request.MESSAGE, from, "call")) != lane) {
+                return;
+            }
+        }
+        fail("All the remote parties are dispatched by the same lane");
+    }
+
+    private static SipRequest createRequest(String method, String from, String callId)
+            throws Exception {
+        String message = new StringBuilder(method)
+                .append(" sip:+33687654321@domain.com SIP/2.0\r\n")
+                .append("Via: SIP/2.0/UDP 10.0.0.1:5060;branch=z9hG4bK").append(callId)
+                .append("\r\n").append("From: <").append(from).append(">;tag=1234\r\n")
+                .append("To: <sip:+33687654321@domain.com>\r\n").append("Call-ID: ")
+                .append(callId).append("\r\n").append("CSeq: 1 ").append(method).append("\r\n")
+                .append("Max-Forwards: 70\r\n").append("Content-Length: 0\r\n\r\n").toString();
+        return new SipRequest((Request) new StringMsgParser().parseSIPMessage(message));
+    }
+}
@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.msrp;
+
+import static com.gsma.rcs.utils.StringUtils.UTF8;
+
+import com.gsma.rcs.core.ims.network.NetworkException;
+import com.gsma.rcs.core.ims.protocol.msrp.ChunkSender;
+import com.gsma.rcs.core.ims.protocol.msrp.MsrpConnection;
+import com.gsma.rcs.core.ims.protocol.msrp.MsrpConstants;
+import com.gsma.rcs.core.ims.protocol.msrp.MsrpEventListener;
+import com.gsma.rcs.core.ims.protocol.msrp.MsrpFrame;
+import com.gsma.rcs.core.ims.protocol.msrp.MsrpSession;
+import com.gsma.rcs.core.ims.protocol.msrp.MsrpSession.TypeMsrpChunk;
+import com.gsma.rcs.platform.network.SocketConnection;
+import com.gsma.rcs.provider.LocalContentResolver;
+import com.gsma.rcs.provider.settings.RcsSettings;
+
+import android.test.AndroidTestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Hashtable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ChunkSenderTest extends AndroidTestCase {
+
+    private static final String LOCAL_PATH = "msrp://127.0.0.1:20000/local;tcp";
+
+    private static final String REMOTE_PATH = "msrp://127.0.0.1:20001/remote;tcp";
+
+    private RcsSettings mRcsSettings;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        mRcsSettings = RcsSettings.createInstance(new LocalContentResolver(getContext()
+                .getContentResolver()));
+    }
+
+    public void testResponseSentWhileChunkQueueIsFull() throws Exception {
+        MsrpSession session = new MsrpSession(mRcsSettings);
+        session.setFrom(LOCAL_PATH);
+        session.setTo(REMOTE_PATH);
+        session.setFailureReportOption(true);
+        session.addMsrpEventListener(new TestListener());
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        /* The sender thread is never started so that the queued chunks are never written */
+        final MsrpConnection connection = new MsrpConnection(session) {
+            private final ChunkSender mSender = new ChunkSender(this, stream);
+
+            @Override
+            public SocketConnection getSocketConnection() {
+                return null;
+            }
+
+            @Override
+            public void close() {
+                mSender.terminate();
+            }
+
+            @Override
+            public void sendChunk(byte[] chunk) throws NetworkException {
+                mSender.sendChunk(chunk);
+            }
+
+            @Override
+            public void sendChunk(MsrpFrame chunk) throws NetworkException {
+                mSender.sendChunk(chunk);
+            }
+
+            @Override
+            public void sendChunkImmediately(byte[] chunk) throws NetworkException {
+                mSender.sendChunkImmediately(chunk);
+            }
+
+            @Override
+            public void sendChunkImmediately(MsrpFrame chunk) throws NetworkException {
+                mSender.sendChunkImmediately(chunk);
+            }
+        };
+        session.setConnection(connection);
+
+        /* Fill the queue of chunks until the sending thread blocks */
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        connection.sendChunk("data".getBytes(UTF8));
+                    }
+                } catch (NetworkException e) {
+                    /* Nothing to do */
+                }
+            }
+        };
+        producer.setDaemon(true);
+        producer.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (producer.getState() != Thread.State.WAITING) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        assertEquals(0, stream.size());
+
+        /* A SEND request received meanwhile is still answered and reported */
+        final Hashtable<String, String> headers = new Hashtable<String, String>();
+        headers.put(MsrpConstants.HEADER_FROM_PATH, REMOTE_PATH);
+        headers.put(MsrpConstants.HEADER_TO_PATH, LOCAL_PATH);
+        headers.put(MsrpConstants.HEADER_MESSAGE_ID, "msgId");
+        headers.put(MsrpConstants.HEADER_CONTENT_TYPE, "text/plain");
+        headers.put(MsrpConstants.HEADER_SUCCESS_REPORT, "yes");
+        final byte[] data = "Hello".getBytes(UTF8);
+        final CountDownLatch answered = new CountDownLatch(1);
+        final MsrpSession receivingSession = session;
+        Thread receiver = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    receivingSession.receiveMsrpSend("txId", headers,
+                            MsrpConstants.FLAG_LAST_CHUNK, ByteBuffer.wrap(data), data.length);
+                    answered.countDown();
+                } catch (Exception e) {
+                    /* Reported by the latch */
+                }
+            }
+        };
+        receiver.setDaemon(true);
+        receiver.start();
+        assertTrue(answered.await(5, TimeUnit.SECONDS));
+        String written = new String(stream.toByteArray(), UTF8);
+        assertTrue(written.contains("txId " + MsrpConstants.STATUS_200_OK));
+        assertTrue(written.contains(MsrpConstants.METHOD_REPORT));
+        session.close();
+    }
+
+    private static class TestListener implements MsrpEventListener {
+
+        @Override
+        public void msrpDataTransfered(String msgId) {
+        }
+
+        @Override
+        public void receiveMsrpData(String msgId, byte[] data, String mimeType) {
+        }
+
+        @Override
+        public void msrpTransferProgress(long currentSize, long totalSize) {
+        }
+
+        @Override
+        public boolean msrpTransferProgress(long currentSize, long totalSize, byte[] data) {
+            return true;
+        }
+
+        @Override
+        public void msrpTransferAborted() {
+        }
+
+        @Override
+        public void msrpTransferError(String msgId, String error, TypeMsrpChunk typeMsrpChunk) {
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.msrp;
+
+import com.gsma.rcs.core.ims.protocol.msrp.MsrpEventListener;
+import com.gsma.rcs.core.ims.protocol.msrp.MsrpProgressNotifier;
+import com.gsma.rcs.core.ims.protocol.msrp.MsrpSession.TypeMsrpChunk;
+
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ordering tests of the MSRP progress notifications against the end of the transfer
+ */
+public class MsrpProgressNotifierTest extends AndroidTestCase {
+
+    private static final long TOTAL_SIZE = 1000;
+
+    /**
+     * Time long enough for the throttled notifications to be run (in milliseconds)
+     */
+    private static final long NOTIFICATION_DELAY = 1500;
+
+    public void testNoProgressAfterTransferedWhileNotifying() throws Exception {
+        final CountDownLatch notifying = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final RecordingListener listener = new RecordingListener() {
+            @Override
+            public void msrpTransferProgress(long currentSize, long totalSize) {
+                notifying.countDown();
+                try {
+                    /* Keep the scheduler thread in the listener before recording the progress */
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    /* Nothing to do */
+                }
+                super.msrpTransferProgress(currentSize, totalSize);
+            }
+        };
+        final MsrpProgressNotifier notifier = new MsrpProgressNotifier(listener, TOTAL_SIZE);
+        notifier.update(TOTAL_SIZE / 2);
+        assertTrue(notifying.await(10, TimeUnit.SECONDS));
+        notifier.update(TOTAL_SIZE);
+
+        Thread completion = new Thread() {
+            @Override
+            public void run() {
+                notifier.notifyTransfered("msgId");
+            }
+        };
+        completion.start();
+        Thread.sleep(100);
+        release.countDown();
+        completion.join(10000);
+        Thread.sleep(NOTIFICATION_DELAY);
+
+        assertEquals(Arrays.asList("progress 500", "progress 1000", "transfered msgId"),
+                listener.getEvents());
+    }
+
+    public void testPendingProgressDroppedOnTransfered() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        MsrpProgressNotifier notifier = new MsrpProgressNotifier(listener, TOTAL_SIZE);
+        notifier.update(TOTAL_SIZE / 4);
+        Thread.sleep(100);
+        /* Throttled: notified at the earliest one interval after the first notification */
+        notifier.update(TOTAL_SIZE / 2);
+        notifier.notifyTransfered("msgId");
+        notifier.update(TOTAL_SIZE);
+        Thread.sleep(NOTIFICATION_DELAY);
+
+        assertEquals(Arrays.asList("progress 250", "progress 500", "transfered msgId"),
+                listener.getEvents());
+    }
+
+    public void testPendingProgressDroppedOnError() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        MsrpProgressNotifier notifier = new MsrpProgressNotifier(listener, TOTAL_SIZE);
+        notifier.update(TOTAL_SIZE / 4);
+        Thread.sleep(100);
+        notifier.update(TOTAL_SIZE / 2);
+        notifier.notifyTransferError("msgId", "response timeout 408", TypeMsrpChunk.FileSharing);
+        notifier.update(TOTAL_SIZE);
+        Thread.sleep(NOTIFICATION_DELAY);
+
+        assertEquals(Arrays.asList("progress 250", "error msgId"), listener.getEvents());
+    }
+
+    public void testNoProgressAfterCancel() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        MsrpProgressNotifier notifier = new MsrpProgressNotifier(listener, TOTAL_SIZE);
+        notifier.update(TOTAL_SIZE / 4);
+        Thread.sleep(100);
+        notifier.update(TOTAL_SIZE / 2);
+        notifier.cancel();
+        Thread.sleep(NOTIFICATION_DELAY);
+
+        assertEquals(Arrays.asList("progress 250"), listener.getEvents());
+    }
+
+    private static class RecordingListener implements MsrpEventListener {
+
+        private final List<String> mEvents = new ArrayList<String>();
+
+        synchronized List<String> getEvents() {
+            return new ArrayList<String>(mEvents);
+        }
+
+        @Override
+        public void msrpDataTransfered(String msgId) {
+            synchronized (this) {
+                mEvents.add("transfered " + msgId);
+            }
+        }
+
+        @Override
+        public void receiveMsrpData(String msgId, byte[] data, String mimeType) {
+        }
+
+        @Override
+        public void msrpTransferProgress(long currentSize, long totalSize) {
+            synchronized (this) {
+                mEvents.add("progress " + currentSize);
+            }
+        }
+
+        @Override
+        public boolean msrpTransferProgress(long currentSize, long totalSize, byte[] data) {
+            return true;
+        }
+
+        @Override
+        public void msrpTransferAborted() {
+        }
+
+        @Override
+        public void msrpTransferError(String msgId, String error, TypeMsrpChunk typeMsrpChunk) {
+            synchronized (this) {
+                mEvents.add("error " + msgId);
+            }
+        }
+    }
+}
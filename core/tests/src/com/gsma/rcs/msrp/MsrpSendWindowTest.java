@@ -0,0 +1,412 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.msrp;
+
+import static com.gsma.rcs.utils.StringUtils.UTF8;
+
+import com.gsma.rcs.core.ims.protocol.msrp.MsrpConnection;
+import com.gsma.rcs.core.ims.protocol.msrp.MsrpConstants;
+import com.gsma.rcs.core.ims.protocol.msrp.MsrpEventListener;
+import com.gsma.rcs.core.ims.protocol.msrp.MsrpSession;
+import com.gsma.rcs.core.ims.protocol.msrp.MsrpSession.TypeMsrpChunk;
+import com.gsma.rcs.platform.network.AndroidSocketConnection;
+import com.gsma.rcs.platform.network.SocketConnection;
+import com.gsma.rcs.provider.LocalContentResolver;
+import com.gsma.rcs.provider.settings.RcsSettings;
+import com.gsma.rcs.utils.CloseableUtils;
+import com.gsma.rcs.utils.logger.Logger;
+
+import android.test.AndroidTestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loopback test harness checking the number of MSRP chunks in flight against a simulated latency
+ */
+public class MsrpSendWindowTest extends AndroidTestCase {
+
+    private static final Logger sLogger = Logger.getLogger(MsrpSendWindowTest.class.getName());
+
+    private static final String SENDER_PATH = "msrp://127.0.0.1:20000/sender;tcp";
+
+    private static final String RECEIVER_PATH = "msrp://127.0.0.1:20001/receiver;tcp";
+
+    private static final int CONTENT_SIZE = 1024 * 1024;
+
+    /**
+     * One way delay of the simulated link in milliseconds
+     */
+    private static final long ONE_WAY_DELAY = 25;
+
+    private RcsSettings mRcsSettings;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        mRcsSettings = RcsSettings.createInstance(new LocalContentResolver(getContext()
+                .getContentResolver()));
+    }
+
+    public void testStopAndWaitKeepsOneChunkInFlight() throws Exception {
+        assertEquals(1, transfer(1).getMaxInFlight());
+    }
+
+    public void testWindowBoundsChunksInFlight() throws Exception {
+        int maxInFlight = transfer(16).getMaxInFlight();
+        assertTrue(maxInFlight > 1);
+        assertTrue(maxInFlight <= 16);
+    }
+
+    public void testChunkSizeAdaptsDuringPipelinedTransfer() throws Exception {
+        InFlightMonitor monitor = transfer(16);
+        assertTrue(monitor.getMaxInFlight() > 1);
+        Set<Integer> chunkSizes = monitor.getChunkSizes();
+        assertTrue(chunkSizes.contains(MsrpConstants.CHUNK_MAX_SIZE));
+        assertTrue(chunkSizes.size() > 1);
+    }
+
+    /**
+     * Transfer a content through the delayed loopback link
+     * 
+     * @param windowSize Send window size of the sender session
+     * @return Monitor of the SEND requests seen on the link
+     * @throws Exception
+     */
+    private InFlightMonitor transfer(int windowSize) throws Exception {
+        ServerSocket serverSocket = new ServerSocket(0, 2, InetAddress.getByName("127.0.0.1"));
+        Socket sender = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+        Socket senderPeer = serverSocket.accept();
+        Socket receiver = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+        Socket receiverPeer = serverSocket.accept();
+        serverSocket.close();
+        final InFlightMonitor monitor = new InFlightMonitor();
+        DelayedPump forward = new DelayedPump(senderPeer.getInputStream(),
+                receiverPeer.getOutputStream()) {
+            @Override
+            void onRead(byte[] data) {
+                monitor.onRequests(data);
+            }
+        };
+        DelayedPump backward = new DelayedPump(receiverPeer.getInputStream(),
+                senderPeer.getOutputStream()) {
+            @Override
+            void onWrite(byte[] data) {
+                monitor.onResponses(data);
+            }
+        };
+        forward.start();
+        backward.start();
+
+        final CountDownLatch received = new CountDownLatch(1);
+        MsrpSession receiverSession = createSession(RECEIVER_PATH, SENDER_PATH, receiver,
+                new TestListener() {
+                    @Override
+                    public void receiveMsrpData(String msgId, byte[] data, String mimeType) {
+                        received.countDown();
+                    }
+                });
+        final CountDownLatch transfered = new CountDownLatch(1);
+        MsrpSession senderSession = createSession(SENDER_PATH, RECEIVER_PATH, sender,
+                new TestListener() {
+                    @Override
+                    public void msrpDataTransfered(String msgId) {
+                        transfered.countDown();
+                    }
+                });
+        senderSession.setFailureReportOption(true);
+        senderSession.setSendWindowSize(windowSize);
+        try {
+            byte[] content = new byte[CONTENT_SIZE];
+            Arrays.fill(content, (byte) 'a');
+            long start = System.currentTimeMillis();
+            senderSession.sendChunks(new ByteArrayInputStream(content), "msgId",
+                    "application/octet-stream", CONTENT_SIZE, TypeMsrpChunk.FileSharing);
+            assertTrue(transfered.await(60, TimeUnit.SECONDS));
+            assertTrue(received.await(60, TimeUnit.SECONDS));
+            long duration = System.currentTimeMillis() - start;
+            int maxInFlight = monitor.getMaxInFlight();
+            if (sLogger.isActivated()) {
+                sLogger.info("MSRP transfer with " + ONE_WAY_DELAY + "ms one way delay and window "
+                        + windowSize + ": " + duration + "ms, " + maxInFlight
+                        + " chunks in flight at most");
+            }
+            return monitor;
+
+        } finally {
+            senderSession.close();
+            receiverSession.close();
+            forward.terminate();
+            backward.terminate();
+            CloseableUtils.tryToClose(senderPeer);
+            CloseableUtils.tryToClose(receiverPeer);
+        }
+    }
+
+    private MsrpSession createSession(String from, String to, final Socket socket,
+            MsrpEventListener listener) throws Exception {
+        MsrpSession session = new MsrpSession(mRcsSettings);
+        session.setFrom(from);
+        session.setTo(to);
+        session.addMsrpEventListener(listener);
+        MsrpConnection connection = new MsrpConnection(session) {
+            @Override
+            public SocketConnection getSocketConnection() {
+                return new AndroidSocketConnection(socket);
+            }
+        };
+        session.setConnection(connection);
+        connection.open();
+        return session;
+    }
+
+    /**
+     * Counter of the occurrences of a pattern in a byte stream received in pieces
+     */
+    private static class PatternCounter {
+
+        private final byte[] mPattern;
+
+        private byte[] mTail = new byte[0];
+
+        PatternCounter(String pattern) {
+            mPattern = pattern.getBytes(UTF8);
+        }
+
+        int count(byte[] data) {
+            byte[] buffer = Arrays.copyOf(mTail, mTail.length + data.length);
+            System.arraycopy(data, 0, buffer, mTail.length, data.length);
+            int count = 0;
+            for (int i = 0; i <= buffer.length - mPattern.length; i++) {
+                int j = 0;
+                while (j < mPattern.length && buffer[i + j] == mPattern[j]) {
+                    j++;
+                }
+                if (j == mPattern.length) {
+                    count++;
+                }
+            }
+            mTail = Arrays.copyOfRange(buffer,
+                    Math.max(0, buffer.length - mPattern.length + 1), buffer.length);
+            return count;
+        }
+    }
+
+    /**
+     * Recorder of the chunk sizes announced by the Byte-Range headers of a byte stream received in
+     * pieces, except the last chunk of the content which is usually shorter
+     */
+    private static class ChunkSizeRecorder {
+
+        private static final String BYTE_RANGE = MsrpConstants.HEADER_BYTE_RANGE + ": ";
+
+        private final Set<Integer> mChunkSizes = new HashSet<Integer>();
+
+        private String mTail = "";
+
+        void record(byte[] data) {
+            /* Headers are ASCII, the content of the test is made of 'a' */
+            String buffer = mTail.concat(new String(data, UTF8));
+            int index = 0;
+            while (true) {
+                int start = buffer.indexOf(BYTE_RANGE, index);
+                if (start == -1) {
+                    index = Math.max(index, buffer.length() - BYTE_RANGE.length() + 1);
+                    break;
+                }
+                int end = buffer.indexOf(MsrpConstants.NEW_LINE, start);
+                if (end == -1) {
+                    index = start;
+                    break;
+                }
+                String byteRange = buffer.substring(start + BYTE_RANGE.length(), end);
+                int dash = byteRange.indexOf('-');
+                int slash = byteRange.indexOf('/');
+                long firstByte = Long.parseLong(byteRange.substring(0, dash));
+                long lastByte = Long.parseLong(byteRange.substring(dash + 1, slash));
+                long totalSize = Long.parseLong(byteRange.substring(slash + 1));
+                if (lastByte < totalSize) {
+                    mChunkSizes.add((int) (lastByte - firstByte + 1));
+                }
+                index = end;
+            }
+            mTail = buffer.substring(Math.max(0, index));
+        }
+
+        Set<Integer> getChunkSizes() {
+            return mChunkSizes;
+        }
+    }
+
+    /**
+     * Monitor of the SEND requests sent by the sender and not yet answered on the link. Requests
+     * are counted when read from the sender and responses before being written to the sender, so
+     * that the count never exceeds what the sender sees.
+     */
+    private static class InFlightMonitor {
+
+        private final PatternCounter mRequests = new PatternCounter(" "
+                + MsrpConstants.METHOD_SEND + MsrpConstants.NEW_LINE);
+
+        private final PatternCounter mResponses = new PatternCounter(" 200 OK"
+                + MsrpConstants.NEW_LINE);
+
+        private int mInFlight = 0;
+
+        private int mMaxInFlight = 0;
+
+        private final ChunkSizeRecorder mChunkSizes = new ChunkSizeRecorder();
+
+        synchronized void onRequests(byte[] data) {
+            mChunkSizes.record(data);
+            mInFlight += mRequests.count(data);
+            mMaxInFlight = Math.max(mMaxInFlight, mInFlight);
+        }
+
+        synchronized void onResponses(byte[] data) {
+            mInFlight -= mResponses.count(data);
+        }
+
+        synchronized int getMaxInFlight() {
+            return mMaxInFlight;
+        }
+
+        synchronized Set<Integer> getChunkSizes() {
+            return new HashSet<Integer>(mChunkSizes.getChunkSizes());
+        }
+    }
+
+    /**
+     * Relay delivering the data read from a stream after a fixed delay
+     */
+    private static class DelayedPump {
+
+        private final InputStream mInput;
+
+        private final OutputStream mOutput;
+
+        private final LinkedBlockingQueue<Object[]> mQueue = new LinkedBlockingQueue<Object[]>();
+
+        private volatile boolean mTerminated = false;
+
+        private final Thread mReader = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    byte[] buffer = new byte[8192];
+                    int nbRead;
+                    while (!mTerminated && (nbRead = mInput.read(buffer)) != -1) {
+                        byte[] data = Arrays.copyOf(buffer, nbRead);
+                        onRead(data);
+                        mQueue.put(new Object[] {
+                                System.currentTimeMillis() + ONE_WAY_DELAY, data
+                        });
+                    }
+                } catch (IOException e) {
+                    /* Connection closed */
+                } catch (InterruptedException e) {
+                    /* Terminated */
+                }
+            }
+        };
+
+        private final Thread mWriter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (!mTerminated) {
+                        Object[] item = mQueue.take();
+                        long delay = (Long) item[0] - System.currentTimeMillis();
+                        if (delay > 0) {
+                            Thread.sleep(delay);
+                        }
+                        byte[] data = (byte[]) item[1];
+                        onWrite(data);
+                        mOutput.write(data);
+                        mOutput.flush();
+                    }
+                } catch (IOException e) {
+                    /* Connection closed */
+                } catch (InterruptedException e) {
+                    /* Terminated */
+                }
+            }
+        };
+
+        DelayedPump(InputStream input, OutputStream output) {
+            mInput = input;
+            mOutput = output;
+        }
+
+        void onRead(byte[] data) {
+        }
+
+        void onWrite(byte[] data) {
+        }
+
+        void start() {
+            mReader.start();
+            mWriter.start();
+        }
+
+        void terminate() {
+            mTerminated = true;
+            mReader.interrupt();
+            mWriter.interrupt();
+        }
+    }
+
+    private static class TestListener implements MsrpEventListener {
+
+        @Override
+        public void msrpDataTransfered(String msgId) {
+        }
+
+        @Override
+        public void receiveMsrpData(String msgId, byte[] data, String mimeType) {
+        }
+
+        @Override
+        public void msrpTransferProgress(long currentSize, long totalSize) {
+        }
+
+        @Override
+        public boolean msrpTransferProgress(long currentSize, long totalSize, byte[] data) {
+            return true;
+        }
+
+        @Override
+        public void msrpTransferAborted() {
+        }
+
+        @Override
+        public void msrpTransferError(String msgId, String error, TypeMsrpChunk typeMsrpChunk) {
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.msrp;
+
+import static com.gsma.rcs.utils.StringUtils.UTF8;
+
+import com.gsma.rcs.core.ims.protocol.PayloadException;
+import com.gsma.rcs.core.ims.protocol.msrp.MsrpConnection;
+import com.gsma.rcs.core.ims.protocol.msrp.MsrpConstants;
+import com.gsma.rcs.core.ims.protocol.msrp.MsrpSession;
+import com.gsma.rcs.core.ims.protocol.msrp.NioChunkReceiver;
+import com.gsma.rcs.platform.network.SocketConnection;
+import com.gsma.rcs.provider.LocalContentResolver;
+import com.gsma.rcs.provider.settings.RcsSettings;
+
+import android.test.AndroidTestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.List;
+
+/**
+ * Parser tests of the buffer based MSRP chunk receiver
+ */
+public class NioChunkReceiverTest extends AndroidTestCase {
+
+    private static final String TX_ID = "a786hjs2";
+
+    private static final String END_LINE = MsrpConstants.END_MSRP_MSG + TX_ID;
+
+    private RcsSettings mRcsSettings;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        mRcsSettings = RcsSettings.createInstance(new LocalContentResolver(getContext()
+                .getContentResolver()));
+    }
+
+    public void testChunkWithByteRangeSplitAcrossReads() throws Exception {
+        byte[] message = createSend("1-11/11", "Hello world", '$');
+        for (int readSize = 1; readSize <= message.length; readSize++) {
+            List<Message> messages = receive(message, readSize, 1);
+            assertEquals(1, messages.size());
+            Message received = messages.get(0);
+            assertEquals(TX_ID, received.mTxId);
+            assertEquals(MsrpConstants.METHOD_SEND, received.mMethod);
+            assertEquals(-1, received.mResponseCode);
+            assertEquals("Hello world", received.mData);
+            assertEquals('$', received.mContinuationFlag);
+            assertEquals(11, received.mTotalSize);
+            assertEquals("text/plain", received.mHeaders.get(MsrpConstants.HEADER_CONTENT_TYPE));
+        }
+    }
+
+    public void testChunkWithoutByteRange() throws Exception {
+        byte[] message = createSend(null, "Hello world", '$');
+        for (int readSize = 1; readSize <= message.length; readSize++) {
+            List<Message> messages = receive(message, readSize, 1);
+            assertEquals(1, messages.size());
+            assertEquals("Hello world", messages.get(0).mData);
+            assertEquals('$', messages.get(0).mContinuationFlag);
+            assertEquals(11, messages.get(0).mTotalSize);
+        }
+    }
+
+    public void testChunkWithUnknownByteRange() throws Exception {
+        List<Message> messages = receive(createSend("1-*/*", "Hello world", '$'), 7, 1);
+        assertEquals(1, messages.size());
+        assertEquals("Hello world", messages.get(0).mData);
+        assertEquals('$', messages.get(0).mContinuationFlag);
+    }
+
+    public void testContinuationFlags() throws Exception {
+        byte[] first = createSend("1-5/11", "Hello", '+');
+        byte[] second = createSend("6-11/11", " world", '$');
+        byte[] aborted = createSend("1-5/*", "Hello", '#');
+        byte[] stream = concat(concat(first, second), aborted);
+        List<Message> messages = receive(stream, 13, 3);
+        assertEquals(3, messages.size());
+        assertEquals("Hello", messages.get(0).mData);
+        assertEquals('+', messages.get(0).mContinuationFlag);
+        assertEquals(" world", messages.get(1).mData);
+        assertEquals('$', messages.get(1).mContinuationFlag);
+        assertEquals("Hello", messages.get(2).mData);
+        assertEquals('#', messages.get(2).mContinuationFlag);
+    }
+
+    public void testResponseWithoutData() throws Exception {
+        String response = new StringBuilder(MsrpConstants.MSRP_HEADER).append(' ').append(TX_ID)
+                .append(" 200 OK").append(MsrpConstants.NEW_LINE)
+                .append("To-Path: msrp://127.0.0.1:20000/sender;tcp")
+                .append(MsrpConstants.NEW_LINE)
+                .append("From-Path: msrp://127.0.0.1:20001/receiver;tcp")
+                .append(MsrpConstants.NEW_LINE).append(END_LINE).append('$')
+                .append(MsrpConstants.NEW_LINE).toString();
+        List<Message> messages = receive(response.getBytes(UTF8), 5, 1);
+        assertEquals(1, messages.size());
+        assertEquals(200, messages.get(0).mResponseCode);
+        assertNull(messages.get(0).mMethod);
+        assertNull(messages.get(0).mData);
+        assertEquals('$', messages.get(0).mContinuationFlag);
+    }
+
+    public void testByteRangeMismatch() throws Exception {
+        try {
+            receive(createSend("1-5/11", "Hello world", '$'), 1024, 1);
+            fail("PayloadException expected");
+        } catch (PayloadException e) {
+            /* Expected */
+        }
+    }
+
+    public void testChunkWithByteRangeExceedingBuffer() throws Exception {
+        byte[] data = new byte[2 * Math.max(mRcsSettings.getMsrpMaxChunkSize(),
+                MsrpConstants.CHUNK_MAX_SIZE)];
+        Arrays.fill(data, (byte) 'a');
+        String content = new String(data, UTF8);
+        byte[] large = createSend("1-" + data.length + "/" + (data.length + 5), content, '+');
+        byte[] next = createSend(data.length + 1 + "-" + (data.length + 5) + "/"
+                + (data.length + 5), "Hello", '$');
+        List<Message> messages = receive(concat(large, next), 1024, 2);
+        assertEquals(2, messages.size());
+        assertEquals(content, messages.get(0).mData);
+        assertEquals('+', messages.get(0).mContinuationFlag);
+        assertEquals("Hello", messages.get(1).mData);
+        assertEquals('$', messages.get(1).mContinuationFlag);
+    }
+
+    public void testChunkWithoutByteRangeExceedingBufferIsRejected() throws Exception {
+        byte[] data = new byte[2 * Math.max(mRcsSettings.getMsrpMaxChunkSize(),
+                MsrpConstants.CHUNK_MAX_SIZE)];
+        Arrays.fill(data, (byte) 'a');
+        try {
+            receive(createSend(null, new String(data, UTF8), '$'), 1024, 1);
+            fail("PayloadException expected");
+        } catch (PayloadException e) {
+            /* Expected */
+        }
+    }
+
+    private byte[] createSend(String byteRange, String data, char continuationFlag) {
+        StringBuilder message = new StringBuilder(MsrpConstants.MSRP_HEADER).append(' ')
+                .append(TX_ID).append(' ').append(MsrpConstants.METHOD_SEND)
+                .append(MsrpConstants.NEW_LINE)
+                .append("To-Path: msrp://127.0.0.1:20001/receiver;tcp")
+                .append(MsrpConstants.NEW_LINE)
+                .append("From-Path: msrp://127.0.0.1:20000/sender;tcp")
+                .append(MsrpConstants.NEW_LINE).append("Message-ID: msgId")
+                .append(MsrpConstants.NEW_LINE);
+        if (byteRange != null) {
+            message.append(MsrpConstants.HEADER_BYTE_RANGE).append(": ").append(byteRange)
+                    .append(MsrpConstants.NEW_LINE);
+        }
+        message.append(MsrpConstants.HEADER_CONTENT_TYPE).append(": text/plain")
+                .append(MsrpConstants.NEW_LINE).append(MsrpConstants.NEW_LINE).append(data)
+                .append(MsrpConstants.NEW_LINE).append(END_LINE).append(continuationFlag)
+                .append(MsrpConstants.NEW_LINE);
+        return message.toString().getBytes(UTF8);
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private List<Message> receive(byte[] stream, int readSize, int count) throws Exception {
+        MsrpSession session = new MsrpSession(mRcsSettings);
+        MsrpConnection connection = new MsrpConnection(session) {
+            @Override
+            public SocketConnection getSocketConnection() {
+                return null;
+            }
+        };
+        RecordingReceiver receiver = new RecordingReceiver(connection, new SplitInputStream(
+                stream, readSize));
+        for (int i = 0; i < count; i++) {
+            assertTrue(receiver.receive());
+        }
+        assertFalse(receiver.receive());
+        return receiver.mMessages;
+    }
+
+    private static class Message {
+
+        String mTxId;
+
+        int mResponseCode;
+
+        String mMethod;
+
+        Hashtable<String, String> mHeaders;
+
+        char mContinuationFlag;
+
+        String mData;
+
+        int mTotalSize;
+    }
+
+    /**
+     * Receiver recording the parsed messages instead of handing them to the MSRP session
+     */
+    private static class RecordingReceiver extends NioChunkReceiver {
+
+        final List<Message> mMessages = new ArrayList<Message>();
+
+        RecordingReceiver(MsrpConnection connection, InputStream stream) {
+            super(connection, stream);
+        }
+
+        boolean receive() throws Exception {
+            return receiveMessage();
+        }
+
+        @Override
+        protected void processMessage(String txId, int responseCode, String method,
+                Hashtable<String, String> headers, char continuationFlag, ByteBuffer data,
+                int totalSize, CharSequence trace) {
+            Message message = new Message();
+            message.mTxId = txId;
+            message.mResponseCode = responseCode;
+            message.mMethod = method;
+            message.mHeaders = headers;
+            message.mContinuationFlag = continuationFlag;
+            if (data != null) {
+                byte[] bytes = new byte[data.remaining()];
+                data.get(bytes);
+                message.mData = new String(bytes, UTF8);
+            }
+            message.mTotalSize = totalSize;
+            mMessages.add(message);
+        }
+    }
+
+    /**
+     * Input stream returning at most a given number of bytes per read
+     */
+    private static class SplitInputStream extends ByteArrayInputStream {
+
+        private final int mReadSize;
+
+        SplitInputStream(byte[] buffer, int readSize) {
+            super(buffer);
+            mReadSize = readSize;
+        }
+
+        @Override
+        public synchronized int read(byte[] buffer, int offset, int length) {
+            return super.read(buffer, offset, Math.min(length, mReadSize));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.provider;
+
+import android.content.ContentValues;
+import android.test.AndroidTestCase;
+
+public class RowCacheTest extends AndroidTestCase {
+
+    private static final String KEY_STATUS = "status";
+
+    private static final String KEY_CONTENT = "content";
+
+    private RowCache mCache;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        mCache = new RowCache(3);
+    }
+
+    private ContentValues createRow(int status, String content) {
+        ContentValues row = new ContentValues();
+        row.put(KEY_STATUS, status);
+        row.put(KEY_CONTENT, content);
+        return row;
+    }
+
+    public void testHitAndMiss() {
+        assertNull(mCache.get("msg1"));
+        mCache.put("msg1", createRow(1, "hello"), mCache.getModificationCount());
+        ContentValues row = mCache.get("msg1");
+        assertEquals("hello", row.getAsString(KEY_CONTENT));
+        assertSame(row, mCache.get("msg1"));
+        assertEquals(2, mCache.getHits());
+        assertEquals(1, mCache.getMisses());
+    }
+
+    public void testWriteThrough() {
+        mCache.put("msg1", createRow(1, "hello"), mCache.getModificationCount());
+        ContentValues oldRow = mCache.get("msg1");
+        ContentValues values = new ContentValues();
+        values.put(KEY_STATUS, 4);
+        mCache.update("msg1", values);
+        ContentValues row = mCache.get("msg1");
+        assertEquals(Integer.valueOf(4), row.getAsInteger(KEY_STATUS));
+        assertEquals("hello", row.getAsString(KEY_CONTENT));
+        /* A row already returned is never modified */
+        assertEquals(Integer.valueOf(1), oldRow.getAsInteger(KEY_STATUS));
+        /* An update of a row which is not cached does not load it */
+        mCache.update("msg2", values);
+        assertNull(mCache.get("msg2"));
+    }
+
+    public void testLoadRacingWithWriteIsNotStored() {
+        long modificationCount = mCache.getModificationCount();
+        ContentValues loadedRow = createRow(1, "hello");
+        /* The row is updated while it is being loaded */
+        ContentValues values = new ContentValues();
+        values.put(KEY_STATUS, 4);
+        mCache.update("msg1", values);
+        mCache.put("msg1", loadedRow, modificationCount);
+        assertNull(mCache.get("msg1"));
+    }
+
+    public void testRemoveAndClear() {
+        mCache.put("msg1", createRow(1, "hello"), mCache.getModificationCount());
+        mCache.put("msg2", createRow(1, "world"), mCache.getModificationCount());
+        mCache.remove("msg1");
+        assertNull(mCache.get("msg1"));
+        assertEquals(1, mCache.size());
+        mCache.clear();
+        assertNull(mCache.get("msg2"));
+        assertEquals(0, mCache.size());
+    }
+
+    public void testLeastRecentlyUsedRowIsEvicted() {
+        mCache.put("msg1", createRow(1, "a"), mCache.getModificationCount());
+        mCache.put("msg2", createRow(1, "b"), mCache.getModificationCount());
+        mCache.put("msg3", createRow(1, "c"), mCache.getModificationCount());
+        mCache.get("msg1");
+        mCache.put("msg4", createRow(1, "d"), mCache.getModificationCount());
+        assertEquals(3, mCache.size());
+        assertNull(mCache.get("msg2"));
+        assertEquals("a", mCache.get("msg1").getAsString(KEY_CONTENT));
+        assertEquals("d", mCache.get("msg4").getAsString(KEY_CONTENT));
+    }
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.provider.settings;
+
+import android.test.AndroidTestCase;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class RcsSettingsSnapshotTest extends AndroidTestCase {
+
+    private RcsSettingsSnapshot mSnapshot;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        Map<String, String> values = new HashMap<String, String>();
+        values.put("boolean", "true");
+        values.put("integer", "-42");
+        values.put("long", "5000000000");
+        values.put("string", "sip:foo@bar");
+        values.put("null", null);
+        mSnapshot = RcsSettingsSnapshot.create(values);
+    }
+
+    public void testTypedValues() {
+        assertTrue(mSnapshot.get("boolean").getBoolean());
+        assertFalse(mSnapshot.get("integer").getBoolean());
+        assertEquals(-42, mSnapshot.get("integer").getInteger());
+        assertEquals(-42L, mSnapshot.get("integer").getLong());
+        assertEquals(5000000000L, mSnapshot.get("long").getLong());
+        assertEquals("sip:foo@bar", mSnapshot.get("string").getString());
+        assertNull(mSnapshot.get("null").getString());
+        assertNull(mSnapshot.get("null").getUri());
+        assertNull(mSnapshot.get("null").getContactId());
+    }
+
+    public void testInvalidNumbers() {
+        try {
+            mSnapshot.get("long").getInteger();
+            fail("NumberFormatException expected");
+        } catch (NumberFormatException e) {
+        }
+        try {
+            mSnapshot.get("string").getLong();
+            fail("NumberFormatException expected");
+        } catch (NumberFormatException e) {
+        }
+        try {
+            RcsSettingsSnapshot.create(Collections.singletonMap("key",
+                    "99999999999999999999")).get("key").getLong();
+            fail("NumberFormatException expected");
+        } catch (NumberFormatException e) {
+        }
+    }
+
+    public void testIllegalKey() {
+        try {
+            mSnapshot.get("unknown");
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    public void testCopyOnWrite() {
+        RcsSettingsSnapshot snapshot = mSnapshot.with("integer", "7");
+        assertEquals(7, snapshot.get("integer").getInteger());
+        assertEquals(-42, mSnapshot.get("integer").getInteger());
+        assertSame(mSnapshot.get("boolean"), snapshot.get("boolean"));
+        assertEquals(mSnapshot.size(), snapshot.size());
+    }
+}
@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.provider.settings;
+
+import com.gsma.rcs.provider.LocalContentResolver;
+
+import android.test.AndroidTestCase;
+
+public class RcsSettingsTest extends AndroidTestCase {
+
+    private RcsSettings mRcsSettings;
+
+    private int mMaxChatParticipants;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        mRcsSettings = RcsSettings.createInstance(new LocalContentResolver(getContext()
+                .getContentResolver()));
+        mMaxChatParticipants = mRcsSettings.readInteger(RcsSettingsData.MAX_CHAT_PARTICIPANTS);
+    }
+
+    protected void tearDown() throws Exception {
+        mRcsSettings.writeInteger(RcsSettingsData.MAX_CHAT_PARTICIPANTS, mMaxChatParticipants);
+        super.tearDown();
+    }
+
+    public void testChangeSetWithoutChange() {
+        mRcsSettings.beginChangeSet();
+        mRcsSettings.writeInteger(RcsSettingsData.MAX_CHAT_PARTICIPANTS, mMaxChatParticipants);
+        assertEquals(0, mRcsSettings.applyChangeSet());
+        assertEquals(mMaxChatParticipants,
+                mRcsSettings.readInteger(RcsSettingsData.MAX_CHAT_PARTICIPANTS));
+    }
+
+    public void testChangeSetIsAppliedAtOnce() {
+        mRcsSettings.beginChangeSet();
+        mRcsSettings.writeInteger(RcsSettingsData.MAX_CHAT_PARTICIPANTS, mMaxChatParticipants + 1);
+        /* The change is not visible until the change set is applied */
+        assertEquals(mMaxChatParticipants,
+                mRcsSettings.readInteger(RcsSettingsData.MAX_CHAT_PARTICIPANTS));
+        mRcsSettings.writeInteger(RcsSettingsData.MAX_CHAT_PARTICIPANTS, mMaxChatParticipants + 2);
+        assertEquals(1, mRcsSettings.applyChangeSet());
+        assertEquals(mMaxChatParticipants + 2,
+                mRcsSettings.readInteger(RcsSettingsData.MAX_CHAT_PARTICIPANTS));
+    }
+}
@@ -0,0 +1,314 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.provisioning;
+
+import com.gsma.rcs.provider.LocalContentResolver;
+import com.gsma.rcs.provider.settings.RcsSettings;
+import com.gsma.rcs.provider.settings.RcsSettingsData;
+import com.gsma.rcs.provider.settings.RcsSettingsData.GsmaRelease;
+import com.gsma.services.rcs.CommonServiceConfiguration.MessagingMode;
+
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import org.xml.sax.SAXException;
+
+import java.util.Map;
+
+public class ProvisioningParserTest extends AndroidTestCase {
+
+    private static final String TAG = "ProvisioningParserTest";
+
+    private static final String HEADER = "<?xml version=\"1.0\"?>\n"
+            + "<wap-provisioningdoc version=\"1.1\">\n";
+
+    private static final String FOOTER = "</wap-provisioningdoc>\n";
+
+    private static final String VERS = "  <characteristic type=\"VERS\">\n"
+            + "    <parm name=\"version\" value=\"3\"/>\n"
+            + "    <parm name=\"validity\" value=\"86400\"/>\n" + "  </characteristic>\n";
+
+    private static final String CONTENT = HEADER
+            + VERS
+            + "  <characteristic type=\"TOKEN\">\n"
+            + "    <parm name=\"token\" value=\"X1Y2Z3\"/>\n"
+            + "    <parm name=\"validity\" value=\"3600\"/>\n"
+            + "  </characteristic>\n"
+            + "  <characteristic type=\"MSG\">\n"
+            + "    <parm name=\"title\" value=\"Welcome\"/>\n"
+            + "    <parm name=\"message\" value=\"Terms and conditions\"/>\n"
+            + "    <parm name=\"Accept_btn\" value=\"1\"/>\n"
+            + "    <parm name=\"Reject_btn\" value=\"0\"/>\n"
+            + "  </characteristic>\n"
+            + "  <characteristic type=\"APPLICATION\">\n"
+            + "    <parm name=\"AppID\" value=\"ap2001\"/>\n"
+            + "    <parm name=\"Name\" value=\"IMS Settings\"/>\n"
+            + "    <characteristic type=\"ConRefs\">\n"
+            + "      <parm name=\"ConRef\" value=\"rcs.apn\"/>\n"
+            + "    </characteristic>\n"
+            + "    <parm name=\"Timer_T1\" value=\"2000\"/>\n"
+            + "    <parm name=\"Timer_T1\" value=\"3000\"/>\n"
+            + "    <parm name=\"Timer_T2\" value=\"bad\"/>\n"
+            + "    <parm name=\"Timer_T2\" value=\"16000\"/>\n"
+            + "    <parm name=\"Home_network_domain_name\" value=\"domain.com\"/>\n"
+            + "    <characteristic type=\"LBO_P-CSCF_Address\">\n"
+            + "      <parm name=\"Address\" value=\"pcscf.domain.com:5060\"/>\n"
+            + "    </characteristic>\n"
+            + "    <characteristic type=\"APPAUTH\">\n"
+            + "      <parm name=\"AuthType\" value=\"Digest\"/>\n"
+            + "      <parm name=\"Realm\" value=\"domain.com\"/>\n"
+            + "      <parm name=\"UserName\" value=\"user@domain.com\"/>\n"
+            + "      <parm name=\"UserPwd\" value=\"secret\"/>\n"
+            + "    </characteristic>\n"
+            + "    <parm name=\"AppRef\" value=\"IMS-Settings\"/>\n"
+            + "    <parm name=\"Keep_Alive_Enabled\" value=\"1\"/>\n"
+            + "  </characteristic>\n"
+            + "  <characteristic type=\"APPLICATION\">\n"
+            + "    <parm name=\"AppID\" value=\"ap2002\"/>\n"
+            + "    <parm name=\"AppRef\" value=\"RCSe-Settings\"/>\n"
+            + "    <characteristic type=\"SERVICES\">\n"
+            + "      <parm name=\"ChatAuth\" value=\"1\"/>\n"
+            + "      <parm name=\"groupChatAuth\" value=\"1\"/>\n"
+            + "      <parm name=\"ftAuth\" value=\"1\"/>\n"
+            + "      <parm name=\"vsAuth\" value=\"0\"/>\n"
+            + "      <parm name=\"rcsIPVoiceCallAuth\" value=\"0\"/>\n"
+            + "      <parm name=\"rcsIPVideoCallAuth\" value=\"15\"/>\n"
+            + "    </characteristic>\n"
+            + "    <characteristic type=\"PRESENCE\">\n"
+            + "      <parm name=\"usePresence\" value=\"0\"/>\n"
+            + "      <parm name=\"IconMaxSize\" value=\"256000\"/>\n"
+            + "      <characteristic type=\"FAVLINK\">\n"
+            + "        <parm name=\"NoteMaxSize\" value=\"1\"/>\n"
+            + "      </characteristic>\n"
+            + "      <parm name=\"NoteMaxSize\" value=\"200\"/>\n"
+            + "    </characteristic>\n"
+            + "    <characteristic type=\"XDMS\">\n"
+            + "      <parm name=\"RevokeTimer\" value=\"300\"/>\n"
+            + "      <parm name=\"XCAPAuthenticationUserName\" value=\"\"/>\n"
+            + "    </characteristic>\n"
+            + "    <characteristic type=\"IM\">\n"
+            + "      <parm name=\"imCapAlwaysON\" value=\"1\"/>\n"
+            + "      <parm name=\"ftAutAccept\" value=\"1\"/>\n"
+            + "      <parm name=\"MaxSize1to1\" value=\"900\"/>\n"
+            + "      <parm name=\"MaxSizeFileTr\" value=\"3072\"/>\n"
+            + "      <parm name=\"ftHTTPCSURI\" value=\"https://ft.domain.com\"/>\n"
+            + "      <parm name=\"ftDefaultMech\" value=\"HTTP\"/>\n"
+            + "      <parm name=\"conf-fcty-uri\" value=\"conference@domain.com\"/>\n"
+            + "      <parm name=\"SmsFallBackAuth\" value=\"0\"/>\n"
+            + "    </characteristic>\n"
+            + "    <characteristic type=\"CAPDISCOVERY\">\n"
+            + "      <parm name=\"pollingPeriod\" value=\"0\"/>\n"
+            + "      <characteristic type=\"Ext\">\n"
+            + "        <parm name=\"IntUrlFmt\" value=\"0\"/>\n"
+            + "        <characteristic type=\"joyn\">\n"
+            + "          <parm name=\"msgCapValidity\" value=\"5\"/>\n"
+            + "          <characteristic type=\"Messaging\">\n"
+            + "            <parm name=\"deliveryTimeout\" value=\"300\"/>\n"
+            + "          </characteristic>\n"
+            + "        </characteristic>\n"
+            + "      </characteristic>\n"
+            + "    </characteristic>\n"
+            + "    <characteristic type=\"OTHER\">\n"
+            + "      <parm name=\"uuid_Value\" value=\"f81d4fae-7dec-11d0-a765-00a0c91e6bf6\"/>\n"
+            + "      <characteristic type=\"transportProto\">\n"
+            + "        <parm name=\"psSignalling\" value=\"SIPoTCP\"/>\n"
+            + "        <parm name=\"wifiMedia\" value=\"MSRPoTLS\"/>\n"
+            + "        <parm name=\"wifiRTMedia\" value=\"SRTP\"/>\n"
+            + "      </characteristic>\n"
+            + "      <parm name=\"IPCallBreakOut\" value=\"1\"/>\n"
+            + "    </characteristic>\n"
+            + "    <characteristic type=\"SERVICEPROVIDEREXT\">\n"
+            + "      <characteristic type=\"joyn\">\n"
+            + "        <characteristic type=\"UX\">\n"
+            + "          <parm name=\"messagingUX\" value=\"0\"/>\n"
+            + "        </characteristic>\n"
+            + "      </characteristic>\n"
+            + "    </characteristic>\n"
+            + "  </characteristic>\n"
+            + "  <characteristic type=\"APPLICATION\">\n"
+            + "    <parm name=\"AppRef\" value=\"Unknown-Settings\"/>\n"
+            + "    <parm name=\"Timer_T4\" value=\"17000\"/>\n"
+            + "  </characteristic>\n"
+            + "  <characteristic type=\"UNKNOWN\">\n"
+            + "    <parm name=\"version\" value=\"4\"/>\n"
+            + "  </characteristic>\n"
+            + "  <characteristic type=\"SUPL\">\n"
+            + "    <param name=\"TextMaxLength\" value=\"100\"/>\n"
+            + "    <parm name=\"LocInfoMaxValidTime\" value=\"60\"/>\n"
+            + "  </characteristic>\n" + FOOTER;
+
+    private RcsSettings mRcsSettings;
+
+    private Map<String, String> mChanges;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        mRcsSettings = RcsSettings.createInstance(new LocalContentResolver(getContext()
+                .getContentResolver()));
+    }
+
+    private Map<String, String> parseWithDomParser(DomProvisioningParser parser)
+            throws SAXException {
+        mRcsSettings.beginChangeSet();
+        try {
+            parser.parse(GsmaRelease.ALBATROS, MessagingMode.NONE, true);
+        } finally {
+            mChanges = mRcsSettings.discardChangeSet();
+        }
+        return mChanges;
+    }
+
+    private Map<String, String> parse(ProvisioningParser parser) throws SAXException {
+        mRcsSettings.beginChangeSet();
+        try {
+            parser.parseContent(GsmaRelease.ALBATROS, MessagingMode.NONE, true);
+        } finally {
+            mChanges = mRcsSettings.discardChangeSet();
+        }
+        return mChanges;
+    }
+
+    private Map<String, String> assertSameSettingsAsDomParser(String content) throws SAXException {
+        DomProvisioningParser domParser = new DomProvisioningParser(content, mRcsSettings);
+        Map<String, String> expectedChanges = parseWithDomParser(domParser);
+        ProvisioningParser parser = new ProvisioningParser(content, mRcsSettings);
+        Map<String, String> changes = parse(parser);
+        assertEquals(expectedChanges, changes);
+        ProvisioningInfo expectedInfo = domParser.getProvisioningInfo();
+        ProvisioningInfo info = parser.getProvisioningInfo();
+        assertEquals(expectedInfo.getVersion(), info.getVersion());
+        assertEquals(expectedInfo.getValidity(), info.getValidity());
+        assertEquals(expectedInfo.getToken(), info.getToken());
+        assertEquals(expectedInfo.getTokenValidity(), info.getTokenValidity());
+        assertEquals(expectedInfo.getTitle(), info.getTitle());
+        assertEquals(expectedInfo.getMessage(), info.getMessage());
+        assertEquals(expectedInfo.getAcceptBtn(), info.getAcceptBtn());
+        assertEquals(expectedInfo.getRejectBtn(), info.getRejectBtn());
+        return changes;
+    }
+
+    public void testSameSettingsAsDomParser() throws SAXException {
+        Map<String, String> changes = assertSameSettingsAsDomParser(CONTENT);
+        /* The first valid value of a parameter is applied */
+        assertEquals("2000", changes.get(RcsSettingsData.SIP_TIMER_T1));
+        assertEquals("16000", changes.get(RcsSettingsData.SIP_TIMER_T2));
+        /* The parameters of an application preceding its AppRef are applied */
+        assertEquals("rcs.apn", changes.get(RcsSettingsData.RCS_APN));
+        /* The content of an application with an unknown AppRef is skipped */
+        assertFalse(changes.containsKey(RcsSettingsData.SIP_TIMER_T4));
+        /* The parameters of a characteristic are not applied to its parent */
+        assertEquals("200", changes.get(RcsSettingsData.MAX_FREETXT_LENGTH));
+        assertEquals("100", changes.get(RcsSettingsData.MAX_GEOLOC_LABEL_LENGTH));
+    }
+
+    public void testInvalidValueAbortsRootCharacteristic() throws SAXException {
+        String content = HEADER + VERS + "  <characteristic type=\"IM\">\n"
+                + "    <parm name=\"MaxSize1to1\" value=\"900\"/>\n"
+                + "    <parm name=\"imSessionStart\" value=\"9\"/>\n"
+                + "    <parm name=\"MaxSize1toM\" value=\"700\"/>\n" + "  </characteristic>\n"
+                + "  <characteristic type=\"SUPL\">\n"
+                + "    <parm name=\"TextMaxLength\" value=\"100\"/>\n" + "  </characteristic>\n"
+                + FOOTER;
+        Map<String, String> changes = assertSameSettingsAsDomParser(content);
+        assertEquals("900", changes.get(RcsSettingsData.MAX_CHAT_MSG_LENGTH));
+        assertFalse(changes.containsKey(RcsSettingsData.MAX_GROUPCHAT_MSG_LENGTH));
+        assertEquals("100", changes.get(RcsSettingsData.MAX_GEOLOC_LABEL_LENGTH));
+    }
+
+    public void testVersionOnlyRestoresReleaseAndMessagingMode() throws SAXException {
+        Map<String, String> changes = assertSameSettingsAsDomParser(HEADER + VERS + FOOTER);
+        assertTrue(changes.containsKey(RcsSettingsData.KEY_GSMA_RELEASE));
+        assertTrue(changes.containsKey(RcsSettingsData.KEY_MESSAGING_MODE));
+    }
+
+    public void testEmptyDocument() {
+        String content = "<?xml version=\"1.0\"?>\n<wap-provisioningdoc version=\"1.1\"/>\n";
+        try {
+            parseWithDomParser(new DomProvisioningParser(content, mRcsSettings));
+            fail("SAXException expected");
+        } catch (SAXException e) {
+            /* Expected */
+        }
+        try {
+            parse(new ProvisioningParser(content, mRcsSettings));
+            fail("SAXException expected");
+        } catch (SAXException e) {
+            /* Expected */
+        }
+        assertTrue(mChanges.isEmpty());
+    }
+
+    public void testTruncatedDocumentChangesNoSetting() {
+        int maxChatMessageLength = mRcsSettings.getMaxChatMessageLength();
+        String newMaxChatMessageLength = Integer.toString(maxChatMessageLength + 1);
+        String content = HEADER + VERS + "  <characteristic type=\"IM\">\n"
+                + "    <parm name=\"MaxSize1to1\" value=\"" + newMaxChatMessageLength + "\"/>\n"
+                + "  </characteristic>\n" + "  <characteristic type=\"SUPL\">\n"
+                + "    <parm name=\"TextMax";
+        /* The settings of the characteristics read before the truncation are gathered */
+        try {
+            parse(new ProvisioningParser(content, mRcsSettings));
+            fail("SAXException expected");
+        } catch (SAXException e) {
+            /* Expected */
+        }
+        assertEquals(newMaxChatMessageLength, mChanges.get(RcsSettingsData.MAX_CHAT_MSG_LENGTH));
+        /* But none of them is applied */
+        try {
+            new ProvisioningParser(content, mRcsSettings).parse(GsmaRelease.ALBATROS,
+                    MessagingMode.NONE, true);
+            fail("SAXException expected");
+        } catch (SAXException e) {
+            /* Expected */
+        }
+        assertEquals(maxChatMessageLength, mRcsSettings.getMaxChatMessageLength());
+        /* And the change set is not left open */
+        try {
+            mRcsSettings.discardChangeSet();
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException e) {
+            /* Expected */
+        }
+    }
+
+    public void testAllocatesLessThanDomParser() throws SAXException {
+        /* Warm up both parsers so that class loading is not measured */
+        parseWithDomParser(new DomProvisioningParser(CONTENT, mRcsSettings));
+        parse(new ProvisioningParser(CONTENT, mRcsSettings));
+
+        Debug.startAllocCounting();
+        try {
+            Debug.resetThreadAllocSize();
+            parseWithDomParser(new DomProvisioningParser(CONTENT, mRcsSettings));
+            int domAllocSize = Debug.getThreadAllocSize();
+            Debug.resetThreadAllocSize();
+            parse(new ProvisioningParser(CONTENT, mRcsSettings));
+            int allocSize = Debug.getThreadAllocSize();
+            Log.i(TAG, new StringBuilder("Allocated bytes: DOM parser=").append(domAllocSize)
+                    .append(", streaming parser=").append(allocSize).toString());
+            /* Allocation counting is not supported by all the runtimes */
+            if (domAllocSize > 0) {
+                assertTrue(allocSize < domAllocSize);
+            }
+        } finally {
+            Debug.stopAllocCounting();
+        }
+    }
+}
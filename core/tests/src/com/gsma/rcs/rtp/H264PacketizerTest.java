@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.rtp;
+
+import com.gsma.rcs.core.ims.protocol.rtp.codec.Codec;
+import com.gsma.rcs.core.ims.protocol.rtp.codec.video.h264.JavaDepacketizer;
+import com.gsma.rcs.core.ims.protocol.rtp.codec.video.h264.JavaDepacketizer.FrameAssembler;
+import com.gsma.rcs.core.ims.protocol.rtp.codec.video.h264.JavaPacketizer;
+import com.gsma.rcs.core.ims.protocol.rtp.format.video.H264VideoFormat;
+import com.gsma.rcs.core.ims.protocol.rtp.util.Buffer;
+
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Round trip of H264 NAL units through the packetizer and the depacketizer
+ */
+public class H264PacketizerTest extends AndroidTestCase {
+
+    private static final H264VideoFormat FORMAT = new H264VideoFormat();
+
+    private JavaPacketizer mPacketizer;
+
+    private JavaDepacketizer mDepacketizer;
+
+    private int mSeqnum;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPacketizer = new JavaPacketizer();
+        mDepacketizer = new JavaDepacketizer();
+    }
+
+    public void testSingleNalUnitIsNotCopied() {
+        byte[] slice = createNal(0x41, 500);
+        List<Buffer> packets = packetize(slice, 3000);
+        assertEquals(1, packets.size());
+        Buffer packet = packets.get(0);
+        assertSame(slice, packet.getData());
+        assertTrue(packet.isRTPMarkerSet());
+        assertNals(depacketize(packets), slice);
+    }
+
+    public void testParameterSetsAreAggregated() {
+        byte[] sps = createNal(0x67, 12);
+        byte[] pps = createNal(0x68, 4);
+        byte[] slice = createNal(0x65, 600);
+        assertTrue(packetize(sps, 3000).isEmpty());
+        assertTrue(packetize(pps, 3000).isEmpty());
+        List<Buffer> packets = packetize(slice, 3000);
+        assertEquals(1, packets.size());
+        Buffer packet = packets.get(0);
+        assertEquals(JavaPacketizer.AVC_NALTYPE_STAPA, toPayload(packet)[0] & 0x1f);
+        assertEquals(0x60, toPayload(packet)[0] & 0x60);
+        assertTrue(packet.isRTPMarkerSet());
+        assertNals(depacketize(packets), sps, pps, slice);
+    }
+
+    public void testPendingNalUnitIsSentOnTimestampChange() {
+        byte[] sei = createNal(0x06, 20);
+        byte[] slice = createNal(0x41, 100);
+        assertTrue(packetize(sei, 3000).isEmpty());
+        List<Buffer> packets = packetize(slice, 6000);
+        assertEquals(2, packets.size());
+        assertEquals(3000, packets.get(0).getTimestamp());
+        assertEquals(6000, packets.get(1).getTimestamp());
+        // A single pending NAL unit is sent without aggregation header
+        assertEquals(0x06, toPayload(packets.get(0))[0]);
+        assertNals(depacketize(packets), sei, slice);
+    }
+
+    public void testFragmentsAreViewsOverTheFrame() {
+        byte[] sps = createNal(0x67, 12);
+        byte[] pps = createNal(0x68, 4);
+        byte[] frame = createNal(0x65, 5000);
+        packetize(sps, 9000);
+        packetize(pps, 9000);
+        List<Buffer> packets = packetize(frame, 9000);
+        int maxSize = JavaPacketizer.H264_MAX_PACKET_FRAME_SIZE
+                - JavaPacketizer.H264_FU_HEADER_SIZE;
+        int fragments = (frame.length - 1 + maxSize - 1) / maxSize;
+        assertEquals(1 + fragments, packets.size());
+        assertEquals(JavaPacketizer.AVC_NALTYPE_STAPA, toPayload(packets.get(0))[0] & 0x1f);
+        assertFalse(packets.get(0).isRTPMarkerSet());
+        for (int i = 1; i < packets.size(); i++) {
+            Buffer packet = packets.get(i);
+            assertSame(frame, packet.getData());
+            assertEquals(JavaPacketizer.H264_FU_HEADER_SIZE, packet.getHeaderLength());
+            assertTrue(toPayload(packet).length <= JavaPacketizer.H264_MAX_PACKET_FRAME_SIZE);
+            assertEquals(i == packets.size() - 1, packet.isRTPMarkerSet());
+        }
+        assertNals(depacketize(packets), sps, pps, frame);
+    }
+
+    public void testFrameAssemblerWithReorderedFragments() {
+        byte[] frame = createNal(0x41, 4000);
+        List<Buffer> packets = packetize(frame, 12000);
+        assertTrue(packets.size() > 2);
+        List<Buffer> received = new ArrayList<Buffer>();
+        for (Buffer packet : packets) {
+            received.add(receive(packet));
+        }
+        // Deliver the last fragment first
+        received.add(0, received.remove(received.size() - 1));
+
+        FrameAssembler assembler = new FrameAssembler();
+        for (int i = 0; i < received.size(); i++) {
+            assertFalse(assembler.complete());
+            assembler.put(received.get(i));
+        }
+        assertTrue(assembler.complete());
+    }
+
+    public void testTooLargeFrameIsDropped() {
+        byte[] frame = createNal(0x41, JavaPacketizer.H264_MAX_PACKET_FRAME_SIZE
+                * JavaPacketizer.H264_MAX_RTP_PKTS);
+        assertTrue(packetize(frame, 3000).isEmpty());
+        byte[] slice = createNal(0x41, 100);
+        assertEquals(1, packetize(slice, 6000).size());
+    }
+
+    private byte[] createNal(int header, int length) {
+        byte[] nal = new byte[length];
+        nal[0] = (byte) header;
+        for (int i = 1; i < length; i++) {
+            nal[i] = (byte) (i * 31 + length);
+        }
+        return nal;
+    }
+
+    /**
+     * Packetizes a NAL unit and returns the output packets, as the codec chain does
+     */
+    private List<Buffer> packetize(byte[] nal, long timestamp) {
+        Buffer input = new Buffer();
+        input.setData(nal);
+        input.setOffset(0);
+        input.setLength(nal.length);
+        input.setTimestamp(timestamp);
+        input.setFormat(FORMAT);
+        Buffer output = new Buffer();
+        int result = mPacketizer.process(input, output);
+        List<Buffer> packets = new ArrayList<Buffer>();
+        if ((result & Codec.OUTPUT_BUFFER_NOT_FILLED) == 0 && output.isFragmented()) {
+            for (int i = 0; i < output.getFragmentsSize(); i++) {
+                packets.add(output.getFragments()[i]);
+            }
+        }
+        return packets;
+    }
+
+    /**
+     * Returns the RTP payload of a packet
+     */
+    private byte[] toPayload(Buffer packet) {
+        byte[] payload = new byte[packet.getHeaderLength() + packet.getLength()];
+        if (packet.getHeader() != null) {
+            System.arraycopy(packet.getHeader(), 0, payload, 0, packet.getHeaderLength());
+        }
+        System.arraycopy((byte[]) packet.getData(), packet.getOffset(), payload,
+                packet.getHeaderLength(), packet.getLength());
+        return payload;
+    }
+
+    /**
+     * Returns the buffer the RTP input stream builds for a received packet
+     */
+    private Buffer receive(Buffer packet) {
+        byte[] payload = toPayload(packet);
+        Buffer buffer = new Buffer();
+        buffer.setData(payload);
+        buffer.setOffset(0);
+        buffer.setLength(payload.length);
+        buffer.setFormat(FORMAT);
+        buffer.setTimestamp(packet.getTimestamp());
+        buffer.setSequenceNumber(mSeqnum++);
+        buffer.setRTPMarker(packet.isRTPMarkerSet());
+        return buffer;
+    }
+
+    private List<byte[]> depacketize(List<Buffer> packets) {
+        List<byte[]> nals = new ArrayList<byte[]>();
+        Buffer output = new Buffer();
+        for (Buffer packet : packets) {
+            Buffer input = receive(packet);
+            int result;
+            do {
+                output.setDiscard(false);
+                result = mDepacketizer.process(input, output);
+                assertEquals(0, result & Codec.BUFFER_PROCESSED_FAILED);
+                if ((result & Codec.OUTPUT_BUFFER_NOT_FILLED) == 0 && !output.isDiscard()) {
+                    nals.add(Arrays.copyOfRange((byte[]) output.getData(), output.getOffset(),
+                            output.getOffset() + output.getLength()));
+                }
+            } while ((result & Codec.INPUT_BUFFER_NOT_CONSUMED) != 0);
+        }
+        return nals;
+    }
+
+    private void assertNals(List<byte[]> nals, byte[]... expected) {
+        assertEquals(expected.length, nals.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertTrue(Arrays.equals(expected[i], nals.get(i)));
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.rtp;
+
+import com.gsma.rcs.core.ims.protocol.rtp.core.RtcpSession;
+import com.gsma.rcs.core.ims.protocol.rtp.core.RtpJitterBuffer;
+import com.gsma.rcs.core.ims.protocol.rtp.core.RtpPacket;
+import com.gsma.rcs.core.ims.protocol.rtp.core.RtpSource;
+import com.gsma.rcs.core.ims.protocol.rtp.core.RtpStatisticsReceiver;
+
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replays simulated packet traces through the RTP jitter buffer
+ */
+public class RtpJitterBufferTest extends AndroidTestCase {
+
+    /**
+     * Packet interval of the simulated stream in milliseconds
+     */
+    private static final long PACKET_INTERVAL = 20;
+
+    private RtpStatisticsReceiver mStats;
+
+    private RtpJitterBuffer mJitterBuffer;
+
+    private List<Integer> mPlayed;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        mStats = new RtpStatisticsReceiver();
+        mJitterBuffer = new RtpJitterBuffer(mStats);
+        mPlayed = new ArrayList<Integer>();
+    }
+
+    public void testInOrder() {
+        replay(new int[] {
+                10, 11, 12, 13, 14, 15
+        });
+        assertPlayed(10, 11, 12, 13, 14, 15);
+        assertCounters(0, 0, 0, 0);
+    }
+
+    public void testReordered() {
+        replay(new int[] {
+                10, 12, 11, 13, 16, 14, 15, 17
+        });
+        assertPlayed(10, 11, 12, 13, 14, 15, 16, 17);
+        assertCounters(0, 0, 0, 0);
+    }
+
+    public void testLossy() {
+        replay(new int[] {
+                10, 11, 13, 14, 18, 19
+        });
+        assertPlayed(10, 11, 13, 14, 18, 19);
+        assertCounters(4, 0, 0, 2);
+    }
+
+    public void testDuplicates() {
+        replay(new int[] {
+                10, 11, 11, 12, 12, 12, 13
+        });
+        assertPlayed(10, 11, 12, 13);
+        assertCounters(0, 0, 3, 0);
+    }
+
+    public void testLatePacket() {
+        long now = 0;
+        put(10, now);
+        put(12, now);
+        // The gap of 11 is skipped once the playout delay has elapsed
+        now += mJitterBuffer.getPlayoutDelay();
+        drain(now);
+        put(11, now);
+        put(13, now);
+        drain(now);
+        assertPlayed(10, 12, 13);
+        assertCounters(1, 1, 0, 1);
+    }
+
+    public void testWaitTime() {
+        assertEquals(-1, mJitterBuffer.getWaitTime(0));
+        put(10, 0);
+        assertEquals(0, mJitterBuffer.getWaitTime(0));
+        drain(0);
+        put(12, 5);
+        long delay = mJitterBuffer.getPlayoutDelay();
+        assertEquals(delay - 5, mJitterBuffer.getWaitTime(10));
+        assertNull(mJitterBuffer.poll(4 + delay));
+        assertEquals(12, mJitterBuffer.poll(5 + delay).seqnum);
+    }
+
+    public void testPlayoutDelayFollowsJitter() {
+        mJitterBuffer.setJitter(0);
+        long min = mJitterBuffer.getPlayoutDelay();
+        mJitterBuffer.setJitter(50);
+        assertEquals(150, mJitterBuffer.getPlayoutDelay());
+        mJitterBuffer.setJitter(10000);
+        long max = mJitterBuffer.getPlayoutDelay();
+        assertTrue(min > 0 && min < 150 && max > 150 && max < 10000);
+    }
+
+    public void testWrapAround() {
+        RtpSource source = new RtcpSession(false, 16000).getMySource();
+        int[] trace = new int[] {
+                65530, 65531, 65533, 65532, 65534, 0, 65535, 1, 3, 2, 4, 5
+        };
+        long now = 0;
+        for (int seqnum : trace) {
+            RtpPacket packet = createPacket(seqnum, now);
+            packet.timestamp = seqnum * 160;
+            source.receiveRtpPacket(packet);
+            packet.seqnum = source.generateExtendedSequenceNumber(seqnum);
+            mJitterBuffer.put(packet);
+            drain(now);
+            now += PACKET_INTERVAL;
+        }
+        assertEquals(12, mPlayed.size());
+        for (int i = 0; i < mPlayed.size(); i++) {
+            assertEquals(65530 + i, (int) mPlayed.get(i));
+        }
+        assertCounters(0, 0, 0, 0);
+    }
+
+    public void testResync() {
+        replay(new int[] {
+                10, 11, 20000, 20001
+        });
+        assertPlayed(10, 11, 20000, 20001);
+        assertCounters(0, 0, 0, 0);
+    }
+
+    /**
+     * Puts the packets of a trace at the stream rate and plays out what can be played
+     * 
+     * @param trace Sequence numbers in order of arrival
+     */
+    private void replay(int[] trace) {
+        long now = 0;
+        for (int seqnum : trace) {
+            put(seqnum, now);
+            drain(now);
+            now += PACKET_INTERVAL;
+        }
+        drain(now + mJitterBuffer.getPlayoutDelay());
+        assertEquals(0, mJitterBuffer.size());
+    }
+
+    private void put(int seqnum, long now) {
+        mJitterBuffer.put(createPacket(seqnum, now));
+    }
+
+    private void drain(long now) {
+        RtpPacket packet;
+        while ((packet = mJitterBuffer.poll(now)) != null) {
+            mPlayed.add(packet.seqnum);
+        }
+    }
+
+    private RtpPacket createPacket(int seqnum, long receivedAt) {
+        RtpPacket packet = new RtpPacket();
+        packet.seqnum = seqnum;
+        packet.mReceivedAt = receivedAt;
+        return packet;
+    }
+
+    private void assertPlayed(int... seqnums) {
+        assertEquals(seqnums.length, mPlayed.size());
+        for (int i = 0; i < seqnums.length; i++) {
+            assertEquals(seqnums[i], (int) mPlayed.get(i));
+        }
+    }
+
+    private void assertCounters(int lost, int late, int duplicate, int concealments) {
+        assertEquals(lost, mStats.numLostPkts);
+        assertEquals(late, mStats.numLatePkts);
+        assertEquals(duplicate, mStats.numDuplicatePkts);
+        assertEquals(concealments, mStats.numConcealments);
+    }
+}
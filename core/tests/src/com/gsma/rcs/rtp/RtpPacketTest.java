@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.rtp;
+
+import com.gsma.rcs.core.ims.protocol.rtp.core.RtpExtensionHeader;
+import com.gsma.rcs.core.ims.protocol.rtp.core.RtpPacket;
+
+import android.test.AndroidTestCase;
+
+/**
+ * Tests the pooling and the in place assembly of the RTP packets
+ */
+public class RtpPacketTest extends AndroidTestCase {
+
+    public void testRecycledPacketIsReused() {
+        RtpPacket packet = RtpPacket.obtain(1200);
+        byte[] data = packet.mData;
+        assertTrue(data.length >= 1200);
+        packet.seqnum = 12;
+        packet.obtainExtensionHeader();
+        packet.extension = true;
+        packet.recycle();
+        // A second recycle must not put the packet twice in the pool
+        packet.recycle();
+
+        RtpPacket reused = RtpPacket.obtain(100);
+        assertSame(packet, reused);
+        assertSame(data, reused.mData);
+        assertEquals(0, reused.seqnum);
+        assertFalse(reused.extension);
+        assertNull(reused.extensionHeader);
+        assertNotSame(packet, RtpPacket.obtain(100));
+    }
+
+    public void testLargePacketIsNotPooled() {
+        RtpPacket packet = RtpPacket.obtain(10000);
+        assertTrue(packet.mData.length >= 10000);
+        packet.recycle();
+        assertNotSame(packet, RtpPacket.obtain(10000));
+    }
+
+    public void testAssemble() {
+        RtpPacket packet = new RtpPacket();
+        packet.marker = 1;
+        packet.payloadType = 99;
+        packet.seqnum = 0x1234;
+        packet.timestamp = 0x89abcdefL;
+        packet.ssrc = 0x01020304;
+        byte[] payload = new byte[] {
+                0, 1, 2, 3, 4
+        };
+        packet.assemble(payload, 1, 3);
+        assertEquals(15, packet.mLength);
+        byte[] expected = new byte[] {
+                (byte) 0x80, (byte) (0x80 | 99), 0x12, 0x34, (byte) 0x89, (byte) 0xab,
+                (byte) 0xcd, (byte) 0xef, 1, 2, 3, 4, 1, 2, 3
+        };
+        assertData(expected, packet);
+
+        // The buffer is reused for a smaller packet
+        byte[] data = packet.mData;
+        packet.marker = 0;
+        packet.assemble(payload, 0, 1);
+        assertSame(data, packet.mData);
+        assertEquals(13, packet.mLength);
+        assertEquals(99, packet.mData[1]);
+    }
+
+    public void testAssembleWithExtension() {
+        RtpPacket packet = new RtpPacket();
+        packet.payloadType = 96;
+        packet.extension = true;
+        packet.obtainExtensionHeader().addElement(4, new byte[] {
+            3
+        });
+        packet.assemble(new byte[] {
+            7
+        }, 0, 1);
+        assertEquals(21, packet.mLength);
+        assertEquals((byte) 0x90, packet.mData[0]);
+        byte[] expected = new byte[] {
+                (byte) 0xbe, (byte) 0xde, 0, 1, 0x40, 3, 0, 0, 7
+        };
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], packet.mData[12 + i]);
+        }
+    }
+
+    public void testAssembleWithPayloadHeader() {
+        RtpPacket packet = new RtpPacket();
+        byte[] fu = new byte[] {
+                0x7c, (byte) 0x85
+        };
+        packet.assemble(fu, 2, new byte[] {
+                0, 1, 2, 3
+        }, 2, 2);
+        assertEquals(16, packet.mLength);
+        byte[] expected = new byte[] {
+                0x7c, (byte) 0x85, 2, 3
+        };
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], packet.mData[12 + i]);
+        }
+    }
+
+    public void testExtensionHeaderReusesElements() {
+        RtpExtensionHeader header = new RtpExtensionHeader();
+        byte[] data = new byte[] {
+                0, 5, 6
+        };
+        header.addElement(1, data, 1, 1);
+        RtpExtensionHeader.ExtensionElement element = header.getElementById(1);
+        assertEquals(5, element.data[0]);
+        header.clear();
+        assertEquals(0, header.elementsCount());
+        assertNull(header.getElementById(1));
+        header.addElement(2, data, 2, 1);
+        assertSame(element, header.getElementById(2));
+        assertEquals(6, element.data[0]);
+        assertEquals(1, header.elementsCount());
+    }
+
+    private void assertData(byte[] expected, RtpPacket packet) {
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], packet.mData[packet.mOffset + i]);
+        }
+    }
+}
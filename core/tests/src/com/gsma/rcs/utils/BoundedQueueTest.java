@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.utils;
+
+import com.gsma.rcs.utils.BoundedQueue.OverflowPolicy;
+import com.gsma.rcs.utils.logger.Logger;
+
+import android.test.AndroidTestCase;
+
+import java.util.Vector;
+
+public class BoundedQueueTest extends AndroidTestCase {
+
+    private static final Logger sLogger = Logger.getLogger(BoundedQueueTest.class.getName());
+
+    private static final int PRODUCERS = 4;
+
+    private static final int ELEMENTS_PER_PRODUCER = 100000;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+    }
+
+    protected void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    public void testFifoOrder() {
+        BoundedQueue<Integer> queue = new BoundedQueue<Integer>(4, OverflowPolicy.REJECT);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.put(i));
+        }
+        assertEquals(4, queue.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(Integer.valueOf(i), queue.poll());
+        }
+        assertNull(queue.poll());
+        assertEquals(4, queue.getHighWaterMark());
+    }
+
+    public void testReject() {
+        BoundedQueue<Integer> queue = new BoundedQueue<Integer>(2, OverflowPolicy.REJECT);
+        assertTrue(queue.put(1));
+        assertTrue(queue.put(2));
+        assertFalse(queue.put(3));
+        assertEquals(1, queue.getRejectedCount());
+        assertEquals(Integer.valueOf(1), queue.poll());
+    }
+
+    public void testDropOldest() {
+        BoundedQueue<Integer> queue = new BoundedQueue<Integer>(2, OverflowPolicy.DROP_OLDEST);
+        for (int i = 1; i <= 5; i++) {
+            assertTrue(queue.put(i));
+        }
+        assertEquals(3, queue.getDroppedCount());
+        assertEquals(Integer.valueOf(4), queue.poll());
+        assertEquals(Integer.valueOf(5), queue.poll());
+    }
+
+    public void testTakeTimeout() {
+        BoundedQueue<Integer> queue = new BoundedQueue<Integer>(2, OverflowPolicy.BLOCK);
+        long start = System.currentTimeMillis();
+        assertNull(queue.take(100));
+        assertTrue(System.currentTimeMillis() - start >= 100);
+    }
+
+    public void testCloseReleasesConsumer() throws InterruptedException {
+        final BoundedQueue<Integer> queue = new BoundedQueue<Integer>(2, OverflowPolicy.BLOCK);
+        final Object[] result = new Object[] {
+            Boolean.TRUE
+        };
+        Thread consumer = new Thread() {
+            @Override
+            public void run() {
+                result[0] = queue.take();
+            }
+        };
+        consumer.start();
+        Thread.sleep(100);
+        queue.close();
+        consumer.join(1000);
+        assertFalse(consumer.isAlive());
+        assertNull(result[0]);
+    }
+
+    public void testBlockingProducers() throws InterruptedException {
+        final BoundedQueue<Integer> queue = new BoundedQueue<Integer>(16, OverflowPolicy.BLOCK);
+        long sum = runProducersConsumer(new Sink() {
+            @Override
+            public void put(Integer value) {
+                queue.put(value);
+            }
+
+            @Override
+            public Integer take() {
+                return queue.take();
+            }
+        });
+        assertEquals(expectedSum(), sum);
+        assertTrue(queue.getHighWaterMark() <= 16);
+    }
+
+    /**
+     * Compare the throughput of the queue with the former Vector based FIFO buffer
+     */
+    public void testThroughput() throws InterruptedException {
+        final BoundedQueue<Integer> queue = new BoundedQueue<Integer>(1024, OverflowPolicy.BLOCK);
+        long start = System.currentTimeMillis();
+        assertEquals(expectedSum(), runProducersConsumer(new Sink() {
+            @Override
+            public void put(Integer value) {
+                queue.put(value);
+            }
+
+            @Override
+            public Integer take() {
+                return queue.take();
+            }
+        }));
+        long queueDuration = System.currentTimeMillis() - start;
+
+        final VectorFifo fifo = new VectorFifo();
+        start = System.currentTimeMillis();
+        assertEquals(expectedSum(), runProducersConsumer(new Sink() {
+            @Override
+            public void put(Integer value) {
+                fifo.addObject(value);
+            }
+
+            @Override
+            public Integer take() {
+                return (Integer) fifo.getObject();
+            }
+        }));
+        long fifoDuration = System.currentTimeMillis() - start;
+        if (sLogger.isActivated()) {
+            sLogger.info("Transfer of " + PRODUCERS * ELEMENTS_PER_PRODUCER
+                    + " elements: BoundedQueue " + queueDuration + "ms, Vector FIFO "
+                    + fifoDuration + "ms");
+        }
+    }
+
+    private interface Sink {
+        void put(Integer value);
+
+        Integer take();
+    }
+
+    private static long expectedSum() {
+        long n = ELEMENTS_PER_PRODUCER;
+        return PRODUCERS * n * (n - 1) / 2;
+    }
+
+    private static long runProducersConsumer(final Sink sink) throws InterruptedException {
+        Thread[] producers = new Thread[PRODUCERS];
+        for (int i = 0; i < PRODUCERS; i++) {
+            producers[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < ELEMENTS_PER_PRODUCER; j++) {
+                        sink.put(j);
+                    }
+                }
+            };
+            producers[i].start();
+        }
+        long sum = 0;
+        for (int i = 0; i < PRODUCERS * ELEMENTS_PER_PRODUCER; i++) {
+            sum += sink.take();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        return sum;
+    }
+
+    /**
+     * Former synchronized FIFO buffer used as reference
+     */
+    private static class VectorFifo {
+        private final Vector<Object> mFifo = new Vector<Object>();
+
+        synchronized void addObject(Object obj) {
+            mFifo.addElement(obj);
+            notifyAll();
+        }
+
+        synchronized Object getObject() {
+            while (mFifo.isEmpty()) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    /* Nothing to do */
+                }
+            }
+            Object obj = mFifo.elementAt(0);
+            mFifo.removeElementAt(0);
+            return obj;
+        }
+    }
+}
@@ -0,0 +1,342 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package gov2.nist.core;
+
+import java.util.ArrayList;
+
+/**
+ * Hashed timing wheel. The time is divided in ticks of a fixed duration and a task is put in the
+ * bucket of the tick at which it expires, a single daemon thread walks the buckets one tick at a
+ * time and runs the expired tasks. Scheduling and cancelling a task take a constant time whatever
+ * the number of pending tasks, and a cancelled task is released at once. A task runs at most one
+ * tick after its expiry and must not block, as it delays the other tasks of the wheel.
+ *
+ * The wheel is used by the SIP stack timer and by the MSRP transactions of the RCS stack.
+ */
+public class HashedTimerWheel implements Runnable {
+
+    private final String name;
+
+    private final long tickDuration;
+
+    private final Bucket[] wheel;
+
+    private final int mask;
+
+    private long startTime;
+
+    // Next tick to process.
+    private long tick;
+
+    private int pendingCount;
+
+    // Thread of the wheel, null when the wheel is stopped. A previous thread
+    // still running after a stop and a start ends without processing any tick.
+    private Thread worker;
+
+    private volatile StackLogger stackLogger;
+
+    /**
+     * @param name name of the wheel thread.
+     * @param tickDuration duration of a tick in milliseconds.
+     * @param wheelSize number of buckets, rounded up to a power of two. A task expiring after
+     *            more than one turn of the wheel is skipped by the turns in between.
+     */
+    public HashedTimerWheel(String name, long tickDuration, int wheelSize) {
+        this.name = name;
+        this.tickDuration = Math.max(1, tickDuration);
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+        wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Set the logger of the exceptions thrown by the tasks.
+     *
+     * @param stackLogger logger, null to not log them.
+     */
+    public void setStackLogger(StackLogger stackLogger) {
+        this.stackLogger = stackLogger;
+    }
+
+    /**
+     * Start the wheel thread, has no effect if the wheel is already started.
+     */
+    public synchronized void start() {
+        if (worker != null)
+            return;
+        startTime = System.nanoTime();
+        tick = 0;
+        worker = new Thread(this);
+        worker.setName(name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Stop the wheel thread and drop the pending tasks.
+     */
+    public synchronized void stop() {
+        if (worker == null)
+            return;
+        worker = null;
+        for (Bucket bucket : wheel) {
+            while (bucket.head != null) {
+                bucket.remove(bucket.head);
+            }
+        }
+        pendingCount = 0;
+        notifyAll();
+    }
+
+    public synchronized boolean isStarted() {
+        return worker != null;
+    }
+
+    /**
+     * Create the handle of a task to be scheduled on this wheel.
+     *
+     * @param task task run by the wheel thread.
+     * @param period period of the task in milliseconds, 0 for a one shot task.
+     * @return the handle to pass to schedule.
+     */
+    public Timeout newTimeout(Runnable task, long period) {
+        if (period < 0)
+            throw new IllegalArgumentException("Negative period.");
+        return new Timeout(this, task, period);
+    }
+
+    /**
+     * Schedule a task. A task cancelled before being scheduled is not scheduled.
+     *
+     * @param timeout handle of the task created by newTimeout.
+     * @param delay delay before the first run in milliseconds.
+     * @return false if the wheel is not started.
+     */
+    public boolean schedule(Timeout timeout, long delay) {
+        if (delay < 0)
+            throw new IllegalArgumentException("Negative delay.");
+        if (timeout.wheel != this)
+            throw new IllegalArgumentException("Timeout of another wheel.");
+        synchronized (this) {
+            if (worker == null)
+                return false;
+            if (!timeout.cancelled) {
+                addAt(timeout, elapsedTime() + delay);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of scheduled tasks waiting for their expiry.
+     */
+    public synchronized int getPendingCount() {
+        return pendingCount;
+    }
+
+    /**
+     * Put a task in the bucket of its expiry tick. Called with the lock held.
+     */
+    private void addAt(Timeout timeout, long expiryTime) {
+        if (pendingCount == 0) {
+            // Skip the ticks elapsed while the wheel was idle.
+            tick = Math.max(tick, elapsedTime() / tickDuration);
+        }
+        timeout.expiryTime = expiryTime;
+        long expiryTick = Math.max(tick, (expiryTime + tickDuration - 1) / tickDuration);
+        timeout.remainingRounds = (expiryTick - tick) / wheel.length;
+        wheel[(int) (expiryTick & mask)].add(timeout);
+        if (++pendingCount == 1) {
+            notifyAll();
+        }
+    }
+
+    private boolean cancel(Timeout timeout) {
+        synchronized (this) {
+            if (timeout.cancelled)
+                return false;
+            timeout.cancelled = true;
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+                pendingCount--;
+            }
+            return !timeout.done;
+        }
+    }
+
+    private long elapsedTime() {
+        return (System.nanoTime() - startTime) / 1000000;
+    }
+
+    public void run() {
+        Thread current = Thread.currentThread();
+        ArrayList<Timeout> expired = new ArrayList<Timeout>();
+        while (true) {
+            synchronized (this) {
+                try {
+                    while (worker == current) {
+                        long wait = pendingCount == 0 ? 0 : tick * tickDuration - elapsedTime();
+                        if (pendingCount != 0 && wait <= 0)
+                            break;
+                        wait(wait);
+                    }
+                } catch (InterruptedException ex) {
+                    continue;
+                }
+                if (worker != current)
+                    return;
+                Bucket bucket = wheel[(int) (tick & mask)];
+                Timeout timeout = bucket.head;
+                while (timeout != null) {
+                    Timeout next = timeout.next;
+                    if (timeout.remainingRounds <= 0) {
+                        bucket.remove(timeout);
+                        pendingCount--;
+                        expired.add(timeout);
+                    } else {
+                        timeout.remainingRounds--;
+                    }
+                    timeout = next;
+                }
+                tick++;
+            }
+
+            for (int i = 0; i < expired.size(); i++) {
+                Timeout timeout = expired.get(i);
+                synchronized (this) {
+                    if (worker != current)
+                        return;
+                    if (timeout.cancelled)
+                        continue;
+                    if (timeout.period == 0)
+                        timeout.done = true;
+                }
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException ex) {
+                    // Do not let a task end the thread shared by the other tasks.
+                    StackLogger logger = stackLogger;
+                    if (logger != null) {
+                        logger.logError("Timer task of " + name + " failed", ex);
+                    }
+                }
+                if (timeout.period > 0) {
+                    synchronized (this) {
+                        if (worker == current && !timeout.cancelled) {
+                            // Do not let the tick rounding accumulate from a
+                            // period to the next, unless the task ran late.
+                            long now = elapsedTime();
+                            long last = now - timeout.expiryTime <= tickDuration
+                                    ? timeout.expiryTime : now;
+                            addAt(timeout, last + timeout.period);
+                        }
+                    }
+                }
+            }
+            expired.clear();
+        }
+    }
+
+    /**
+     * Handle of a task of the wheel.
+     */
+    public static final class Timeout {
+        final HashedTimerWheel wheel;
+
+        final Runnable task;
+
+        final long period;
+
+        long remainingRounds;
+
+        // Expiry time relative to the start of the wheel.
+        long expiryTime;
+
+        Bucket bucket;
+
+        Timeout previous;
+
+        Timeout next;
+
+        boolean cancelled;
+
+        // True once a one shot task has been run.
+        boolean done;
+
+        Timeout(HashedTimerWheel wheel, Runnable task, long period) {
+            this.wheel = wheel;
+            this.task = task;
+            this.period = period;
+        }
+
+        /**
+         * Cancel the task. A one shot task which has not run yet is never run, a periodic task
+         * is not run anymore.
+         *
+         * @return true if this prevented an execution of the task.
+         */
+        public boolean cancel() {
+            return wheel.cancel(this);
+        }
+    }
+
+    /**
+     * Doubly linked list of the tasks of a tick.
+     */
+    private static final class Bucket {
+        Timeout head;
+
+        Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.previous = tail;
+            timeout.next = null;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.previous == null) {
+                head = timeout.next;
+            } else {
+                timeout.previous.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.previous;
+            } else {
+                timeout.next.previous = timeout.previous;
+            }
+            timeout.bucket = null;
+            timeout.previous = null;
+            timeout.next = null;
+        }
+    }
+}
@@ -26,7 +26,9 @@
 package gov2.nist.core;
 
 import java.text.ParseException;
-import java.util.Hashtable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 /** A lexical analyzer that is used by all parsers in our implementation.
  *
@@ -82,42 +84,55 @@ public class LexerCore extends StringTokenizer {
     public static final int AND = (int) '&';
     public static final int UNDERSCORE = (int) '_';
 
-    protected static final Hashtable globalSymbolTable;
-    protected static final Hashtable lexerTables;
-    protected Hashtable currentLexer;
+    /**
+     * Keyword tables, built once when the lexers are first loaded and only read afterwards:
+     * the lookups of the parsing threads do not take any lock.
+     */
+    protected static final Map<String, Map<String, Integer>> lexerTables = new HashMap<String, Map<String, Integer>>();
+
+    /**
+     * Keyword table of the lexers which have no keyword
+     */
+    protected static final Map<String, Integer> EMPTY_LEXER = Collections.emptyMap();
+
+    /**
+     * Token names indexed by token type minus START
+     */
+    private static final String[] globalSymbolTable = new String[END - START];
+
+    protected Map<String, Integer> currentLexer;
     protected String currentLexerName;
     protected Token currentMatch;
 
-    static {
-        globalSymbolTable = new Hashtable();
-        lexerTables = new Hashtable();
-    }
-
-    protected void addKeyword(String name, int value) {
-        // System.out.println("addKeyword " + name + " value = " + value);
-        // new Exception().printStackTrace();
+    /**
+     * Add a keyword to a lexer table. Only called while the tables are built.
+     */
+    protected static void addKeyword(Map<String, Integer> lexer, String name, int value) {
         Integer val = Integer.valueOf(value);
-        currentLexer.put(name, val);
-        if (!globalSymbolTable.containsKey(val))
-            globalSymbolTable.put(val, name);
+        lexer.put(name, val);
+        if (globalSymbolTable[value - START] == null)
+            globalSymbolTable[value - START] = name;
     }
 
     public String lookupToken(int value) {
         if (value > START) {
-            return (String) globalSymbolTable.get(Integer.valueOf(value));
+            return value < END ? globalSymbolTable[value - START] : null;
         } else {
             Character ch = Character.valueOf((char) value);
             return ch.toString();
         }
     }
 
-    protected Hashtable addLexer(String lexerName) {
-        currentLexer = (Hashtable) lexerTables.get(lexerName);
-        if (currentLexer == null) {
-            currentLexer = new Hashtable();
-            lexerTables.put(lexerName, currentLexer);
+    /**
+     * Create a lexer table. Only called while the tables are built.
+     */
+    protected static Map<String, Integer> addLexer(String lexerName) {
+        Map<String, Integer> lexer = lexerTables.get(lexerName);
+        if (lexer == null) {
+            lexer = new HashMap<String, Integer>();
+            lexerTables.put(lexerName, lexer);
         }
-        return currentLexer;
+        return lexer;
     }
 
     //public abstract void selectLexer(String lexerName);
@@ -127,7 +142,7 @@ public class LexerCore extends StringTokenizer {
     }
 
     protected LexerCore() {
-        this.currentLexer = new Hashtable();
+        this.currentLexer = EMPTY_LEXER;
         this.currentLexerName = "charLexer";
     }
 
@@ -135,6 +150,7 @@ public class LexerCore extends StringTokenizer {
      */
     public LexerCore(String lexerName, String buffer) {
         super(buffer);
+        this.currentLexer = EMPTY_LEXER;
         this.currentLexerName = lexerName;
     }
 
@@ -176,8 +192,8 @@ public class LexerCore extends StringTokenizer {
                 String id = ttoken();
                 tok.tokenValue = id;
                 String idUppercase = id.toUpperCase();
-                if (currentLexer.containsKey(idUppercase)) {
-                    Integer type = (Integer) currentLexer.get(idUppercase);
+                Integer type = currentLexer.get(idUppercase);
+                if (type != null) {
                     tok.tokenType = type.intValue();
                 } else
                     tok.tokenType = ID;
@@ -223,7 +239,7 @@ public class LexerCore extends StringTokenizer {
                 this.currentMatch.tokenType = SAFE;
             } else {
                 String nexttok = getNextId();
-                Integer cur = (Integer) currentLexer.get(nexttok.toUpperCase());
+                Integer cur = currentLexer.get(nexttok.toUpperCase());
 
                 if (cur == null || cur.intValue() != tok)
                     throw new ParseException(
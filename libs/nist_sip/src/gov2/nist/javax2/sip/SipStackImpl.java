@@ -396,6 +396,40 @@ import javax2.sip.message.Request;
  * client transction in the ResponseEventExt and deliver that to the application.
  * The event handler can get the original transaction from this event. </li>
  * 
+ * <li><b>gov2.nist.javax2.sip.LAZY_HEADER_PARSING = [true|false] </b> <br/>
+ * Default is <it>false</it>. When true, only the From, To, Call-ID, CSeq, Via,
+ * Content-Length and Max-Forwards headers of the received messages are parsed
+ * with the message. The other headers are kept as raw lines and parsed when
+ * they are first accessed. </li>
+ * 
+ * <li><b>gov2.nist.javax2.sip.NIO_TCP_TRANSPORT = [true|false] </b> <br/>
+ * Default is <it>false</it>. When true, the TCP listening points use non
+ * blocking sockets: a few selector threads serve all the connections and the
+ * received messages are processed by a pool of worker threads, instead of two
+ * threads per connection. TLS is not affected. </li>
+ * 
+ * <li><b>gov2.nist.javax2.sip.NIO_SELECTOR_THREADS = integer </b> <br/>
+ * Number of selector threads of the NIO TCP transport. Default is 1. </li>
+ * 
+ * <li><b>gov2.nist.javax2.sip.NIO_WORKER_THREADS = integer </b> <br/>
+ * Number of threads processing the messages received by the NIO TCP transport.
+ * Default is 4. </li>
+ * 
+ * <li><b>gov2.nist.javax2.sip.TIMER_CLASS_NAME = class name </b> <br/>
+ * Implementation of gov2.nist.javax2.sip.stack.timers.SipTimer running the
+ * timer tasks of the stack. Default is
+ * gov2.nist.javax2.sip.stack.timers.DefaultSipTimer, based on a
+ * java.util.Timer. gov2.nist.javax2.sip.stack.timers.HashedWheelSipTimer
+ * schedules and cancels the tasks in constant time, which pays off with many
+ * pending transactions. </li>
+ * 
+ * <li><b>gov2.nist.javax2.sip.TIMER_WHEEL_TICK_MILLISECS = integer </b> <br/>
+ * Duration of a tick of the HashedWheelSipTimer, the tasks run up to one tick
+ * late. Default is 50. </li>
+ * 
+ * <li><b>gov2.nist.javax2.sip.TIMER_WHEEL_SIZE = integer </b> <br/>
+ * Number of buckets of the HashedWheelSipTimer. Default is 512. </li>
+ * 
  *  * <li><b>gov2.nist.javax2.sip.TLS_CLIENT_PROTOCOLS = String </b>
  *  Comma-separated list of protocols to use when creating outgoing TLS connections.
  *  The default is "SSLv3, SSLv2Hello, TLSv1".
@@ -1050,6 +1084,26 @@ public class SipStackImpl extends SIPTransactionStack implements
 		
 		super.maxForkTime = Integer.parseInt(
 		        configurationProperties.getProperty("gov2.nist.javax2.sip.MAX_FORK_TIME_SECONDS","0"));
+
+		super.lazyHeaderParsing = Boolean.parseBoolean(configurationProperties.getProperty(
+		        "gov2.nist.javax2.sip.LAZY_HEADER_PARSING", Boolean.FALSE.toString()));
+
+		super.nioTcpTransport = Boolean.parseBoolean(configurationProperties.getProperty(
+		        "gov2.nist.javax2.sip.NIO_TCP_TRANSPORT", Boolean.FALSE.toString()));
+
+		super.nioSelectorThreads = Math.max(1, Integer.parseInt(configurationProperties
+		        .getProperty("gov2.nist.javax2.sip.NIO_SELECTOR_THREADS", "1")));
+
+		super.nioWorkerThreads = Math.max(1, Integer.parseInt(configurationProperties
+		        .getProperty("gov2.nist.javax2.sip.NIO_WORKER_THREADS", "4")));
+
+		super.timerProperties = configurationProperties;
+		String timerClassName = configurationProperties
+				.getProperty("gov2.nist.javax2.sip.TIMER_CLASS_NAME");
+		if (timerClassName != null && !timerClassName.equals(super.timerClassName)) {
+			super.timerClassName = timerClassName;
+			super.createTimer();
+		}
 		
 	}
 
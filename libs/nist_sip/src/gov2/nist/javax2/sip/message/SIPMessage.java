@@ -78,7 +78,9 @@ import java.lang.reflect.Field;
 import java.text.ParseException;
 import java.util.Collection;
 import java.util.Hashtable;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
@@ -140,9 +142,10 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
     protected LinkedList<String> unrecognizedHeaders;
 
     /**
-     * List of parsed headers (in the order they were added)
+     * List of parsed headers (in the order they were added). A lazy header is
+     * inserted at its original place when it is parsed, by replacing the list.
      */
-    protected ConcurrentLinkedQueue<SIPHeader> headers;
+    protected volatile ConcurrentLinkedQueue<SIPHeader> headers;
 
     /**
      * Direct accessors for frequently accessed headers
@@ -169,9 +172,61 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
 
     private Object messageContentObject;
 
+    // Initial capacity of the encoding buffers, large enough for most messages
+    private static final int ENCODING_CAPACITY = 1024;
+
     // Table of headers indexed by name.
     private Hashtable<String, SIPHeader> nameTable;
 
+    /**
+     * Raw lines of the headers which are not parsed yet, indexed by lower-cased
+     * header name. They are parsed on first access (lazy parsing mode of the
+     * parser), null when every header is parsed.
+     */
+    private volatile LinkedHashMap<String, LinkedList<LazyHeader>> lazyHeaders;
+
+    /**
+     * Raw lines of the headers which are not parsed yet, in the order of the
+     * message. Guarded by lazyHeadersLock, null when every header is parsed.
+     */
+    private LinkedList<LazyHeader> lazyHeaderLines;
+
+    /**
+     * Lock of the lazy headers. It is also held while the headers are encoded, so that a lazy
+     * header parsed by a reader is never moved into the headers during an encoding.
+     */
+    protected Object lazyHeadersLock = new Object();
+
+    /**
+     * Raw line of a header which is not parsed yet
+     */
+    private static final class LazyHeader {
+        private final String name;
+
+        private final String line;
+
+        /**
+         * Parsed header which precedes the line in the message, null if the line
+         * precedes every parsed header.
+         */
+        private SIPHeader previous;
+
+        private LazyHeader(String name, String line, SIPHeader previous) {
+            this.name = name;
+            this.line = line;
+            this.previous = previous;
+        }
+    }
+
+    /**
+     * Encoded form of the message kept for its retransmissions, see retainEncoding()
+     */
+    private volatile byte[] retainedEncoding;
+
+    private volatile String retainedTransport;
+
+    private volatile boolean encodingRetained;
+
     /**
      * The application data pointer. This is un-interpreted by the stack. This is provided as a
      * convenient way of keeping book-keeping data for applications.
@@ -214,6 +269,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      *         canonical form.
      */
     public LinkedList<String> getMessageAsEncodedStrings() {
+        parseLazyHeaders();
         LinkedList<String> retval = new LinkedList<String>();
         Iterator<SIPHeader> li = headers.iterator();
         while (li.hasNext()) {
@@ -236,13 +292,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      */
     protected String encodeSIPHeaders() {
         StringBuffer encoding = new StringBuffer();
-        Iterator<SIPHeader> it = this.headers.iterator();
-
-        while (it.hasNext()) {
-            SIPHeader siphdr = (SIPHeader) it.next();
-            if (!(siphdr instanceof ContentLength))
-                siphdr.encode(encoding);
-        }
+        encodeHeaders(encoding);
 
         return contentLengthHeader.encode(encoding).append(NEWLINE).toString();
     }
@@ -331,6 +381,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
         if (!template.getClass().equals(this.getClass()))
             throw new IllegalArgumentException("Bad class " + template.getClass());
         SIPMessage templateMessage = (SIPMessage) template;
+        templateMessage.parseLazyHeaders();
         Object[] templateHeaders = templateMessage.headers.toArray();
         for (int i = 0; i < templateHeaders.length; i++) {
             SIPHeader hdr = (SIPHeader) templateHeaders[i];
@@ -358,18 +409,14 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      *         representation of the SDP payload if it exists).
      */
     public String encode() {
-        StringBuffer encoding = new StringBuffer();
-        Iterator<SIPHeader> it = this.headers.iterator();
-
-        while (it.hasNext()) {
-            SIPHeader siphdr = (SIPHeader) it.next();
-            if (!(siphdr instanceof ContentLength))
-                encoding.append(siphdr.encode());
-        }
-        // Append the unrecognized headers. Headers that are not
-        // recognized are passed through unchanged.
-        for (String unrecognized : this.unrecognizedHeaders) {
-            encoding.append(unrecognized).append(NEWLINE);
+        StringBuilder encoding = new StringBuilder(ENCODING_CAPACITY);
+        synchronized (lazyHeadersLock) {
+            encodeHeaders(encoding);
+            // Append the unrecognized headers. Headers that are not
+            // recognized are passed through unchanged.
+            for (String unrecognized : this.unrecognizedHeaders) {
+                encoding.append(unrecognized).append(NEWLINE);
+            }
         }
 
         encoding.append(contentLengthHeader.encode()).append(NEWLINE);
@@ -399,7 +446,8 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
 
     /**
      * Encode the message as a byte array. Use this when the message payload is a binary byte
-     * array.
+     * array. The first line (request or status line) is included. If the encoding has been
+     * retained for retransmissions, a copy of the retained bytes is returned.
      * 
      * @return The Canonical byte array representation of the message (including the canonical
      *         byte array representation of the SDP payload if it exists all in one contiguous
@@ -409,6 +457,13 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
         if (this instanceof SIPRequest && ((SIPRequest) this).isNullRequest()) {
             return "\r\n\r\n".getBytes();
         }
+        byte[] retained = retainedEncoding;
+        if (retained != null && transport.equals(retainedTransport)) {
+            byte[] retval = new byte[retained.length];
+            System.arraycopy(retained, 0, retval, 0, retained.length);
+            return retval;
+        }
+
         // JvB: added to fix case where application provides the wrong transport
         // in the topmost Via header
         ViaHeader topVia = (ViaHeader) this.getHeader(ViaHeader.NAME);
@@ -418,47 +473,60 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
             InternalErrorHandler.handleException(e);
         }
 
-        StringBuffer encoding = new StringBuffer();
-        synchronized (this.headers) {
-            Iterator<SIPHeader> it = this.headers.iterator();
-
-            while (it.hasNext()) {
-                SIPHeader siphdr = (SIPHeader) it.next();
-                if (!(siphdr instanceof ContentLength))
-                    siphdr.encode(encoding);
-
-            }
+        StringBuffer encoding = new StringBuffer(ENCODING_CAPACITY);
+        String firstLine = getFirstLine();
+        if (firstLine != null) {
+            encoding.append(firstLine);
         }
+        encodeHeaders(encoding);
         contentLengthHeader.encode(encoding);
         encoding.append(NEWLINE);
 
         byte[] retval = null;
-        byte[] content = this.getRawContent();
-        if (content != null) {
-            // Append the content
-
-            byte[] msgarray = null;
-            try {
-                msgarray = encoding.toString().getBytes( getCharset() );
-            } catch (UnsupportedEncodingException ex) {
-                InternalErrorHandler.handleException(ex);
+        try {
+            byte[] msgarray = encoding.toString().getBytes( getCharset() );
+            byte[] content = this.getRawContent();
+            if (content != null) {
+                // Append the content
+                retval = new byte[msgarray.length + content.length];
+                System.arraycopy(msgarray, 0, retval, 0, msgarray.length);
+                System.arraycopy(content, 0, retval, msgarray.length, content.length);
+            } else {
+                // Message content does not exist.
+                retval = msgarray;
             }
+        } catch (UnsupportedEncodingException ex) {
+            InternalErrorHandler.handleException(ex);
+        }
 
-            retval = new byte[msgarray.length + content.length];
-            System.arraycopy(msgarray, 0, retval, 0, msgarray.length);
-            System.arraycopy(content, 0, retval, msgarray.length, content.length);
-        } else {
-            // Message content does not exist.
-
-            try {
-                retval = encoding.toString().getBytes( getCharset() );
-            } catch (UnsupportedEncodingException ex) {
-                InternalErrorHandler.handleException(ex);
-            }
+        if (encodingRetained) {
+            retainedTransport = transport;
+            retainedEncoding = retval;
+            retval = new byte[retval.length];
+            System.arraycopy(retainedEncoding, 0, retval, 0, retval.length);
         }
         return retval;
     }
 
+    /**
+     * Keep the encoded form of this message for its retransmissions: the next call to
+     * encodeAsBytes encodes the message once more and the following calls return a copy of the
+     * same bytes. The encoded form is dropped when a header or the content is set or removed
+     * through this message. Headers modified in place are not detected, so this is only meant for
+     * messages which are not modified any more, such as retransmitted requests and responses.
+     */
+    public void retainEncoding() {
+        encodingRetained = true;
+    }
+
+    /**
+     * Drop the retained encoded form of this message.
+     */
+    protected void invalidateEncoding() {
+        encodingRetained = false;
+        retainedEncoding = null;
+    }
+
     /**
      * clone this message (create a new deep physical copy). All headers in the message are
      * cloned. You can modify the cloned copy without affecting the original. The content is
@@ -470,7 +538,11 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      * @return A cloned copy of this object.
      */
     public Object clone() {
+        parseLazyHeaders();
         SIPMessage retval = (SIPMessage) super.clone();
+        retval.lazyHeadersLock = new Object();
+        retval.encodingRetained = false;
+        retval.retainedEncoding = null;
         retval.nameTable = new Hashtable<String, SIPHeader>();
         retval.fromHeader = null;
         retval.toHeader = null;
@@ -521,6 +593,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
             InternalErrorHandler.handleException(ex);
         }
 
+        parseLazyHeaders();
         sprint("List of headers : ");
         sprint(headers.toString());
         sprint("messageContent = ");
@@ -653,6 +726,8 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
         }
 
         String headerNameLowerCase = SIPHeaderNamesCache.toLowerCase(h.getName());
+        parseLazyHeader(headerNameLowerCase);
+        invalidateEncoding();
         if (replaceFlag) {
             nameTable.remove(headerNameLowerCase);
         } else if (nameTable.containsKey(headerNameLowerCase) && !(h instanceof SIPHeaderList)) {
@@ -723,6 +798,8 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
     public void removeHeader(String headerName, boolean top) {
 
         String headerNameLowerCase = SIPHeaderNamesCache.toLowerCase(headerName);
+        parseLazyHeader(headerNameLowerCase);
+        invalidateEncoding();
         SIPHeader toRemove = (SIPHeader) nameTable.get(headerNameLowerCase);
         // nothing to do then we are done.
         if (toRemove == null)
@@ -781,6 +858,8 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
         if (headerName == null)
             throw new NullPointerException("null arg");
         String headerNameLowerCase = SIPHeaderNamesCache.toLowerCase(headerName);
+        removeLazyHeader(headerNameLowerCase);
+        invalidateEncoding();
         SIPHeader removed = (SIPHeader) nameTable.remove(headerNameLowerCase);
         // nothing to do then we are done.
         if (removed == null)
@@ -901,6 +980,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      * @return an Iterator for the headers of this message.
      */
     public Iterator<SIPHeader> getHeaders() {
+        parseLazyHeaders();
         return headers.iterator();
     }
 
@@ -916,6 +996,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
     private Header getHeaderLowerCase(String lowerCaseHeaderName) {
         if (lowerCaseHeaderName == null)
             throw new NullPointerException("bad name");
+        parseLazyHeader(lowerCaseHeaderName);
         SIPHeader sipHeader = (SIPHeader) nameTable.get(lowerCaseHeaderName);
         if (sipHeader instanceof SIPHeaderList)
             return (Header) ((SIPHeaderList) sipHeader).getFirst();
@@ -1341,6 +1422,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      * @param content is the content, as String, array of bytes, or other object.
      */
     private void computeContentLength(Object content) {
+        invalidateEncoding();
         int length = 0;
         if (content != null) {
             if (content instanceof String) {
@@ -1367,6 +1449,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      * Remove the message content if it exists.
      */
     public void removeContent() {
+        invalidateEncoding();
         messageContent = null;
         messageContentBytes = null;
         messageContentObject = null;
@@ -1386,8 +1469,9 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
     public ListIterator<SIPHeader> getHeaders(String headerName) {
         if (headerName == null)
             throw new NullPointerException("null headerName");
-        SIPHeader sipHeader = (SIPHeader) nameTable.get(SIPHeaderNamesCache
-                .toLowerCase(headerName));
+        String lowerCaseHeaderName = SIPHeaderNamesCache.toLowerCase(headerName);
+        parseLazyHeader(lowerCaseHeaderName);
+        SIPHeader sipHeader = (SIPHeader) nameTable.get(lowerCaseHeaderName);
         // empty iterator
         if (sipHeader == null)
             return new LinkedList<SIPHeader>().listIterator();
@@ -1407,6 +1491,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      */
     public String getHeaderAsFormattedString(String name) {
         String lowerCaseName = name.toLowerCase();
+        parseLazyHeader(lowerCaseName);
         if (this.nameTable.containsKey(lowerCaseName)) {
             return this.nameTable.get(lowerCaseName).toString();
         } else {
@@ -1415,6 +1500,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
     }
 
     private SIPHeader getSIPHeaderListLowerCase(String lowerCaseHeaderName) {
+        parseLazyHeader(lowerCaseHeaderName);
         return nameTable.get(lowerCaseHeaderName);
     }
 
@@ -1426,8 +1512,9 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      */
     @SuppressWarnings("unchecked")
     private List<SIPHeader> getHeaderList(String headerName) {
-        SIPHeader sipHeader = (SIPHeader) nameTable.get(SIPHeaderNamesCache
-                .toLowerCase(headerName));
+        String lowerCaseHeaderName = SIPHeaderNamesCache.toLowerCase(headerName);
+        parseLazyHeader(lowerCaseHeaderName);
+        SIPHeader sipHeader = (SIPHeader) nameTable.get(lowerCaseHeaderName);
         if (sipHeader == null)
             return null;
         else if (sipHeader instanceof SIPHeaderList)
@@ -1446,7 +1533,21 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      * @return true if the header is present in the message
      */
     public boolean hasHeader(String headerName) {
-        return nameTable.containsKey(SIPHeaderNamesCache.toLowerCase(headerName));
+        String lowerCaseHeaderName = SIPHeaderNamesCache.toLowerCase(headerName);
+        if (nameTable.containsKey(lowerCaseHeaderName)) {
+            return true;
+        }
+        if (lazyHeaders != null) {
+            synchronized (lazyHeadersLock) {
+                LinkedHashMap<String, LinkedList<LazyHeader>> lazy = lazyHeaders;
+                if (lazy != null && lazy.containsKey(lowerCaseHeaderName)) {
+                    return true;
+                }
+            }
+            // The header may have been parsed meanwhile
+            return nameTable.containsKey(lowerCaseHeaderName);
+        }
+        return false;
     }
 
     /**
@@ -1544,7 +1645,308 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      * @param unparsed -- unparsed header to add to the list.
      */
     public void addUnparsed(String unparsed) {
-        this.unrecognizedHeaders.add(unparsed);
+        synchronized (lazyHeadersLock) {
+            this.unrecognizedHeaders.add(unparsed);
+        }
+    }
+
+    /**
+     * Add a header which is kept unparsed until it is accessed. Called by the
+     * parser in lazy parsing mode.
+     * 
+     * @param lowerCaseHeaderName -- lower-cased long form of the header name.
+     * @param header -- raw header line.
+     */
+    public void addLazyHeader(String lowerCaseHeaderName, String header) {
+        synchronized (lazyHeadersLock) {
+            if (lazyHeaders == null) {
+                lazyHeaders = new LinkedHashMap<String, LinkedList<LazyHeader>>();
+                lazyHeaderLines = new LinkedList<LazyHeader>();
+            }
+            SIPHeader previous = null;
+            for (SIPHeader parsed : headers) {
+                previous = parsed;
+            }
+            LazyHeader lazyHeader = new LazyHeader(lowerCaseHeaderName, header, previous);
+            LinkedList<LazyHeader> lines = lazyHeaders.get(lowerCaseHeaderName);
+            if (lines == null) {
+                lines = new LinkedList<LazyHeader>();
+                lazyHeaders.put(lowerCaseHeaderName, lines);
+            }
+            lines.add(lazyHeader);
+            lazyHeaderLines.add(lazyHeader);
+        }
+    }
+
+    /**
+     * Parse the unparsed headers of the given name, if any. A header which
+     * cannot be parsed is kept as an unrecognized header. A parsed header takes
+     * the place of its raw line in the list of headers.
+     * 
+     * @param lowerCaseHeaderName -- lower-cased header name.
+     */
+    protected void parseLazyHeader(String lowerCaseHeaderName) {
+        if (lazyHeaders == null) {
+            return;
+        }
+        synchronized (lazyHeadersLock) {
+            if (lazyHeaders == null) {
+                return;
+            }
+            if (lazyHeaders.remove(lowerCaseHeaderName) == null) {
+                return;
+            }
+            /*
+             * The raw lines which followed a parsed line now follow the parsed
+             * header: a parsed header replaces the previous header of the next
+             * raw lines.
+             */
+            IdentityHashMap<SIPHeader, SIPHeader> replaced =
+                    new IdentityHashMap<SIPHeader, SIPHeader>();
+            LinkedList<LazyHeader> parsedLines = new LinkedList<LazyHeader>();
+            LinkedList<SIPHeader> parsedHeaders = new LinkedList<SIPHeader>();
+            Iterator<LazyHeader> it = lazyHeaderLines.iterator();
+            while (it.hasNext()) {
+                LazyHeader lazyHeader = it.next();
+                lazyHeader.previous = resolve(replaced, lazyHeader.previous);
+                if (!lazyHeader.name.equals(lowerCaseHeaderName)) {
+                    continue;
+                }
+                it.remove();
+                try {
+                    SIPHeader parsed = ParserFactory.createParser(lazyHeader.line + "\n")
+                            .parse();
+                    replaced.put(lazyHeader.previous, parsed);
+                    parsedLines.add(lazyHeader);
+                    parsedHeaders.add(parsed);
+                } catch (ParseException ex) {
+                    this.unrecognizedHeaders.add(lazyHeader.line);
+                }
+            }
+            // Cleared before the headers are attached, readers skip the lock afterwards
+            if (lazyHeaders.isEmpty()) {
+                lazyHeaders = null;
+                lazyHeaderLines = null;
+            }
+            /*
+             * A parsed header merged into an existing header is not in the
+             * headers: the raw lines which followed it follow its previous
+             * header instead.
+             */
+            replaced.clear();
+            Iterator<SIPHeader> parsedIt = parsedHeaders.iterator();
+            for (LazyHeader lazyHeader : parsedLines) {
+                SIPHeader parsed = parsedIt.next();
+                SIPHeader previous = resolve(replaced, lazyHeader.previous);
+                boolean merged = nameTable.containsKey(lowerCaseHeaderName);
+                try {
+                    attachHeader(parsed, false);
+                } catch (SIPDuplicateHeaderException ex) {
+                    // Ignore a duplicated header as the parser does
+                }
+                if (merged) {
+                    replaced.put(parsed, previous);
+                    continue;
+                }
+                SIPHeader attached = nameTable.get(lowerCaseHeaderName);
+                if (attached != null && attached != parsed) {
+                    // Wrapped into a list of headers
+                    replaced.put(parsed, attached);
+                }
+                moveAfter(resolve(replaced, parsed), previous);
+            }
+            if (lazyHeaderLines != null && !replaced.isEmpty()) {
+                for (LazyHeader lazyHeader : lazyHeaderLines) {
+                    lazyHeader.previous = resolve(replaced, lazyHeader.previous);
+                }
+            }
+        }
+    }
+
+    /**
+     * Follow the replacements of a header
+     * 
+     * @param replaced -- replacements of the headers.
+     * @param header -- header, may be null.
+     * @return the header replacing the given one, if any.
+     */
+    private static SIPHeader resolve(IdentityHashMap<SIPHeader, SIPHeader> replaced,
+            SIPHeader header) {
+        while (replaced.containsKey(header)) {
+            header = replaced.get(header);
+        }
+        return header;
+    }
+
+    /**
+     * Move a header of the list of headers just after another one. The list is
+     * replaced so that the readers iterating the headers are not disturbed.
+     * 
+     * @param header -- header to move.
+     * @param previous -- header to follow, null to move the header first.
+     */
+    private void moveAfter(SIPHeader header, SIPHeader previous) {
+        ConcurrentLinkedQueue<SIPHeader> current = headers;
+        boolean found = false;
+        for (SIPHeader next : current) {
+            if (next == header) {
+                found = true;
+                break;
+            }
+        }
+        if (!found) {
+            return;
+        }
+        ConcurrentLinkedQueue<SIPHeader> reordered = new ConcurrentLinkedQueue<SIPHeader>();
+        boolean placed = previous == null;
+        if (placed) {
+            reordered.add(header);
+        }
+        for (SIPHeader next : current) {
+            if (next == header) {
+                continue;
+            }
+            reordered.add(next);
+            if (next == previous) {
+                reordered.add(header);
+                placed = true;
+            }
+        }
+        if (!placed) {
+            // The previous header has been removed meanwhile
+            return;
+        }
+        headers = reordered;
+    }
+
+    /**
+     * Parse all the unparsed headers.
+     */
+    protected void parseLazyHeaders() {
+        if (lazyHeaders == null) {
+            return;
+        }
+        synchronized (lazyHeadersLock) {
+            while (lazyHeaders != null) {
+                parseLazyHeader(lazyHeaders.keySet().iterator().next());
+            }
+        }
+    }
+
+    private void removeLazyHeader(String lowerCaseHeaderName) {
+        if (lazyHeaders == null) {
+            return;
+        }
+        synchronized (lazyHeadersLock) {
+            if (lazyHeaders != null && lazyHeaders.remove(lowerCaseHeaderName) != null) {
+                Iterator<LazyHeader> it = lazyHeaderLines.iterator();
+                while (it.hasNext()) {
+                    if (it.next().name.equals(lowerCaseHeaderName)) {
+                        it.remove();
+                    }
+                }
+                if (lazyHeaders.isEmpty()) {
+                    lazyHeaders = null;
+                    lazyHeaderLines = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Group the raw lines of the unparsed headers by the parsed header which
+     * precedes them. Called with lazyHeadersLock held.
+     * 
+     * @return the raw lines indexed by previous header, null if every header is
+     *         parsed.
+     */
+    private IdentityHashMap<SIPHeader, LinkedList<String>> getLazyHeaderLines() {
+        if (lazyHeaderLines == null) {
+            return null;
+        }
+        IdentityHashMap<SIPHeader, LinkedList<String>> lines =
+                new IdentityHashMap<SIPHeader, LinkedList<String>>();
+        for (LazyHeader lazyHeader : lazyHeaderLines) {
+            LinkedList<String> previousLines = lines.get(lazyHeader.previous);
+            if (previousLines == null) {
+                previousLines = new LinkedList<String>();
+                lines.put(lazyHeader.previous, previousLines);
+            }
+            previousLines.add(lazyHeader.line);
+        }
+        return lines;
+    }
+
+    /**
+     * Encode the headers except the Content-Length header, the raw lines of the
+     * unparsed headers keeping their place in the message.
+     * 
+     * @param encoding -- buffer to append to.
+     */
+    private void encodeHeaders(StringBuilder encoding) {
+        synchronized (lazyHeadersLock) {
+            IdentityHashMap<SIPHeader, LinkedList<String>> lines = getLazyHeaderLines();
+            if (lines != null) {
+                appendLines(encoding, lines.remove(null));
+            }
+            for (SIPHeader siphdr : headers) {
+                if (!(siphdr instanceof ContentLength)) {
+                    encoding.append(siphdr.encode());
+                }
+                if (lines != null) {
+                    appendLines(encoding, lines.remove(siphdr));
+                }
+            }
+            if (lines != null) {
+                // Lines of which the previous header has been removed
+                for (LazyHeader lazyHeader : lazyHeaderLines) {
+                    if (lines.containsKey(lazyHeader.previous)) {
+                        encoding.append(lazyHeader.line).append(NEWLINE);
+                    }
+                }
+            }
+        }
+    }
+
+    private void encodeHeaders(StringBuffer encoding) {
+        synchronized (lazyHeadersLock) {
+            IdentityHashMap<SIPHeader, LinkedList<String>> lines = getLazyHeaderLines();
+            if (lines != null) {
+                appendLines(encoding, lines.remove(null));
+            }
+            for (SIPHeader siphdr : headers) {
+                if (!(siphdr instanceof ContentLength)) {
+                    siphdr.encode(encoding);
+                }
+                if (lines != null) {
+                    appendLines(encoding, lines.remove(siphdr));
+                }
+            }
+            if (lines != null) {
+                // Lines of which the previous header has been removed
+                for (LazyHeader lazyHeader : lazyHeaderLines) {
+                    if (lines.containsKey(lazyHeader.previous)) {
+                        encoding.append(lazyHeader.line).append(NEWLINE);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void appendLines(StringBuilder encoding, LinkedList<String> lines) {
+        if (lines != null) {
+            for (String line : lines) {
+                encoding.append(line).append(NEWLINE);
+            }
+        }
+    }
+
+    private static void appendLines(StringBuffer encoding, LinkedList<String> lines) {
+        if (lines != null) {
+            for (String line : lines) {
+                encoding.append(line).append(NEWLINE);
+            }
+        }
     }
 
     /**
@@ -1560,7 +1962,9 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
             SIPHeader sh = parser.parse();
             this.attachHeader(sh, false);
         } catch (ParseException ex) {
-            this.unrecognizedHeaders.add(hdrString);
+            synchronized (lazyHeadersLock) {
+                this.unrecognizedHeaders.add(hdrString);
+            }
         }
     }
 
@@ -1580,6 +1984,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      *         are present in the message.
      */
     public ListIterator<String> getHeaderNames() {
+        parseLazyHeaders();
         Iterator<SIPHeader> li = this.headers.iterator();
         LinkedList<String> retval = new LinkedList<String>();
         while (li.hasNext()) {
@@ -1600,6 +2005,8 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
             return false;
         }
         SIPMessage otherMessage = (SIPMessage) other;
+        parseLazyHeaders();
+        otherMessage.parseLazyHeaders();
         Collection<SIPHeader> values = this.nameTable.values();
         Iterator<SIPHeader> it = values.iterator();
         if (nameTable.size() != otherMessage.nameTable.size()) {
@@ -103,6 +103,12 @@ public final class SIPRequest extends SIPMessage implements javax2.sip.message.R
      */
     private static final Hashtable<String, String> nameTable = new Hashtable<String, String>();
 
+    private static final String RECORD_ROUTE_LOWERCASE = SIPHeaderNamesCache
+            .toLowerCase(RecordRouteHeader.NAME);
+
+    private static final String TIMESTAMP_LOWERCASE = SIPHeaderNamesCache
+            .toLowerCase(TimeStampHeader.NAME);
+
     private static void putName(String name) {
         nameTable.put(name, name);
     }
@@ -178,6 +184,7 @@ public final class SIPRequest extends SIPMessage implements javax2.sip.message.R
      */
 
     public void setRequestLine(RequestLine requestLine) {
+        invalidateEncoding();
         this.requestLine = requestLine;
     }
 
@@ -377,6 +384,7 @@ public final class SIPRequest extends SIPMessage implements javax2.sip.message.R
         if ( uri == null ) {
             throw new NullPointerException("Null request URI");
         }
+        invalidateEncoding();
         if (this.requestLine == null) {
             this.requestLine = new RequestLine();
         }
@@ -393,6 +401,7 @@ public final class SIPRequest extends SIPMessage implements javax2.sip.message.R
     public void setMethod(String method) {
         if (method == null)
             throw new IllegalArgumentException("null method");
+        invalidateEncoding();
         if (this.requestLine == null) {
             this.requestLine = new RequestLine();
         }
@@ -624,19 +633,8 @@ public final class SIPRequest extends SIPMessage implements javax2.sip.message.R
             return new byte[0];
         }
 
-        byte[] rlbytes = null;
-        if (requestLine != null) {
-            try {
-                rlbytes = requestLine.encode().getBytes("UTF-8");
-            } catch (UnsupportedEncodingException ex) {
-                InternalErrorHandler.handleException(ex);
-            }
-        }
-        byte[] superbytes = super.encodeAsBytes(transport);
-        byte[] retval = new byte[rlbytes.length + superbytes.length];
-        System.arraycopy(rlbytes, 0, retval, 0, rlbytes.length);
-        System.arraycopy(superbytes, 0, retval, rlbytes.length, superbytes.length);
-        return retval;
+        // The request line is encoded by the message
+        return super.encodeAsBytes(transport);
     }
 
     /**
@@ -693,23 +691,29 @@ public final class SIPRequest extends SIPMessage implements javax2.sip.message.R
             newResponse.setReasonPhrase(reasonPhrase);
         else
             newResponse.setReasonPhrase(SIPResponse.getReasonPhrase(statusCode));
-        headerIterator = getHeaders();
-        while (headerIterator.hasNext()) {
-            nextHeader = (SIPHeader) headerIterator.next();
-            if (nextHeader instanceof From
-                    || nextHeader instanceof To
-                    || nextHeader instanceof ViaList
-                    || nextHeader instanceof CallID
-                    || (nextHeader instanceof RecordRouteList && mustCopyRR(statusCode))
-                    || nextHeader instanceof CSeq
-                    // We just copy TimeStamp for all headers (not just 100).
-                    || nextHeader instanceof TimeStamp) {
-
-                try {
-
-                    newResponse.attachHeader((SIPHeader) nextHeader.clone(), false);
-                } catch (SIPDuplicateHeaderException e) {
-                    e.printStackTrace();
+        // Only these headers are copied, the others may stay unparsed
+        parseLazyHeader(RECORD_ROUTE_LOWERCASE);
+        parseLazyHeader(TIMESTAMP_LOWERCASE);
+        // Held so that no other lazy header is moved into the headers meanwhile
+        synchronized (lazyHeadersLock) {
+            headerIterator = headers.iterator();
+            while (headerIterator.hasNext()) {
+                nextHeader = (SIPHeader) headerIterator.next();
+                if (nextHeader instanceof From
+                        || nextHeader instanceof To
+                        || nextHeader instanceof ViaList
+                        || nextHeader instanceof CallID
+                        || (nextHeader instanceof RecordRouteList && mustCopyRR(statusCode))
+                        || nextHeader instanceof CSeq
+                        // We just copy TimeStamp for all headers (not just 100).
+                        || nextHeader instanceof TimeStamp) {
+
+                    try {
+
+                        newResponse.attachHeader((SIPHeader) nextHeader.clone(), false);
+                    } catch (SIPDuplicateHeaderException e) {
+                        e.printStackTrace();
+                    }
                 }
             }
         }
@@ -1107,6 +1111,7 @@ public final class SIPRequest extends SIPMessage implements javax2.sip.message.R
     public void setSIPVersion(String sipVersion) throws ParseException {
         if (sipVersion == null || !sipVersion.equalsIgnoreCase("SIP/2.0"))
             throw new ParseException("sipVersion", 0);
+        invalidateEncoding();
         this.requestLine.setSipVersion(sipVersion);
     }
 
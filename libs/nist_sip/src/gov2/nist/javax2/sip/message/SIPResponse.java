@@ -309,6 +309,7 @@ public final class SIPResponse
       // but in practice up to 699 since the 6xx range is defined as 'final error')
         if (statusCode < 100 || statusCode > 699)
             throw new ParseException("bad status code", 0);
+        invalidateEncoding();
         if (this.statusLine == null)
             this.statusLine = new StatusLine();
         this.statusLine.setStatusCode(statusCode);
@@ -336,6 +337,7 @@ public final class SIPResponse
     public void setReasonPhrase(String reasonPhrase) {
         if (reasonPhrase == null)
             throw new IllegalArgumentException("Bad reason phrase");
+        invalidateEncoding();
         if (this.statusLine == null)
             this.statusLine = new StatusLine();
         this.statusLine.setReasonPhrase(reasonPhrase);
@@ -371,6 +373,7 @@ public final class SIPResponse
      *@param sl Status line to set.
      */
     public void setStatusLine(StatusLine sl) {
+        invalidateEncoding();
         statusLine = sl;
     }
 
@@ -522,33 +525,6 @@ public final class SIPResponse
 
     }
 
-    /** Encode this into a byte array.
-     * This is used when the body has been set as a binary array
-     * and you want to encode the body as a byte array for transmission.
-     *
-     *@return a byte array containing the SIPRequest encoded as a byte
-     *  array.
-     */
-
-    public byte[] encodeAsBytes( String transport ) {
-        byte[] slbytes = null;
-        if (statusLine != null) {
-            try {
-                slbytes = statusLine.encode().getBytes("UTF-8");
-            } catch (UnsupportedEncodingException ex) {
-                InternalErrorHandler.handleException(ex);
-            }
-        }
-        byte[] superbytes = super.encodeAsBytes( transport );
-        byte[] retval = new byte[slbytes.length + superbytes.length];
-        System.arraycopy(slbytes, 0, retval, 0, slbytes.length);
-        System.arraycopy(superbytes, 0, retval, slbytes.length,
-                superbytes.length);
-        return retval;
-    }
-
-
-
     /** Get a dialog identifier.
      * Generates a string that can be used as a dialog identifier.
      *
@@ -657,6 +633,7 @@ public final class SIPResponse
     }
 
     public void setSIPVersion(String sipVersion) {
+        invalidateEncoding();
         this.statusLine.setSipVersion(sipVersion);
     }
 
@@ -33,7 +33,7 @@ import gov2.nist.javax2.sip.header.ims.*;
 
 import javax2.sip.header.*;
 
-import java.util.Hashtable;
+import java.util.Map;
 
 /**
  * Lexer class for the parser.
@@ -89,234 +89,235 @@ public class Lexer extends LexerCore {
         return headerValue;
     }
 
-    public void selectLexer(String lexerName) {
-        synchronized (lexerTables) {
-            // Synchronization Bug fix by Robert Rosen.
-            currentLexer = (Hashtable) lexerTables.get(lexerName);
-            this.currentLexerName = lexerName;
-            if (currentLexer == null) {
-                addLexer(lexerName);
-                if (lexerName.equals("method_keywordLexer")) {
-                    addKeyword(TokenNames.REGISTER, TokenTypes.REGISTER);
-                    addKeyword(TokenNames.ACK, TokenTypes.ACK);
-                    addKeyword(TokenNames.OPTIONS, TokenTypes.OPTIONS);
-                    addKeyword(TokenNames.BYE, TokenTypes.BYE);
-                    addKeyword(TokenNames.INVITE, TokenTypes.INVITE);
-                    addKeyword(TokenNames.SIP.toUpperCase(), TokenTypes.SIP);
-                    addKeyword(TokenNames.SIPS.toUpperCase(), TokenTypes.SIPS);
-                    addKeyword(TokenNames.SUBSCRIBE, TokenTypes.SUBSCRIBE);
-                    addKeyword(TokenNames.NOTIFY, TokenTypes.NOTIFY);
-                    addKeyword(TokenNames.MESSAGE, TokenTypes.MESSAGE);
+    static {
+        // The keyword tables are built once: selecting a lexer is then a plain
+        // lookup in a table which is never modified.
+        Map<String, Integer> lexer;
+        lexer = addLexer("method_keywordLexer");
+        addKeyword(lexer, TokenNames.REGISTER, TokenTypes.REGISTER);
+        addKeyword(lexer, TokenNames.ACK, TokenTypes.ACK);
+        addKeyword(lexer, TokenNames.OPTIONS, TokenTypes.OPTIONS);
+        addKeyword(lexer, TokenNames.BYE, TokenTypes.BYE);
+        addKeyword(lexer, TokenNames.INVITE, TokenTypes.INVITE);
+        addKeyword(lexer, TokenNames.SIP.toUpperCase(), TokenTypes.SIP);
+        addKeyword(lexer, TokenNames.SIPS.toUpperCase(), TokenTypes.SIPS);
+        addKeyword(lexer, TokenNames.SUBSCRIBE, TokenTypes.SUBSCRIBE);
+        addKeyword(lexer, TokenNames.NOTIFY, TokenTypes.NOTIFY);
+        addKeyword(lexer, TokenNames.MESSAGE, TokenTypes.MESSAGE);
 
-                    // JvB: added to support RFC3903
-                    addKeyword(TokenNames.PUBLISH, TokenTypes.PUBLISH);
+        // JvB: added to support RFC3903
+        addKeyword(lexer, TokenNames.PUBLISH, TokenTypes.PUBLISH);
 
-                } else if (lexerName.equals("command_keywordLexer")) {
-                    addKeyword(ErrorInfoHeader.NAME.toUpperCase(),
-                            TokenTypes.ERROR_INFO);
-                    addKeyword(AllowEventsHeader.NAME.toUpperCase(),
-                            TokenTypes.ALLOW_EVENTS);
-                    addKeyword(AuthenticationInfoHeader.NAME.toUpperCase(),
-                            TokenTypes.AUTHENTICATION_INFO);
-                    addKeyword(EventHeader.NAME.toUpperCase(), TokenTypes.EVENT);
-                    addKeyword(MinExpiresHeader.NAME.toUpperCase(),
-                            TokenTypes.MIN_EXPIRES);
-                    addKeyword(RSeqHeader.NAME.toUpperCase(), TokenTypes.RSEQ);
-                    addKeyword(RAckHeader.NAME.toUpperCase(), TokenTypes.RACK);
-                    addKeyword(ReasonHeader.NAME.toUpperCase(),
-                            TokenTypes.REASON);
-                    addKeyword(ReplyToHeader.NAME.toUpperCase(),
-                            TokenTypes.REPLY_TO);
-                    addKeyword(SubscriptionStateHeader.NAME.toUpperCase(),
-                            TokenTypes.SUBSCRIPTION_STATE);
-                    addKeyword(TimeStampHeader.NAME.toUpperCase(),
-                            TokenTypes.TIMESTAMP);
-                    addKeyword(InReplyToHeader.NAME.toUpperCase(),
-                            TokenTypes.IN_REPLY_TO);
-                    addKeyword(MimeVersionHeader.NAME.toUpperCase(),
-                            TokenTypes.MIME_VERSION);
-                    addKeyword(AlertInfoHeader.NAME.toUpperCase(),
-                            TokenTypes.ALERT_INFO);
-                    addKeyword(FromHeader.NAME.toUpperCase(), TokenTypes.FROM);
-                    addKeyword(ToHeader.NAME.toUpperCase(), TokenTypes.TO);
-                    addKeyword(ReferToHeader.NAME.toUpperCase(),
-                            TokenTypes.REFER_TO);
-                    addKeyword(ViaHeader.NAME.toUpperCase(), TokenTypes.VIA);
-                    addKeyword(UserAgentHeader.NAME.toUpperCase(),
-                            TokenTypes.USER_AGENT);
-                    addKeyword(ServerHeader.NAME.toUpperCase(),
-                            TokenTypes.SERVER);
-                    addKeyword(AcceptEncodingHeader.NAME.toUpperCase(),
-                            TokenTypes.ACCEPT_ENCODING);
-                    addKeyword(AcceptHeader.NAME.toUpperCase(),
-                            TokenTypes.ACCEPT);
-                    addKeyword(AllowHeader.NAME.toUpperCase(), TokenTypes.ALLOW);
-                    addKeyword(RouteHeader.NAME.toUpperCase(), TokenTypes.ROUTE);
-                    addKeyword(AuthorizationHeader.NAME.toUpperCase(),
-                            TokenTypes.AUTHORIZATION);
-                    addKeyword(ProxyAuthorizationHeader.NAME.toUpperCase(),
-                            TokenTypes.PROXY_AUTHORIZATION);
-                    addKeyword(RetryAfterHeader.NAME.toUpperCase(),
-                            TokenTypes.RETRY_AFTER);
-                    addKeyword(ProxyRequireHeader.NAME.toUpperCase(),
-                            TokenTypes.PROXY_REQUIRE);
-                    addKeyword(ContentLanguageHeader.NAME.toUpperCase(),
-                            TokenTypes.CONTENT_LANGUAGE);
-                    addKeyword(UnsupportedHeader.NAME.toUpperCase(),
-                            TokenTypes.UNSUPPORTED);
-                    addKeyword(SupportedHeader.NAME.toUpperCase(),
-                            TokenTypes.SUPPORTED);
-                    addKeyword(WarningHeader.NAME.toUpperCase(),
-                            TokenTypes.WARNING);
-                    addKeyword(MaxForwardsHeader.NAME.toUpperCase(),
-                            TokenTypes.MAX_FORWARDS);
-                    addKeyword(DateHeader.NAME.toUpperCase(), TokenTypes.DATE);
-                    addKeyword(PriorityHeader.NAME.toUpperCase(),
-                            TokenTypes.PRIORITY);
-                    addKeyword(ProxyAuthenticateHeader.NAME.toUpperCase(),
-                            TokenTypes.PROXY_AUTHENTICATE);
-                    addKeyword(ContentEncodingHeader.NAME.toUpperCase(),
-                            TokenTypes.CONTENT_ENCODING);
-                    addKeyword(ContentLengthHeader.NAME.toUpperCase(),
-                            TokenTypes.CONTENT_LENGTH);
-                    addKeyword(SubjectHeader.NAME.toUpperCase(),
-                            TokenTypes.SUBJECT);
-                    addKeyword(ContentTypeHeader.NAME.toUpperCase(),
-                            TokenTypes.CONTENT_TYPE);
-                    addKeyword(ContactHeader.NAME.toUpperCase(),
-                            TokenTypes.CONTACT);
-                    addKeyword(CallIdHeader.NAME.toUpperCase(),
-                            TokenTypes.CALL_ID);
-                    addKeyword(RequireHeader.NAME.toUpperCase(),
-                            TokenTypes.REQUIRE);
-                    addKeyword(ExpiresHeader.NAME.toUpperCase(),
-                            TokenTypes.EXPIRES);
-                    addKeyword(RecordRouteHeader.NAME.toUpperCase(),
-                            TokenTypes.RECORD_ROUTE);
-                    addKeyword(OrganizationHeader.NAME.toUpperCase(),
-                            TokenTypes.ORGANIZATION);
-                    addKeyword(CSeqHeader.NAME.toUpperCase(), TokenTypes.CSEQ);
-                    addKeyword(AcceptLanguageHeader.NAME.toUpperCase(),
-                            TokenTypes.ACCEPT_LANGUAGE);
-                    addKeyword(WWWAuthenticateHeader.NAME.toUpperCase(),
-                            TokenTypes.WWW_AUTHENTICATE);
-                    addKeyword(CallInfoHeader.NAME.toUpperCase(),
-                            TokenTypes.CALL_INFO);
-                    addKeyword(ContentDispositionHeader.NAME.toUpperCase(),
-                            TokenTypes.CONTENT_DISPOSITION);
-                    // And now the dreaded short forms....
-                    addKeyword(TokenNames.K.toUpperCase(), TokenTypes.SUPPORTED);
-                    addKeyword(TokenNames.C.toUpperCase(),
-                            TokenTypes.CONTENT_TYPE);
-                    addKeyword(TokenNames.E.toUpperCase(),
-                            TokenTypes.CONTENT_ENCODING);
-                    addKeyword(TokenNames.F.toUpperCase(), TokenTypes.FROM);
-                    addKeyword(TokenNames.I.toUpperCase(), TokenTypes.CALL_ID);
-                    addKeyword(TokenNames.M.toUpperCase(), TokenTypes.CONTACT);
-                    addKeyword(TokenNames.L.toUpperCase(),
-                            TokenTypes.CONTENT_LENGTH);
-                    addKeyword(TokenNames.S.toUpperCase(), TokenTypes.SUBJECT);
-                    addKeyword(TokenNames.T.toUpperCase(), TokenTypes.TO);
-                    addKeyword(TokenNames.U.toUpperCase(),
-                            TokenTypes.ALLOW_EVENTS); // JvB: added
-                    addKeyword(TokenNames.V.toUpperCase(), TokenTypes.VIA);
-                    addKeyword(TokenNames.R.toUpperCase(), TokenTypes.REFER_TO);
-                    addKeyword(TokenNames.O.toUpperCase(), TokenTypes.EVENT); // Bug fix by Mario Mantak
-                    addKeyword(TokenNames.X.toUpperCase(), TokenTypes.SESSIONEXPIRES_TO); // Bug fix by Jozef Saniga
-                    
-                    // JvB: added to support RFC3903
-                    addKeyword(SIPETagHeader.NAME.toUpperCase(),
-                            TokenTypes.SIP_ETAG);
-                    addKeyword(SIPIfMatchHeader.NAME.toUpperCase(),
-                            TokenTypes.SIP_IF_MATCH);
+        lexer = addLexer("command_keywordLexer");
+        addKeyword(lexer, ErrorInfoHeader.NAME.toUpperCase(),
+                TokenTypes.ERROR_INFO);
+        addKeyword(lexer, AllowEventsHeader.NAME.toUpperCase(),
+                TokenTypes.ALLOW_EVENTS);
+        addKeyword(lexer, AuthenticationInfoHeader.NAME.toUpperCase(),
+                TokenTypes.AUTHENTICATION_INFO);
+        addKeyword(lexer, EventHeader.NAME.toUpperCase(), TokenTypes.EVENT);
+        addKeyword(lexer, MinExpiresHeader.NAME.toUpperCase(),
+                TokenTypes.MIN_EXPIRES);
+        addKeyword(lexer, RSeqHeader.NAME.toUpperCase(), TokenTypes.RSEQ);
+        addKeyword(lexer, RAckHeader.NAME.toUpperCase(), TokenTypes.RACK);
+        addKeyword(lexer, ReasonHeader.NAME.toUpperCase(),
+                TokenTypes.REASON);
+        addKeyword(lexer, ReplyToHeader.NAME.toUpperCase(),
+                TokenTypes.REPLY_TO);
+        addKeyword(lexer, SubscriptionStateHeader.NAME.toUpperCase(),
+                TokenTypes.SUBSCRIPTION_STATE);
+        addKeyword(lexer, TimeStampHeader.NAME.toUpperCase(),
+                TokenTypes.TIMESTAMP);
+        addKeyword(lexer, InReplyToHeader.NAME.toUpperCase(),
+                TokenTypes.IN_REPLY_TO);
+        addKeyword(lexer, MimeVersionHeader.NAME.toUpperCase(),
+                TokenTypes.MIME_VERSION);
+        addKeyword(lexer, AlertInfoHeader.NAME.toUpperCase(),
+                TokenTypes.ALERT_INFO);
+        addKeyword(lexer, FromHeader.NAME.toUpperCase(), TokenTypes.FROM);
+        addKeyword(lexer, ToHeader.NAME.toUpperCase(), TokenTypes.TO);
+        addKeyword(lexer, ReferToHeader.NAME.toUpperCase(),
+                TokenTypes.REFER_TO);
+        addKeyword(lexer, ViaHeader.NAME.toUpperCase(), TokenTypes.VIA);
+        addKeyword(lexer, UserAgentHeader.NAME.toUpperCase(),
+                TokenTypes.USER_AGENT);
+        addKeyword(lexer, ServerHeader.NAME.toUpperCase(),
+                TokenTypes.SERVER);
+        addKeyword(lexer, AcceptEncodingHeader.NAME.toUpperCase(),
+                TokenTypes.ACCEPT_ENCODING);
+        addKeyword(lexer, AcceptHeader.NAME.toUpperCase(),
+                TokenTypes.ACCEPT);
+        addKeyword(lexer, AllowHeader.NAME.toUpperCase(), TokenTypes.ALLOW);
+        addKeyword(lexer, RouteHeader.NAME.toUpperCase(), TokenTypes.ROUTE);
+        addKeyword(lexer, AuthorizationHeader.NAME.toUpperCase(),
+                TokenTypes.AUTHORIZATION);
+        addKeyword(lexer, ProxyAuthorizationHeader.NAME.toUpperCase(),
+                TokenTypes.PROXY_AUTHORIZATION);
+        addKeyword(lexer, RetryAfterHeader.NAME.toUpperCase(),
+                TokenTypes.RETRY_AFTER);
+        addKeyword(lexer, ProxyRequireHeader.NAME.toUpperCase(),
+                TokenTypes.PROXY_REQUIRE);
+        addKeyword(lexer, ContentLanguageHeader.NAME.toUpperCase(),
+                TokenTypes.CONTENT_LANGUAGE);
+        addKeyword(lexer, UnsupportedHeader.NAME.toUpperCase(),
+                TokenTypes.UNSUPPORTED);
+        addKeyword(lexer, SupportedHeader.NAME.toUpperCase(),
+                TokenTypes.SUPPORTED);
+        addKeyword(lexer, WarningHeader.NAME.toUpperCase(),
+                TokenTypes.WARNING);
+        addKeyword(lexer, MaxForwardsHeader.NAME.toUpperCase(),
+                TokenTypes.MAX_FORWARDS);
+        addKeyword(lexer, DateHeader.NAME.toUpperCase(), TokenTypes.DATE);
+        addKeyword(lexer, PriorityHeader.NAME.toUpperCase(),
+                TokenTypes.PRIORITY);
+        addKeyword(lexer, ProxyAuthenticateHeader.NAME.toUpperCase(),
+                TokenTypes.PROXY_AUTHENTICATE);
+        addKeyword(lexer, ContentEncodingHeader.NAME.toUpperCase(),
+                TokenTypes.CONTENT_ENCODING);
+        addKeyword(lexer, ContentLengthHeader.NAME.toUpperCase(),
+                TokenTypes.CONTENT_LENGTH);
+        addKeyword(lexer, SubjectHeader.NAME.toUpperCase(),
+                TokenTypes.SUBJECT);
+        addKeyword(lexer, ContentTypeHeader.NAME.toUpperCase(),
+                TokenTypes.CONTENT_TYPE);
+        addKeyword(lexer, ContactHeader.NAME.toUpperCase(),
+                TokenTypes.CONTACT);
+        addKeyword(lexer, CallIdHeader.NAME.toUpperCase(),
+                TokenTypes.CALL_ID);
+        addKeyword(lexer, RequireHeader.NAME.toUpperCase(),
+                TokenTypes.REQUIRE);
+        addKeyword(lexer, ExpiresHeader.NAME.toUpperCase(),
+                TokenTypes.EXPIRES);
+        addKeyword(lexer, RecordRouteHeader.NAME.toUpperCase(),
+                TokenTypes.RECORD_ROUTE);
+        addKeyword(lexer, OrganizationHeader.NAME.toUpperCase(),
+                TokenTypes.ORGANIZATION);
+        addKeyword(lexer, CSeqHeader.NAME.toUpperCase(), TokenTypes.CSEQ);
+        addKeyword(lexer, AcceptLanguageHeader.NAME.toUpperCase(),
+                TokenTypes.ACCEPT_LANGUAGE);
+        addKeyword(lexer, WWWAuthenticateHeader.NAME.toUpperCase(),
+                TokenTypes.WWW_AUTHENTICATE);
+        addKeyword(lexer, CallInfoHeader.NAME.toUpperCase(),
+                TokenTypes.CALL_INFO);
+        addKeyword(lexer, ContentDispositionHeader.NAME.toUpperCase(),
+                TokenTypes.CONTENT_DISPOSITION);
+        // And now the dreaded short forms....
+        addKeyword(lexer, TokenNames.K.toUpperCase(), TokenTypes.SUPPORTED);
+        addKeyword(lexer, TokenNames.C.toUpperCase(),
+                TokenTypes.CONTENT_TYPE);
+        addKeyword(lexer, TokenNames.E.toUpperCase(),
+                TokenTypes.CONTENT_ENCODING);
+        addKeyword(lexer, TokenNames.F.toUpperCase(), TokenTypes.FROM);
+        addKeyword(lexer, TokenNames.I.toUpperCase(), TokenTypes.CALL_ID);
+        addKeyword(lexer, TokenNames.M.toUpperCase(), TokenTypes.CONTACT);
+        addKeyword(lexer, TokenNames.L.toUpperCase(),
+                TokenTypes.CONTENT_LENGTH);
+        addKeyword(lexer, TokenNames.S.toUpperCase(), TokenTypes.SUBJECT);
+        addKeyword(lexer, TokenNames.T.toUpperCase(), TokenTypes.TO);
+        addKeyword(lexer, TokenNames.U.toUpperCase(),
+                TokenTypes.ALLOW_EVENTS); // JvB: added
+        addKeyword(lexer, TokenNames.V.toUpperCase(), TokenTypes.VIA);
+        addKeyword(lexer, TokenNames.R.toUpperCase(), TokenTypes.REFER_TO);
+        addKeyword(lexer, TokenNames.O.toUpperCase(), TokenTypes.EVENT); // Bug fix by Mario Mantak
+        addKeyword(lexer, TokenNames.X.toUpperCase(), TokenTypes.SESSIONEXPIRES_TO); // Bug fix by Jozef Saniga
+        
+        // JvB: added to support RFC3903
+        addKeyword(lexer, SIPETagHeader.NAME.toUpperCase(),
+                TokenTypes.SIP_ETAG);
+        addKeyword(lexer, SIPIfMatchHeader.NAME.toUpperCase(),
+                TokenTypes.SIP_IF_MATCH);
 
-                    // pmusgrave: Add RFC4028 and ReferredBy
-                    addKeyword(SessionExpiresHeader.NAME.toUpperCase(),
-                            TokenTypes.SESSIONEXPIRES_TO);
-                    addKeyword(MinSEHeader.NAME.toUpperCase(),
-                            TokenTypes.MINSE_TO);
-                    addKeyword(ReferredByHeader.NAME.toUpperCase(), TokenTypes.REFERREDBY_TO);
-                    addKeyword(TokenNames.B.toUpperCase(), TokenTypes.REFERREDBY_TO); // Bug fix OrangeLabs, AUFFRET Jean-Marc
+        // pmusgrave: Add RFC4028 and ReferredBy
+        addKeyword(lexer, SessionExpiresHeader.NAME.toUpperCase(),
+                TokenTypes.SESSIONEXPIRES_TO);
+        addKeyword(lexer, MinSEHeader.NAME.toUpperCase(),
+                TokenTypes.MINSE_TO);
+        addKeyword(lexer, ReferredByHeader.NAME.toUpperCase(), TokenTypes.REFERREDBY_TO);
+        addKeyword(lexer, TokenNames.B.toUpperCase(), TokenTypes.REFERREDBY_TO); // Bug fix OrangeLabs, AUFFRET Jean-Marc
 
 
-                    // pmusgrave RFC3891
-                    addKeyword(ReplacesHeader.NAME.toUpperCase(),
-                            TokenTypes.REPLACES_TO);
-                    //jean deruelle RFC3911
-                    addKeyword(JoinHeader.NAME.toUpperCase(),
-                            TokenTypes.JOIN_TO);
+        // pmusgrave RFC3891
+        addKeyword(lexer, ReplacesHeader.NAME.toUpperCase(),
+                TokenTypes.REPLACES_TO);
+        //jean deruelle RFC3911
+        addKeyword(lexer, JoinHeader.NAME.toUpperCase(),
+                TokenTypes.JOIN_TO);
 
-                    // IMS Headers
-                    addKeyword(PathHeader.NAME.toUpperCase(), TokenTypes.PATH);
-                    addKeyword(ServiceRouteHeader.NAME.toUpperCase(),
-                            TokenTypes.SERVICE_ROUTE);
-                    addKeyword(PAssertedIdentityHeader.NAME.toUpperCase(),
-                            TokenTypes.P_ASSERTED_IDENTITY);
-                    addKeyword(PPreferredIdentityHeader.NAME.toUpperCase(),
-                            TokenTypes.P_PREFERRED_IDENTITY);
-                    addKeyword(PrivacyHeader.NAME.toUpperCase(),
-                            TokenTypes.PRIVACY);
+        // IMS Headers
+        addKeyword(lexer, PathHeader.NAME.toUpperCase(), TokenTypes.PATH);
+        addKeyword(lexer, ServiceRouteHeader.NAME.toUpperCase(),
+                TokenTypes.SERVICE_ROUTE);
+        addKeyword(lexer, PAssertedIdentityHeader.NAME.toUpperCase(),
+                TokenTypes.P_ASSERTED_IDENTITY);
+        addKeyword(lexer, PPreferredIdentityHeader.NAME.toUpperCase(),
+                TokenTypes.P_PREFERRED_IDENTITY);
+        addKeyword(lexer, PrivacyHeader.NAME.toUpperCase(),
+                TokenTypes.PRIVACY);
 
-                    // issued by Miguel Freitas
-                    addKeyword(PCalledPartyIDHeader.NAME.toUpperCase(),
-                            TokenTypes.P_CALLED_PARTY_ID);
-                    addKeyword(PAssociatedURIHeader.NAME.toUpperCase(),
-                            TokenTypes.P_ASSOCIATED_URI);
-                    addKeyword(PVisitedNetworkIDHeader.NAME.toUpperCase(),
-                            TokenTypes.P_VISITED_NETWORK_ID);
-                    addKeyword(PChargingFunctionAddressesHeader.NAME
-                            .toUpperCase(),
-                            TokenTypes.P_CHARGING_FUNCTION_ADDRESSES);
-                    addKeyword(PChargingVectorHeader.NAME.toUpperCase(),
-                            TokenTypes.P_VECTOR_CHARGING);
-                    addKeyword(PAccessNetworkInfoHeader.NAME.toUpperCase(),
-                            TokenTypes.P_ACCESS_NETWORK_INFO);
-                    addKeyword(PMediaAuthorizationHeader.NAME.toUpperCase(),
-                            TokenTypes.P_MEDIA_AUTHORIZATION);
+        // issued by Miguel Freitas
+        addKeyword(lexer, PCalledPartyIDHeader.NAME.toUpperCase(),
+                TokenTypes.P_CALLED_PARTY_ID);
+        addKeyword(lexer, PAssociatedURIHeader.NAME.toUpperCase(),
+                TokenTypes.P_ASSOCIATED_URI);
+        addKeyword(lexer, PVisitedNetworkIDHeader.NAME.toUpperCase(),
+                TokenTypes.P_VISITED_NETWORK_ID);
+        addKeyword(lexer, PChargingFunctionAddressesHeader.NAME
+                .toUpperCase(),
+                TokenTypes.P_CHARGING_FUNCTION_ADDRESSES);
+        addKeyword(lexer, PChargingVectorHeader.NAME.toUpperCase(),
+                TokenTypes.P_VECTOR_CHARGING);
+        addKeyword(lexer, PAccessNetworkInfoHeader.NAME.toUpperCase(),
+                TokenTypes.P_ACCESS_NETWORK_INFO);
+        addKeyword(lexer, PMediaAuthorizationHeader.NAME.toUpperCase(),
+                TokenTypes.P_MEDIA_AUTHORIZATION);
 
-                    addKeyword(SecurityServerHeader.NAME.toUpperCase(),
-                            TokenTypes.SECURITY_SERVER);
-                    addKeyword(SecurityVerifyHeader.NAME.toUpperCase(),
-                            TokenTypes.SECURITY_VERIFY);
-                    addKeyword(SecurityClientHeader.NAME.toUpperCase(),
-                            TokenTypes.SECURITY_CLIENT);
+        addKeyword(lexer, SecurityServerHeader.NAME.toUpperCase(),
+                TokenTypes.SECURITY_SERVER);
+        addKeyword(lexer, SecurityVerifyHeader.NAME.toUpperCase(),
+                TokenTypes.SECURITY_VERIFY);
+        addKeyword(lexer, SecurityClientHeader.NAME.toUpperCase(),
+                TokenTypes.SECURITY_CLIENT);
 
-                    // added by aayush@rancore
-                    addKeyword(PUserDatabaseHeader.NAME.toUpperCase(),
-                            TokenTypes.P_USER_DATABASE);
+        // added by aayush@rancore
+        addKeyword(lexer, PUserDatabaseHeader.NAME.toUpperCase(),
+                TokenTypes.P_USER_DATABASE);
 
-                    // added by aayush@rancore
-                    addKeyword(PProfileKeyHeader.NAME.toUpperCase(),
-                            TokenTypes.P_PROFILE_KEY);
+        // added by aayush@rancore
+        addKeyword(lexer, PProfileKeyHeader.NAME.toUpperCase(),
+                TokenTypes.P_PROFILE_KEY);
 
-                    // added by aayush@rancore
-                    addKeyword(PServedUserHeader.NAME.toUpperCase(),
-                            TokenTypes.P_SERVED_USER);
+        // added by aayush@rancore
+        addKeyword(lexer, PServedUserHeader.NAME.toUpperCase(),
+                TokenTypes.P_SERVED_USER);
 
-                    // added by aayush@rancore
-                    addKeyword(PPreferredServiceHeader.NAME.toUpperCase(),
-                            TokenTypes.P_PREFERRED_SERVICE);
+        // added by aayush@rancore
+        addKeyword(lexer, PPreferredServiceHeader.NAME.toUpperCase(),
+                TokenTypes.P_PREFERRED_SERVICE);
 
-                    // added by aayush@rancore
-                    addKeyword(PAssertedServiceHeader.NAME.toUpperCase(),
-                            TokenTypes.P_ASSERTED_SERVICE);
-                    
-                    // added References header
-                    addKeyword(ReferencesHeader.NAME.toUpperCase(),TokenTypes.REFERENCES);
+        // added by aayush@rancore
+        addKeyword(lexer, PAssertedServiceHeader.NAME.toUpperCase(),
+                TokenTypes.P_ASSERTED_SERVICE);
+        
+        // added References header
+        addKeyword(lexer, ReferencesHeader.NAME.toUpperCase(),TokenTypes.REFERENCES);
 
-                    // end //
+        // end //
 
+        lexer = addLexer("status_lineLexer");
+        addKeyword(lexer, TokenNames.SIP.toUpperCase(), TokenTypes.SIP);
 
-                } else if (lexerName.equals("status_lineLexer")) {
-                    addKeyword(TokenNames.SIP.toUpperCase(), TokenTypes.SIP);
-                } else if (lexerName.equals("request_lineLexer")) {
-                    addKeyword(TokenNames.SIP.toUpperCase(), TokenTypes.SIP);
-                } else if (lexerName.equals("sip_urlLexer")) {
-                    addKeyword(TokenNames.TEL.toUpperCase(), TokenTypes.TEL);
-                    addKeyword(TokenNames.SIP.toUpperCase(), TokenTypes.SIP);
-                    addKeyword(TokenNames.SIPS.toUpperCase(), TokenTypes.SIPS);
-                }
-            }
-        }
+        lexer = addLexer("request_lineLexer");
+        addKeyword(lexer, TokenNames.SIP.toUpperCase(), TokenTypes.SIP);
+
+        lexer = addLexer("sip_urlLexer");
+        addKeyword(lexer, TokenNames.TEL.toUpperCase(), TokenTypes.TEL);
+        addKeyword(lexer, TokenNames.SIP.toUpperCase(), TokenTypes.SIP);
+        addKeyword(lexer, TokenNames.SIPS.toUpperCase(), TokenTypes.SIPS);
+    }
+
+    public void selectLexer(String lexerName) {
+        Map<String, Integer> lexer = lexerTables.get(lexerName);
+        currentLexer = lexer != null ? lexer : EMPTY_LEXER;
+        this.currentLexerName = lexerName;
     }
 }
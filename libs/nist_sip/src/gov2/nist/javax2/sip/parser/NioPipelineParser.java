@@ -0,0 +1,436 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package gov2.nist.javax2.sip.parser;
+
+import gov2.nist.core.Debug;
+import gov2.nist.javax2.sip.message.SIPMessage;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Non blocking counterpart of the pipelined message parser. The bytes read from a stream
+ * oriented connection are pushed with addBytes as they arrive, the parser frames the messages on
+ * the empty line ending the headers and on the Content-Length header, without waiting for
+ * further input. The complete messages are parsed and handed to the message listener by an
+ * executor shared between the connections, one message at a time and in the order of arrival
+ * for a given connection.
+ *
+ * @see PipelinedMsgParser
+ */
+public final class NioPipelineParser {
+
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    // Number of framed messages waiting to be parsed beyond which the reading
+    // of the connection is suspended. It is resumed once half of them are
+    // processed.
+    private static final int MAX_PENDING_FRAMES = 32;
+
+    private final SIPMessageListener sipMessageListener;
+
+    private final Executor executor;
+
+    private final int maxMessageSize;
+
+    private boolean lazyParsing;
+
+    // Bytes received and not framed yet.
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+
+    private int count;
+
+    // Position from which to look for the end of the headers.
+    private int scanIndex;
+
+    // Length of the header block of the current message, -1 while unknown.
+    private int headerLength = -1;
+
+    private int contentLength;
+
+    private boolean readBody;
+
+    // Bytes of an oversized body to discard.
+    private int skipCount;
+
+    // Framed messages waiting to be parsed, in order of arrival.
+    private final LinkedList<Frame> frames = new LinkedList<Frame>();
+
+    private boolean dispatching;
+
+    // True while the reading of the connection is suspended.
+    private boolean readSuspended;
+
+    private Runnable readResumer;
+
+    private volatile boolean closed;
+
+    private final Runnable dispatcher = new Runnable() {
+        public void run() {
+            dispatch();
+        }
+    };
+
+    /**
+     * Constructor.
+     *
+     * @param sipMessageListener
+     *            Message listener which has methods that get called back from
+     *            the parser when a parse is complete
+     * @param executor
+     *            Executor running the parsing and the message listener.
+     * @param maxMessageSize
+     *            Maximum size of a message, 0 for no limit.
+     */
+    public NioPipelineParser(SIPMessageListener sipMessageListener, Executor executor,
+            int maxMessageSize) {
+        this.sipMessageListener = sipMessageListener;
+        this.executor = executor;
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    /**
+     * Enable or disable the lazy header parsing mode of the message parser.
+     *
+     * @param lazyParsing true to parse the headers on first access.
+     * @see StringMsgParser#setLazyParsing(boolean)
+     */
+    public void setLazyParsing(boolean lazyParsing) {
+        this.lazyParsing = lazyParsing;
+    }
+
+    /**
+     * Set the task resuming the reading of the connection, see suspendReadIfFull.
+     *
+     * @param readResumer task run by the executor once the reading may resume.
+     */
+    public void setReadResumer(Runnable readResumer) {
+        this.readResumer = readResumer;
+    }
+
+    /**
+     * Push bytes read from the connection. Never blocks, the messages which are complete are
+     * queued for processing.
+     *
+     * @param bytes buffer holding the bytes read.
+     * @param offset offset of the first byte.
+     * @param length number of bytes.
+     * @throws IOException if the message being received is larger than the maximum size.
+     */
+    public void addBytes(byte[] bytes, int offset, int length) throws IOException {
+        if (closed) {
+            return;
+        }
+        if (skipCount > 0) {
+            int skipped = Math.min(skipCount, length);
+            skipCount -= skipped;
+            offset += skipped;
+            length -= skipped;
+        }
+        if (count + length > buffer.length) {
+            byte[] newBuffer = new byte[Math.max(buffer.length * 2, count + length)];
+            System.arraycopy(buffer, 0, newBuffer, 0, count);
+            buffer = newBuffer;
+        }
+        System.arraycopy(bytes, offset, buffer, count, length);
+        count += length;
+
+        while (frameMessage()) {
+        }
+    }
+
+    /**
+     * Returns true if a message has been partially received.
+     *
+     * @return true if some bytes are waiting for the rest of their message.
+     */
+    public boolean hasPartialMessage() {
+        return count > 0 || skipCount > 0;
+    }
+
+    /**
+     * Check whether too many messages are waiting to be parsed. If so the caller must stop
+     * reading the connection until the read resumer is run.
+     *
+     * @return true if the reading of the connection must be suspended.
+     */
+    public boolean suspendReadIfFull() {
+        synchronized (frames) {
+            if (!closed && frames.size() >= MAX_PENDING_FRAMES) {
+                readSuspended = true;
+            }
+            return readSuspended;
+        }
+    }
+
+    /**
+     * Returns true while the reading of the connection is suspended.
+     *
+     * @return true if the reading is suspended.
+     */
+    public boolean isReadSuspended() {
+        synchronized (frames) {
+            return readSuspended;
+        }
+    }
+
+    /**
+     * Stop processing the messages. The queued messages are dropped.
+     */
+    public void close() {
+        closed = true;
+        synchronized (frames) {
+            frames.clear();
+        }
+    }
+
+    /**
+     * Extract the first complete message from the buffer.
+     *
+     * @return true if a message has been extracted.
+     * @throws IOException if the maximum message size is exceeded.
+     */
+    private boolean frameMessage() throws IOException {
+        if (headerLength == -1) {
+            // Ignore blank lines between the messages (keep alive)
+            int start = 0;
+            while (start < count && (buffer[start] == '\r' || buffer[start] == '\n')) {
+                start++;
+            }
+            if (start > 0) {
+                consume(start);
+            }
+            headerLength = findEndOfHeaders();
+            if (headerLength == -1) {
+                if (maxMessageSize > 0 && count >= maxMessageSize) {
+                    throw new IOException("Max size exceeded!");
+                }
+                return false;
+            }
+            if (maxMessageSize > 0 && headerLength >= maxMessageSize) {
+                throw new IOException("Max size exceeded!");
+            }
+            contentLength = getContentLength(headerLength);
+            readBody = maxMessageSize == 0 || contentLength < maxMessageSize - headerLength;
+            if (!readBody) {
+                // Process the message without its body and reject it from there.
+                skipCount = contentLength;
+                contentLength = 0;
+            }
+        }
+        int size = headerLength + contentLength;
+        if (skipCount > 0) {
+            size = headerLength;
+        } else if (count < size) {
+            return false;
+        }
+
+        Frame frame = new Frame(new byte[size], readBody);
+        System.arraycopy(buffer, 0, frame.bytes, 0, size);
+        if (skipCount > 0) {
+            // Drop the bytes of the oversized body already received
+            int skipped = Math.min(skipCount, count - size);
+            skipCount -= skipped;
+            size += skipped;
+        }
+        consume(size);
+        headerLength = -1;
+        enqueue(frame);
+        return true;
+    }
+
+    /**
+     * Look for the empty line ending the headers.
+     *
+     * @return the length of the headers including the empty line, -1 if not received yet.
+     */
+    private int findEndOfHeaders() {
+        for (int i = Math.max(scanIndex, 1); i < count; i++) {
+            if (buffer[i] == '\n') {
+                if (buffer[i - 1] == '\n') {
+                    return i + 1;
+                }
+                if (buffer[i - 1] == '\r' && i >= 2 && buffer[i - 2] == '\n') {
+                    return i + 1;
+                }
+            }
+        }
+        scanIndex = Math.max(count - 2, 1);
+        return -1;
+    }
+
+    /**
+     * Read the Content-Length header (or its compact form) of the header block.
+     *
+     * @param length length of the header block.
+     * @return the content length, 0 if absent or invalid.
+     */
+    private int getContentLength(int length) {
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && buffer[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            int colon = lineStart;
+            while (colon < lineEnd && buffer[colon] != ':') {
+                colon++;
+            }
+            if (colon < lineEnd) {
+                int nameEnd = colon;
+                while (nameEnd > lineStart
+                        && (buffer[nameEnd - 1] == ' ' || buffer[nameEnd - 1] == '\t')) {
+                    nameEnd--;
+                }
+                if (isContentLength(lineStart, nameEnd)) {
+                    int value = 0;
+                    boolean digits = false;
+                    for (int i = colon + 1; i < lineEnd; i++) {
+                        byte b = buffer[i];
+                        if (b >= '0' && b <= '9') {
+                            value = value * 10 + (b - '0');
+                            digits = true;
+                            if (value < 0) {
+                                return 0;
+                            }
+                        } else if (digits || (b != ' ' && b != '\t')) {
+                            break;
+                        }
+                    }
+                    return value;
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return 0;
+    }
+
+    private boolean isContentLength(int start, int end) {
+        int length = end - start;
+        if (length == 1) {
+            return buffer[start] == 'l' || buffer[start] == 'L';
+        }
+        if (length != 14) {
+            return false;
+        }
+        String name = "content-length";
+        for (int i = 0; i < length; i++) {
+            int c = buffer[start + i];
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            if (c != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void consume(int length) {
+        count -= length;
+        if (count > 0) {
+            System.arraycopy(buffer, length, buffer, 0, count);
+        }
+        scanIndex = 0;
+        if (count == 0 && buffer.length > INITIAL_BUFFER_SIZE) {
+            buffer = new byte[INITIAL_BUFFER_SIZE];
+        }
+    }
+
+    private void enqueue(Frame frame) {
+        synchronized (frames) {
+            frames.add(frame);
+            if (dispatching) {
+                return;
+            }
+            dispatching = true;
+        }
+        try {
+            executor.execute(dispatcher);
+        } catch (RejectedExecutionException ex) {
+            // The stack is stopping.
+            close();
+        }
+    }
+
+    /**
+     * Parse and process the queued messages in order.
+     */
+    private void dispatch() {
+        while (true) {
+            Frame frame;
+            boolean resumeRead = false;
+            synchronized (frames) {
+                if (frames.isEmpty() || closed) {
+                    dispatching = false;
+                    return;
+                }
+                frame = frames.removeFirst();
+                if (readSuspended && frames.size() <= MAX_PENDING_FRAMES / 2) {
+                    readSuspended = false;
+                    resumeRead = true;
+                }
+            }
+            if (resumeRead && readResumer != null) {
+                readResumer.run();
+            }
+            StringMsgParser smp = new StringMsgParser(sipMessageListener);
+            smp.readBody = frame.readBody;
+            smp.setLazyParsing(lazyParsing);
+            SIPMessage sipMessage;
+            try {
+                sipMessage = smp.parseSIPMessage(frame.bytes);
+                if (sipMessage == null) {
+                    continue;
+                }
+            } catch (ParseException ex) {
+                // Just ignore the parse exception.
+                Debug.logError("Detected a parse error", ex);
+                continue;
+            }
+            if (sipMessageListener != null) {
+                try {
+                    sipMessageListener.processMessage(sipMessage);
+                } catch (Exception ex) {
+                    // fatal error in processing - stop processing the
+                    // connection.
+                    close();
+                }
+            }
+        }
+    }
+
+    /**
+     * A message framed from the stream.
+     */
+    private static final class Frame {
+        final byte[] bytes;
+
+        // False if the body was too large and has been dropped.
+        final boolean readBody;
+
+        Frame(byte[] bytes, boolean readBody) {
+            this.bytes = bytes;
+            this.readBody = readBody;
+        }
+    }
+}
@@ -24,8 +24,7 @@
 *
 */
 package gov2.nist.javax2.sip.parser;
-import java.util.Hashtable;
-import java.lang.reflect.*;
+import java.util.HashMap;
 
 import javax2.sip.header.*;
 
@@ -51,234 +50,481 @@ import gov2.nist.javax2.sip.parser.ims.*;
  */
 public class ParserFactory {
 
-    private static Hashtable<String,Class<? extends HeaderParser>> parserTable;
-    private static Class[] constructorArgs;
-    private static Hashtable parserConstructorCache;
+    /**
+     * Creates the parser of a header. One instance is registered per parser
+     * class so that no reflection is needed when parsing.
+     */
+    public interface ParserCreator {
+        HeaderParser createParser(String line);
+    }
+
+    /**
+     * Parser creators indexed by lower-cased header name (long and compact
+     * forms). The table is filled once by the static initializer and only
+     * read afterwards, so the lookups do not need any lock.
+     */
+    private static final HashMap<String, ParserCreator> parserTable = new HashMap<String, ParserCreator>();
+
+    private static void register(ParserCreator creator, String... headerNames) {
+        for (String headerName : headerNames) {
+            parserTable.put(headerName.toLowerCase(), creator);
+        }
+    }
 
     static {
-        parserTable = new Hashtable<String,Class<? extends HeaderParser>>();
-        parserConstructorCache = new Hashtable();
-        constructorArgs = new Class[1];
-        constructorArgs[0] = String.class;
-        parserTable.put(ReplyToHeader.NAME.toLowerCase(), ReplyToParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new ReplyToParser(line);
+            }
+        }, ReplyToHeader.NAME);
+
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new InReplyToParser(line);
+            }
+        }, InReplyToHeader.NAME);
+
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new AcceptEncodingParser(line);
+            }
+        }, AcceptEncodingHeader.NAME);
+
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new AcceptLanguageParser(line);
+            }
+        }, AcceptLanguageHeader.NAME);
+
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new ToParser(line);
+            }
+        }, "t", ToHeader.NAME);
+
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new FromParser(line);
+            }
+        }, FromHeader.NAME, "f");
+
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new CSeqParser(line);
+            }
+        }, CSeqHeader.NAME);
+
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new ViaParser(line);
+            }
+        }, ViaHeader.NAME, "v");
+
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new ContactParser(line);
+            }
+        }, ContactHeader.NAME, "m");
 
-        parserTable.put(
-            InReplyToHeader.NAME.toLowerCase(),
-            InReplyToParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new ContentTypeParser(line);
+            }
+        }, ContentTypeHeader.NAME, "c");
+
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new ContentLengthParser(line);
+            }
+        }, ContentLengthHeader.NAME, "l");
+
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new AuthorizationParser(line);
+            }
+        }, AuthorizationHeader.NAME);
+
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new WWWAuthenticateParser(line);
+            }
+        }, WWWAuthenticateHeader.NAME);
+
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new CallIDParser(line);
+            }
+        }, CallIdHeader.NAME, "i");
+
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new RouteParser(line);
+            }
+        }, RouteHeader.NAME);
+
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new RecordRouteParser(line);
+            }
+        }, RecordRouteHeader.NAME);
 
-        parserTable.put(
-            AcceptEncodingHeader.NAME.toLowerCase(),
-            AcceptEncodingParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new DateParser(line);
+            }
+        }, DateHeader.NAME);
 
-        parserTable.put(
-            AcceptLanguageHeader.NAME.toLowerCase(),
-            AcceptLanguageParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new ProxyAuthorizationParser(line);
+            }
+        }, ProxyAuthorizationHeader.NAME);
 
-        parserTable.put("t", ToParser.class);
-        parserTable.put(ToHeader.NAME.toLowerCase(), ToParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new ProxyAuthenticateParser(line);
+            }
+        }, ProxyAuthenticateHeader.NAME);
 
-        parserTable.put(FromHeader.NAME.toLowerCase(), FromParser.class);
-        parserTable.put("f", FromParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new RetryAfterParser(line);
+            }
+        }, RetryAfterHeader.NAME);
 
-        parserTable.put(CSeqHeader.NAME.toLowerCase(), CSeqParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new RequireParser(line);
+            }
+        }, RequireHeader.NAME);
 
-        parserTable.put(ViaHeader.NAME.toLowerCase(), ViaParser.class);
-        parserTable.put("v", ViaParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new ProxyRequireParser(line);
+            }
+        }, ProxyRequireHeader.NAME);
 
-        parserTable.put(ContactHeader.NAME.toLowerCase(), ContactParser.class);
-        parserTable.put("m", ContactParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new TimeStampParser(line);
+            }
+        }, TimeStampHeader.NAME);
 
-        parserTable.put(
-            ContentTypeHeader.NAME.toLowerCase(),
-            ContentTypeParser.class);
-        parserTable.put("c", ContentTypeParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new UnsupportedParser(line);
+            }
+        }, UnsupportedHeader.NAME);
+
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new UserAgentParser(line);
+            }
+        }, UserAgentHeader.NAME);
 
-        parserTable.put(
-            ContentLengthHeader.NAME.toLowerCase(),
-            ContentLengthParser.class);
-        parserTable.put("l", ContentLengthParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new SupportedParser(line);
+            }
+        }, SupportedHeader.NAME, "k");
 
-        parserTable.put(
-            AuthorizationHeader.NAME.toLowerCase(),
-            AuthorizationParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new ServerParser(line);
+            }
+        }, ServerHeader.NAME);
 
-        parserTable.put(
-            WWWAuthenticateHeader.NAME.toLowerCase(),
-            WWWAuthenticateParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new SubjectParser(line);
+            }
+        }, SubjectHeader.NAME, "s");
 
-        parserTable.put(CallIdHeader.NAME.toLowerCase(), CallIDParser.class);
-        parserTable.put("i", CallIDParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new SubscriptionStateParser(line);
+            }
+        }, SubscriptionStateHeader.NAME);
 
-        parserTable.put(RouteHeader.NAME.toLowerCase(), RouteParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new MaxForwardsParser(line);
+            }
+        }, MaxForwardsHeader.NAME);
 
-        parserTable.put(
-            RecordRouteHeader.NAME.toLowerCase(),
-            RecordRouteParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new MimeVersionParser(line);
+            }
+        }, MimeVersionHeader.NAME);
 
-        parserTable.put(DateHeader.NAME.toLowerCase(), DateParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new MinExpiresParser(line);
+            }
+        }, MinExpiresHeader.NAME);
 
-        parserTable.put(
-            ProxyAuthorizationHeader.NAME.toLowerCase(),
-            ProxyAuthorizationParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new OrganizationParser(line);
+            }
+        }, OrganizationHeader.NAME);
 
-        parserTable.put(
-            ProxyAuthenticateHeader.NAME.toLowerCase(),
-            ProxyAuthenticateParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new PriorityParser(line);
+            }
+        }, PriorityHeader.NAME);
 
-        parserTable.put(
-            RetryAfterHeader.NAME.toLowerCase(),
-            RetryAfterParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new RAckParser(line);
+            }
+        }, RAckHeader.NAME);
 
-        parserTable.put(RequireHeader.NAME.toLowerCase(), RequireParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new RSeqParser(line);
+            }
+        }, RSeqHeader.NAME);
 
-        parserTable.put(
-            ProxyRequireHeader.NAME.toLowerCase(),
-            ProxyRequireParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new ReasonParser(line);
+            }
+        }, ReasonHeader.NAME);
 
-        parserTable.put(
-            TimeStampHeader.NAME.toLowerCase(),
-            TimeStampParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new WarningParser(line);
+            }
+        }, WarningHeader.NAME);
 
-        parserTable.put(
-            UnsupportedHeader.NAME.toLowerCase(),
-            UnsupportedParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new ExpiresParser(line);
+            }
+        }, ExpiresHeader.NAME);
 
-        parserTable.put(
-            UserAgentHeader.NAME.toLowerCase(),
-            UserAgentParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new EventParser(line);
+            }
+        }, EventHeader.NAME, "o");
 
-        parserTable.put(
-            SupportedHeader.NAME.toLowerCase(),
-            SupportedParser.class);
-        // bug fix by Steve Crosley
-        parserTable.put("k", SupportedParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new ErrorInfoParser(line);
+            }
+        }, ErrorInfoHeader.NAME);
 
-        parserTable.put(ServerHeader.NAME.toLowerCase(), ServerParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new ContentLanguageParser(line);
+            }
+        }, ContentLanguageHeader.NAME);
 
-        parserTable.put(SubjectHeader.NAME.toLowerCase(), SubjectParser.class);
-        parserTable.put( "s", SubjectParser.class); // JvB: added
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new ContentEncodingParser(line);
+            }
+        }, ContentEncodingHeader.NAME, "e");
 
-        parserTable.put(
-            SubscriptionStateHeader.NAME.toLowerCase(),
-            SubscriptionStateParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new ContentDispositionParser(line);
+            }
+        }, ContentDispositionHeader.NAME);
 
-        parserTable.put(
-            MaxForwardsHeader.NAME.toLowerCase(),
-            MaxForwardsParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new CallInfoParser(line);
+            }
+        }, CallInfoHeader.NAME);
 
-        parserTable.put(
-            MimeVersionHeader.NAME.toLowerCase(),
-            MimeVersionParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new AuthenticationInfoParser(line);
+            }
+        }, AuthenticationInfoHeader.NAME);
 
-        parserTable.put(
-            MinExpiresHeader.NAME.toLowerCase(),
-            MinExpiresParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new AllowParser(line);
+            }
+        }, AllowHeader.NAME);
 
-        parserTable.put(
-            OrganizationHeader.NAME.toLowerCase(),
-            OrganizationParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new AllowEventsParser(line);
+            }
+        }, AllowEventsHeader.NAME, "u");
 
-        parserTable.put(
-            PriorityHeader.NAME.toLowerCase(),
-            PriorityParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new AlertInfoParser(line);
+            }
+        }, AlertInfoHeader.NAME);
 
-        parserTable.put(RAckHeader.NAME.toLowerCase(), RAckParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new AcceptParser(line);
+            }
+        }, AcceptHeader.NAME);
 
-        parserTable.put(RSeqHeader.NAME.toLowerCase(), RSeqParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new ReferToParser(line);
+            }
+        }, ReferToHeader.NAME, "r");
 
-        parserTable.put(ReasonHeader.NAME.toLowerCase(), ReasonParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new SIPETagParser(line);
+            }
+        }, SIPETagHeader.NAME);
 
-        parserTable.put(WarningHeader.NAME.toLowerCase(), WarningParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new SIPIfMatchParser(line);
+            }
+        }, SIPIfMatchHeader.NAME);
 
-        parserTable.put(ExpiresHeader.NAME.toLowerCase(), ExpiresParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new PAccessNetworkInfoParser(line);
+            }
+        }, PAccessNetworkInfoHeader.NAME);
 
-        parserTable.put(EventHeader.NAME.toLowerCase(), EventParser.class);
-        parserTable.put("o", EventParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new PAssertedIdentityParser(line);
+            }
+        }, PAssertedIdentityHeader.NAME);
 
-        parserTable.put(
-            ErrorInfoHeader.NAME.toLowerCase(),
-            ErrorInfoParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new PPreferredIdentityParser(line);
+            }
+        }, PPreferredIdentityHeader.NAME);
 
-        parserTable.put(
-            ContentLanguageHeader.NAME.toLowerCase(),
-            ContentLanguageParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new PChargingVectorParser(line);
+            }
+        }, PChargingVectorHeader.NAME);
 
-        parserTable.put(
-            ContentEncodingHeader.NAME.toLowerCase(),
-            ContentEncodingParser.class);
-        parserTable.put("e", ContentEncodingParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new PChargingFunctionAddressesParser(line);
+            }
+        }, PChargingFunctionAddressesHeader.NAME);
 
-        parserTable.put(
-            ContentDispositionHeader.NAME.toLowerCase(),
-            ContentDispositionParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new PMediaAuthorizationParser(line);
+            }
+        }, PMediaAuthorizationHeader.NAME);
 
-        parserTable.put(
-            CallInfoHeader.NAME.toLowerCase(),
-            CallInfoParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new PathParser(line);
+            }
+        }, PathHeader.NAME);
 
-        parserTable.put(
-            AuthenticationInfoHeader.NAME.toLowerCase(),
-            AuthenticationInfoParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new PrivacyParser(line);
+            }
+        }, PrivacyHeader.NAME);
 
-        parserTable.put(AllowHeader.NAME.toLowerCase(), AllowParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new ServiceRouteParser(line);
+            }
+        }, ServiceRouteHeader.NAME);
 
-        parserTable.put(
-            AllowEventsHeader.NAME.toLowerCase(),
-            AllowEventsParser.class);
-        parserTable.put("u", AllowEventsParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new PVisitedNetworkIDParser(line);
+            }
+        }, PVisitedNetworkIDHeader.NAME);
 
-        parserTable.put(
-            AlertInfoHeader.NAME.toLowerCase(),
-            AlertInfoParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new PAssociatedURIParser(line);
+            }
+        }, PAssociatedURIHeader.NAME);
 
-        parserTable.put(AcceptHeader.NAME.toLowerCase(), AcceptParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new PCalledPartyIDParser(line);
+            }
+        }, PCalledPartyIDHeader.NAME);
 
-        parserTable.put(ReferToHeader.NAME.toLowerCase(), ReferToParser.class);
-        // Was missing (bug noticed by Steve Crossley)
-        parserTable.put("r", ReferToParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new SecurityServerParser(line);
+            }
+        }, SecurityServerHeader.NAME);
 
-        // JvB: added to support RFC3903 PUBLISH
-        parserTable.put(SIPETagHeader.NAME.toLowerCase(), SIPETagParser.class);
-        parserTable.put(SIPIfMatchHeader.NAME.toLowerCase(), SIPIfMatchParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new SecurityClientParser(line);
+            }
+        }, SecurityClientHeader.NAME);
 
-        //IMS headers
-        parserTable.put(PAccessNetworkInfoHeader.NAME.toLowerCase(), PAccessNetworkInfoParser.class);
-        parserTable.put(PAssertedIdentityHeader.NAME.toLowerCase(), PAssertedIdentityParser.class);
-        parserTable.put(PPreferredIdentityHeader.NAME.toLowerCase(), PPreferredIdentityParser.class);
-        parserTable.put(PChargingVectorHeader.NAME.toLowerCase(), PChargingVectorParser.class);
-        parserTable.put(PChargingFunctionAddressesHeader.NAME.toLowerCase(), PChargingFunctionAddressesParser.class);
-        parserTable.put(PMediaAuthorizationHeader.NAME.toLowerCase(), PMediaAuthorizationParser.class);
-        parserTable.put(PathHeader.NAME.toLowerCase(), PathParser.class);
-        parserTable.put(PrivacyHeader.NAME.toLowerCase(), PrivacyParser.class);
-        parserTable.put(ServiceRouteHeader.NAME.toLowerCase(), ServiceRouteParser.class);
-        parserTable.put(PVisitedNetworkIDHeader.NAME.toLowerCase(), PVisitedNetworkIDParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new SecurityVerifyParser(line);
+            }
+        }, SecurityVerifyHeader.NAME);
 
-        parserTable.put(PAssociatedURIHeader.NAME.toLowerCase(), PAssociatedURIParser.class);
-        parserTable.put(PCalledPartyIDHeader.NAME.toLowerCase(), PCalledPartyIDParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new ReferredByParser(line);
+            }
+        }, ReferredBy.NAME, "b");
 
-        parserTable.put(SecurityServerHeader.NAME.toLowerCase(), SecurityServerParser.class);
-        parserTable.put(SecurityClientHeader.NAME.toLowerCase(), SecurityClientParser.class);
-        parserTable.put(SecurityVerifyHeader.NAME.toLowerCase(), SecurityVerifyParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new SessionExpiresParser(line);
+            }
+        }, SessionExpires.NAME, "x");
 
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new MinSEParser(line);
+            }
+        }, MinSE.NAME);
 
-        // Per RFC 3892 (pmusgrave)
-        parserTable.put(ReferredBy.NAME.toLowerCase(), ReferredByParser.class);
-        parserTable.put("b", ReferredByParser.class); // Bug fix OrangeLabs, AUFFRET Jean-Marc
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new ReplacesParser(line);
+            }
+        }, Replaces.NAME);
 
-        // Per RFC4028 Session Timers (pmusgrave)
-        parserTable.put(SessionExpires.NAME.toLowerCase(), SessionExpiresParser.class);
-        parserTable.put("x", SessionExpiresParser.class);
-        parserTable.put(MinSE.NAME.toLowerCase(), MinSEParser.class);
-        // (RFC4028 does not give a short form header for MinSE)
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new JoinParser(line);
+            }
+        }, Join.NAME);
 
-        // Per RFC3891 (pmusgrave)
-        parserTable.put(Replaces.NAME.toLowerCase(), ReplacesParser.class);
+        register(new ParserCreator() {
+            public HeaderParser createParser(String line) {
+                return new ReferencesParser(line);
+            }
+        }, References.NAME);
+    }
 
-        // Per RFC3911 (jean deruelle)
-        parserTable.put(Join.NAME.toLowerCase(), JoinParser.class);
-        
-        //http://tools.ietf.org/html/draft-worley-references-05
-        parserTable.put(References.NAME.toLowerCase(), ReferencesParser.class);
+    /**
+     * Returns the creator of the parser registered for a header name.
+     *
+     * @param headerName header name (long or compact form)
+     * @return the parser creator or null if the header has no dedicated parser
+     */
+    public static ParserCreator getParserCreator(String headerName) {
+        return parserTable.get(SIPHeaderNamesCache.toLowerCase(headerName));
     }
 
     /**
@@ -291,24 +537,9 @@ public class ParserFactory {
         if (headerName == null || headerValue == null)
             throw new ParseException("The header name or value is null", 0);
 
-        Class parserClass = (Class) parserTable.get(SIPHeaderNamesCache.toLowerCase(headerName));
-        if (parserClass != null) {
-            try {
-                Constructor cons = (Constructor) parserConstructorCache.get(parserClass);
-                if (cons == null) {
-                    cons = parserClass.getConstructor(constructorArgs);
-                    parserConstructorCache.put(parserClass, cons);
-                }
-                Object[] args = new Object[1];
-                args[0] = line;
-                HeaderParser retval = (HeaderParser) cons.newInstance(args);
-                return retval;
-
-            } catch (Exception ex) {
-                InternalErrorHandler.handleException(ex);
-                return null; // to placate the compiler.
-            }
-
+        ParserCreator creator = getParserCreator(headerName);
+        if (creator != null) {
+            return creator.createParser(line);
         } else {
             // Just generate a generic SIPHeader. We define
             // parsers only for the above.
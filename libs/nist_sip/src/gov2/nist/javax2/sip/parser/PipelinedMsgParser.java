@@ -74,6 +74,7 @@ public final class PipelinedMsgParser implements Runnable {
     //private boolean errorFlag;
     private Pipeline rawInputStream;
     private int maxMessageSize;
+    private boolean lazyParsing;
     private int sizeCounter;
     //private int messageSize;
 
@@ -140,6 +141,16 @@ public final class PipelinedMsgParser implements Runnable {
         this(null, in, false, 0);
     }
 
+    /**
+     * Enable or disable the lazy header parsing mode of the message parser.
+     *
+     * @param lazyParsing true to parse the headers on first access.
+     * @see StringMsgParser#setLazyParsing(boolean)
+     */
+    public void setLazyParsing(boolean lazyParsing) {
+        this.lazyParsing = lazyParsing;
+    }
+
     /**
      * Start reading and processing input.
      */
@@ -157,6 +168,7 @@ public final class PipelinedMsgParser implements Runnable {
 
         p.rawInputStream = this.rawInputStream;
         p.sipMessageListener = this.sipMessageListener;
+        p.lazyParsing = this.lazyParsing;
         Thread mythread = new Thread(p);
         mythread.setName("PipelineThread");
         return p;
@@ -270,6 +282,7 @@ public final class PipelinedMsgParser implements Runnable {
                 inputBuffer.append(line2);
                 StringMsgParser smp = new StringMsgParser(sipMessageListener);
                 smp.readBody = false;
+                smp.setLazyParsing(lazyParsing);
                 SIPMessage sipMessage = null;
 
                 try {
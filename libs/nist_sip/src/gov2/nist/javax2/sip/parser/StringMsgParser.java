@@ -38,12 +38,32 @@ import gov2.nist.javax2.sip.address.GenericURI;
 import gov2.nist.javax2.sip.address.SipUri;
 import gov2.nist.javax2.sip.address.TelephoneNumber;
 import gov2.nist.javax2.sip.header.*;
+import gov2.nist.javax2.sip.header.extensions.ReferredByHeader;
+import gov2.nist.javax2.sip.header.extensions.SessionExpiresHeader;
 import gov2.nist.javax2.sip.message.SIPMessage;
 import gov2.nist.javax2.sip.message.SIPRequest;
 import gov2.nist.javax2.sip.message.SIPResponse;
 
 import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import javax2.sip.header.AllowEventsHeader;
+import javax2.sip.header.CSeqHeader;
+import javax2.sip.header.CallIdHeader;
+import javax2.sip.header.ContactHeader;
+import javax2.sip.header.ContentEncodingHeader;
+import javax2.sip.header.ContentLengthHeader;
+import javax2.sip.header.ContentTypeHeader;
+import javax2.sip.header.EventHeader;
+import javax2.sip.header.FromHeader;
+import javax2.sip.header.MaxForwardsHeader;
+import javax2.sip.header.ReferToHeader;
+import javax2.sip.header.SubjectHeader;
+import javax2.sip.header.SupportedHeader;
+import javax2.sip.header.ToHeader;
+import javax2.sip.header.ViaHeader;
 /*
  * Acknowledgement: 1/12/2007: Yanick Belanger rewrote the parsing loops to make them
  * simpler and quicker.
@@ -59,9 +79,10 @@ import java.text.ParseException;
  * accessible from the parsed message using the getContent and getContentBytes
  * methods provided by the SIPMessage class. If SDP parsing is enabled using the
  * parseContent method, then the SDP body is also parsed and can be accessed
- * from the message using the getSDPAnnounce method. Currently only eager
- * parsing of the message is supported (i.e. the entire message is parsed in one
- * feld swoop).
+ * from the message using the getSDPAnnounce method. By default the entire
+ * message is parsed in one feld swoop. In lazy parsing mode only the headers
+ * needed by the stack are parsed, the other ones are kept as raw lines in the
+ * message and parsed on first access.
  *
  *
  * @version 1.2 $Revision: 1.26 $ $Date: 2009/10/22 10:27:38 $
@@ -79,6 +100,45 @@ public class StringMsgParser {
 
     private static boolean computeContentLengthFromMessage = false;
 
+    private boolean lazyParsing;
+
+    /**
+     * Headers which are always parsed, even in lazy parsing mode (lower-cased
+     * long forms)
+     */
+    private static final HashSet<String> eagerHeaders = new HashSet<String>();
+
+    /**
+     * Long forms of the compact header names
+     */
+    private static final HashMap<String, String> compactForms = new HashMap<String, String>();
+
+    static {
+        eagerHeaders.add(SIPHeaderNamesCache.toLowerCase(FromHeader.NAME));
+        eagerHeaders.add(SIPHeaderNamesCache.toLowerCase(ToHeader.NAME));
+        eagerHeaders.add(SIPHeaderNamesCache.toLowerCase(CallIdHeader.NAME));
+        eagerHeaders.add(SIPHeaderNamesCache.toLowerCase(CSeqHeader.NAME));
+        eagerHeaders.add(SIPHeaderNamesCache.toLowerCase(ViaHeader.NAME));
+        eagerHeaders.add(SIPHeaderNamesCache.toLowerCase(ContentLengthHeader.NAME));
+        eagerHeaders.add(SIPHeaderNamesCache.toLowerCase(MaxForwardsHeader.NAME));
+
+        compactForms.put("t", SIPHeaderNamesCache.toLowerCase(ToHeader.NAME));
+        compactForms.put("f", SIPHeaderNamesCache.toLowerCase(FromHeader.NAME));
+        compactForms.put("v", SIPHeaderNamesCache.toLowerCase(ViaHeader.NAME));
+        compactForms.put("m", SIPHeaderNamesCache.toLowerCase(ContactHeader.NAME));
+        compactForms.put("c", SIPHeaderNamesCache.toLowerCase(ContentTypeHeader.NAME));
+        compactForms.put("l", SIPHeaderNamesCache.toLowerCase(ContentLengthHeader.NAME));
+        compactForms.put("i", SIPHeaderNamesCache.toLowerCase(CallIdHeader.NAME));
+        compactForms.put("k", SIPHeaderNamesCache.toLowerCase(SupportedHeader.NAME));
+        compactForms.put("s", SIPHeaderNamesCache.toLowerCase(SubjectHeader.NAME));
+        compactForms.put("o", SIPHeaderNamesCache.toLowerCase(EventHeader.NAME));
+        compactForms.put("e", SIPHeaderNamesCache.toLowerCase(ContentEncodingHeader.NAME));
+        compactForms.put("u", SIPHeaderNamesCache.toLowerCase(AllowEventsHeader.NAME));
+        compactForms.put("r", SIPHeaderNamesCache.toLowerCase(ReferToHeader.NAME));
+        compactForms.put("b", SIPHeaderNamesCache.toLowerCase(ReferredByHeader.NAME));
+        compactForms.put("x", SIPHeaderNamesCache.toLowerCase(SessionExpiresHeader.NAME));
+    }
+
     /**
      * @since v0.9
      */
@@ -110,6 +170,19 @@ public class StringMsgParser {
         parseExceptionListener = pexhandler;
     }
 
+    /**
+     * Enable or disable the lazy parsing mode. In this mode only the headers
+     * needed by the stack (From, To, Call-ID, CSeq, Via, Content-Length,
+     * Max-Forwards) are parsed with the message, the other headers are parsed
+     * when they are first accessed. A header which then fails to parse is kept
+     * as an unrecognized header.
+     *
+     * @param lazyParsing true to enable the lazy parsing mode.
+     */
+    public void setLazyParsing(boolean lazyParsing) {
+        this.lazyParsing = lazyParsing;
+    }
+
     /**
      * Parse a buffer containing a single SIP Message where the body is an array
      * of un-interpreted bytes. This is intended for parsing the message from a
@@ -127,17 +200,41 @@ public class StringMsgParser {
      * @see ParseExceptionListener
      */
     public SIPMessage parseSIPMessage(byte[] msgBuffer) throws ParseException {
-        if (msgBuffer == null || msgBuffer.length == 0)
+        if (msgBuffer == null)
             return null;
+        return parseSIPMessage(msgBuffer, 0, msgBuffer.length);
+    }
 
-        int i = 0;
+    /**
+     * Parse a single SIP Message held in a part of a byte buffer, for instance
+     * a received datagram, without copying it first.
+     *
+     * @param msgBuffer
+     *            a byte buffer containing the message to be parsed.
+     * @param offset
+     *            offset of the message in the buffer.
+     * @param length
+     *            length of the message.
+     * @return a SIPMessage structure (request or response) containing the
+     *         parsed SIP message.
+     * @exception ParseException
+     *                is thrown when an illegal message has been encountered.
+     * @see #parseSIPMessage(byte[])
+     */
+    public SIPMessage parseSIPMessage(byte[] msgBuffer, int offset, int length)
+            throws ParseException {
+        if (msgBuffer == null || length <= 0)
+            return null;
+        int end = offset + length;
+        if (offset < 0 || end > msgBuffer.length)
+            throw new IllegalArgumentException("Invalid message bounds");
+
+        int i = offset;
 
         // Squeeze out any leading control character.
-        try {
-            while (msgBuffer[i] < 0x20)
-                i++;
-        }
-        catch (ArrayIndexOutOfBoundsException e) {
+        while (i < end && msgBuffer[i] < 0x20)
+            i++;
+        if (i == end) {
             // Array contains only control char, return null.
             return null;
         }
@@ -152,11 +249,9 @@ public class StringMsgParser {
             int lineStart = i;
 
             // Find the length of the line.
-            try {
-                while (msgBuffer[i] != '\r' && msgBuffer[i] != '\n')
-                    i++;
-            }
-            catch (ArrayIndexOutOfBoundsException e) {
+            while (i < end && msgBuffer[i] != '\r' && msgBuffer[i] != '\n')
+                i++;
+            if (i == end) {
                 // End of the message.
                 break;
             }
@@ -199,7 +294,7 @@ public class StringMsgParser {
                 }
             }
 
-            if (msgBuffer[i] == '\r' && msgBuffer.length > i+1 && msgBuffer[i+1] == '\n')
+            if (msgBuffer[i] == '\r' && end > i+1 && msgBuffer[i+1] == '\n')
                 i++;
 
             i++;
@@ -208,12 +303,12 @@ public class StringMsgParser {
         } while (currentLine.length() > 0); // End do - while
 
         if (message == null) throw new ParseException("Bad message", 0);
-        message.setSize(i);
+        message.setSize(i - offset);
 
         if (readBody && message.getContentLength() != null &&
                 message.getContentLength().getContentLength() != 0) {
 
-            int bodyLength = msgBuffer.length - i;
+            int bodyLength = end - i;
 
             byte[] body = new byte[bodyLength];
             System.arraycopy(msgBuffer, i, body, 0, bodyLength);
@@ -391,6 +486,21 @@ public class StringMsgParser {
         if (header == null || header.length() == 0)
             return;
 
+        if (lazyParsing) {
+            String headerName = Lexer.getHeaderName(header);
+            if (headerName != null) {
+                String lowerCaseName = SIPHeaderNamesCache.toLowerCase(headerName);
+                String longForm = compactForms.get(lowerCaseName);
+                if (longForm != null) {
+                    lowerCaseName = longForm;
+                }
+                if (!eagerHeaders.contains(lowerCaseName)) {
+                    message.addLazyHeader(lowerCaseName, header);
+                    return;
+                }
+            }
+        }
+
         HeaderParser headerParser = null;
         try {
             headerParser = ParserFactory.createParser(header + "\n");
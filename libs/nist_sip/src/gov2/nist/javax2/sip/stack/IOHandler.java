@@ -71,7 +71,9 @@ import javax2.sip.header.ContactHeader;
 
 class IOHandler {
 
-    private Semaphore ioSemaphore = new Semaphore(1);
+    // One semaphore per destination so that writes to independent
+    // connections do not wait for each other.
+    private final ConcurrentHashMap<String, Semaphore> ioSemaphores = new ConcurrentHashMap<String, Semaphore>();
 
     private SipStackImpl sipStack;
 
@@ -106,6 +108,59 @@ class IOHandler {
 
     protected void removeSocket(String key) {
         socketTable.remove(key);
+        // The semaphore of a destination being written is removed when its
+        // critical section is left
+        Semaphore semaphore = ioSemaphores.get(key);
+        if (semaphore != null && semaphore.availablePermits() > 0
+                && !semaphore.hasQueuedThreads()) {
+            ioSemaphores.remove(key, semaphore);
+        }
+    }
+
+    /**
+     * Serialize the connection set up and the writes towards a destination. Sends to other
+     * destinations are not blocked.
+     * 
+     * @param key -- destination key
+     * @return the semaphore acquired, to pass to leaveIOCriticalSection
+     * @throws IOException -- if the destination could not be acquired within 10 seconds.
+     */
+    private Semaphore enterIOCriticalSection(String key) throws IOException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (true) {
+            Semaphore semaphore = ioSemaphores.get(key);
+            if (semaphore == null) {
+                Semaphore newSemaphore = new Semaphore(1, true);
+                semaphore = ioSemaphores.putIfAbsent(key, newSemaphore);
+                if (semaphore == null) {
+                    semaphore = newSemaphore;
+                }
+            }
+            try {
+                boolean retval = semaphore.tryAcquire(
+                        Math.max(0, deadline - System.currentTimeMillis()),
+                        TimeUnit.MILLISECONDS);
+                if (!retval) {
+                    throw new IOException("Could not acquire IO Semaphore for " + key
+                            + " after 10 seconds -- giving up ");
+                }
+            } catch (InterruptedException ex) {
+                throw new IOException("exception in acquiring sem");
+            }
+            // The semaphore may have been removed while waiting for it
+            if (ioSemaphores.get(key) == semaphore) {
+                return semaphore;
+            }
+            semaphore.release();
+        }
+    }
+
+    private void leaveIOCriticalSection(String key, Semaphore semaphore) {
+        if (!socketTable.containsKey(key)) {
+            // No connection is kept towards the destination
+            ioSemaphores.remove(key, semaphore);
+        }
+        semaphore.release();
     }
 
     /**
@@ -196,16 +251,7 @@ class IOHandler {
             String key = makeKey(receiverAddress, contactPort);
             // This should be in a synchronized block ( reported by
             // Jayashenkhar ( lucent ).
-
-            try {
-                boolean retval = this.ioSemaphore.tryAcquire(10000, TimeUnit.MILLISECONDS); 
-                if (!retval) {
-                    throw new IOException(
-                            "Could not acquire IO Semaphore after 10 seconds -- giving up ");
-                }
-            } catch (InterruptedException ex) {
-                throw new IOException("exception in acquiring sem");
-            }
+            Semaphore ioSemaphore = enterIOCriticalSection(key);
             Socket clientSock = getSocket(key);
 
             try {
@@ -276,7 +322,7 @@ class IOHandler {
                     }
                 }
             } finally {
-                ioSemaphore.release();
+                leaveIOCriticalSection(key, ioSemaphore);
             }
 
             if (clientSock == null) {
@@ -296,13 +342,7 @@ class IOHandler {
             // Copied and modified from the former section for TCP
         } else if (transport.compareToIgnoreCase(TLS) == 0) {
             String key = makeKey(receiverAddress, contactPort);
-            try {
-                boolean retval = this.ioSemaphore.tryAcquire(10000, TimeUnit.MILLISECONDS);
-                if (!retval)
-                    throw new IOException("Timeout acquiring IO SEM");
-            } catch (InterruptedException ex) {
-                throw new IOException("exception in acquiring sem");
-            }
+            Semaphore ioSemaphore = enterIOCriticalSection(key);
             Socket clientSock = getSocket(key);
 
             try {
@@ -375,7 +415,7 @@ class IOHandler {
                     }
                 }
             } finally {
-                ioSemaphore.release();
+                leaveIOCriticalSection(key, ioSemaphore);
             }
             if (clientSock == null) {
                 throw new IOException("Could not connect to " + receiverAddress + ":"
@@ -412,7 +452,7 @@ class IOHandler {
      * @param localAddress the local address
      * @param message the SIP message to be updated
      */
-    private void updateViaHeaderPort(int localPort, InetAddress localAddress, SIPMessage message) {
+    protected void updateViaHeaderPort(int localPort, InetAddress localAddress, SIPMessage message) {
 		if (localAddress == null) {
 			return;
 		}
@@ -443,7 +483,7 @@ class IOHandler {
      * @param localPort the local port
      * @param message the SIP message to be updated
      */
-    private void updateContactHeaderPort(int localPort, SIPMessage message) {
+    protected void updateContactHeaderPort(int localPort, SIPMessage message) {
         if (message != null && message.getContactHeader() != null) {
             ContactHeader contactHeader = message.getContactHeader();
             Address contactAddress = contactHeader.getAddress();
@@ -462,7 +502,8 @@ class IOHandler {
             } catch (IOException ex) {
             }
         }
-
+        socketTable.clear();
+        ioSemaphores.clear();
     }
 
 }
@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package gov2.nist.javax2.sip.stack;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A selector thread of the NIO TCP message processor. It accepts the new connections (for the
+ * first selector of the processor), reads the bytes received on the channels registered with it
+ * and wakes up the senders waiting for a channel to become writable. The registrations and
+ * interest changes requested from other threads are run by the selector thread itself.
+ *
+ * @see NioTcpMessageProcessor
+ */
+class NioSelector implements Runnable {
+
+    // Period of the read timeout checks (in milliseconds).
+    private static final int SELECT_TIMEOUT = 1000;
+
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    private final NioTcpMessageProcessor messageProcessor;
+
+    private final Selector selector;
+
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+    // Shared by all the channels of the selector, only used by the selector thread.
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+    private final Thread thread;
+
+    private volatile boolean isRunning;
+
+    protected NioSelector(NioTcpMessageProcessor messageProcessor, String name)
+            throws IOException {
+        this.messageProcessor = messageProcessor;
+        this.selector = Selector.open();
+        this.thread = new Thread(this);
+        this.thread.setName(name);
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Start the selector thread.
+     */
+    public void start() {
+        isRunning = true;
+        thread.start();
+    }
+
+    /**
+     * Stop the selector thread. The registered channels are left open.
+     */
+    public void stop() {
+        isRunning = false;
+        selector.wakeup();
+    }
+
+    /**
+     * Run a task on the selector thread.
+     */
+    public void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Accept the connections of a server socket.
+     */
+    public void registerAcceptor(final ServerSocketChannel serverChannel) {
+        execute(new Runnable() {
+            public void run() {
+                try {
+                    serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+                } catch (ClosedChannelException ex) {
+                    // The processor has been stopped.
+                }
+            }
+        });
+    }
+
+    /**
+     * Read the bytes received on a channel.
+     */
+    public void register(final NioTcpMessageChannel channel, final SocketChannel socketChannel) {
+        execute(new Runnable() {
+            public void run() {
+                try {
+                    channel.setSelectionKey(socketChannel, socketChannel.register(selector,
+                            SelectionKey.OP_READ, channel));
+                } catch (ClosedChannelException ex) {
+                    // The channel has been closed meanwhile.
+                }
+            }
+        });
+    }
+
+    /**
+     * Notify a channel once it becomes writable.
+     */
+    public void enableWrite(final SelectionKey key) {
+        execute(new Runnable() {
+            public void run() {
+                try {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                } catch (CancelledKeyException ex) {
+                    ((NioTcpMessageChannel) key.attachment()).close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Read again the bytes received on a channel, once its reading has been suspended.
+     */
+    public void enableRead(final SelectionKey key) {
+        execute(new Runnable() {
+            public void run() {
+                try {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+                } catch (CancelledKeyException ex) {
+                    // The channel has been closed.
+                }
+            }
+        });
+    }
+
+    public void run() {
+        long lastCheck = System.currentTimeMillis();
+        try {
+            while (isRunning) {
+                try {
+                    selector.select(SELECT_TIMEOUT);
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        processKey(key);
+                    }
+                    long now = System.currentTimeMillis();
+                    if (now - lastCheck >= SELECT_TIMEOUT) {
+                        lastCheck = now;
+                        checkReadTimeouts(now);
+                    }
+                } catch (IOException ex) {
+                    if (messageProcessor.getSIPStack().isLoggingEnabled())
+                        messageProcessor.getSIPStack().getStackLogger().logException(ex);
+                } catch (RuntimeException ex) {
+                    // Keep serving the other channels.
+                    if (messageProcessor.getSIPStack().isLoggingEnabled())
+                        messageProcessor.getSIPStack().getStackLogger().logException(ex);
+                }
+            }
+        } finally {
+            try {
+                selector.close();
+            } catch (IOException ex) {
+            }
+        }
+    }
+
+    private void processKey(SelectionKey key) throws IOException {
+        try {
+            if (!key.isValid()) {
+                return;
+            }
+            if (key.isAcceptable()) {
+                messageProcessor.accept();
+                return;
+            }
+            NioTcpMessageChannel channel = (NioTcpMessageChannel) key.attachment();
+            if (key.isReadable()) {
+                channel.readReady(readBuffer);
+            }
+            if (key.isValid() && key.isWritable()) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                channel.writeReady();
+            }
+        } catch (CancelledKeyException ex) {
+            // The channel has been closed.
+        }
+    }
+
+    private void checkReadTimeouts(long now) {
+        int readTimeout = messageProcessor.getSIPStack().readTimeout;
+        if (readTimeout == -1) {
+            return;
+        }
+        for (SelectionKey key : selector.keys()) {
+            Object attachment = key.attachment();
+            if (attachment instanceof NioTcpMessageChannel) {
+                ((NioTcpMessageChannel) attachment).checkReadTimeout(now, readTimeout);
+            }
+        }
+    }
+}
@@ -0,0 +1,445 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package gov2.nist.javax2.sip.stack;
+
+import gov2.nist.javax2.sip.message.SIPMessage;
+import gov2.nist.javax2.sip.parser.NioPipelineParser;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * TCP message channel driven by a selector thread of the NIO TCP message processor. No thread is
+ * attached to the channel: the received bytes are framed by a non blocking parser and the
+ * messages are processed by the worker threads of the processor. Messages are written directly
+ * to the socket channel, the sender waits for the selector to report the channel as writable
+ * when the socket buffer is full.
+ *
+ * @see NioTcpMessageProcessor
+ */
+public class NioTcpMessageChannel extends TCPMessageChannel {
+
+    // Maximum time to wait for the channel to become writable (in milliseconds).
+    private static final int WRITE_TIMEOUT = 10000;
+
+    // Maximum time to wait for the connection to the peer (in milliseconds).
+    private static final int CONNECT_TIMEOUT = 10000;
+
+    private volatile SocketChannel socketChannel;
+
+    private volatile SelectionKey selectionKey;
+
+    private NioSelector selector;
+
+    private volatile NioPipelineParser parser;
+
+    // True for a connection accepted by the processor (counted in nConnections).
+    private boolean incoming;
+
+    private volatile long lastReadTime;
+
+    // Serializes the connection set up and the writes.
+    private final Object writeLock = new Object();
+
+    private final Object writeReadyLock = new Object();
+
+    private boolean writable;
+
+    /**
+     * Constructor - gets called from the message processor with a socket channel on accepting a
+     * new client.
+     *
+     * @param socketChannel accepted socket channel.
+     * @param sipStack Ptr to SIP Stack
+     * @param msgProcessor the message processor which accepted the connection.
+     */
+    protected NioTcpMessageChannel(SocketChannel socketChannel, SIPTransactionStack sipStack,
+            NioTcpMessageProcessor msgProcessor) throws IOException {
+        super(sipStack);
+        if (sipStack.isLoggingEnabled()) {
+            sipStack.getStackLogger().logDebug("creating new NioTcpMessageChannel ");
+        }
+        this.tcpMessageProcessor = msgProcessor;
+        this.myAddress = msgProcessor.getIpAddress().getHostAddress();
+        this.myPort = msgProcessor.getPort();
+        super.messageProcessor = msgProcessor;
+        this.incoming = true;
+        this.peerAddress = socketChannel.socket().getInetAddress();
+        this.peerPort = socketChannel.socket().getPort();
+        attach(socketChannel);
+    }
+
+    /**
+     * Constructor - the connection to the given inet address is opened on the first send.
+     *
+     * @param inetAddr inet address to connect to.
+     * @param port port to connect to.
+     * @param sipStack is the sip sipStack from which we are created.
+     * @param msgProcessor the message processor creating the channel.
+     */
+    protected NioTcpMessageChannel(InetAddress inetAddr, int port, SIPTransactionStack sipStack,
+            NioTcpMessageProcessor msgProcessor) {
+        super(sipStack);
+        if (sipStack.isLoggingEnabled()) {
+            sipStack.getStackLogger().logDebug("creating new NioTcpMessageChannel ");
+        }
+        this.peerAddress = inetAddr;
+        this.peerPort = port;
+        this.myPort = msgProcessor.getPort();
+        this.peerProtocol = "TCP";
+        this.tcpMessageProcessor = msgProcessor;
+        this.myAddress = msgProcessor.getIpAddress().getHostAddress();
+        this.key = MessageChannel.getKey(peerAddress, peerPort, "TCP");
+        super.messageProcessor = msgProcessor;
+    }
+
+    /**
+     * Start reading a connected socket channel.
+     */
+    private void attach(SocketChannel channel) throws IOException {
+        channel.configureBlocking(false);
+        NioTcpMessageProcessor processor = (NioTcpMessageProcessor) tcpMessageProcessor;
+        NioPipelineParser newParser = new NioPipelineParser(this, processor.getExecutor(),
+                sipStack.getMaxMessageSize());
+        newParser.setLazyParsing(sipStack.isLazyHeaderParsing());
+        newParser.setReadResumer(new Runnable() {
+            public void run() {
+                SelectionKey key = selectionKey;
+                if (key != null) {
+                    selector.enableRead(key);
+                }
+            }
+        });
+        synchronized (this) {
+            this.socketChannel = channel;
+            this.mySock = channel.socket();
+            this.parser = newParser;
+            this.selector = processor.nextSelector();
+            this.lastReadTime = System.currentTimeMillis();
+            this.isRunning = true;
+        }
+        this.tcpMessageProcessor.useCount++;
+        selector.register(this, channel);
+    }
+
+    protected synchronized void setSelectionKey(SocketChannel channel, SelectionKey selectionKey) {
+        if (channel == socketChannel) {
+            this.selectionKey = selectionKey;
+        }
+    }
+
+    /**
+     * Close the message channel.
+     */
+    public void close() {
+        SocketChannel channel;
+        synchronized (this) {
+            channel = socketChannel;
+            if (channel == null) {
+                return;
+            }
+            socketChannel = null;
+            selectionKey = null;
+            parser.close();
+            isRunning = false;
+        }
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            if (sipStack.isLoggingEnabled())
+                sipStack.getStackLogger().logDebug("Error closing socket " + ex);
+        }
+        synchronized (writeReadyLock) {
+            writeReadyLock.notifyAll();
+        }
+        if (incoming) {
+            incoming = false;
+            if (sipStack.maxConnections != -1) {
+                synchronized (tcpMessageProcessor) {
+                    tcpMessageProcessor.nConnections--;
+                    tcpMessageProcessor.notify();
+                }
+            }
+        }
+        tcpMessageProcessor.remove(this);
+        tcpMessageProcessor.useCount--;
+        if (sipStack.isLoggingEnabled())
+            sipStack.getStackLogger().logDebug("Closing message Channel " + this);
+    }
+
+    /**
+     * Read the bytes available on the channel. Invoked by the selector thread.
+     *
+     * @param buffer read buffer of the selector.
+     */
+    protected void readReady(ByteBuffer buffer) {
+        SocketChannel channel = socketChannel;
+        NioPipelineParser currentParser = parser;
+        if (channel == null) {
+            return;
+        }
+        int nbytes;
+        try {
+            buffer.clear();
+            nbytes = channel.read(buffer);
+        } catch (IOException ex) {
+            if (sipStack.isLoggingEnabled())
+                sipStack.getStackLogger().logDebug("IOException  closing sock " + ex);
+            close();
+            return;
+        }
+        // no more bytes to read...
+        if (nbytes == -1) {
+            close();
+            return;
+        }
+        lastReadTime = System.currentTimeMillis();
+        try {
+            currentParser.addBytes(buffer.array(), 0, nbytes);
+        } catch (IOException ex) {
+            if (sipStack.isLoggingEnabled())
+                sipStack.getStackLogger().logDebug("IOException  closing sock " + ex);
+            close();
+            return;
+        }
+        if (currentParser.suspendReadIfFull()) {
+            // Too many messages wait for their processing: let the peer wait
+            SelectionKey key = selectionKey;
+            if (key != null) {
+                try {
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                } catch (CancelledKeyException ex) {
+                    // The channel has been closed.
+                }
+            }
+        }
+    }
+
+    /**
+     * Wake up the sender waiting for the channel to become writable. Invoked by the selector
+     * thread.
+     */
+    protected void writeReady() {
+        synchronized (writeReadyLock) {
+            writable = true;
+            writeReadyLock.notifyAll();
+        }
+    }
+
+    /**
+     * Close the connection if a message has been partially received and the peer has not sent
+     * anything for too long. Invoked by the selector thread.
+     */
+    protected void checkReadTimeout(long now, int readTimeout) {
+        NioPipelineParser currentParser = parser;
+        if (currentParser != null && currentParser.hasPartialMessage()
+                && !currentParser.isReadSuspended() && now - lastReadTime > readTimeout) {
+            if (sipStack.isLoggingEnabled())
+                sipStack.getStackLogger().logDebug("Read timeout, closing " + this);
+            close();
+        }
+    }
+
+    /**
+     * Gets invoked by the parser as a callback on successful message parsing. The connection is
+     * closed on a fatal error in processing.
+     */
+    public void processMessage(SIPMessage sipMessage) throws Exception {
+        try {
+            super.processMessage(sipMessage);
+        } catch (Exception ex) {
+            close();
+            throw ex;
+        }
+    }
+
+    /**
+     * The accepted socket channel is not shared with the IO handler, only the channel is cached.
+     */
+    protected void cacheConnection() {
+        tcpMessageProcessor.cacheMessageChannel(this);
+    }
+
+    /**
+     * Send message to whoever is connected to us.
+     *
+     * @param message is the message to send.
+     * @param retry reconnect and send again if the connection is broken.
+     */
+    protected void sendMessage(SIPMessage message, boolean retry) throws IOException {
+        send(message, peerProtocol != null ? peerProtocol : "TCP", retry);
+    }
+
+    /**
+     * Send a message to a specified address. The channel of the processor for this address is
+     * used if it is not the peer of this channel.
+     *
+     * @param message message to send.
+     * @param receiverAddress Address to send it to.
+     * @param receiverPort Receiver port.
+     * @throws IOException If there is a problem connecting or sending.
+     */
+    public void sendMessage(SIPMessage message, InetAddress receiverAddress, int receiverPort,
+            boolean retry) throws IOException {
+        if (message == null || receiverAddress == null)
+            throw new IllegalArgumentException("Null argument");
+        if (receiverAddress.equals(peerAddress) && receiverPort == peerPort) {
+            send(message, "TCP", retry);
+        } else {
+            NioTcpMessageChannel channel = (NioTcpMessageChannel) tcpMessageProcessor
+                    .createMessageChannel(receiverAddress, receiverPort);
+            channel.send(message, "TCP", retry);
+        }
+    }
+
+    private void send(SIPMessage message, String transport, boolean retry) throws IOException {
+        int maxRetry = retry ? 2 : 1;
+        synchronized (writeLock) {
+            for (int retryCount = 1;; retryCount++) {
+                try {
+                    SocketChannel channel = connect();
+                    Socket sock = channel.socket();
+                    // Update Via header to reflect local port
+                    sipStack.ioHandler.updateViaHeaderPort(sock.getLocalPort(),
+                            sock.getLocalAddress(), message);
+                    // Update Contact header to reflect local port
+                    sipStack.ioHandler.updateContactHeaderPort(sock.getLocalPort(), message);
+                    // Encode the SIP message into byte array
+                    byte[] bytes = message.encodeAsBytes(transport);
+                    // Changed by Deutsche Telekom
+                    // ***###*** DTAG, AS 2012-09-10; work around Android issue 34727 (large TCP packets from or to port 5060 not send)
+                    boolean smallChunks = sock.getLocalPort() == 5060 || peerPort == 5060;
+                    write(channel, bytes, smallChunks);
+                    return;
+                } catch (IOException ex) {
+                    if (sipStack.isLoggingEnabled())
+                        sipStack.getStackLogger().logDebug(
+                                "IOException occured retryCount " + retryCount);
+                    // old connection is bad.
+                    close();
+                    if (retryCount >= maxRetry) {
+                        throw ex;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the connected socket channel, the connection to the peer is opened if needed.
+     */
+    private SocketChannel connect() throws IOException {
+        SocketChannel channel = socketChannel;
+        if (channel != null) {
+            return channel;
+        }
+        if (sipStack.isLoggingEnabled()) {
+            sipStack.getStackLogger().logDebug("inaddr = " + peerAddress);
+            sipStack.getStackLogger().logDebug("port = " + peerPort);
+        }
+        channel = SocketChannel.open();
+        try {
+            channel.socket().bind(new InetSocketAddress(messageProcessor.getIpAddress(), 0));
+            channel.configureBlocking(false);
+            if (!channel.connect(new InetSocketAddress(peerAddress, peerPort))) {
+                finishConnect(channel);
+            }
+            attach(channel);
+        } catch (IOException ex) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+            }
+            throw new IOException("Could not connect to " + peerAddress + ":" + peerPort);
+        }
+        return channel;
+    }
+
+    /**
+     * Wait for the connection of a non blocking socket channel to complete.
+     *
+     * @throws IOException if the connection fails or is not complete within the connection
+     *             timeout.
+     */
+    private void finishConnect(SocketChannel channel) throws IOException {
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+        Selector connectSelector = Selector.open();
+        try {
+            channel.register(connectSelector, SelectionKey.OP_CONNECT);
+            while (!channel.finishConnect()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new IOException("Connection timeout");
+                }
+                connectSelector.select(remaining);
+                connectSelector.selectedKeys().clear();
+            }
+        } finally {
+            connectSelector.close();
+        }
+    }
+
+    /**
+     * Write all the bytes, waiting for the channel to become writable when the socket buffer is
+     * full.
+     */
+    private void write(SocketChannel channel, byte[] bytes, boolean smallChunks)
+            throws IOException {
+        int chunksize = smallChunks ? 512 : 8 * 1024;
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long deadline = System.currentTimeMillis() + WRITE_TIMEOUT;
+        while (buffer.hasRemaining()) {
+            buffer.limit(Math.min(buffer.position() + chunksize, bytes.length));
+            if (channel.write(buffer) > 0) {
+                continue;
+            }
+            SelectionKey key = selectionKey;
+            synchronized (writeReadyLock) {
+                writable = false;
+                if (key != null) {
+                    selector.enableWrite(key);
+                }
+                while (!writable) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0 || !channel.isOpen()) {
+                        throw new IOException("Could not write to " + peerAddress + ":"
+                                + peerPort);
+                    }
+                    try {
+                        // The key may not be registered yet, poll until it is
+                        writeReadyLock.wait(key != null ? remaining : Math.min(remaining, 10));
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while writing");
+                    }
+                    if (key == null) {
+                        break;
+                    }
+                }
+            }
+        }
+    }
+}
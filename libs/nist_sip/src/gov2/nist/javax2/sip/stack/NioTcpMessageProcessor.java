@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package gov2.nist.javax2.sip.stack;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TCP message processor based on non blocking sockets. A few selector threads accept the
+ * connections and read all the channels, the messages are parsed and processed by a pool of
+ * worker threads. Unlike the TCPMessageProcessor, an idle connection does not hold any thread.
+ *
+ * This processor is used instead of the TCPMessageProcessor when the
+ * gov2.nist.javax2.sip.NIO_TCP_TRANSPORT stack property is set to true.
+ *
+ * @see NioTcpMessageChannel
+ */
+public class NioTcpMessageProcessor extends TCPMessageProcessor {
+
+    private ServerSocketChannel serverChannel;
+
+    private NioSelector[] selectors;
+
+    private int nextSelector;
+
+    private ExecutorService executor;
+
+    /**
+     * Constructor.
+     *
+     * @param ipAddress address where this message processor listens.
+     * @param sipStack SIPStack structure.
+     * @param port port where this message processor listens.
+     */
+    protected NioTcpMessageProcessor(InetAddress ipAddress, SIPTransactionStack sipStack, int port) {
+        super(ipAddress, sipStack, port);
+    }
+
+    /**
+     * Start the processor.
+     */
+    public void start() throws IOException {
+        executor = new ThreadPoolExecutor(sipStack.nioWorkerThreads, sipStack.nioWorkerThreads,
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private int count;
+
+                    public synchronized Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable);
+                        thread.setName("NioTcpWorkerThread-" + count++);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.socket().bind(new InetSocketAddress(getIpAddress(), getPort()));
+        serverChannel.configureBlocking(false);
+        if (getIpAddress().getHostAddress().equals(IN_ADDR_ANY)
+                || getIpAddress().getHostAddress().equals(IN6_ADDR_ANY)) {
+            // Store the address to which we are actually bound
+            super.setIpAddress(serverChannel.socket().getInetAddress());
+        }
+
+        selectors = new NioSelector[sipStack.nioSelectorThreads];
+        for (int i = 0; i < selectors.length; i++) {
+            selectors[i] = new NioSelector(this, "NioTcpSelectorThread-" + i);
+            selectors[i].start();
+        }
+        selectors[0].registerAcceptor(serverChannel);
+    }
+
+    /**
+     * Accept the pending connections. Invoked by the first selector thread.
+     */
+    protected void accept() throws IOException {
+        SocketChannel socketChannel;
+        while ((socketChannel = serverChannel.accept()) != null) {
+            synchronized (this) {
+                // sipStack.maxConnections == -1 means we are
+                // willing to handle an "infinite" number of
+                // simultaneous connections (no resource limitation).
+                if (sipStack.maxConnections != -1
+                        && this.nConnections >= sipStack.maxConnections) {
+                    if (sipStack.isLoggingEnabled()) {
+                        sipStack.getStackLogger().logDebug(
+                                "Too many connections, rejecting new connection");
+                    }
+                    socketChannel.close();
+                    continue;
+                }
+                this.nConnections++;
+            }
+            if (sipStack.isLoggingEnabled()) {
+                sipStack.getStackLogger().logDebug("Accepting new connection!");
+            }
+            try {
+                addIncomingChannel(new NioTcpMessageChannel(socketChannel, sipStack, this));
+            } catch (IOException ex) {
+                if (sipStack.isLoggingEnabled())
+                    sipStack.getStackLogger().logException(ex);
+                socketChannel.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the selector thread in charge of a new channel.
+     */
+    protected synchronized NioSelector nextSelector() {
+        NioSelector selector = selectors[nextSelector];
+        nextSelector = (nextSelector + 1) % selectors.length;
+        return selector;
+    }
+
+    /**
+     * Returns the pool of threads processing the received messages.
+     */
+    protected ExecutorService getExecutor() {
+        return executor;
+    }
+
+    protected TCPMessageChannel createOutgoingChannel(InetAddress host, int port) {
+        return new NioTcpMessageChannel(host, port, sipStack, this);
+    }
+
+    /**
+     * Stop the message processor.
+     */
+    public synchronized void stop() {
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        for (NioSelector selector : selectors) {
+            selector.stop();
+        }
+        super.stop();
+        executor.shutdown();
+    }
+}
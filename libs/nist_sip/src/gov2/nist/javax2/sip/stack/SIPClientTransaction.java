@@ -47,7 +47,6 @@ import java.io.IOException;
 import java.security.cert.X509Certificate;
 import java.text.ParseException;
 import java.util.ListIterator;
-import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
 
 import javax.net.ssl.SSLPeerUnverifiedException;
@@ -248,7 +247,7 @@ public class SIPClientTransaction extends SIPTransaction implements ServerRespon
                     if (newUseCount <= 0) {
                         // Let the connection linger for a while and then close
                         // it.
-                        TimerTask myTimer = new LingerTimer();
+                        SIPStackTimerTask myTimer = new LingerTimer();
                         sipStack.getTimer().schedule(myTimer,
                                 SIPTransactionStack.CONNECTION_LINGER_TIME * 1000);
                     }
@@ -1010,6 +1009,8 @@ public class SIPClientTransaction extends SIPTransaction implements ServerRespon
                         }
                         lastRequest.setHeader(timeStamp);
                     }
+                    // Retransmissions are identical, encode the request only once
+                    lastRequest.retainEncoding();
                     super.sendMessage(lastRequest);
                     if (this.notifyOnRetransmit) {
                         TimeoutEvent txTimeout = new TimeoutEvent(this.getSipProvider(), this,
@@ -1305,9 +1306,9 @@ public class SIPClientTransaction extends SIPTransaction implements ServerRespon
      */
     protected  void startTransactionTimer() {
         if (this.transactionTimerStarted.compareAndSet(false, true)) {
-	        TimerTask myTimer = new TransactionTimer();
+	        SIPStackTimerTask myTimer = new TransactionTimer();
 	        if ( sipStack.getTimer() != null ) {
-	            sipStack.getTimer().schedule(myTimer, BASE_TIMER_INTERVAL, BASE_TIMER_INTERVAL);
+	            sipStack.getTimer().scheduleWithFixedDelay(myTimer, BASE_TIMER_INTERVAL, BASE_TIMER_INTERVAL);
 	        }
         }
     }
@@ -2287,7 +2287,7 @@ public class SIPDialog implements javax2.sip.Dialog, DialogExt {
 	            this.timerTask.transaction = transaction;
 	        } else {
 	            this.timerTask = new DialogTimerTask(transaction);
-	            sipStack.getTimer().schedule(timerTask, SIPTransactionStack.BASE_TIMER_INTERVAL,
+	            sipStack.getTimer().scheduleWithFixedDelay(timerTask, SIPTransactionStack.BASE_TIMER_INTERVAL,
 	                    SIPTransactionStack.BASE_TIMER_INTERVAL);
 	        }
 		} finally {
@@ -41,7 +41,6 @@ import gov2.nist.javax2.sip.message.SIPResponse;
 
 import java.io.IOException;
 import java.text.ParseException;
-import java.util.TimerTask;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
@@ -387,7 +386,7 @@ public class SIPServerTransaction extends SIPTransaction implements ServerReques
                 // the client side of the tx to use the same connection to
                 // send an ACK and prevents a race condition for creation
                 // of new server tx
-                TimerTask myTimer = new LingerTimer();
+                SIPStackTimerTask myTimer = new LingerTimer();
 
                 sipStack.getTimer().schedule(myTimer,
                         SIPTransactionStack.CONNECTION_LINGER_TIME * 1000);
@@ -796,6 +795,9 @@ public class SIPServerTransaction extends SIPTransaction implements ServerReques
                     if (lastResponse != null) {
 
                         // Send the message to the client
+                        if (!isReliable()) {
+                            lastResponse.retainEncoding();
+                        }
                         super.sendMessage(lastResponse);
 
                     }
@@ -1127,8 +1129,12 @@ public class SIPServerTransaction extends SIPTransaction implements ServerReques
                 // null can happen if this is terminating when the timer fires.
                 if (!this.retransmissionAlertEnabled || sipStack.isTransactionPendingAck(this) ) {
                     // Retransmit last response until ack.
-                    if (lastResponse.getStatusCode() / 100 > 2 && !this.isAckSeen)
+                    if (lastResponse.getStatusCode() / 100 > 2 && !this.isAckSeen) {
+                        if (!isReliable()) {
+                            lastResponse.retainEncoding();
+                        }
                         super.sendMessage(lastResponse);
+                    }
                 } else {
                     // alert the application to retransmit the last response
                     SipProviderImpl sipProvider = (SipProviderImpl) this.getSipProvider();
@@ -1397,7 +1403,7 @@ public class SIPServerTransaction extends SIPTransaction implements ServerReques
 
                 this.retransmissionAlertTimerTask = new RetransmissionAlertTimerTask(dialogId);
                 sipStack.retransmissionAlertTransactions.put(dialogId, this);
-                sipStack.getTimer().schedule(this.retransmissionAlertTimerTask, 0,
+                sipStack.getTimer().scheduleWithFixedDelay(this.retransmissionAlertTimerTask, 0,
                         SIPTransactionStack.BASE_TIMER_INTERVAL);
 
             }
@@ -1474,8 +1480,8 @@ public class SIPServerTransaction extends SIPTransaction implements ServerReques
         	if (sipStack.getTimer() != null) {
                 // The timer is set to null when the Stack is
                 // shutting down.
-                TimerTask myTimer = new TransactionTimer();
-                sipStack.getTimer().schedule(myTimer, BASE_TIMER_INTERVAL, BASE_TIMER_INTERVAL);
+                SIPStackTimerTask myTimer = new TransactionTimer();
+                sipStack.getTimer().scheduleWithFixedDelay(myTimer, BASE_TIMER_INTERVAL, BASE_TIMER_INTERVAL);
             }
         }        
     }
@@ -1579,7 +1585,7 @@ public class SIPServerTransaction extends SIPTransaction implements ServerReques
             }
             this.sendMessage((SIPMessage) relResponse);
             this.provisionalResponseTask = new ProvisionalResponseTask();
-            this.sipStack.getTimer().schedule(provisionalResponseTask, 0,
+            this.sipStack.getTimer().scheduleWithFixedDelay(provisionalResponseTask, 0,
                     SIPTransactionStack.BASE_TIMER_INTERVAL);
             
 
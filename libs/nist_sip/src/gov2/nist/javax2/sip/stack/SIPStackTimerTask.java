@@ -8,21 +8,34 @@
 
 package gov2.nist.javax2.sip.stack;
 
-import android.os.SystemClock;
+import gov2.nist.javax2.sip.stack.timers.SipTimer;
 
-import java.util.TimerTask;
+import android.os.SystemClock;
 
 /**
- * A subclass of TimerTask which runs TimerTask code within a try/catch block to
+ * A task of the stack timer which runs the task code within a try/catch block to
  * avoid killing the SIPTransactionStack timer thread. Note: subclasses MUST not
  * override run(); instead they should override runTask().
  *
+ * Like a TimerTask, a task is scheduled once and is not run anymore once
+ * cancelled.
+ *
+ * @see SipTimer
+ *
  * @author Brett Buckingham
  *
  */
-public abstract class SIPStackTimerTask extends TimerTask {
+public abstract class SIPStackTimerTask {
     long taskOutdatedTime;
 
+    // Timer which scheduled the task, null if not scheduled yet.
+    private SipTimer sipTimer;
+
+    // Handle of the task in the timer which scheduled it.
+    private Object sipTimerTask;
+
+    private boolean cancelled;
+
     // / Implements code to be run when the SIPStackTimerTask is executed.
     protected abstract void runTask();
 
@@ -37,6 +50,46 @@ public abstract class SIPStackTimerTask extends TimerTask {
         }
     }
 
+    /**
+     * Cancel the task. A one shot task which has not run yet is never run, a
+     * periodic task is not run anymore.
+     *
+     * @return true if this prevented an execution of the task.
+     */
+    public boolean cancel() {
+        SipTimer timer;
+        synchronized (this) {
+            if (cancelled)
+                return false;
+            cancelled = true;
+            timer = sipTimer;
+        }
+        return timer != null && timer.cancel(this);
+    }
+
+    /**
+     * Bind the task to the timer scheduling it. Called by the timer.
+     *
+     * @param timer the timer scheduling the task.
+     * @param sipTimerTask handle of the task in the timer.
+     * @throws IllegalStateException if the task is already scheduled or cancelled.
+     */
+    public synchronized void setSipTimerTask(SipTimer timer, Object sipTimerTask) {
+        if (cancelled || sipTimer != null)
+            throw new IllegalStateException("Task already scheduled or cancelled");
+        this.sipTimer = timer;
+        this.sipTimerTask = sipTimerTask;
+    }
+
+    /**
+     * Returns the handle of the task in the timer which scheduled it.
+     *
+     * @return the handle, null if the task has not been scheduled.
+     */
+    public synchronized Object getSipTimerTask() {
+        return sipTimerTask;
+    }
+
     /**
      * Set the number of ticks after which the timer is considered to be expired (i.e. outdated).
      *
@@ -47,6 +47,8 @@ import gov2.nist.javax2.sip.header.extensions.ReplacesHeader;
 import gov2.nist.javax2.sip.message.SIPMessage;
 import gov2.nist.javax2.sip.message.SIPRequest;
 import gov2.nist.javax2.sip.message.SIPResponse;
+import gov2.nist.javax2.sip.stack.timers.DefaultSipTimer;
+import gov2.nist.javax2.sip.stack.timers.SipTimer;
 
 import java.io.IOException;
 import java.net.InetAddress;
@@ -58,8 +60,8 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Properties;
 import java.util.Set;
-import java.util.Timer;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -126,7 +128,12 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
 
     // Global timer. Use this for all timer tasks.
 
-    private Timer timer;
+    private SipTimer timer;
+
+    // Class of the global timer and its configuration.
+    protected String timerClassName = DefaultSipTimer.class.getName();
+
+    protected Properties timerProperties;
 
     // List of pending server transactions
     private ConcurrentHashMap<String, SIPServerTransaction> pendingTransactions;
@@ -373,6 +380,18 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
 	// the max fork time with a stack init property.
 	protected int maxForkTime = 0;
 
+	// Parse the headers which are not needed by the stack on first access.
+	protected boolean lazyHeaderParsing = false;
+
+	// Use the selector based transport for TCP.
+	protected boolean nioTcpTransport = false;
+
+	// Number of selector threads of the NIO TCP transport.
+	protected int nioSelectorThreads = 1;
+
+	// Number of threads processing the messages received by the NIO TCP transport.
+	protected int nioWorkerThreads = 4;
+
    
     // / Timer to regularly ping the thread auditor (on behalf of the timer
     // thread)
@@ -476,11 +495,29 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
 
         // Start the timer event thread.
 
-        this.timer = new Timer();
+        createTimer();
         this.pendingTransactions = new ConcurrentHashMap<String, SIPServerTransaction>();
         
         
         this.forkedClientTransactionTable = new ConcurrentHashMap<String,SIPClientTransaction>();
+    }
+
+    /**
+     * Create and start the global timer, replacing the current one.
+     */
+    protected void createTimer() {
+        if (this.timer != null)
+            this.timer.stop();
+        SipTimer sipTimer;
+        try {
+            sipTimer = (SipTimer) Class.forName(timerClassName).newInstance();
+        } catch (Exception ex) {
+            if (isLoggingEnabled())
+                stackLogger.logError("Could not create the timer " + timerClassName, ex);
+            sipTimer = new DefaultSipTimer();
+        }
+        sipTimer.start(this, timerProperties);
+        this.timer = sipTimer;
 
         if (getThreadAuditor().isEnabled()) {
             // Start monitoring the timer thread
@@ -512,7 +549,7 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
         this.terminatedServerTransactionsPendingAck = new ConcurrentHashMap<String,SIPServerTransaction>();
         this.forkedClientTransactionTable = new ConcurrentHashMap<String,SIPClientTransaction>();
 
-        this.timer = new Timer();
+        createTimer();
 
         this.activeClientTransactionCount = new AtomicInteger(0);
 
@@ -1654,7 +1691,7 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
     public void stopStack() {
         // Prevent NPE on two concurrent stops
         if (this.timer != null)
-            this.timer.cancel();
+            this.timer.stop();
 
         // JvB: set it to null, SIPDialog tries to schedule things after stop
         timer = null;
@@ -1766,6 +1803,16 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
         return this.maxMessageSize;
     }
 
+    /**
+     * Return true if the headers of the received messages are parsed on first
+     * access.
+     *
+     * @return true if the lazy header parsing mode is enabled.
+     */
+    public boolean isLazyHeaderParsing() {
+        return this.lazyHeaderParsing;
+    }
+
     /**
      * Set the flag that instructs the stack to only start a single thread for sequentially
      * processing incoming udp messages (thus serializing the processing). Same as setting thread
@@ -1995,8 +2042,8 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
             this.udpFlag = true;
             return udpMessageProcessor;
         } else if (transport.equalsIgnoreCase("tcp")) {
-            TCPMessageProcessor tcpMessageProcessor = new TCPMessageProcessor(ipAddress, this,
-                    port);
+            TCPMessageProcessor tcpMessageProcessor = nioTcpTransport ? new NioTcpMessageProcessor(
+                    ipAddress, this, port) : new TCPMessageProcessor(ipAddress, this, port);
             this.addMessageProcessor(tcpMessageProcessor);
             // this.tcpFlag = true;
             return tcpMessageProcessor;
@@ -2446,14 +2493,14 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
     /**
      * @param timer the timer to set
      */
-    public void setTimer(Timer timer) {
+    public void setTimer(SipTimer timer) {
         this.timer = timer;
     }
 
     /**
      * @return the timer
      */
-    public Timer getTimer() {
+    public SipTimer getTimer() {
         return timer;
     }
 
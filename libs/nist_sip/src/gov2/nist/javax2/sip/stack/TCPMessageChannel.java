@@ -36,7 +36,6 @@ import gov2.nist.javax2.sip.parser.*;
 import java.net.*;
 import java.io.*;
 import java.text.ParseException;
-import java.util.TimerTask;
 
 import javax2.sip.address.Hop;
 
@@ -65,7 +64,7 @@ import javax2.sip.address.Hop;
 public class TCPMessageChannel extends MessageChannel implements SIPMessageListener, Runnable,
         RawMessageChannel {
 
-    private Socket mySock;
+    protected Socket mySock;
 
     private PipelinedMsgParser myParser;
 
@@ -98,7 +97,7 @@ public class TCPMessageChannel extends MessageChannel implements SIPMessageListe
     // a transaction gets freed from the message channel.
     // protected int useCount;
 
-    private TCPMessageProcessor tcpMessageProcessor;
+    protected TCPMessageProcessor tcpMessageProcessor;
 
     protected TCPMessageChannel(SIPTransactionStack sipStack) {
         this.sipStack = sipStack;
@@ -240,7 +239,7 @@ public class TCPMessageChannel extends MessageChannel implements SIPMessageListe
      * @param message is the message to send.
      * @param retry
      */
-    private void sendMessage(SIPMessage message, boolean retry) throws IOException {
+    protected void sendMessage(SIPMessage message, boolean retry) throws IOException {
 
         /*
          * Patch from kircuv@dev.java.net (Issue 119 ) This patch avoids the case where two
@@ -314,7 +313,7 @@ public class TCPMessageChannel extends MessageChannel implements SIPMessageListe
                 /*
                  * Delay the close of the socket for some time in case it is being used.
                  */
-                sipStack.getTimer().schedule(new TimerTask() {
+                sipStack.getTimer().schedule(new SIPStackTimerTask() {
                     @Override
                     public boolean cancel() {
                         try {
@@ -329,7 +328,7 @@ public class TCPMessageChannel extends MessageChannel implements SIPMessageListe
                     }
 
                     @Override
-                    public void run() {
+                    protected void runTask() {
                         try {
                             if (mySock != null) {
                                 mySock.close();
@@ -467,11 +466,8 @@ public class TCPMessageChannel extends MessageChannel implements SIPMessageListe
                 }
                 // Use this for outgoing messages as well.
                 if (!this.isCached) {
-                    ((TCPMessageProcessor) this.messageProcessor).cacheMessageChannel(this);
+                    cacheConnection();
                     this.isCached = true;
-                    int remotePort = ((java.net.InetSocketAddress) mySock.getRemoteSocketAddress()).getPort();
-                    String key = IOHandler.makeKey(mySock.getInetAddress(), remotePort);
-                    sipStack.ioHandler.putSocket(key, mySock);
                 }
             }
 
@@ -600,6 +596,7 @@ public class TCPMessageChannel extends MessageChannel implements SIPMessageListe
         // Create a pipelined message parser to read and parse
         // messages that we write out to him.
         myParser = new PipelinedMsgParser(this, hispipe, this.sipStack.getMaxMessageSize());
+        myParser.setLazyParsing(this.sipStack.isLazyHeaderParsing());
         // Start running the parser thread.
         myParser.processInput();
         // bug fix by Emmanuel Proulx
@@ -669,6 +666,17 @@ public class TCPMessageChannel extends MessageChannel implements SIPMessageListe
 
     }
 
+    /**
+     * Cache the channel and its socket so that the requests sent to the peer re-use the
+     * connection it opened.
+     */
+    protected void cacheConnection() {
+        ((TCPMessageProcessor) this.messageProcessor).cacheMessageChannel(this);
+        int remotePort = ((java.net.InetSocketAddress) mySock.getRemoteSocketAddress()).getPort();
+        String key = IOHandler.makeKey(mySock.getInetAddress(), remotePort);
+        sipStack.ioHandler.putSocket(key, mySock);
+    }
+
     protected void uncache() {
     	if (isCached && !isRunning) {
     		this.tcpMessageProcessor.remove(this);
@@ -178,19 +178,24 @@ public class TCPMessageProcessor extends MessageProcessor {
         isRunning = false;
         // this.listeningPoint = null;
         try {
-            sock.close();
+            if (sock != null) {
+                sock.close();
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
 
-        Collection en = tcpMessageChannels.values();
-        for (Iterator it = en.iterator(); it.hasNext();) {
-            TCPMessageChannel next = (TCPMessageChannel) it.next();
+        // Iterate over copies as closing a channel may remove it
+        @SuppressWarnings("unchecked")
+        Collection<TCPMessageChannel> en = new ArrayList<TCPMessageChannel>(
+                tcpMessageChannels.values());
+        for (Iterator<TCPMessageChannel> it = en.iterator(); it.hasNext();) {
+            TCPMessageChannel next = it.next();
             next.close();
         }
         // RRPN: fix
-        for (Iterator incomingMCIterator = incomingTcpMessageChannels.iterator(); incomingMCIterator
-                .hasNext();) {
+        for (Iterator incomingMCIterator = new ArrayList<TCPMessageChannel>(
+                incomingTcpMessageChannels).iterator(); incomingMCIterator.hasNext();) {
             TCPMessageChannel next = (TCPMessageChannel) incomingMCIterator.next();
             next.close();
         }
@@ -198,6 +203,25 @@ public class TCPMessageProcessor extends MessageProcessor {
         this.notify();
     }
 
+    /**
+     * Keep track of a channel created for an accepted connection.
+     */
+    protected synchronized void addIncomingChannel(TCPMessageChannel tcpMessageChannel) {
+        incomingTcpMessageChannels.add(tcpMessageChannel);
+    }
+
+    /**
+     * Create the channel for a connection opened towards a peer.
+     * 
+     * @param host peer address.
+     * @param port peer port.
+     * @return the new channel.
+     */
+    protected TCPMessageChannel createOutgoingChannel(InetAddress host, int port)
+            throws IOException {
+        return new TCPMessageChannel(host, port, sipStack, this);
+    }
+
     protected synchronized void remove(TCPMessageChannel tcpMessageChannel) {
 
         String key = tcpMessageChannel.getKey();
@@ -219,8 +243,8 @@ public class TCPMessageProcessor extends MessageProcessor {
         if (tcpMessageChannels.get(key) != null) {
             return (TCPMessageChannel) this.tcpMessageChannels.get(key);
         } else {
-            TCPMessageChannel retval = new TCPMessageChannel(targetHostPort.getInetAddress(),
-                    targetHostPort.getPort(), sipStack, this);
+            TCPMessageChannel retval = createOutgoingChannel(targetHostPort.getInetAddress(),
+                    targetHostPort.getPort());
             this.tcpMessageChannels.put(key, retval);
             retval.isCached = true;
             if (sipStack.isLoggingEnabled()) {
@@ -252,7 +276,7 @@ public class TCPMessageProcessor extends MessageProcessor {
             if (tcpMessageChannels.get(key) != null) {
                 return (TCPMessageChannel) this.tcpMessageChannels.get(key);
             } else {
-                TCPMessageChannel retval = new TCPMessageChannel(host, port, sipStack, this);
+                TCPMessageChannel retval = createOutgoingChannel(host, port);
                 this.tcpMessageChannels.put(key, retval);
                 retval.isCached = true;
                 if (sipStack.isLoggingEnabled()) {
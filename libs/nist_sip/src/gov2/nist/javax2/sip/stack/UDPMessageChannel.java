@@ -54,7 +54,6 @@ import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.text.ParseException;
 import java.util.Hashtable;
-import java.util.TimerTask;
 
 import javax2.sip.address.Hop;
 
@@ -137,7 +136,7 @@ public class UDPMessageChannel extends MessageChannel implements
      */
     private Hashtable<String,PingBackTimerTask> pingBackRecord = new Hashtable<String,PingBackTimerTask>();
     
-    class PingBackTimerTask extends TimerTask {
+    class PingBackTimerTask extends SIPStackTimerTask {
         String ipAddress;
         int port;
         
@@ -147,7 +146,7 @@ public class UDPMessageChannel extends MessageChannel implements
             pingBackRecord.put(ipAddress + ":" + port, this);
         }
         @Override
-        public void run() {
+        protected void runTask() {
            pingBackRecord.remove(ipAddress + ":" + port);
         }
         @Override
@@ -247,42 +246,38 @@ public class UDPMessageChannel extends MessageChannel implements
             if (myParser == null) {
                 myParser = new StringMsgParser();
                 myParser.setParseExceptionListener(this);
+                myParser.setLazyParsing(sipStack.isLazyHeaderParsing());
             }
             // messages that we write out to him.
             DatagramPacket packet;
 
+            UDPMessageProcessor processor = (UDPMessageProcessor) messageProcessor;
             if (sipStack.threadPoolSize != -1) {
-                synchronized (((UDPMessageProcessor) messageProcessor).messageQueue) {
-                    while (((UDPMessageProcessor) messageProcessor).messageQueue
-                            .isEmpty()) {
-                        // Check to see if we need to exit.
-                        if (!((UDPMessageProcessor) messageProcessor).isRunning)
-                            return;
-                        try {
-                            // We're part of a thread pool. Ask the auditor to
-                            // monitor this thread.
-                            if (threadHandle == null) {
-                                threadHandle = sipStack.getThreadAuditor()
-                                        .addCurrentThread();
-                            }
-
-                            // Send a heartbeat to the thread auditor
-                            threadHandle.ping();
-
-                            // Wait for packets
-                            // Note: getPingInterval returns 0 (infinite) if the
-                            // thread auditor is disabled.
-                            ((UDPMessageProcessor) messageProcessor).messageQueue
-                                    .wait(threadHandle
-                                            .getPingIntervalInMillisecs());
-                        } catch (InterruptedException ex) {
-                            if (!((UDPMessageProcessor) messageProcessor).isRunning)
-                                return;
-                        }
+                while (true) {
+                    // We're part of a thread pool. Ask the auditor to
+                    // monitor this thread.
+                    if (threadHandle == null) {
+                        threadHandle = sipStack.getThreadAuditor()
+                                .addCurrentThread();
                     }
-                    packet = (DatagramPacket) ((UDPMessageProcessor) messageProcessor).messageQueue
-                            .removeFirst();
 
+                    // Send a heartbeat to the thread auditor
+                    threadHandle.ping();
+
+                    // Wait for packets
+                    // Note: getPingInterval returns 0 (infinite) if the
+                    // thread auditor is disabled.
+                    try {
+                        packet = processor.takePacket(threadHandle
+                                .getPingIntervalInMillisecs());
+                    } catch (InterruptedException ex) {
+                        packet = null;
+                    }
+                    if (packet != null)
+                        break;
+                    // Check to see if we need to exit.
+                    if (!processor.isRunning)
+                        return;
                 }
                 this.incomingPacket = packet;
             } else {
@@ -299,6 +294,11 @@ public class UDPMessageChannel extends MessageChannel implements
                         "Error while processing incoming UDP packet", e);
             }
 
+            // The message has been parsed and processed, the packet
+            // can receive another datagram.
+            this.incomingPacket = null;
+            processor.recycle(packet);
+
             if (sipStack.threadPoolSize == -1) {
                 return;
             }
@@ -315,10 +315,10 @@ public class UDPMessageChannel extends MessageChannel implements
             throws Exception {
         this.peerAddress = packet.getAddress();
         int packetLength = packet.getLength();
-        // Read bytes and put it in a eueue.
-        byte[] bytes = packet.getData();
-        byte[] msgBytes = new byte[packetLength];
-        System.arraycopy(bytes, 0, msgBytes, 0, packetLength);
+        // The message is parsed in place, the packet buffer is recycled
+        // afterwards.
+        byte[] msgBytes = packet.getData();
+        int packetOffset = packet.getOffset();
 
         // Do debug logging.
         if (sipStack.isLoggingEnabled()) {
@@ -332,13 +332,14 @@ public class UDPMessageChannel extends MessageChannel implements
         SIPMessage sipMessage = null;
         try {
             this.receptionTime = System.currentTimeMillis();
-            sipMessage = myParser.parseSIPMessage(msgBytes);
+            sipMessage = myParser.parseSIPMessage(msgBytes, packetOffset,
+                    packetLength);
             myParser = null;
         } catch (ParseException ex) {
             myParser = null; // let go of the parser reference.
             if (sipStack.isLoggingEnabled()) {
                 this.sipStack.getStackLogger().logDebug("Rejecting message !  "
-                        + new String(msgBytes));
+                        + new String(msgBytes, packetOffset, packetLength));
                 this.sipStack.getStackLogger().logDebug("error message "
                         + ex.getMessage());
                 this.sipStack.getStackLogger().logException(ex);
@@ -347,7 +348,7 @@ public class UDPMessageChannel extends MessageChannel implements
 
             // JvB: send a 400 response for requests (except ACK)
             // Currently only UDP, @todo also other transports
-            String msgString = new String(msgBytes, 0, packetLength);
+            String msgString = new String(msgBytes, packetOffset, packetLength);
             if (!msgString.startsWith("SIP/") && !msgString.startsWith("ACK ")) {
 
                 SIPMessage badReqRes = createBadReqRes(msgString, ex);
@@ -399,7 +400,7 @@ public class UDPMessageChannel extends MessageChannel implements
                 || sipMessage.getCallId() == null
                 || sipMessage.getCSeq() == null
                 || sipMessage.getViaHeaders() == null) {
-            String badmsg = new String(msgBytes);
+            String badmsg = new String(msgBytes, packetOffset, packetLength);
             if (sipStack.isLoggingEnabled()) {
                 this.sipStack.getStackLogger().logError("bad message " + badmsg);
                 this.sipStack.getStackLogger().logError(">>> Dropped Bad Msg "
@@ -30,6 +30,11 @@ package gov2.nist.javax2.sip.stack;
 
 import java.io.IOException;
 import java.util.LinkedList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.net.*;
 
 import gov2.nist.core.*;
@@ -39,6 +44,12 @@ import gov2.nist.core.*;
  * packet, a new UDPMessageChannel is created (upto the max thread pool size).
  * Each UDP message is processed in its own thread).
  *
+ * With a thread pool, the received datagrams are handed to the pooled
+ * channels through a non blocking queue and the datagram packets are
+ * recycled once processed, so that receiving a message does not allocate a
+ * new receive buffer. The number of received and dropped datagrams, the
+ * receive rate and the queue depth can be read for monitoring.
+ *
  * @version 1.2 $Revision: 1.37 $ $Date: 2009/11/14 20:06:16 $
  *
  * @author M. Ranganathan  <br/>
@@ -64,7 +75,34 @@ public class UDPMessageProcessor extends MessageProcessor {
     /**
      * Incoming messages are queued here.
      */
-    protected LinkedList messageQueue;
+    protected ConcurrentLinkedQueue<DatagramPacket> messageQueue;
+
+    /**
+     * One permit per queued message, the pooled channels wait on it.
+     */
+    private final Semaphore queuedMessages = new Semaphore(0);
+
+    /**
+     * Processed packets, ready to receive new datagrams.
+     */
+    private final ConcurrentLinkedQueue<DatagramPacket> packetPool = new ConcurrentLinkedQueue<DatagramPacket>();
+
+    private final AtomicInteger pooledPackets = new AtomicInteger();
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+
+    private final AtomicLong receivedCount = new AtomicLong();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * Datagrams received during the last complete second.
+     */
+    private volatile int datagramRate;
+
+    private volatile long rateWindowStart;
+
+    private int rateWindowCount;
 
     /**
      * A list of message channels that we have started.
@@ -82,12 +120,22 @@ public class UDPMessageProcessor extends MessageProcessor {
      * A flag that is set to false to exit the message processor (suggestion by
      * Jeff Keyser).
      */
-    protected boolean isRunning;
+    protected volatile boolean isRunning;
     
     private static final int HIGHWAT=5000;
     
     private static final int LOWAT=2500;
 
+    /**
+     * Max # of recycled packets kept for reuse.
+     */
+    private static final int MAX_POOLED_PACKETS = 64;
+
+    /**
+     * No datagram can be larger than this.
+     */
+    private static final int MAX_DATAGRAM_SIZE = 65535;
+
     /**
      * Constructor.
      *
@@ -100,7 +148,7 @@ public class UDPMessageProcessor extends MessageProcessor {
 
         this.sipStack = sipStack;
 
-        this.messageQueue = new LinkedList();
+        this.messageQueue = new ConcurrentLinkedQueue<DatagramPacket>();
 
         this.port = port;
         try {
@@ -179,16 +227,21 @@ public class UDPMessageProcessor extends MessageProcessor {
         ThreadAuditor.ThreadHandle threadHandle = sipStack.getThreadAuditor().addCurrentThread();
 
         // Somebody asked us to exit. if isRunnning is set to false.
+        DatagramPacket packet = null;
+        rateWindowStart = System.currentTimeMillis();
         while (this.isRunning) {
 
             try {
                 // Let the thread auditor know we're up and running
                 threadHandle.ping();
 
-                int bufsize = sock.getReceiveBufferSize();
-                byte message[] = new byte[bufsize];
-                DatagramPacket packet = new DatagramPacket(message, bufsize);
+                // The packet is kept when the receive times out.
+                if (packet == null) {
+                    packet = obtainPacket();
+                }
                 sock.receive(packet);
+                receivedCount.incrementAndGet();
+                updateRate();
 
            
              
@@ -201,16 +254,18 @@ public class UDPMessageProcessor extends MessageProcessor {
              // TODO -- penalize spammers by looking at the source
              // port and IP address.
              if ( sipStack.stackDoesCongestionControl ) {  
-             if ( this.messageQueue.size() >= HIGHWAT) {
+             int queueSize = this.queueDepth.get();
+             if ( queueSize >= HIGHWAT) {
                     if (sipStack.isLoggingEnabled()) {
                         sipStack.getStackLogger().logDebug("Dropping message -- queue length exceeded");
 
                     }
                     //System.out.println("HIGHWAT Drop!");
+                    droppedCount.incrementAndGet();
                     continue;
-                } else if ( this.messageQueue.size() > LOWAT && this .messageQueue.size() < HIGHWAT ) {
+                } else if ( queueSize > LOWAT && queueSize < HIGHWAT ) {
                     // Drop the message with a probabilty that is linear in the range 0 to 1
-                    float threshold = ((float)(messageQueue.size() - LOWAT))/ ((float)(HIGHWAT - LOWAT));
+                    float threshold = ((float)(queueSize - LOWAT))/ ((float)(HIGHWAT - LOWAT));
                     boolean decision = Math.random() > 1.0 - threshold;
                     if ( decision ) {
                         if (sipStack.isLoggingEnabled()) {
@@ -218,6 +273,7 @@ public class UDPMessageProcessor extends MessageProcessor {
 
                         }
                         //System.out.println("RED Drop!");
+                        droppedCount.incrementAndGet();
                         continue;
                     }
 
@@ -229,20 +285,13 @@ public class UDPMessageProcessor extends MessageProcessor {
                 // Count of # of packets in process.
                 // this.useCount++;
                 if (sipStack.threadPoolSize != -1) {
-                    // Note: the only condition watched for by threads
-                    // synchronizing on the messageQueue member is that it is
-                    // not empty. As soon as you introduce some other
-                    // condition you will have to call notifyAll instead of
-                    // notify below.
-
-                    synchronized (this.messageQueue) {
-                        // was addLast
-                        this.messageQueue.add(packet);
-                        this.messageQueue.notify();
-                    }
+                    queueDepth.incrementAndGet();
+                    this.messageQueue.offer(packet);
+                    queuedMessages.release();
                 } else {
                     new UDPMessageChannel(sipStack, this, packet);
                 }
+                packet = null;
             } catch (SocketTimeoutException ex) {
               // This socket timeout alows us to ping the thread auditor periodically
             } catch (SocketException ex) {
@@ -250,11 +299,7 @@ public class UDPMessageProcessor extends MessageProcessor {
                     getSIPStack().getStackLogger()
                             .logDebug("UDPMessageProcessor: Stopping");
                 isRunning = false;
-                // The notifyAll should be in a synchronized block.
-                // ( bug report by Niklas Uhrberg ).
-                synchronized (this.messageQueue) {
-                    this.messageQueue.notifyAll();
-                }
+                wakeUpChannels();
             } catch (IOException ex) {
                 isRunning = false;
                 ex.printStackTrace();
@@ -272,17 +317,83 @@ public class UDPMessageProcessor extends MessageProcessor {
     }
 
     /**
-     * Shut down the message processor. Close the socket for recieving incoming
-     * messages.
+     * Returns a packet to receive the next datagram, recycled if possible.
      */
-    public void stop() {
-        synchronized (this.messageQueue) {
-            this.isRunning = false;
-            this.messageQueue.notifyAll();
-            sock.close();
+    private DatagramPacket obtainPacket() throws SocketException {
+        DatagramPacket packet = packetPool.poll();
+        if (packet != null) {
+            pooledPackets.decrementAndGet();
+            packet.setLength(packet.getData().length);
+            return packet;
+        }
+        int bufsize = Math.min(sock.getReceiveBufferSize(), MAX_DATAGRAM_SIZE);
+        return new DatagramPacket(new byte[bufsize], bufsize);
+    }
 
+    /**
+     * Give back a packet once its message has been processed.
+     *
+     * @param packet
+     *            the processed packet, must not be used afterwards.
+     */
+    protected void recycle(DatagramPacket packet) {
+        if (pooledPackets.incrementAndGet() <= MAX_POOLED_PACKETS) {
+            packetPool.offer(packet);
+        } else {
+            pooledPackets.decrementAndGet();
+        }
+    }
 
+    /**
+     * Wait for the next queued packet. Called by the pooled message channels.
+     *
+     * @param timeout
+     *            max time to wait in milliseconds, 0 to wait until a packet
+     *            is queued or the processor is stopped.
+     * @return the packet, null if none was queued in time or if the
+     *         processor has been stopped.
+     */
+    protected DatagramPacket takePacket(long timeout)
+            throws InterruptedException {
+        if (timeout > 0) {
+            if (!queuedMessages.tryAcquire(timeout, TimeUnit.MILLISECONDS))
+                return null;
+        } else {
+            queuedMessages.acquire();
         }
+        DatagramPacket packet = messageQueue.poll();
+        if (packet != null) {
+            queueDepth.decrementAndGet();
+        }
+        return packet;
+    }
+
+    /**
+     * Release the pooled message channels waiting for a packet.
+     */
+    private void wakeUpChannels() {
+        queuedMessages.release(Math.max(sipStack.threadPoolSize, 1));
+    }
+
+    private void updateRate() {
+        rateWindowCount++;
+        long now = System.currentTimeMillis();
+        long elapsed = now - rateWindowStart;
+        if (elapsed >= 1000) {
+            datagramRate = (int) (rateWindowCount * 1000L / elapsed);
+            rateWindowCount = 0;
+            rateWindowStart = now;
+        }
+    }
+
+    /**
+     * Shut down the message processor. Close the socket for recieving incoming
+     * messages.
+     */
+    public void stop() {
+        this.isRunning = false;
+        sock.close();
+        wakeUpChannels();
     }
 
     /**
@@ -342,9 +453,40 @@ public class UDPMessageProcessor extends MessageProcessor {
      * Return true if there are any messages in use.
      */
     public boolean inUse() {
-        synchronized (messageQueue) {
-            return messageQueue.size() != 0;
+        return queueDepth.get() != 0;
+    }
+
+    /**
+     * Returns the number of datagrams received since the processor started.
+     */
+    public long getReceivedCount() {
+        return receivedCount.get();
+    }
+
+    /**
+     * Returns the number of datagrams dropped by the congestion control.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Returns the number of datagrams waiting for a message channel.
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * Returns the number of datagrams received per second, measured over the
+     * last complete second of traffic.
+     */
+    public int getDatagramRate() {
+        if (System.currentTimeMillis() - rateWindowStart >= 2000) {
+            // Nothing received for a while
+            return 0;
         }
+        return datagramRate;
     }
 
 }
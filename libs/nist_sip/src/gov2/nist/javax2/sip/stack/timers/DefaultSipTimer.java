@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package gov2.nist.javax2.sip.stack.timers;
+
+import gov2.nist.javax2.sip.stack.SIPStackTimerTask;
+import gov2.nist.javax2.sip.stack.SIPTransactionStack;
+
+import java.util.Properties;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Default stack timer, based on a java.util.Timer.
+ */
+public class DefaultSipTimer implements SipTimer {
+
+    private Timer timer;
+
+    private volatile boolean started;
+
+    public void start(SIPTransactionStack sipStack, Properties configurationProperties) {
+        timer = new Timer();
+        started = true;
+    }
+
+    public void stop() {
+        started = false;
+        if (timer != null)
+            timer.cancel();
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    public boolean schedule(SIPStackTimerTask task, long delay) {
+        TimerTask timerTask = new TimerTaskAdapter(task);
+        task.setSipTimerTask(this, timerTask);
+        try {
+            timer.schedule(timerTask, delay);
+            return true;
+        } catch (IllegalStateException ex) {
+            // The timer or the task has been cancelled.
+            return false;
+        }
+    }
+
+    public boolean scheduleWithFixedDelay(SIPStackTimerTask task, long delay, long period) {
+        TimerTask timerTask = new TimerTaskAdapter(task);
+        task.setSipTimerTask(this, timerTask);
+        try {
+            timer.schedule(timerTask, delay, period);
+            return true;
+        } catch (IllegalStateException ex) {
+            // The timer or the task has been cancelled.
+            return false;
+        }
+    }
+
+    public boolean cancel(SIPStackTimerTask task) {
+        Object timerTask = task.getSipTimerTask();
+        return timerTask != null && ((TimerTask) timerTask).cancel();
+    }
+
+    private static class TimerTaskAdapter extends TimerTask {
+        private final SIPStackTimerTask task;
+
+        TimerTaskAdapter(SIPStackTimerTask task) {
+            this.task = task;
+        }
+
+        public void run() {
+            task.run();
+        }
+    }
+}
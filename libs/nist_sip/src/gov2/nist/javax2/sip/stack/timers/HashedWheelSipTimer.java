@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package gov2.nist.javax2.sip.stack.timers;
+
+import gov2.nist.core.HashedTimerWheel;
+import gov2.nist.javax2.sip.stack.SIPStackTimerTask;
+import gov2.nist.javax2.sip.stack.SIPTransactionStack;
+
+import java.util.Properties;
+
+/**
+ * Stack timer based on a hashed timing wheel, see HashedTimerWheel. Scheduling
+ * and cancelling a task take a constant time whatever the number of pending
+ * tasks, and a cancelled task is released at once. A task runs at most one tick
+ * after its expiry.
+ *
+ * The wheel is configured with the following stack properties:
+ * <ul>
+ * <li>gov2.nist.javax2.sip.TIMER_WHEEL_TICK_MILLISECS: duration of a tick,
+ * default is 50 milliseconds.</li>
+ * <li>gov2.nist.javax2.sip.TIMER_WHEEL_SIZE: number of buckets, rounded up to
+ * a power of two, default is 512. A task expiring after more than one turn of
+ * the wheel is skipped by the turns in between.</li>
+ * </ul>
+ */
+public class HashedWheelSipTimer implements SipTimer {
+
+    private static final long DEFAULT_TICK_DURATION = 50;
+
+    private static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private volatile HashedTimerWheel wheel;
+
+    public void start(SIPTransactionStack sipStack, Properties configurationProperties) {
+        long tickDuration = DEFAULT_TICK_DURATION;
+        int wheelSize = DEFAULT_WHEEL_SIZE;
+        if (configurationProperties != null) {
+            tickDuration = Long.parseLong(configurationProperties.getProperty(
+                    "gov2.nist.javax2.sip.TIMER_WHEEL_TICK_MILLISECS",
+                    Long.toString(DEFAULT_TICK_DURATION)));
+            wheelSize = Integer.parseInt(configurationProperties.getProperty(
+                    "gov2.nist.javax2.sip.TIMER_WHEEL_SIZE",
+                    Integer.toString(DEFAULT_WHEEL_SIZE)));
+        }
+        HashedTimerWheel newWheel = new HashedTimerWheel("SipTimerWheelThread", tickDuration,
+                wheelSize);
+        newWheel.setStackLogger(sipStack.getStackLogger());
+        newWheel.start();
+        wheel = newWheel;
+    }
+
+    public void stop() {
+        HashedTimerWheel current = wheel;
+        if (current != null)
+            current.stop();
+    }
+
+    public boolean isStarted() {
+        HashedTimerWheel current = wheel;
+        return current != null && current.isStarted();
+    }
+
+    public boolean schedule(SIPStackTimerTask task, long delay) {
+        return schedule(task, delay, 0);
+    }
+
+    public boolean scheduleWithFixedDelay(SIPStackTimerTask task, long delay, long period) {
+        if (period <= 0)
+            throw new IllegalArgumentException("Non-positive period.");
+        return schedule(task, delay, period);
+    }
+
+    private boolean schedule(final SIPStackTimerTask task, long delay, long period) {
+        if (delay < 0)
+            throw new IllegalArgumentException("Negative delay.");
+        HashedTimerWheel current = wheel;
+        if (current == null)
+            return false;
+        HashedTimerWheel.Timeout timeout = current.newTimeout(new Runnable() {
+            public void run() {
+                task.run();
+            }
+        }, period);
+        // Bound before being scheduled, so that a concurrent cancel finds it
+        task.setSipTimerTask(this, timeout);
+        return current.schedule(timeout, delay);
+    }
+
+    public boolean cancel(SIPStackTimerTask task) {
+        Object handle = task.getSipTimerTask();
+        if (!(handle instanceof HashedTimerWheel.Timeout))
+            return false;
+        return ((HashedTimerWheel.Timeout) handle).cancel();
+    }
+
+    /**
+     * Returns the number of scheduled tasks waiting for their expiry.
+     */
+    public int getPendingCount() {
+        HashedTimerWheel current = wheel;
+        return current == null ? 0 : current.getPendingCount();
+    }
+}
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package gov2.nist.javax2.sip.stack.timers;
+
+import gov2.nist.javax2.sip.stack.SIPStackTimerTask;
+import gov2.nist.javax2.sip.stack.SIPTransactionStack;
+
+import java.util.Properties;
+
+/**
+ * Timer running the timer tasks of the stack: transaction retransmissions and
+ * timeouts, dialog timers, connection timeouts...
+ *
+ * The implementation is selected with the gov2.nist.javax2.sip.TIMER_CLASS_NAME
+ * stack property and must have a public no argument constructor.
+ *
+ * @see DefaultSipTimer
+ * @see HashedWheelSipTimer
+ */
+public interface SipTimer {
+
+    /**
+     * Start the timer.
+     *
+     * @param sipStack the stack using the timer.
+     * @param configurationProperties the stack configuration properties.
+     */
+    void start(SIPTransactionStack sipStack, Properties configurationProperties);
+
+    /**
+     * Stop the timer. The pending tasks are discarded.
+     */
+    void stop();
+
+    /**
+     * Returns true if the timer has been started and not stopped.
+     */
+    boolean isStarted();
+
+    /**
+     * Schedule a task to run once after a delay.
+     *
+     * @param task the task.
+     * @param delay delay in milliseconds.
+     * @return false if the timer is stopped.
+     * @throws IllegalStateException if the task is already scheduled or cancelled.
+     */
+    boolean schedule(SIPStackTimerTask task, long delay);
+
+    /**
+     * Schedule a task to run repeatedly, with a fixed delay between the end of
+     * an execution and the start of the next one.
+     *
+     * @param task the task.
+     * @param delay delay in milliseconds before the first execution.
+     * @param period delay in milliseconds between two executions.
+     * @return false if the timer is stopped.
+     * @throws IllegalStateException if the task is already scheduled or cancelled.
+     */
+    boolean scheduleWithFixedDelay(SIPStackTimerTask task, long delay, long period);
+
+    /**
+     * Cancel a task scheduled with this timer. Invoked by
+     * {@link SIPStackTimerTask#cancel()}.
+     *
+     * @param task the task.
+     * @return true if this prevented an execution of the task.
+     */
+    boolean cancel(SIPStackTimerTask task);
+}